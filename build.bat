@@ -115,6 +115,19 @@ cd out\classes
 "%JAR_CMD%" cfm ..\jar\HL7TestBench.jar ..\MANIFEST.MF .
 cd ..\..
 
+REM Create the class data sharing archive from a training run, so launches
+REM map the application's classes instead of loading them one by one.
+REM The archive records the JAR's absolute path and only matches this JAR.
+echo Creating class data sharing archive...
+if exist out\jar\HL7TestBench.jsa del /f out\jar\HL7TestBench.jsa
+if exist out\jar\HL7TestBench.jar (
+    java -Xlog:disable -XX:ArchiveClassesAtExit="%CD%\out\jar\HL7TestBench.jsa" -jar "%CD%\out\jar\HL7TestBench.jar" --cds-training
+    if !ERRORLEVEL! NEQ 0 (
+        echo WARNING: Could not create the archive; the application will start without it.
+        if exist out\jar\HL7TestBench.jsa del /f out\jar\HL7TestBench.jsa
+    )
+)
+
 if exist out\jar\HL7TestBench.jar (
     echo.
     echo ============================================
@@ -125,6 +138,11 @@ if exist out\jar\HL7TestBench.jar (
     echo.
     echo To run the application:
     echo   java -jar out\jar\HL7TestBench.jar
+    if exist out\jar\HL7TestBench.jsa (
+        echo.
+        echo To start faster with the class data sharing archive:
+        echo   java -XX:SharedArchiveFile=out\jar\HL7TestBench.jsa -jar out\jar\HL7TestBench.jar
+    )
     echo.
 ) else (
     echo ERROR: Failed to create JAR file
@@ -62,6 +62,19 @@ cd out/classes
 jar cfm ../jar/HL7TestBench.jar ../MANIFEST.MF .
 cd ../..
 
+# Create the class data sharing archive from a training run, so launches
+# map the application's classes instead of loading them one by one.
+# The archive records the JAR's absolute path and only matches this JAR.
+echo "Creating class data sharing archive..."
+rm -f out/jar/HL7TestBench.jsa
+if [ -f out/jar/HL7TestBench.jar ]; then
+    if ! java -Xlog:disable -XX:ArchiveClassesAtExit="$SCRIPT_DIR/out/jar/HL7TestBench.jsa" \
+            -jar "$SCRIPT_DIR/out/jar/HL7TestBench.jar" --cds-training || [ ! -f out/jar/HL7TestBench.jsa ]; then
+        echo "WARNING: Could not create the archive; the application will start without it."
+        rm -f out/jar/HL7TestBench.jsa
+    fi
+fi
+
 if [ -f out/jar/HL7TestBench.jar ]; then
     echo
     echo "============================================"
@@ -72,6 +85,11 @@ if [ -f out/jar/HL7TestBench.jar ]; then
     echo
     echo "To run the application:"
     echo "  java -jar out/jar/HL7TestBench.jar"
+    if [ -f out/jar/HL7TestBench.jsa ]; then
+        echo
+        echo "To start faster with the class data sharing archive:"
+        echo "  java -XX:SharedArchiveFile=out/jar/HL7TestBench.jsa -jar out/jar/HL7TestBench.jar"
+    fi
     echo
 else
     echo "ERROR: Failed to create JAR file"
@@ -0,0 +1,308 @@
+package com.hl7testbench;
+
+import com.hl7testbench.controller.LoadCoordinator;
+import com.hl7testbench.controller.LoadWorker;
+import com.hl7testbench.controller.ScenarioRunner;
+import com.hl7testbench.history.ResultExporter;
+import com.hl7testbench.metrics.HistogramSnapshot;
+import com.hl7testbench.model.Scenario;
+import com.hl7testbench.report.HtmlReportWriter;
+import com.hl7testbench.report.ReportComparison;
+import com.hl7testbench.report.RunReport;
+import com.hl7testbench.service.ScenarioLoader;
+import com.hl7testbench.util.IndexedMessageFile;
+import com.hl7testbench.validation.ConformanceProfile;
+import com.hl7testbench.validation.ConformanceValidator;
+import com.hl7testbench.validation.Violation;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Headless commands, run instead of the GUI when their option is given.
+ *
+ * <pre>
+ * java -jar HL7TestBench.jar --scenario load-test.json [--report reports/nightly] [--workers 4]
+ *                            [--export results.csv]
+ * java -jar HL7TestBench.jar --compare baseline.json current.json
+ * java -jar HL7TestBench.jar --validate profile.json messages.hl7
+ * </pre>
+ *
+ * <p>A scenario run writes its report as JSON and HTML to the {@code --report}
+ * path, or to {@code reports/<scenario>-<time>} by default. A comparison
+ * exits with 1 if it finds a regression, so it can gate a pipeline. With
+ * {@code --workers} the scenario is split across that many worker JVMs by a
+ * {@link LoadCoordinator}; {@code --worker} is how those JVMs are started
+ * and is not meant to be used directly. {@code --export} streams every
+ * result to a CSV or JSON Lines file (by extension) as it arrives; it is
+ * not available with workers. {@code --validate} checks every message
+ * of a file against a {@link ConformanceProfile}, printing the violations,
+ * and exits with 1 if any message does not conform. {@code --cds-training}
+ * is the {@link StartupTraining} run of the build scripts.</p>
+ */
+final class CommandLine {
+
+    private static final long SHUTDOWN_GRACE_MS = 5000;
+    private static final DateTimeFormatter REPORT_TIME = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss");
+
+    private static volatile boolean finished;
+
+    private CommandLine() {
+    }
+
+    /**
+     * Returns true if the arguments ask for a headless command.
+     */
+    static boolean isHeadless(String[] args) {
+        return args.length > 0;
+    }
+
+    /**
+     * Runs the command given by the arguments.
+     *
+     * @return the process exit code
+     */
+    static int run(String[] args) {
+        try {
+            return runCommand(args);
+        } finally {
+            finished = true;
+        }
+    }
+
+    private static int runCommand(String[] args) {
+        try {
+            if (args.length == 3 && args[0].equals("--compare")) {
+                return compare(Path.of(args[1]), Path.of(args[2]));
+            }
+            if (args.length == 3 && args[0].equals("--validate")) {
+                return validate(Path.of(args[1]), Path.of(args[2]));
+            }
+            if (args.length == 1 && args[0].equals("--cds-training")) {
+                return StartupTraining.run();
+            }
+            if (args.length == 5 && args[0].equals("--worker")) {
+                return new LoadWorker(Integer.parseInt(args[1]), Integer.parseInt(args[2]),
+                        Integer.parseInt(args[3]), Path.of(args[4])).run(cancelOnShutdown());
+            }
+            if (args.length >= 2 && args.length % 2 == 0 && args[0].equals("--scenario")) {
+                String report = null;
+                String export = null;
+                int workers = 1;
+                for (int i = 2; i < args.length; i += 2) {
+                    switch (args[i]) {
+                        case "--report" -> report = args[i + 1];
+                        case "--workers" -> workers = Integer.parseInt(args[i + 1]);
+                        case "--export" -> export = args[i + 1];
+                        default -> {
+                            printUsage();
+                            return 2;
+                        }
+                    }
+                }
+                if (export != null && workers > 1) {
+                    System.err.println("--export cannot be combined with --workers");
+                    return 2;
+                }
+                if (workers >= 1) {
+                    return runScenario(Path.of(args[1]), report, workers, export != null ? Path.of(export) : null);
+                }
+            }
+        } catch (NumberFormatException e) {
+            System.err.println("Invalid number: " + e.getMessage());
+        }
+        printUsage();
+        return 2;
+    }
+
+    /**
+     * Returns a flag that is set when the process is asked to stop, e.g. by
+     * Ctrl+C. The shutdown then waits briefly for the calling thread to
+     * finish, so a run cut short still reports what it did. Once the
+     * command has returned there is nothing to wait for.
+     */
+    private static AtomicBoolean cancelOnShutdown() {
+        AtomicBoolean cancelled = new AtomicBoolean();
+        Thread main = Thread.currentThread();
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            cancelled.set(true);
+            if (finished) {
+                return;
+            }
+            try {
+                main.join(SHUTDOWN_GRACE_MS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }));
+        return cancelled;
+    }
+
+    private static int runScenario(Path file, String reportBase, int workers, Path exportFile) {
+        Scenario scenario;
+        try {
+            scenario = new ScenarioLoader().load(file);
+        } catch (Exception e) {
+            System.err.println("Could not load scenario " + file + ": " + e.getMessage());
+            return 1;
+        }
+
+        ResultExporter exporter = null;
+        if (exportFile != null) {
+            try {
+                exporter = new ResultExporter(exportFile, ResultExporter.Format.forFile(exportFile),
+                        Boolean.getBoolean("hl7testbench.export.includeResponse"));
+            } catch (IOException e) {
+                System.err.println("Could not create export file " + exportFile + ": " + e.getMessage());
+                return 1;
+            }
+        }
+
+        AtomicBoolean cancelled = cancelOnShutdown();
+        System.out.printf(Locale.ROOT, "Running scenario %s: %d stages, %d s%s%n",
+                scenario.name(), scenario.stages().size(), scenario.totalDurationMs() / 1000,
+                workers > 1 ? " on " + workers + " workers" : "");
+        Instant startedAt = Instant.now();
+        List<ScenarioRunner.StageResult> results;
+        try {
+            if (workers > 1) {
+                results = new LoadCoordinator(file, workers).run(cancelled::get);
+            } else {
+                ScenarioRunner runner = new ScenarioRunner(scenario, (message, result) -> { });
+                runner.setExporter(exporter);
+                results = runner.run(cancelled::get);
+            }
+        } catch (Exception e) {
+            System.err.println("Scenario failed: " + e.getMessage());
+            return 1;
+        } finally {
+            if (exporter != null) {
+                exporter.close();
+                System.out.println("Exported " + exporter.getWrittenCount() + " result(s) to "
+                        + exportFile.toAbsolutePath());
+            }
+        }
+        printSummary(results);
+        RunReport report = RunReport.of(scenario, results, startedAt, Instant.now());
+        if (workers > 1) {
+            report.configuration().put("workers", workers);
+        }
+        writeReport(report, reportBase);
+
+        long failed = results.stream().mapToLong(r -> r.sent() - r.successful()).sum();
+        return failed == 0 ? 0 : 1;
+    }
+
+    /**
+     * Writes {@code <base>.json} and {@code <base>.html}.
+     */
+    private static void writeReport(RunReport report, String reportBase) {
+        String base = reportBase != null ? reportBase
+                : "reports/" + report.scenario().replaceAll("[^A-Za-z0-9._-]", "_") + "-"
+                        + REPORT_TIME.format(report.startedAt().atZone(ZoneId.systemDefault()));
+        if (base.endsWith(".json")) {
+            base = base.substring(0, base.length() - ".json".length());
+        }
+        try {
+            Path json = Path.of(base + ".json").toAbsolutePath();
+            Files.createDirectories(json.getParent());
+            report.write(json);
+            Path html = Path.of(base + ".html").toAbsolutePath();
+            HtmlReportWriter.write(report, html);
+            System.out.println("Report written to " + json + " and " + html);
+        } catch (IOException e) {
+            System.err.println("Could not write report: " + e.getMessage());
+        }
+    }
+
+    private static int compare(Path baselineFile, Path currentFile) {
+        RunReport baseline;
+        RunReport current;
+        try {
+            baseline = RunReport.read(baselineFile);
+            current = RunReport.read(currentFile);
+        } catch (Exception e) {
+            System.err.println("Could not read report: " + e.getMessage());
+            return 2;
+        }
+
+        ReportComparison comparison = ReportComparison.fromSystemProperties();
+        ReportComparison.Result result = comparison.compare(baseline, current);
+        System.out.printf(Locale.ROOT, "Comparing %s against baseline %s (alpha %s, threshold %s%%)%n",
+                currentFile, baselineFile, comparison.getAlpha(), comparison.getThresholdPercent());
+        System.out.printf(Locale.ROOT, "%-16s %-20s %12s %12s %9s %10s%n",
+                "Stage", "Metric", "Baseline", "Current", "Change", "p-value");
+        for (ReportComparison.Finding finding : result.findings()) {
+            String change = Double.isNaN(finding.changePercent())
+                    ? "n/a" : String.format(Locale.ROOT, "%+.1f", finding.changePercent());
+            System.out.printf(Locale.ROOT, "%-16s %-20s %12.2f %12.2f %8s%% %10.4g%s%n",
+                    finding.stage(), finding.metric(), finding.baseline(), finding.current(),
+                    change, finding.pValue(), finding.regression() ? "  REGRESSION" : "");
+        }
+        for (String note : result.notes()) {
+            System.out.println("Note: " + note);
+        }
+        System.out.println(result.hasRegression() ? "Regressions found" : "No significant regressions");
+        return result.hasRegression() ? 1 : 0;
+    }
+
+    private static int validate(Path profileFile, Path messageFile) {
+        ConformanceProfile profile;
+        try {
+            profile = ConformanceProfile.load(profileFile);
+        } catch (Exception e) {
+            System.err.println("Could not load profile " + profileFile + ": " + e.getMessage());
+            return 2;
+        }
+        long start = System.nanoTime();
+        try (IndexedMessageFile messages = IndexedMessageFile.index(messageFile, scanned -> { }, () -> false)) {
+            AtomicBoolean cancelled = cancelOnShutdown();
+            List<ConformanceValidator.Result> results =
+                    new ConformanceValidator(profile).validateAll(messages, validated -> { }, cancelled::get);
+            for (ConformanceValidator.Result result : results) {
+                for (Violation violation : result.violations()) {
+                    System.out.println("Message " + (result.index() + 1)
+                            + (result.controlId().isEmpty() ? "" : " (" + result.controlId() + ")") + ": " + violation);
+                }
+            }
+            System.out.printf(Locale.ROOT, "%d of %d message(s) conform to %s (%d ms)%n",
+                    messages.size() - results.size(), messages.size(), profile.getName(),
+                    (System.nanoTime() - start) / 1_000_000);
+            return results.isEmpty() && !cancelled.get() ? 0 : 1;
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Could not validate " + messageFile + ": " + e.getMessage());
+            return 2;
+        }
+    }
+
+    private static void printSummary(List<ScenarioRunner.StageResult> results) {
+        System.out.printf(Locale.ROOT, "%-16s %9s %9s %9s %8s %8s %8s %8s%n",
+                "Stage", "Sent", "Failed", "Rate/s", "p50 ms", "p99 ms", "Max ms", "Lag p99");
+        for (ScenarioRunner.StageResult result : results) {
+            HistogramSnapshot latency = result.latencyMs();
+            System.out.printf(Locale.ROOT, "%-16s %9d %9d %9.1f %8d %8d %8d %8d%n",
+                    result.name(), result.sent(), result.sent() - result.successful(), result.achievedRate(),
+                    latency.percentile(50), latency.percentile(99), latency.max(),
+                    result.lagMs().percentile(99));
+            for (Map.Entry<?, Long> entry : result.statusCounts().entrySet()) {
+                System.out.printf(Locale.ROOT, "    %-20s %d%n", entry.getKey(), entry.getValue());
+            }
+        }
+    }
+
+    private static void printUsage() {
+        System.err.println("Usage: java -jar HL7TestBench.jar [--scenario <file.json> [--report <path>] [--workers <n>]");
+        System.err.println("                                   [--export <file.csv|file.jsonl>]]");
+        System.err.println("       java -jar HL7TestBench.jar --compare <baseline.json> <current.json>");
+        System.err.println("       java -jar HL7TestBench.jar --validate <profile.json> <messages.hl7>");
+        System.err.println("Without arguments the graphical interface is started.");
+    }
+}
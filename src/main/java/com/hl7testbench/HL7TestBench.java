@@ -1,6 +1,8 @@
 package com.hl7testbench;
 
 import com.hl7testbench.controller.MainController;
+import com.hl7testbench.metrics.MetricsRegistry;
+import com.hl7testbench.metrics.MetricsServer;
 import com.hl7testbench.view.MainFrame;
 
 import javax.swing.*;
@@ -19,6 +21,8 @@ import javax.swing.*;
  *   <li>Message editing before transmission</li>
  *   <li>Transport history with ACK/NAK visualization</li>
  *   <li>Configurable timeouts</li>
+ *   <li>Optional Prometheus metrics endpoint ({@code -Dhl7testbench.metrics.port=9464})</li>
+ *   <li>Headless multi-stage load scenarios ({@code --scenario file.json})</li>
  * </ul>
  *
  * @author HL7 Test Bench Development Team
@@ -28,11 +32,16 @@ public class HL7TestBench {
 
     /**
      * Application entry point.
-     * Initializes the GUI on the Event Dispatch Thread.
+     * Initializes the GUI on the Event Dispatch Thread, or runs a headless
+     * command if one is given.
      *
-     * @param args command line arguments (not used)
+     * @param args command line arguments, see {@link CommandLine}
      */
     public static void main(String[] args) {
+        startMetricsServer();
+        if (CommandLine.isHeadless(args)) {
+            System.exit(CommandLine.run(args));
+        }
         configureSystemProperties();
 
         SwingUtilities.invokeLater(() -> {
@@ -57,4 +66,21 @@ public class HL7TestBench {
 
         System.setProperty("sun.java2d.opengl", "false");
     }
+
+    /**
+     * Starts the local Prometheus endpoint when {@code hl7testbench.metrics.port} is set.
+     */
+    private static void startMetricsServer() {
+        String port = System.getProperty("hl7testbench.metrics.port");
+        if (port == null || port.isBlank()) {
+            return;
+        }
+        try {
+            MetricsServer server = new MetricsServer(MetricsRegistry.getDefault(), Integer.parseInt(port.trim()));
+            server.start();
+            System.out.println("Metrics available at http://localhost:" + server.getPort() + "/metrics");
+        } catch (Exception e) {
+            System.err.println("Could not start metrics endpoint: " + e.getMessage());
+        }
+    }
 }
@@ -0,0 +1,193 @@
+package com.hl7testbench;
+
+import com.hl7testbench.controller.ScenarioRunner;
+import com.hl7testbench.model.ConnectionConfig;
+import com.hl7testbench.model.ConnectionConfig.TransportMode;
+import com.hl7testbench.model.HL7Message;
+import com.hl7testbench.model.Scenario;
+import com.hl7testbench.model.TransportResult;
+import com.hl7testbench.report.HtmlReportWriter;
+import com.hl7testbench.report.ReportComparison;
+import com.hl7testbench.report.RunReport;
+import com.hl7testbench.service.ScenarioLoader;
+import com.hl7testbench.transport.TransportFactory;
+import com.hl7testbench.transport.TransportSession;
+import com.hl7testbench.util.HL7Parser;
+import com.hl7testbench.view.MainFrame;
+import com.sun.net.httpserver.HttpServer;
+
+import javax.swing.*;
+import java.awt.GraphicsEnvironment;
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Training run for the class data sharing archive made by the build
+ * scripts ({@code --cds-training}).
+ *
+ * <p>Loads the classes a typical launch needs before its first send: the
+ * window, if there is a display, a few sends over MLLP and HTTP to
+ * loopback responders started here, and a short scenario with its
+ * report. Run with
+ * {@code -XX:ArchiveClassesAtExit}, the JVM then stores those classes
+ * already parsed and verified, and later launches with
+ * {@code -XX:SharedArchiveFile} map them instead of loading them again.</p>
+ */
+final class StartupTraining {
+
+    private static final String MESSAGE = "MSH|^~\\&|TRAINING|BENCH|RECEIVER|FACILITY|20240101120000||ADT^A01|"
+            + "TRAIN%d|P|2.5\rPID|1||12345^^^HOSP^MR||DOE^JOHN||19800101|M\r";
+    private static final String ACK = "MSH|^~\\&|RECEIVER|FACILITY|TRAINING|BENCH|20240101120000||ACK|A1|P|2.5\r"
+            + "MSA|AA|TRAIN\r";
+    private static final String SCENARIO = "{\"name\": \"training\", \"target\": {\"mode\": \"MLLP_TCP\", "
+            + "\"host\": \"localhost\", \"port\": %d}, \"source\": {\"template\": "
+            + "\"MSH|^~\\\\&|A|B|C|D|${timestamp}||ADT^A01|${controlId}|P|2.5\\rPID|1||${seq}\"}, "
+            + "\"stages\": [{\"name\": \"training\", \"duration\": \"300ms\", \"rate\": 50}]}";
+    private static final int SENDS = 20;
+
+    private StartupTraining() {
+    }
+
+    /**
+     * Runs the training and returns the process exit code.
+     */
+    static int run() {
+        try {
+            if (!GraphicsEnvironment.isHeadless()) {
+                SwingUtilities.invokeAndWait(() -> {
+                    try {
+                        UIManager.setLookAndFeel(UIManager.getSystemLookAndFeelClassName());
+                    } catch (Exception e) {
+                        // Train with the default look and feel
+                    }
+                    MainFrame frame = new MainFrame();
+                    frame.pack();
+                    frame.dispose();
+                });
+            }
+            sendOverMllp();
+            sendOverHttp();
+            return 0;
+        } catch (Exception e) {
+            System.err.println("Startup training failed: " + e.getMessage());
+            return 1;
+        }
+    }
+
+    private static void sendOverMllp() throws IOException {
+        try (ServerSocket server = new ServerSocket(0, 5, InetAddress.getLoopbackAddress())) {
+            Thread responder = new Thread(() -> answerMllp(server), "training-mllp");
+            responder.setDaemon(true);
+            responder.start();
+            ConnectionConfig config = new ConnectionConfig(TransportMode.MLLP_TCP, "localhost",
+                    server.getLocalPort(), "", false, null, null, 5000);
+            send(config);
+            runScenario(server.getLocalPort());
+        }
+    }
+
+    /**
+     * Runs a short scenario and writes, reads back and compares its report
+     * in a temporary directory.
+     */
+    private static void runScenario(int port) throws IOException {
+        Path directory = Files.createTempDirectory("hl7testbench-training");
+        try {
+            Path file = directory.resolve("training.json");
+            Files.writeString(file, String.format(SCENARIO, port));
+            Scenario scenario = new ScenarioLoader().load(file);
+            Instant startedAt = Instant.now();
+            List<ScenarioRunner.StageResult> results =
+                    new ScenarioRunner(scenario, (message, result) -> { }).run(() -> false);
+            RunReport report = RunReport.of(scenario, results, startedAt, Instant.now());
+            Path json = directory.resolve("report.json");
+            report.write(json);
+            HtmlReportWriter.render(report);
+            ReportComparison.fromSystemProperties().compare(RunReport.read(json), report);
+        } finally {
+            try (var files = Files.list(directory)) {
+                for (Path path : (Iterable<Path>) files::iterator) {
+                    Files.delete(path);
+                }
+            }
+            Files.delete(directory);
+        }
+    }
+
+    private static void answerMllp(ServerSocket server) {
+        while (!server.isClosed()) {
+            try {
+                Socket socket = server.accept();
+                Thread connection = new Thread(() -> acknowledge(socket), "training-mllp-connection");
+                connection.setDaemon(true);
+                connection.start();
+            } catch (IOException e) {
+                // Closed at the end of the training
+            }
+        }
+    }
+
+    private static void acknowledge(Socket socket) {
+        byte[] ack = ("\u000b" + ACK + "\u001c\r").getBytes(StandardCharsets.UTF_8);
+        try (socket) {
+            InputStream in = new BufferedInputStream(socket.getInputStream());
+            OutputStream out = socket.getOutputStream();
+            int b;
+            while ((b = in.read()) != -1) {
+                if (b == 0x1c) {
+                    out.write(ack);
+                    out.flush();
+                }
+            }
+        } catch (IOException e) {
+            // The sender closed the connection
+        }
+    }
+
+    private static void sendOverHttp() throws IOException {
+        HttpServer server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/hl7", exchange -> {
+            try (InputStream in = exchange.getRequestBody()) {
+                in.transferTo(new ByteArrayOutputStream());
+            }
+            byte[] body = ACK.getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "application/hl7-v2");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        server.start();
+        try {
+            ConnectionConfig config = new ConnectionConfig(TransportMode.HTTP, "", 0,
+                    "http://localhost:" + server.getAddress().getPort() + "/hl7", false, null, null, 5000);
+            send(config);
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    private static void send(ConnectionConfig config) throws IOException {
+        try (TransportSession session = TransportFactory.forConfig(config).openSession(config)) {
+            for (int i = 0; i < SENDS; i++) {
+                HL7Message message = HL7Parser.parseSingleMessage(String.format(MESSAGE, i));
+                TransportResult result = session.send(message.getRawContent(), message.getMessageControlId());
+                if (!result.status().isSuccessful()) {
+                    throw new IOException(config.mode() + " send failed: " + result.errorMessage());
+                }
+            }
+        }
+    }
+}
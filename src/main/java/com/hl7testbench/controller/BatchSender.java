@@ -0,0 +1,131 @@
+package com.hl7testbench.controller;
+
+import com.hl7testbench.model.ConnectionConfig;
+import com.hl7testbench.model.HL7Batch;
+import com.hl7testbench.model.HL7Message;
+import com.hl7testbench.model.TransportResult;
+import com.hl7testbench.model.TransportResult.TransportStatus;
+import com.hl7testbench.transport.TransportSession;
+import com.hl7testbench.util.HL7Parser;
+
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Sends groups of messages as HL7 batches, one request per batch, and
+ * reports a result for every message in the batch.
+ *
+ * <p>The response is matched back to the messages as follows:</p>
+ * <ul>
+ *   <li>an ACK whose MSA-2 is a message's control ID is that message's acknowledgement;</li>
+ *   <li>a response with a single ACK that matches none of the messages
+ *       acknowledges the whole batch;</li>
+ *   <li>in a batch of ACKs (BHS present), a message without an ACK of its own
+ *       was accepted, as receivers may acknowledge only the messages in error;</li>
+ *   <li>otherwise the message's result is an unknown response.</li>
+ * </ul>
+ * <p>If the batch could not be delivered (a timeout, connection or HTTP error,
+ * or an exception while sending) every message gets that error.</p>
+ */
+public class BatchSender {
+
+    private static final DateTimeFormatter ID_TIMESTAMP = DateTimeFormatter.ofPattern("yyyyMMddHHmmss");
+    private static final AtomicLong SEQUENCE = new AtomicLong();
+
+    private final SendResultListener listener;
+    private final ConnectionConfig.TransportMode mode;
+
+    /**
+     * @param listener listener for each message result, invoked on the sending thread
+     * @param mode the transport mode recorded in results of batches that fail with an exception
+     */
+    public BatchSender(SendResultListener listener, ConnectionConfig.TransportMode mode) {
+        this.listener = listener;
+        this.mode = mode;
+    }
+
+    /**
+     * Sends the messages as one batch over the session and reports each result.
+     */
+    public void send(TransportSession session, List<HL7Message> messages) {
+        HL7Batch batch = new HL7Batch(nextBatchControlId(), messages);
+        long startTime = System.currentTimeMillis();
+        List<TransportResult> results;
+        try {
+            TransportResult batchResult = session.send(batch.toRawContent(), batch.batchControlId());
+            results = mapAcknowledgements(batch, batchResult);
+        } catch (RuntimeException e) {
+            TransportResult failure = TransportResult.error(batch.batchControlId(), mode,
+                    "Unexpected error: " + e.getMessage(), System.currentTimeMillis() - startTime);
+            results = mapAcknowledgements(batch, failure);
+        }
+        for (int i = 0; i < messages.size(); i++) {
+            listener.onResult(messages.get(i), results.get(i));
+        }
+    }
+
+    /**
+     * Splits the result of sending a batch into one result per message.
+     *
+     * @return the results in the order of {@code batch.messages()}
+     */
+    public static List<TransportResult> mapAcknowledgements(HL7Batch batch, TransportResult batchResult) {
+        List<HL7Message> messages = batch.messages();
+        List<TransportResult> results = new ArrayList<>(messages.size());
+        String response = batchResult.rawResponse();
+        if (batchResult.errorMessage() != null || response == null || response.isBlank()) {
+            for (HL7Message message : messages) {
+                results.add(batchResult.forMessage(message.getMessageControlId()));
+            }
+            return results;
+        }
+
+        List<HL7Message> acks = HL7Parser.parseMultipleMessages(response);
+        Map<String, HL7Message> acksById = new HashMap<>();
+        for (HL7Message ack : acks) {
+            acksById.putIfAbsent(ack.getField("MSA", 2), ack);
+        }
+        boolean anyMatched = false;
+        for (HL7Message message : messages) {
+            anyMatched |= acksById.containsKey(message.getMessageControlId());
+        }
+        boolean batchAck = response.startsWith("FHS|") || response.startsWith("BHS|")
+                || response.contains("\rBHS|") || response.contains("\nBHS|");
+
+        for (HL7Message message : messages) {
+            String controlId = message.getMessageControlId();
+            HL7Message ack = acksById.get(controlId);
+            TransportResult result;
+            if (ack != null) {
+                result = forAck(controlId, ack.getRawContent(), batchResult);
+            } else if (!anyMatched && acks.size() == 1) {
+                result = forAck(controlId, response, batchResult);
+            } else if (batchAck && (anyMatched || acks.isEmpty())) {
+                result = new TransportResult(batchResult.timestamp(), controlId, batchResult.transportMode(),
+                        TransportStatus.ACK_AA, "No ACK in batch response; accepted by omission",
+                        batchResult.roundTripTimeMs(), null, batchResult.phases());
+            } else {
+                result = new TransportResult(batchResult.timestamp(), controlId, batchResult.transportMode(),
+                        TransportStatus.UNKNOWN_RESPONSE, response, batchResult.roundTripTimeMs(), null,
+                        batchResult.phases());
+            }
+            results.add(result);
+        }
+        return results;
+    }
+
+    private static TransportResult forAck(String controlId, String ack, TransportResult batchResult) {
+        return new TransportResult(batchResult.timestamp(), controlId, batchResult.transportMode(),
+                TransportResult.statusForAckCode(TransportResult.findAckCode(ack)), ack,
+                batchResult.roundTripTimeMs(), null, batchResult.phases());
+    }
+
+    private static String nextBatchControlId() {
+        return "B" + LocalDateTime.now().format(ID_TIMESTAMP) + SEQUENCE.incrementAndGet();
+    }
+}
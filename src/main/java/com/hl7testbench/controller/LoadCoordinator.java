@@ -0,0 +1,308 @@
+package com.hl7testbench.controller;
+
+import com.hl7testbench.report.RunReport;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Splits a scenario across several worker JVMs on this host and merges
+ * their results, for rates one JVM cannot sustain on its own.
+ *
+ * <p>Each worker is started with the same Java runtime, class path, class
+ * data sharing archive and {@code hl7testbench.*} settings as this process,
+ * plus any JVM options in {@code hl7testbench.worker.jvmArgs}. Workers connect back over a loopback
+ * socket, load the scenario and run {@link com.hl7testbench.model.Scenario#share
+ * their share} of it from a common start time, each with its own senders,
+ * connections and TLS engines. Their latency histograms, counters and
+ * per-second series are merged stage by stage into results that read as
+ * if one process had run the whole scenario.</p>
+ */
+public class LoadCoordinator {
+
+    private static final int CONNECT_TIMEOUT_MS = 60_000;
+    private static final int POLL_MS = 200;
+    private static final long START_DELAY_MS = 500;
+    private static final long EXIT_TIMEOUT_SECONDS = 10;
+
+    private final Path scenarioFile;
+    private final int workers;
+
+    /**
+     * @param scenarioFile the scenario to run
+     * @param workers the number of worker JVMs to start
+     */
+    public LoadCoordinator(Path scenarioFile, int workers) {
+        this.scenarioFile = scenarioFile.toAbsolutePath();
+        this.workers = workers;
+    }
+
+    /**
+     * Starts the workers, runs the scenario and returns the merged results.
+     * If {@code cancelled} returns true the workers are told to stop and
+     * their results so far are merged.
+     *
+     * @throws IOException if the workers cannot be started or none returns results
+     */
+    public List<ScenarioRunner.StageResult> run(BooleanSupplier cancelled) throws IOException {
+        List<Process> processes = new ArrayList<>();
+        List<WorkerChannel> channels = new ArrayList<>();
+        try (ServerSocket server = new ServerSocket(0, workers, InetAddress.getLoopbackAddress())) {
+            for (int i = 0; i < workers; i++) {
+                processes.add(startWorker(server.getLocalPort(), i));
+            }
+            server.setSoTimeout(POLL_MS);
+            long connectDeadline = System.currentTimeMillis() + CONNECT_TIMEOUT_MS;
+            while (channels.size() < workers) {
+                if (cancelled.getAsBoolean()) {
+                    return List.of();
+                }
+                for (Process process : processes) {
+                    if (!process.isAlive()) {
+                        throw new IOException("A worker exited during startup with code " + process.exitValue());
+                    }
+                }
+                if (System.currentTimeMillis() > connectDeadline) {
+                    throw new IOException("Timed out waiting for workers to connect");
+                }
+                try {
+                    Socket socket = server.accept();
+                    channels.add(new WorkerChannel(socket));
+                } catch (SocketTimeoutException e) {
+                    // Check the processes again
+                }
+            }
+
+            if (!awaitReady(channels, processes, cancelled)) {
+                return List.of();
+            }
+
+            Map<String, Object> start = LoadWorker.message("start", "startAt",
+                    System.currentTimeMillis() + START_DELAY_MS);
+            for (WorkerChannel channel : channels) {
+                channel.send(start);
+            }
+            return merge(collect(channels, cancelled));
+        } finally {
+            for (WorkerChannel channel : channels) {
+                try {
+                    channel.close();
+                } catch (IOException e) {
+                    // Closing anyway
+                }
+            }
+            stopWorkers(processes);
+        }
+    }
+
+    /**
+     * Waits until every worker has indexed its message files and reported
+     * that it is ready. Indexing large files can take a while, so there is
+     * no time limit; the wait ends early if a worker fails or exits, or if
+     * {@code cancelled} returns true.
+     *
+     * @return false if the run was cancelled
+     * @throws IOException if a worker reported an error or exited
+     */
+    private static boolean awaitReady(List<WorkerChannel> channels, List<Process> processes,
+                                      BooleanSupplier cancelled) throws IOException {
+        String[] failures = new String[channels.size()];
+        List<Thread> receivers = new ArrayList<>();
+        for (int i = 0; i < channels.size(); i++) {
+            WorkerChannel channel = channels.get(i);
+            int index = i;
+            Thread receiver = new Thread(() -> {
+                try {
+                    Map<String, Object> hello = channel.receive();
+                    if (!"ready".equals(hello.get("type"))) {
+                        failures[index] = String.valueOf(hello.get("message"));
+                    }
+                } catch (IOException | RuntimeException e) {
+                    failures[index] = "Worker " + index + " did not start: " + e.getMessage();
+                }
+            }, "coordinator-ready-" + i);
+            receiver.setDaemon(true);
+            receiver.start();
+            receivers.add(receiver);
+        }
+
+        try {
+            for (int i = 0; i < receivers.size(); i++) {
+                Thread receiver = receivers.get(i);
+                while (receiver.isAlive()) {
+                    if (cancelled.getAsBoolean()) {
+                        return false;
+                    }
+                    for (Process process : processes) {
+                        if (!process.isAlive()) {
+                            throw new IOException("A worker exited during startup with code " + process.exitValue());
+                        }
+                    }
+                    receiver.join(POLL_MS);
+                }
+                if (failures[i] != null) {
+                    throw new IOException(failures[i]);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Waits for every worker's results, passing on a cancellation.
+     */
+    private List<List<ScenarioRunner.StageResult>> collect(List<WorkerChannel> channels, BooleanSupplier cancelled) {
+        List<List<ScenarioRunner.StageResult>> results = new ArrayList<>();
+        List<Thread> receivers = new ArrayList<>();
+        for (int i = 0; i < channels.size(); i++) {
+            WorkerChannel channel = channels.get(i);
+            int index = i;
+            Thread receiver = new Thread(() -> {
+                List<ScenarioRunner.StageResult> stages = receiveResults(channel, index);
+                if (stages != null) {
+                    synchronized (results) {
+                        results.add(stages);
+                    }
+                }
+            }, "coordinator-worker-" + i);
+            receiver.setDaemon(true);
+            receiver.start();
+            receivers.add(receiver);
+        }
+
+        boolean cancelSent = false;
+        for (Thread receiver : receivers) {
+            try {
+                while (receiver.isAlive()) {
+                    if (!cancelSent && cancelled.getAsBoolean()) {
+                        cancelSent = true;
+                        sendCancel(channels);
+                    }
+                    receiver.join(POLL_MS);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        synchronized (results) {
+            return new ArrayList<>(results);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<ScenarioRunner.StageResult> receiveResults(WorkerChannel channel, int index) {
+        try {
+            Map<String, Object> reply = channel.receive();
+            if (!"result".equals(reply.get("type"))) {
+                System.err.println("Worker " + index + ": " + reply.get("message"));
+                return null;
+            }
+            List<ScenarioRunner.StageResult> stages = new ArrayList<>();
+            for (Object stage : (List<Object>) reply.get("stages")) {
+                stages.add(RunReport.stageFromJson((Map<String, Object>) stage));
+            }
+            return stages;
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Worker " + index + " sent no results: " + e.getMessage());
+            return null;
+        }
+    }
+
+    private static void sendCancel(List<WorkerChannel> channels) {
+        Map<String, Object> cancel = LoadWorker.message("cancel", "reason", "cancelled");
+        for (WorkerChannel channel : channels) {
+            try {
+                channel.send(cancel);
+            } catch (IOException e) {
+                // The worker is already gone
+            }
+        }
+    }
+
+    /**
+     * Merges each stage's results across workers, keeping the stage order.
+     */
+    private static List<ScenarioRunner.StageResult> merge(List<List<ScenarioRunner.StageResult>> perWorker)
+            throws IOException {
+        if (perWorker.isEmpty()) {
+            throw new IOException("No worker returned results");
+        }
+        Map<String, ScenarioRunner.StageResult> merged = new LinkedHashMap<>();
+        for (List<ScenarioRunner.StageResult> stages : perWorker) {
+            for (ScenarioRunner.StageResult stage : stages) {
+                merged.merge(stage.name(), stage, ScenarioRunner.StageResult::merge);
+            }
+        }
+        return new ArrayList<>(merged.values());
+    }
+
+    private Process startWorker(int port, int index) throws IOException {
+        List<String> command = new ArrayList<>();
+        command.add(Path.of(System.getProperty("java.home"), "bin", "java").toString());
+        for (String arg : ManagementFactory.getRuntimeMXBean().getInputArguments()) {
+            if (arg.startsWith("-XX:SharedArchiveFile=")) {
+                command.add(arg);
+            }
+        }
+        String jvmArgs = System.getProperty("hl7testbench.worker.jvmArgs", "");
+        for (String arg : jvmArgs.trim().split("\\s+")) {
+            if (!arg.isEmpty()) {
+                command.add(arg);
+            }
+        }
+        for (String name : System.getProperties().stringPropertyNames()) {
+            if (name.startsWith("hl7testbench.") && !name.equals("hl7testbench.metrics.port")
+                    && !name.equals("hl7testbench.worker.jvmArgs")) {
+                command.add("-D" + name + "=" + System.getProperty(name));
+            }
+        }
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add("com.hl7testbench.HL7TestBench");
+        command.add("--worker");
+        command.add(Integer.toString(port));
+        command.add(Integer.toString(index));
+        command.add(Integer.toString(workers));
+        command.add(scenarioFile.toString());
+        return new ProcessBuilder(command).inheritIO().start();
+    }
+
+    /**
+     * Waits for the workers to exit, which closing their channels has
+     * already asked them to do, and kills any still running when the
+     * shared timeout runs out.
+     */
+    private static void stopWorkers(List<Process> processes) {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(EXIT_TIMEOUT_SECONDS);
+        try {
+            for (Process process : processes) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0 || !process.waitFor(remaining, TimeUnit.NANOSECONDS)) {
+                    break;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        for (Process process : processes) {
+            if (process.isAlive()) {
+                process.destroyForcibly();
+            }
+        }
+    }
+}
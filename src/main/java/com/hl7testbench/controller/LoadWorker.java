@@ -0,0 +1,131 @@
+package com.hl7testbench.controller;
+
+import com.hl7testbench.model.Scenario;
+import com.hl7testbench.report.RunReport;
+import com.hl7testbench.service.ScenarioLoader;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * The worker side of a multi-process scenario run, started by a
+ * {@link LoadCoordinator} in its own JVM.
+ *
+ * <p>The worker loads the scenario and indexes its message files, reports
+ * that it is ready, waits for the coordinator's start time and runs its
+ * share of the scenario with its own senders and transports. Indexing
+ * before reporting ready keeps large files from delaying one worker's
+ * start behind the others. It then sends back its stage results and
+ * exits. A cancel message, or losing the connection to the coordinator,
+ * stops the run early; the results so far are still sent.</p>
+ */
+public final class LoadWorker {
+
+    private final int port;
+    private final int index;
+    private final int count;
+    private final Path scenarioFile;
+
+    /**
+     * @param port the coordinator's loopback port
+     * @param index this worker's index, from 0
+     * @param count the number of workers
+     * @param scenarioFile the scenario to run a share of
+     */
+    public LoadWorker(int port, int index, int count, Path scenarioFile) {
+        this.port = port;
+        this.index = index;
+        this.count = count;
+        this.scenarioFile = scenarioFile;
+    }
+
+    /**
+     * Runs until the scenario has finished or was cancelled.
+     *
+     * @param cancelled also stops the run, e.g. when the process is shutting down
+     * @return the process exit code
+     */
+    public int run(AtomicBoolean cancelled) {
+        try (WorkerChannel channel = new WorkerChannel(new Socket(InetAddress.getLoopbackAddress(), port))) {
+            ScenarioRunner runner;
+            try {
+                Scenario scenario = new ScenarioLoader().load(scenarioFile).share(count);
+                runner = new ScenarioRunner(scenario, (message, result) -> { });
+                runner.setWorker(index, count);
+                runner.prepare(cancelled::get);
+            } catch (IOException | RuntimeException e) {
+                channel.send(message("error", "message", "Could not load scenario: " + e.getMessage()));
+                return 1;
+            }
+
+            List<ScenarioRunner.StageResult> results;
+            try {
+                channel.send(message("ready", "worker", index));
+
+                Map<String, Object> start = channel.receive();
+                if (!"start".equals(start.get("type")) || !(start.get("startAt") instanceof Long startAt)) {
+                    return 1;
+                }
+                Thread listener = new Thread(() -> listenForCancel(channel, cancelled), "worker-control");
+                listener.setDaemon(true);
+                listener.start();
+
+                long delay = startAt - System.currentTimeMillis();
+                while (delay > 0 && !cancelled.get()) {
+                    TimeUnit.MILLISECONDS.sleep(Math.min(delay, 50));
+                    delay = startAt - System.currentTimeMillis();
+                }
+
+                try {
+                    results = runner.run(cancelled::get);
+                } catch (IOException | RuntimeException e) {
+                    channel.send(message("error", "message", "Worker " + index + " failed: " + e.getMessage()));
+                    return 1;
+                }
+            } finally {
+                runner.close();
+            }
+
+            List<Object> stages = new ArrayList<>();
+            for (ScenarioRunner.StageResult result : results) {
+                stages.add(RunReport.stageToJson(result));
+            }
+            Map<String, Object> reply = message("result", "worker", index);
+            reply.put("stages", stages);
+            channel.send(reply);
+            return 0;
+        } catch (IOException e) {
+            System.err.println("Worker " + index + " lost the coordinator: " + e.getMessage());
+            return 1;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return 1;
+        }
+    }
+
+    private static void listenForCancel(WorkerChannel channel, AtomicBoolean cancelled) {
+        try {
+            while (!"cancel".equals(channel.receive().get("type"))) {
+                // Only cancel is expected once running
+            }
+        } catch (IOException e) {
+            // Coordinator gone: stop rather than run on unsupervised
+        }
+        cancelled.set(true);
+    }
+
+    static Map<String, Object> message(String type, String key, Object value) {
+        Map<String, Object> message = new LinkedHashMap<>();
+        message.put("type", type);
+        message.put(key, value);
+        return message;
+    }
+}
@@ -1,16 +1,36 @@
 package com.hl7testbench.controller;
 
+import com.hl7testbench.history.HistoryLog;
+import com.hl7testbench.history.HistoryLogWriter;
+import com.hl7testbench.history.ResultExporter;
+import com.hl7testbench.metrics.HistogramSnapshot;
 import com.hl7testbench.model.ConnectionConfig;
 import com.hl7testbench.model.HL7Message;
+import com.hl7testbench.model.HistoryRecord;
+import com.hl7testbench.model.PartitionKey;
 import com.hl7testbench.model.TransportResult;
 import com.hl7testbench.transport.TransportFactory;
 import com.hl7testbench.transport.TransportStrategy;
 import com.hl7testbench.util.HL7Parser;
+import com.hl7testbench.util.UIConstants;
+import com.hl7testbench.util.UncachedMessageList;
+import com.hl7testbench.validation.ConformanceProfile;
+import com.hl7testbench.validation.ConformanceValidator;
+import com.hl7testbench.validation.Violation;
 import com.hl7testbench.view.*;
 
 import javax.swing.*;
+import javax.swing.filechooser.FileNameExtensionFilter;
+import java.awt.BorderLayout;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.AbstractList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.RandomAccess;
+import java.util.function.Consumer;
 
 /**
  * Main controller coordinating between views and transport layer.
@@ -18,18 +38,73 @@ import java.util.List;
  */
 public class MainController {
 
+    private static final Path DEFAULT_HISTORY_DIR =
+            Path.of(System.getProperty("user.home"), ".hl7testbench", "history");
+
+    private static final String[] REPLAY_SPEEDS = {"1x (original timing)", "10x", "100x", "As fast as possible"};
+    private static final double[] REPLAY_FACTORS = {1, 10, 100, 0};
+    private static final int MAX_LISTED_MESSAGES = 1000;
+    private static final int MAX_PROMPT_VIOLATIONS = 10;
+
     private final MainFrame mainFrame;
-    private TransportWorker currentWorker;
+    private final ResultUpdateCoalescer resultCoalescer;
+    private final HistoryLogWriter historyWriter;
+    private volatile ResultExporter exporter;
+    /**
+     * Held while a result is queued for the table and the export, and while
+     * an export starts or stops, so each result is exported exactly once.
+     */
+    private final Object exportLock = new Object();
+    private ConformanceValidator validator;
+    private Path profileFile;
+    private SwingWorker<?, ?> currentWorker;
 
     public MainController(MainFrame mainFrame) {
         this.mainFrame = mainFrame;
+        this.resultCoalescer = new ResultUpdateCoalescer(this::onResultsFlushed);
+        this.historyWriter = openHistoryLog();
         initializeEventHandlers();
     }
 
+    /**
+     * Opens the persistent send history unless disabled with
+     * {@code -Dhl7testbench.history.persist=false}. The log lives in
+     * {@code ~/.hl7testbench/history} unless {@code hl7testbench.history.dir} is set.
+     */
+    private HistoryLogWriter openHistoryLog() {
+        if (!Boolean.parseBoolean(System.getProperty("hl7testbench.history.persist", "true"))) {
+            return null;
+        }
+        String dir = System.getProperty("hl7testbench.history.dir");
+        try {
+            HistoryLog log = new HistoryLog(dir != null ? Path.of(dir) : DEFAULT_HISTORY_DIR);
+            HistoryLogWriter writer = new HistoryLogWriter(log);
+            Runtime.getRuntime().addShutdownHook(new Thread(writer::close, "history-shutdown"));
+            mainFrame.getHistoryPanel().setHistoryLog(log);
+            return writer;
+        } catch (IOException e) {
+            System.err.println("Send history will not be saved: " + e.getMessage());
+            return null;
+        }
+    }
+
     private void initializeEventHandlers() {
         MessagePanel messagePanel = mainFrame.getMessagePanel();
         messagePanel.setOnSendAction(this::sendCurrentMessage);
         messagePanel.setOnSendAllAction(this::sendAllMessages);
+        messagePanel.setOnReplayAction(this::replayFile);
+        messagePanel.setOnValidateAction(this::validateMessages);
+        mainFrame.getHistoryPanel().setOnExportAction(this::toggleExport);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            ResultExporter active;
+            synchronized (exportLock) {
+                active = exporter;
+                exporter = null;
+            }
+            if (active != null) {
+                active.close();
+            }
+        }, "export-shutdown"));
     }
 
     /**
@@ -61,6 +136,20 @@ public class MainController {
             return;
         }
 
+        if (validator != null) {
+            List<Violation> violations = validator.getProfile().validate(message);
+            if (!violations.isEmpty()) {
+                StringBuilder prompt = new StringBuilder("The message does not conform to ")
+                        .append(validator.getProfile().getName()).append(":\n");
+                appendViolations(prompt, violations, MAX_PROMPT_VIOLATIONS);
+                prompt.append("\nSend it anyway?");
+                if (JOptionPane.showConfirmDialog(mainFrame, prompt.toString(), "Message Does Not Conform",
+                        JOptionPane.YES_NO_OPTION, JOptionPane.WARNING_MESSAGE) != JOptionPane.YES_OPTION) {
+                    return;
+                }
+            }
+        }
+
         sendMessages(Collections.singletonList(message));
     }
 
@@ -80,15 +169,122 @@ public class MainController {
             return;
         }
 
-        int confirm = JOptionPane.showConfirmDialog(
-                mainFrame,
-                "Send all " + allMessages.size() + " message(s)?",
-                "Confirm Send All",
-                JOptionPane.YES_NO_OPTION
-        );
+        MessagePanel messagePanel = mainFrame.getMessagePanel();
+        PartitionKey partitionKey = null;
+        String keyText = messagePanel.getPartitionKeyText();
+        if (keyText != null) {
+            try {
+                partitionKey = PartitionKey.parse(keyText);
+            } catch (IllegalArgumentException e) {
+                showWarning("Invalid Partition Field",
+                        "Enter the field to order by as SEG-n or SEG-n.c, e.g. PID-3 or MSH-4.");
+                return;
+            }
+        }
+        int partitionCount = messagePanel.getPartitionCount();
+        int batchSize = messagePanel.getBatchSize();
+
+        if (validator == null) {
+            confirmSendAll(allMessages, partitionKey, partitionCount, batchSize, List.of());
+        } else {
+            PartitionKey key = partitionKey;
+            runValidation(allMessages,
+                    results -> confirmSendAll(allMessages, key, partitionCount, batchSize, results));
+        }
+    }
+
+    /**
+     * Asks before sending all messages. If some do not conform to the
+     * profile, they can be sent anyway or left out.
+     */
+    private void confirmSendAll(List<HL7Message> allMessages, PartitionKey partitionKey, int partitionCount,
+                                int batchSize, List<ConformanceValidator.Result> nonConforming) {
+        String prompt = "Send all " + allMessages.size() + " message(s)?";
+        if (partitionKey != null) {
+            prompt += "\nMessages are kept in order per " + partitionKey +
+                    " across " + partitionCount + " parallel partition(s).";
+        }
+        if (batchSize > 1) {
+            prompt += "\nUp to " + batchSize + " messages are sent per HL7 batch.";
+        }
+
+        if (nonConforming.isEmpty()) {
+            int confirm = JOptionPane.showConfirmDialog(
+                    mainFrame,
+                    prompt,
+                    "Confirm Send All",
+                    JOptionPane.YES_NO_OPTION
+            );
+            if (confirm == JOptionPane.YES_OPTION) {
+                sendMessages(allMessages, partitionKey, partitionCount, batchSize);
+            }
+            return;
+        }
+
+        StringBuilder warning = new StringBuilder()
+                .append(nonConforming.size()).append(" of ").append(allMessages.size())
+                .append(" message(s) do not conform to ").append(validator.getProfile().getName())
+                .append(", e.g. message ").append(nonConforming.get(0).index() + 1).append(":\n");
+        appendViolations(warning, nonConforming.get(0).violations(), MAX_PROMPT_VIOLATIONS);
+        warning.append("\n").append(prompt);
+        String[] options = {"Send All", "Send Conforming Only", "Cancel"};
+        int choice = JOptionPane.showOptionDialog(mainFrame, warning.toString(), "Confirm Send All",
+                JOptionPane.YES_NO_CANCEL_OPTION, JOptionPane.WARNING_MESSAGE, null, options, options[2]);
+        if (choice == 0) {
+            sendMessages(allMessages, partitionKey, partitionCount, batchSize);
+        } else if (choice == 1 && nonConforming.size() < allMessages.size()) {
+            sendMessages(conformingOnly(allMessages, nonConforming), partitionKey, partitionCount, batchSize);
+        }
+    }
+
+    /**
+     * Returns a view of the messages without the non-conforming ones, so
+     * a file-backed list is still read from disk as it is sent.
+     */
+    private static List<HL7Message> conformingOnly(List<HL7Message> messages,
+                                                   List<ConformanceValidator.Result> nonConforming) {
+        int[] indexes = new int[messages.size() - nonConforming.size()];
+        int skip = 0;
+        for (int i = 0, kept = 0; i < messages.size(); i++) {
+            if (skip < nonConforming.size() && nonConforming.get(skip).index() == i) {
+                skip++;
+            } else {
+                indexes[kept++] = i;
+            }
+        }
+        return new SelectedMessages(messages, indexes);
+    }
 
-        if (confirm == JOptionPane.YES_OPTION) {
-            sendMessages(allMessages);
+    /**
+     * The messages at the given indexes of another list, still readable
+     * without a cache if that list is.
+     */
+    private static final class SelectedMessages extends AbstractList<HL7Message>
+            implements RandomAccess, UncachedMessageList {
+
+        private final List<HL7Message> messages;
+        private final int[] indexes;
+
+        SelectedMessages(List<HL7Message> messages, int[] indexes) {
+            this.messages = messages;
+            this.indexes = indexes;
+        }
+
+        @Override
+        public HL7Message get(int index) {
+            return messages.get(indexes[index]);
+        }
+
+        @Override
+        public HL7Message readMessage(int index) {
+            return messages instanceof UncachedMessageList uncached
+                    ? uncached.readMessage(indexes[index])
+                    : messages.get(indexes[index]);
+        }
+
+        @Override
+        public int size() {
+            return indexes.length;
         }
     }
 
@@ -101,20 +297,29 @@ public class MainController {
         if (!transport.validateConfig(config)) {
             if (config.mode() == ConnectionConfig.TransportMode.MLLP_TCP) {
                 showWarning("Invalid Configuration",
-                        "Please enter a valid host and port for MLLP connection.");
+                        "Please enter a valid host and port for MLLP connection" +
+                        (config.hasEndpointGroup() ? ", and host:port for each further endpoint." : "."));
             } else {
                 showWarning("Invalid Configuration",
-                        "Please enter a valid HTTP/HTTPS URL.");
+                        "Please enter a valid HTTP/HTTPS URL" +
+                        (config.hasEndpointGroup() ? " for every endpoint." : "."));
             }
             return false;
         }
         return true;
     }
 
+    private void sendMessages(List<HL7Message> messages) {
+        sendMessages(messages, null, 1, 1);
+    }
+
     /**
-     * Initiates sending of the given messages using a background worker.
+     * Initiates sending of the given messages using a background worker,
+     * partitioned by the given key if it is not null and packed into
+     * HL7 batches if the batch size is above one.
      */
-    private void sendMessages(List<HL7Message> messages) {
+    private void sendMessages(List<HL7Message> messages, PartitionKey partitionKey, int partitionCount,
+                              int batchSize) {
         if (currentWorker != null && !currentWorker.isDone()) {
             showWarning("Busy", "A transport operation is already in progress.");
             return;
@@ -126,21 +331,317 @@ public class MainController {
         setUIBusy(true);
         mainFrame.getStatusBar().setBusy("Sending " + messages.size() + " message(s)...");
 
+        resultCoalescer.start();
         currentWorker = new TransportWorker(
                 messages,
                 config,
                 transport,
-                this::onTransportCompleted,
-                () -> setUIBusy(false)
+                resultListener(config),
+                () -> {
+                    resultCoalescer.stop();
+                    setUIBusy(false);
+                },
+                e -> {
+                    mainFrame.getStatusBar().setError("Send failed: " + e.getMessage());
+                    showWarning("Send Failed", "Sending stopped because of an error:\n" + e.getMessage());
+                },
+                partitionKey,
+                partitionCount,
+                batchSize
         );
         currentWorker.execute();
     }
 
+    /**
+     * Returns a listener that shows each result and appends it to the saved history.
+     */
+    private SendResultListener resultListener(ConnectionConfig config) {
+        return (message, result) -> {
+            if (historyWriter != null) {
+                historyWriter.append(HistoryRecord.of(message, config, result));
+            }
+            synchronized (exportLock) {
+                resultCoalescer.submit(result);
+                ResultExporter active = exporter;
+                if (active != null) {
+                    active.append(message, config, result);
+                }
+            }
+        };
+    }
+
+    /**
+     * Starts exporting results to a CSV or JSON Lines file, beginning with
+     * the ones already in the session table, or stops the export in progress.
+     */
+    private void toggleExport() {
+        HistoryPanel historyPanel = mainFrame.getHistoryPanel();
+        ResultExporter active = exporter;
+        if (active != null) {
+            synchronized (exportLock) {
+                exporter = null;
+            }
+            active.close();
+            historyPanel.setExportRunning(false);
+            mainFrame.getStatusBar().setIdle("Exported " + active.getWrittenCount() + " result(s) to " +
+                    active.getFile().getFileName());
+            return;
+        }
+
+        JFileChooser chooser = new JFileChooser();
+        chooser.setDialogTitle("Export Results");
+        for (ResultExporter.Format format : ResultExporter.Format.values()) {
+            chooser.addChoosableFileFilter(new FileNameExtensionFilter(
+                    format.getDisplayName() + " (*" + format.getExtension() + ")", format.getExtension().substring(1)));
+        }
+        chooser.setAcceptAllFileFilterUsed(false);
+        if (chooser.showSaveDialog(mainFrame) != JFileChooser.APPROVE_OPTION) {
+            return;
+        }
+        Path file = chooser.getSelectedFile().toPath();
+        ResultExporter.Format format = ResultExporter.Format.forFile(file);
+        if (!file.getFileName().toString().contains(".")
+                && chooser.getFileFilter() instanceof FileNameExtensionFilter filter) {
+            format = filter.getExtensions()[0].equals("jsonl")
+                    ? ResultExporter.Format.JSON_LINES : ResultExporter.Format.CSV;
+            file = Path.of(file + format.getExtension());
+        }
+        int includeResponse = JOptionPane.showConfirmDialog(mainFrame,
+                "Include the raw response of each result?", "Export Results", JOptionPane.YES_NO_CANCEL_OPTION);
+        if (includeResponse == JOptionPane.CANCEL_OPTION || includeResponse == JOptionPane.CLOSED_OPTION) {
+            return;
+        }
+
+        try {
+            active = new ResultExporter(file, format, includeResponse == JOptionPane.YES_OPTION);
+        } catch (IOException e) {
+            showWarning("Export Failed", "Could not create " + file.getFileName() + ":\n" + e.getMessage());
+            return;
+        }
+        // Results queued for the table but not yet shown are flushed into it
+        // first; from then on the listener exports new results itself.
+        synchronized (exportLock) {
+            resultCoalescer.flush();
+            for (TransportResult result : historyPanel.getSessionResults()) {
+                active.append(result);
+            }
+            exporter = active;
+        }
+        historyPanel.setExportRunning(true);
+        mainFrame.getStatusBar().setIdle("Exporting results to " + file.getFileName());
+    }
+
+    /**
+     * Chooses a conformance profile and validates the loaded messages, or
+     * the one in the text area, against it. Send and Send All check
+     * messages against the profile from then on; cancelling the file
+     * chooser offers to stop that.
+     */
+    private void validateMessages() {
+        if (currentWorker != null && !currentWorker.isDone()) {
+            showWarning("Busy", "A transport operation is already in progress.");
+            return;
+        }
+
+        JFileChooser chooser = new JFileChooser();
+        chooser.setDialogTitle("Select Conformance Profile");
+        chooser.setFileFilter(new FileNameExtensionFilter("Conformance Profiles (*.json)", "json"));
+        if (profileFile != null) {
+            chooser.setSelectedFile(profileFile.toFile());
+        }
+        if (chooser.showOpenDialog(mainFrame) != JFileChooser.APPROVE_OPTION) {
+            if (validator != null && JOptionPane.showConfirmDialog(mainFrame,
+                    "Stop checking messages against " + validator.getProfile().getName() + "?",
+                    "Conformance Profile", JOptionPane.YES_NO_OPTION) == JOptionPane.YES_OPTION) {
+                validator = null;
+                mainFrame.getStatusBar().setIdle("Messages are no longer checked against a profile");
+            }
+            return;
+        }
+
+        Path file = chooser.getSelectedFile().toPath();
+        ConformanceProfile profile;
+        try {
+            profile = ConformanceProfile.load(file);
+        } catch (IOException | IllegalArgumentException e) {
+            showWarning("Invalid Profile", "Could not load " + file.getFileName() + ":\n" + e.getMessage());
+            return;
+        }
+        validator = new ConformanceValidator(profile);
+        profileFile = file;
+
+        List<HL7Message> messages = mainFrame.getMessagePanel().getAllMessages();
+        if (messages.isEmpty()) {
+            HL7Message message = HL7Parser.parseSingleMessage(mainFrame.getMessagePanel().getMessageContent());
+            messages = message != null ? List.of(message) : List.of();
+        }
+        if (messages.isEmpty()) {
+            mainFrame.getStatusBar().setIdle("Messages will be checked against " + profile.getName());
+            return;
+        }
+        int total = messages.size();
+        runValidation(messages, results -> showValidationResults(total, results));
+    }
+
+    /**
+     * Validates messages in the background and passes the results of the
+     * ones that do not conform to {@code then} on the EDT.
+     */
+    private void runValidation(List<HL7Message> messages, Consumer<List<ConformanceValidator.Result>> then) {
+        String task = "Validating " + messages.size() + " message(s) against " + validator.getProfile().getName();
+        setUIBusy(true);
+        mainFrame.getStatusBar().setBusy(task + "...");
+        ValidationWorker worker = new ValidationWorker(validator, messages,
+                results -> {
+                    setUIBusy(false);
+                    mainFrame.getStatusBar().setIdle(results.isEmpty()
+                            ? "All " + messages.size() + " message(s) conform to " + validator.getProfile().getName()
+                            : results.size() + " of " + messages.size() + " message(s) do not conform to "
+                                    + validator.getProfile().getName());
+                    then.accept(results);
+                },
+                e -> {
+                    setUIBusy(false);
+                    mainFrame.getStatusBar().setError("Validation failed: " + e.getMessage());
+                    showWarning("Validation Failed", "Could not validate the messages:\n" + e.getMessage());
+                });
+        worker.addPropertyChangeListener(e -> {
+            if ("progress".equals(e.getPropertyName())) {
+                mainFrame.getStatusBar().setBusy(task + "... " + e.getNewValue() + "%");
+            }
+        });
+        currentWorker = worker;
+        worker.execute();
+    }
+
+    private void showValidationResults(int total, List<ConformanceValidator.Result> nonConforming) {
+        String profileName = validator.getProfile().getName();
+        if (nonConforming.isEmpty()) {
+            JOptionPane.showMessageDialog(mainFrame, "All " + total + " message(s) conform to " + profileName + ".",
+                    "Validation Results", JOptionPane.INFORMATION_MESSAGE);
+            return;
+        }
+
+        StringBuilder report = new StringBuilder();
+        for (ConformanceValidator.Result result : nonConforming.subList(0,
+                Math.min(nonConforming.size(), MAX_LISTED_MESSAGES))) {
+            report.append("Message ").append(result.index() + 1);
+            if (!result.controlId().isEmpty()) {
+                report.append(" (").append(result.controlId()).append(')');
+            }
+            report.append(":\n");
+            appendViolations(report, result.violations(), Integer.MAX_VALUE);
+        }
+        if (nonConforming.size() > MAX_LISTED_MESSAGES) {
+            report.append("... and ").append(nonConforming.size() - MAX_LISTED_MESSAGES).append(" more message(s)\n");
+        }
+        JTextArea area = new JTextArea(report.toString(), 20, 80);
+        area.setEditable(false);
+        area.setFont(UIConstants.MONOSPACE_FONT);
+        area.setCaretPosition(0);
+        JPanel panel = new JPanel(new BorderLayout(0, 8));
+        panel.add(new JLabel(nonConforming.size() + " of " + total + " message(s) do not conform to "
+                + profileName + "."), BorderLayout.NORTH);
+        panel.add(new JScrollPane(area), BorderLayout.CENTER);
+        JOptionPane.showMessageDialog(mainFrame, panel, "Validation Results", JOptionPane.WARNING_MESSAGE);
+    }
+
+    private static void appendViolations(StringBuilder text, List<Violation> violations, int limit) {
+        for (Violation violation : violations.subList(0, Math.min(violations.size(), limit))) {
+            text.append("    ").append(violation).append('\n');
+        }
+        if (violations.size() > limit) {
+            text.append("    ... and ").append(violations.size() - limit).append(" more\n");
+        }
+    }
+
+    /**
+     * Replays a captured file with its original timing, or stops the
+     * replay in progress. Capture times come from {@code <file>.times}
+     * if it exists, otherwise from MSH-7.
+     */
+    private void replayFile() {
+        if (currentWorker instanceof ReplayWorker replay && !replay.isDone()) {
+            replay.requestStop();
+            mainFrame.getStatusBar().setBusy("Stopping replay...");
+            return;
+        }
+        if (currentWorker != null && !currentWorker.isDone()) {
+            showWarning("Busy", "A transport operation is already in progress.");
+            return;
+        }
+
+        ConnectionConfig config = mainFrame.getConnectionPanel().getConnectionConfig();
+        if (!validateConfig(config)) {
+            return;
+        }
+
+        JFileChooser chooser = new JFileChooser();
+        chooser.setDialogTitle("Select Captured Feed to Replay");
+        if (chooser.showOpenDialog(mainFrame) != JFileChooser.APPROVE_OPTION) {
+            return;
+        }
+        Path source = chooser.getSelectedFile().toPath();
+        Path timestamps = Path.of(source + ".times");
+        if (!Files.isRegularFile(timestamps)) {
+            timestamps = null;
+        }
+
+        Object choice = JOptionPane.showInputDialog(
+                mainFrame,
+                "Replay " + source.getFileName() + "\nTiming from: " +
+                        (timestamps != null ? timestamps.getFileName() : "MSH-7 of each message") +
+                        "\n\nSpeed:",
+                "Replay File",
+                JOptionPane.QUESTION_MESSAGE,
+                null,
+                REPLAY_SPEEDS,
+                REPLAY_SPEEDS[0]
+        );
+        if (choice == null) {
+            return;
+        }
+        double speed = REPLAY_FACTORS[Arrays.asList(REPLAY_SPEEDS).indexOf(choice)];
+
+        TransportStrategy transport = TransportFactory.forConfig(config);
+        ReplayEngine engine = new ReplayEngine(config, transport, speed, resultListener(config));
+
+        setUIBusy(true);
+        mainFrame.getMessagePanel().setReplayRunning(true);
+        mainFrame.getStatusBar().setBusy("Replaying " + source.getFileName() + "...");
+        resultCoalescer.start();
+        currentWorker = new ReplayWorker(engine, source, timestamps,
+                summary -> {
+                    finishReplay();
+                    if (summary == null) {
+                        mainFrame.getStatusBar().setIdle("Replay stopped");
+                        return;
+                    }
+                    HistogramSnapshot lag = summary.lagMs();
+                    mainFrame.getStatusBar().setIdle("Replay finished: " + summary.sent() + " message(s)" +
+                            (summary.untimed() > 0 ? " (" + summary.untimed() + " without timestamp)" : "") +
+                            ", schedule lag p50 " + lag.percentile(50) + " ms, p99 " + lag.percentile(99) +
+                            " ms, max " + (lag.count() > 0 ? lag.max() : 0) + " ms");
+                },
+                e -> {
+                    finishReplay();
+                    mainFrame.getStatusBar().setError("Replay failed: " + e.getMessage());
+                    showWarning("Replay Failed", "Could not replay " + source.getFileName() + ":\n" + e.getMessage());
+                });
+        currentWorker.execute();
+    }
+
+    private void finishReplay() {
+        resultCoalescer.stop();
+        setUIBusy(false);
+        mainFrame.getMessagePanel().setReplayRunning(false);
+    }
+
     /**
      * Sets UI elements enabled/disabled based on busy state.
      */
     private void setUIBusy(boolean busy) {
-        mainFrame.getMessagePanel().setSendEnabled(!busy);
+        mainFrame.getMessagePanel().setActionsEnabled(!busy);
     }
 
     private void showWarning(String title, String message) {
@@ -148,15 +649,19 @@ public class MainController {
     }
 
     /**
-     * Handles transport completion for each message.
+     * Handles a batch of completed transports, delivered on the EDT once per frame.
+     * During high-rate runs the newest row is not auto-selected, so the
+     * detail area is not rewritten for every batch.
      */
-    private void onTransportCompleted(TransportResult result) {
-        mainFrame.getHistoryPanel().addResult(result);
+    private void onResultsFlushed(List<TransportResult> batch, boolean highRate) {
+        mainFrame.getHistoryPanel().addResults(batch, !highRate);
 
+        TransportResult result = batch.get(batch.size() - 1);
+        String prefix = batch.size() > 1 ? "(+" + (batch.size() - 1) + " more) " : "";
         if (result.status().isSuccessful()) {
-            mainFrame.getStatusBar().setIdle("Success: " + result.messageControlId());
+            mainFrame.getStatusBar().setIdle(prefix + "Success: " + result.messageControlId());
         } else {
-            mainFrame.getStatusBar().setError("Failed: " + result.messageControlId() +
+            mainFrame.getStatusBar().setError(prefix + "Failed: " + result.messageControlId() +
                     " - " + result.status().getDisplayName());
         }
     }
@@ -0,0 +1,244 @@
+package com.hl7testbench.controller;
+
+import com.hl7testbench.metrics.Gauge;
+import com.hl7testbench.metrics.MetricFamily;
+import com.hl7testbench.metrics.MetricsRegistry;
+import com.hl7testbench.model.ConnectionConfig;
+import com.hl7testbench.model.HL7Message;
+import com.hl7testbench.model.PartitionKey;
+import com.hl7testbench.model.TransportResult;
+import com.hl7testbench.transport.TransportSession;
+import com.hl7testbench.transport.TransportStrategy;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Sends messages over several concurrent partitions while keeping messages
+ * with the same key (e.g. the same patient in PID-3) in their original order.
+ *
+ * <p>Each message is hashed by its {@link PartitionKey} value onto one of a
+ * fixed number of partitions. Every partition has its own thread, bounded
+ * queue and {@link TransportSession}, so a partition delivers strictly in
+ * order over its own connection while partitions proceed independently.
+ * The depth of each partition's queue is exported as
+ * {@code hl7_partition_queue_depth{partition="n"}} for the duration of a run.</p>
+ *
+ * <p>With a batch size above one, each partition packs the messages waiting
+ * in its queue, up to the batch size, into an HL7 batch per request through
+ * a {@link BatchSender}.</p>
+ *
+ * <p>An exception while sending a message becomes that message's error
+ * result, and the partition carries on with the next one. Only cancellation,
+ * interruption, a failure to read the messages or a failing listener stops
+ * the whole run.</p>
+ */
+public class PartitionedDispatcher {
+
+    private static final int QUEUE_CAPACITY = 1024;
+    private static final long POLL_INTERVAL_MS = 100;
+    /** Queued after a partition's last message; compared by identity. */
+    private static final HL7Message END_OF_INPUT = new HL7Message("");
+
+    private final ConnectionConfig config;
+    private final TransportStrategy transport;
+    private final PartitionKey key;
+    private final int partitionCount;
+    private final int batchSize;
+    private final SendResultListener listener;
+    private final MetricFamily<Gauge> queueDepth;
+
+    private volatile boolean aborted;
+
+    /**
+     * @param config the connection configuration
+     * @param transport the transport strategy to open sessions on
+     * @param key the field that messages are partitioned by
+     * @param partitionCount the number of concurrent partitions
+     * @param listener listener for each result, invoked on the partition threads
+     */
+    public PartitionedDispatcher(ConnectionConfig config,
+                                 TransportStrategy transport,
+                                 PartitionKey key,
+                                 int partitionCount,
+                                 SendResultListener listener) {
+        this(config, transport, key, partitionCount, 1, listener);
+    }
+
+    /**
+     * @param config the connection configuration
+     * @param transport the transport strategy to open sessions on
+     * @param key the field that messages are partitioned by
+     * @param partitionCount the number of concurrent partitions
+     * @param batchSize the most messages sent per request, packed as an HL7 batch if above one
+     * @param listener listener for each result, invoked on the partition threads
+     */
+    public PartitionedDispatcher(ConnectionConfig config,
+                                 TransportStrategy transport,
+                                 PartitionKey key,
+                                 int partitionCount,
+                                 int batchSize,
+                                 SendResultListener listener) {
+        if (partitionCount < 1) {
+            throw new IllegalArgumentException("partitionCount must be at least 1");
+        }
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("batchSize must be at least 1");
+        }
+        this.config = config;
+        this.transport = transport;
+        this.key = key;
+        this.partitionCount = partitionCount;
+        this.batchSize = batchSize;
+        this.listener = listener;
+        this.queueDepth = MetricsRegistry.getDefault().gauge("hl7_partition_queue_depth",
+                "Messages waiting to be sent in each partition", "partition");
+    }
+
+    /**
+     * Returns the partition that messages with the given key value are sent on.
+     */
+    public int partitionOf(String keyValue) {
+        return Math.floorMod(keyValue.hashCode(), partitionCount);
+    }
+
+    /**
+     * Sends the messages and returns once every partition has finished.
+     * Stops early, discarding queued messages, when {@code cancelled} returns
+     * true or the calling thread is interrupted.
+     *
+     * @throws RuntimeException if a message cannot be read from the list;
+     *         the partitions are stopped first
+     *
+     * @param messages the messages to send, in the order they should be delivered per key
+     * @param cancelled polled between messages
+     */
+    public void dispatch(List<HL7Message> messages, BooleanSupplier cancelled) {
+        Partition[] partitions = new Partition[partitionCount];
+        for (int p = 0; p < partitionCount; p++) {
+            partitions[p] = new Partition(p);
+            partitions[p].thread.start();
+        }
+
+        try {
+            for (int i = 0; i < messages.size() && !aborted; i++) {
+                if (cancelled.getAsBoolean()) {
+                    aborted = true;
+                    break;
+                }
+                HL7Message message = messages.get(i);
+                partitions[partitionOf(key.valueOf(message))].enqueue(message);
+            }
+            for (Partition partition : partitions) {
+                partition.enqueue(END_OF_INPUT);
+            }
+        } catch (InterruptedException e) {
+            aborted = true;
+            Thread.currentThread().interrupt();
+        } catch (RuntimeException e) {
+            aborted = true;
+            throw e;
+        } finally {
+            for (Partition partition : partitions) {
+                partition.join();
+                queueDepth.remove(partition.label);
+            }
+        }
+    }
+
+    private class Partition implements Runnable {
+
+        final String label;
+        final BlockingQueue<HL7Message> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+        final Thread thread;
+
+        Partition(int index) {
+            this.label = String.valueOf(index);
+            this.thread = new Thread(this, "partition-" + index);
+            this.thread.setDaemon(true);
+            queueDepth.labels(label).bind(queue::size);
+        }
+
+        @Override
+        public void run() {
+            BatchSender batchSender = batchSize > 1 ? new BatchSender(listener, config.mode()) : null;
+            try (TransportSession session = transport.openSession(config)) {
+                while (!aborted) {
+                    HL7Message message = queue.poll(POLL_INTERVAL_MS, TimeUnit.MILLISECONDS);
+                    if (message == END_OF_INPUT) {
+                        break;
+                    }
+                    if (message == null || aborted) {
+                        continue;
+                    }
+                    if (batchSender != null) {
+                        List<HL7Message> batch = new ArrayList<>(batchSize);
+                        batch.add(message);
+                        queue.drainTo(batch, batchSize - 1);
+                        // The end marker is queued last, so it can only be the last one drained
+                        boolean last = batch.get(batch.size() - 1) == END_OF_INPUT;
+                        if (last) {
+                            batch.remove(batch.size() - 1);
+                        }
+                        batchSender.send(session, batch);
+                        if (last) {
+                            break;
+                        }
+                        continue;
+                    }
+                    send(session, message);
+                }
+            } catch (InterruptedException e) {
+                aborted = true;
+            } catch (RuntimeException e) {
+                // Not a send failure, e.g. the listener failed; no partition can report results
+                System.err.println("Partition " + label + " stopped: " + e.getMessage());
+                aborted = true;
+            }
+            queue.clear();
+        }
+
+        /**
+         * Sends one message, turning an exception into its error result.
+         */
+        private void send(TransportSession session, HL7Message message) {
+            long startTime = System.currentTimeMillis();
+            TransportResult result;
+            try {
+                result = session.send(message.getRawContent(), message.getMessageControlId());
+            } catch (RuntimeException e) {
+                result = TransportResult.error(message.getMessageControlId(), config.mode(),
+                        "Unexpected error: " + e.getMessage(), System.currentTimeMillis() - startTime);
+            }
+            listener.onResult(message, result);
+        }
+
+        /**
+         * Waits for queue space, giving up if the run is aborted meanwhile.
+         */
+        void enqueue(HL7Message message) throws InterruptedException {
+            while (!aborted && !queue.offer(message, POLL_INTERVAL_MS, TimeUnit.MILLISECONDS)) {
+                // Partition is behind; keep waiting
+            }
+        }
+
+        void join() {
+            boolean interrupted = false;
+            while (thread.isAlive()) {
+                try {
+                    thread.join();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                    aborted = true;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
@@ -0,0 +1,161 @@
+package com.hl7testbench.controller;
+
+import com.hl7testbench.metrics.HistogramSnapshot;
+import com.hl7testbench.metrics.LatencyHistogram;
+import com.hl7testbench.metrics.MetricsRegistry;
+import com.hl7testbench.model.ConnectionConfig;
+import com.hl7testbench.model.HL7Message;
+import com.hl7testbench.model.TransportResult;
+import com.hl7testbench.transport.TransportSession;
+import com.hl7testbench.transport.TransportStrategy;
+import com.hl7testbench.util.HL7StreamReader;
+import com.hl7testbench.util.HL7Timestamp;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Replays a captured feed with its original timing, optionally sped up.
+ *
+ * <p>The source file is read one message at a time and never loaded whole.
+ * Each message's capture time comes from its MSH-7, or from the matching
+ * line of a timestamp file if one is given. Message <i>n</i> is due
+ * {@code (time[n] - time[0]) / speed} after the replay started. Deadlines
+ * are measured from the start on {@link System#nanoTime()}, rather than as
+ * sleeps between messages, so time spent sending and waking does not add up
+ * over a long replay: after a slow response the following messages go out
+ * back to back until the schedule is met again.</p>
+ *
+ * <p>The schedule lag of each message, how late it was sent compared with
+ * its deadline, is recorded in {@code hl7_replay_lag_ms} and returned in
+ * the {@link Summary}. Messages without a usable timestamp, or with one
+ * earlier than the message before, are sent straight after the previous
+ * message.</p>
+ */
+public class ReplayEngine {
+
+    private static final long SPIN_THRESHOLD_NANOS = TimeUnit.MILLISECONDS.toNanos(2);
+    private static final long MAX_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    /**
+     * Outcome of a replay.
+     *
+     * @param sent the number of messages sent
+     * @param untimed the number of messages sent without a usable timestamp
+     * @param lagMs the schedule lag of every message in milliseconds
+     */
+    public record Summary(int sent, int untimed, HistogramSnapshot lagMs) {
+    }
+
+    private final ConnectionConfig config;
+    private final TransportStrategy transport;
+    private final double speed;
+    private final SendResultListener listener;
+    private final LatencyHistogram lagMetric;
+    private final ZoneId zone = ZoneId.systemDefault();
+
+    /**
+     * @param config the connection configuration
+     * @param transport the transport strategy to open a session on
+     * @param speed how many times faster than captured to replay; 0 or less sends without gaps
+     * @param listener listener for each result, invoked on the replaying thread
+     */
+    public ReplayEngine(ConnectionConfig config, TransportStrategy transport, double speed,
+                        SendResultListener listener) {
+        this.config = config;
+        this.transport = transport;
+        this.speed = speed;
+        this.listener = listener;
+        this.lagMetric = MetricsRegistry.getDefault().histogram("hl7_replay_lag_ms",
+                "How late each replayed message was sent compared with its original timing, in milliseconds")
+                .labels();
+    }
+
+    /**
+     * Replays the file and returns when every message has been sent or
+     * {@code cancelled} returns true.
+     *
+     * @param source the captured messages
+     * @param timestamps a file with one capture time per message, line by line,
+     *                   as an HL7 or ISO-8601 date/time; or null to use MSH-7
+     * @param cancelled polled while waiting and between messages
+     */
+    public Summary replay(Path source, Path timestamps, BooleanSupplier cancelled) throws IOException {
+        LatencyHistogram lag = new LatencyHistogram();
+        int sent = 0;
+        int untimed = 0;
+
+        try (HL7StreamReader reader = new HL7StreamReader(source);
+             BufferedReader times = timestamps != null
+                     ? Files.newBufferedReader(timestamps, StandardCharsets.UTF_8) : null;
+             TransportSession session = transport.openSession(config)) {
+
+            long startNanos = System.nanoTime();
+            Instant first = null;
+            long previousOffsetNanos = 0;
+            HL7Message message;
+            while (!cancelled.getAsBoolean() && (message = reader.next()) != null) {
+                Instant captured = times != null
+                        ? HL7Timestamp.parseAny(times.readLine(), zone)
+                        : HL7Timestamp.parse(message.getField("MSH", 7), zone);
+
+                long offsetNanos = previousOffsetNanos;
+                if (captured == null) {
+                    untimed++;
+                } else if (first == null) {
+                    first = captured;
+                    offsetNanos = 0;
+                } else if (speed > 0) {
+                    long capturedNanos = Duration.between(first, captured).toNanos();
+                    offsetNanos = Math.max(previousOffsetNanos, (long) (capturedNanos / speed));
+                }
+                previousOffsetNanos = offsetNanos;
+
+                long deadline = startNanos + offsetNanos;
+                if (!waitUntil(deadline, cancelled)) {
+                    break;
+                }
+                long lagMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - deadline);
+                lag.record(lagMs);
+                lagMetric.record(lagMs);
+
+                TransportResult result = session.send(message.getRawContent(), message.getMessageControlId());
+                listener.onResult(message, result);
+                sent++;
+            }
+        }
+        return new Summary(sent, untimed, lag.snapshot());
+    }
+
+    /**
+     * Parks until shortly before the deadline, then spins for the rest so
+     * sends are not late by the scheduler's wake-up granularity.
+     *
+     * @return false if cancelled or interrupted while waiting
+     */
+    static boolean waitUntil(long deadline, BooleanSupplier cancelled) {
+        while (true) {
+            if (cancelled.getAsBoolean() || Thread.currentThread().isInterrupted()) {
+                return false;
+            }
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                return true;
+            }
+            if (remaining > SPIN_THRESHOLD_NANOS) {
+                LockSupport.parkNanos(Math.min(remaining - SPIN_THRESHOLD_NANOS / 2, MAX_PARK_NANOS));
+            } else {
+                Thread.onSpinWait();
+            }
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package com.hl7testbench.controller;
+
+import javax.swing.*;
+import java.nio.file.Path;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Consumer;
+
+/**
+ * Background worker that runs a {@link ReplayEngine} off the EDT.
+ *
+ * <p>The engine's per-message listener is invoked on the worker thread.
+ * The completion callbacks run on the EDT, once the engine has returned;
+ * {@link #requestStop} ends the replay that way rather than through
+ * {@link #cancel}, which would call them while messages are still being sent.</p>
+ */
+public class ReplayWorker extends SwingWorker<ReplayEngine.Summary, Void> {
+
+    private final ReplayEngine engine;
+    private final Path source;
+    private final Path timestamps;
+    private final Consumer<ReplayEngine.Summary> onComplete;
+    private final Consumer<Exception> onError;
+    private volatile boolean stopRequested;
+
+    /**
+     * @param engine the engine to run
+     * @param source the captured messages
+     * @param timestamps the capture timestamp file, or null to use MSH-7
+     * @param onComplete callback with the summary when the replay ends, or null if it was stopped
+     * @param onError callback if the source cannot be read
+     */
+    public ReplayWorker(ReplayEngine engine, Path source, Path timestamps,
+                        Consumer<ReplayEngine.Summary> onComplete, Consumer<Exception> onError) {
+        this.engine = engine;
+        this.source = source;
+        this.timestamps = timestamps;
+        this.onComplete = onComplete;
+        this.onError = onError;
+    }
+
+    @Override
+    protected ReplayEngine.Summary doInBackground() throws Exception {
+        return engine.replay(source, timestamps, () -> stopRequested);
+    }
+
+    /**
+     * Asks the engine to stop after the message in flight. The completion
+     * callback follows once it has.
+     */
+    public void requestStop() {
+        stopRequested = true;
+    }
+
+    @Override
+    protected void done() {
+        try {
+            ReplayEngine.Summary summary = get();
+            onComplete.accept(stopRequested ? null : summary);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            onError.accept(e.getCause() instanceof Exception cause ? cause : e);
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package com.hl7testbench.controller;
+
+import com.hl7testbench.model.TransportResult;
+
+import javax.swing.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Accumulates transport results off the Event Dispatch Thread and hands
+ * them to the UI in batches at a fixed frame rate, so a high-rate run
+ * produces one table update per frame instead of one per message.
+ *
+ * <p>{@link #submit(TransportResult)} may be called from any thread.
+ * The flush handler always runs on the EDT.</p>
+ */
+public class ResultUpdateCoalescer {
+
+    /**
+     * Receives each flushed batch on the EDT.
+     */
+    @FunctionalInterface
+    public interface FlushHandler {
+
+        /**
+         * @param batch results in arrival order
+         * @param highRate true if results are arriving faster than the UI should follow row by row
+         */
+        void onFlush(List<TransportResult> batch, boolean highRate);
+    }
+
+    private static final int DEFAULT_FRAME_INTERVAL_MS = 50;
+    private static final double HIGH_RATE_PER_SECOND = 20.0;
+
+    private final ConcurrentLinkedQueue<TransportResult> pending = new ConcurrentLinkedQueue<>();
+    private final FlushHandler handler;
+    private final Timer timer;
+    private long lastFlushNanos = System.nanoTime();
+
+    public ResultUpdateCoalescer(FlushHandler handler) {
+        this(handler, DEFAULT_FRAME_INTERVAL_MS);
+    }
+
+    public ResultUpdateCoalescer(FlushHandler handler, int frameIntervalMs) {
+        this.handler = handler;
+        this.timer = new Timer(frameIntervalMs, e -> flush());
+        this.timer.setCoalesce(true);
+    }
+
+    /**
+     * Queues a result for the next frame. Safe to call from any thread.
+     */
+    public void submit(TransportResult result) {
+        pending.add(result);
+    }
+
+    /**
+     * Starts periodic flushing. Must be called on the EDT.
+     */
+    public void start() {
+        lastFlushNanos = System.nanoTime();
+        timer.start();
+    }
+
+    /**
+     * Stops periodic flushing after delivering anything still queued. Must be called on the EDT.
+     */
+    public void stop() {
+        timer.stop();
+        flush();
+    }
+
+    /**
+     * Drains all queued results into a single batch for the handler.
+     */
+    void flush() {
+        if (pending.isEmpty()) {
+            return;
+        }
+        List<TransportResult> batch = new ArrayList<>();
+        TransportResult result;
+        while ((result = pending.poll()) != null) {
+            batch.add(result);
+        }
+
+        long now = System.nanoTime();
+        double elapsedSeconds = Math.max(1e-3, (now - lastFlushNanos) / 1e9);
+        lastFlushNanos = now;
+        boolean highRate = batch.size() / elapsedSeconds > HIGH_RATE_PER_SECOND;
+
+        handler.onFlush(batch, highRate);
+    }
+}
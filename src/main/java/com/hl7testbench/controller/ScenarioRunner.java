@@ -0,0 +1,494 @@
+package com.hl7testbench.controller;
+
+import com.hl7testbench.history.ResultExporter;
+import com.hl7testbench.metrics.Counter;
+import com.hl7testbench.metrics.Gauge;
+import com.hl7testbench.metrics.HistogramSnapshot;
+import com.hl7testbench.metrics.LatencyHistogram;
+import com.hl7testbench.metrics.MetricFamily;
+import com.hl7testbench.metrics.MetricsRegistry;
+import com.hl7testbench.model.ConnectionConfig;
+import com.hl7testbench.model.HL7Message;
+import com.hl7testbench.model.Scenario;
+import com.hl7testbench.model.TransportResult;
+import com.hl7testbench.model.TransportResult.TransportStatus;
+import com.hl7testbench.transport.TransportFactory;
+import com.hl7testbench.transport.TransportSession;
+import com.hl7testbench.util.HL7Parser;
+import com.hl7testbench.util.IndexedMessageFile;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Runs a {@link Scenario}, moving through its stages at their target rates.
+ *
+ * <p>A scheduler thread works out when each message is due by integrating
+ * the stage's rate over time, and waits for those deadlines measured from
+ * the start of the scenario on {@link System#nanoTime()}, as the
+ * {@link ReplayEngine} does. The fraction of a message interval left over
+ * at the end of one stage carries into the next, so rates change smoothly
+ * at stage boundaries and a ramp that starts at zero still begins sending
+ * as soon as its rate allows.</p>
+ *
+ * <p>Due messages go through a short queue to a pool of sender threads,
+ * as many as the highest stage concurrency, each with its own session per
+ * target. Only as many senders as the current stage allows take work. The
+ * schedule lag is measured when a sender picks a message up, so it also
+ * shows when the senders cannot keep up with the rate.</p>
+ *
+ * <p>Each stage reports its counts, latencies and lag in a
+ * {@link StageResult} and as {@code hl7_scenario_*} metrics labelled with
+ * the stage name.</p>
+ */
+public class ScenarioRunner {
+
+    private static final double MAX_STEP_MS = 10;
+    private static final long POLL_MILLIS = 50;
+    private static final int MAX_DISTINCT_ERRORS = 20;
+    private static final String OTHER_ERRORS = "(other errors)";
+    private static final DateTimeFormatter HL7_TIMESTAMP = DateTimeFormatter.ofPattern("yyyyMMddHHmmss");
+
+    /**
+     * Outcome of one stage.
+     *
+     * @param name the stage name
+     * @param durationMs the planned stage duration
+     * @param sent the number of messages sent
+     * @param statusCounts the number of results with each status
+     * @param latencyMs round-trip times in milliseconds
+     * @param lagMs how late each message was sent compared with its schedule, in milliseconds
+     * @param completedPerSecond the number of results received in each second of the stage
+     * @param errors the number of failed results with each error message
+     */
+    public record StageResult(String name, long durationMs, long sent, Map<TransportStatus, Long> statusCounts,
+                              HistogramSnapshot latencyMs, HistogramSnapshot lagMs,
+                              long[] completedPerSecond, Map<String, Long> errors) {
+
+        /**
+         * Returns the number of results with a successful status.
+         */
+        public long successful() {
+            long total = 0;
+            for (Map.Entry<TransportStatus, Long> entry : statusCounts.entrySet()) {
+                if (entry.getKey().isSuccessful()) {
+                    total += entry.getValue();
+                }
+            }
+            return total;
+        }
+
+        /**
+         * Returns the achieved send rate in messages per second.
+         */
+        public double achievedRate() {
+            return sent * 1000.0 / durationMs;
+        }
+
+        /**
+         * Combines the results of the same stage run by several workers.
+         */
+        public StageResult merge(StageResult other) {
+            Map<TransportStatus, Long> counts = new EnumMap<>(TransportStatus.class);
+            counts.putAll(statusCounts);
+            other.statusCounts.forEach((status, count) -> counts.merge(status, count, Long::sum));
+            long[] perSecond = Arrays.copyOf(completedPerSecond,
+                    Math.max(completedPerSecond.length, other.completedPerSecond.length));
+            for (int i = 0; i < other.completedPerSecond.length; i++) {
+                perSecond[i] += other.completedPerSecond[i];
+            }
+            Map<String, Long> mergedErrors = new TreeMap<>(errors);
+            other.errors.forEach((error, count) -> mergedErrors.merge(error, count, Long::sum));
+            return new StageResult(name, Math.max(durationMs, other.durationMs), sent + other.sent,
+                    Collections.unmodifiableMap(counts), latencyMs.merge(other.latencyMs), lagMs.merge(other.lagMs),
+                    perSecond, Collections.unmodifiableMap(mergedErrors));
+        }
+    }
+
+    private final Scenario scenario;
+    private final SendResultListener listener;
+    private final MetricFamily<Counter> messagesMetric;
+    private final MetricFamily<LatencyHistogram> latencyMetric;
+    private final MetricFamily<LatencyHistogram> lagMetric;
+    private final Gauge targetRateGauge;
+
+    private final BlockingQueue<Work> queue;
+    private volatile int activeSenders;
+    private volatile boolean scheduling;
+    private int workerIndex;
+    private int workerCount = 1;
+    private ResultExporter exporter;
+    private final Map<Path, IndexedMessageFile> files = new HashMap<>();
+    private boolean prepared;
+
+    /**
+     * @param scenario the scenario to run
+     * @param listener listener for each result, invoked on the sender threads
+     */
+    public ScenarioRunner(Scenario scenario, SendResultListener listener) {
+        this.scenario = scenario;
+        this.listener = listener;
+        this.queue = new ArrayBlockingQueue<>(scenario.maxConcurrency());
+
+        MetricsRegistry registry = MetricsRegistry.getDefault();
+        this.messagesMetric = registry.counter("hl7_scenario_messages_total",
+                "Messages sent by scenario stage and result status", "stage", "status");
+        this.latencyMetric = registry.histogram("hl7_scenario_latency_ms",
+                "Round-trip time of scenario messages in milliseconds", "stage");
+        this.lagMetric = registry.histogram("hl7_scenario_schedule_lag_ms",
+                "How late scenario messages were sent compared with their schedule, in milliseconds", "stage");
+        this.targetRateGauge = registry.gauge("hl7_scenario_target_rate",
+                "Current scenario target rate in messages per second").labels();
+    }
+
+    /**
+     * Marks this runner as one of several processes sharing a scenario split
+     * with {@link Scenario#share(int)}. Each worker's sends are offset by a
+     * fraction of the message interval so together they are evenly spaced,
+     * each starts at a different point in message files, and template
+     * control IDs include the worker index so they stay unique.
+     *
+     * @param index this worker's index, from 0
+     * @param count the number of workers
+     */
+    public void setWorker(int index, int count) {
+        this.workerIndex = index;
+        this.workerCount = Math.max(1, count);
+    }
+
+    /**
+     * Also writes every result, with its stage's target, to an export file.
+     */
+    public void setExporter(ResultExporter exporter) {
+        this.exporter = exporter;
+    }
+
+    /**
+     * Checks the stage targets and indexes the message files, so that
+     * {@link #run} can start sending at once. Workers call this before
+     * reporting that they are ready; {@link #run} calls it if nobody has.
+     * The files stay open until the run ends or {@link #close} is called.
+     *
+     * @param cancelled polled while indexing
+     * @throws IOException if a message file cannot be read or has no messages
+     * @throws IllegalArgumentException if a stage's target is not valid
+     */
+    public void prepare(BooleanSupplier cancelled) throws IOException {
+        if (prepared) {
+            return;
+        }
+        for (Scenario.Stage stage : scenario.stages()) {
+            if (!TransportFactory.forConfig(stage.target()).validateConfig(stage.target())) {
+                throw new IllegalArgumentException("Stage " + stage.name() + " has an invalid target");
+            }
+        }
+        try {
+            for (Scenario.Stage stage : scenario.stages()) {
+                Path file = stage.source().file();
+                if (file != null && !files.containsKey(file)) {
+                    IndexedMessageFile indexed = IndexedMessageFile.index(file, null, cancelled);
+                    files.put(file, indexed);
+                    if (indexed.isEmpty()) {
+                        throw new IOException("No HL7 messages found in " + file);
+                    }
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            close();
+            throw e;
+        }
+        prepared = true;
+    }
+
+    /**
+     * Closes the message files opened by {@link #prepare}, for a runner
+     * that will not be run after all.
+     */
+    public void close() {
+        for (IndexedMessageFile file : files.values()) {
+            closeQuietly(file);
+        }
+        files.clear();
+        prepared = false;
+    }
+
+    /**
+     * Runs every stage and returns when the last one has finished or
+     * {@code cancelled} returns true. Stages cut short by cancellation
+     * report what they sent so far; stages not started are left out.
+     *
+     * @param cancelled polled while waiting for the next message
+     * @throws IOException if a message file cannot be read
+     * @throws IllegalArgumentException if a stage's target is not valid
+     */
+    public List<StageResult> run(BooleanSupplier cancelled) throws IOException {
+        List<StageState> started = new ArrayList<>();
+        List<Thread> senders = new ArrayList<>();
+        try {
+            prepare(cancelled);
+
+            scheduling = true;
+            activeSenders = scenario.stages().get(0).concurrency();
+            for (int i = 0; i < scenario.maxConcurrency(); i++) {
+                int index = i;
+                Thread sender = new Thread(() -> sendLoop(index), "scenario-sender-" + i);
+                sender.setDaemon(true);
+                sender.start();
+                senders.add(sender);
+            }
+
+            schedule(files, started, cancelled);
+        } finally {
+            scheduling = false;
+            targetRateGauge.set(0);
+            for (Thread sender : senders) {
+                try {
+                    sender.join();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+            close();
+        }
+
+        List<StageResult> results = new ArrayList<>();
+        for (StageState state : started) {
+            results.add(state.toResult());
+        }
+        return results;
+    }
+
+    /**
+     * Hands each message to the senders at its due time, stage by stage.
+     */
+    private void schedule(Map<Path, IndexedMessageFile> files, List<StageState> started, BooleanSupplier cancelled) {
+        long stageStartNanos = System.nanoTime();
+        double phase = 1.0 - (double) workerIndex / workerCount;
+        long seq = 0;
+        String controlIdPrefix = workerCount > 1 ? "SCN" + workerIndex + "-" : "SCN";
+
+        for (Scenario.Stage stage : scenario.stages()) {
+            StageState state = new StageState(stage, stageStartNanos);
+            started.add(state);
+            activeSenders = stage.concurrency();
+            IndexedMessageFile file = stage.source().file() != null ? files.get(stage.source().file()) : null;
+            long fileOffset = file != null ? (long) file.size() * workerIndex / workerCount : 0;
+
+            double elapsedMs = 0;
+            while (true) {
+                // Advance until a whole message interval has elapsed or the stage ends
+                while (phase < 1.0 && elapsedMs < stage.durationMs()) {
+                    double rate = stage.rateAt(elapsedMs);
+                    targetRateGauge.set(Math.round(rate));
+                    double step = Math.min(MAX_STEP_MS, stage.durationMs() - elapsedMs);
+                    double gain = rate * step / 1000.0;
+                    if (phase + gain >= 1.0) {
+                        elapsedMs += (1.0 - phase) * 1000.0 / rate;
+                        phase = 1.0;
+                    } else {
+                        phase += gain;
+                        elapsedMs += step;
+                    }
+                }
+                if (elapsedMs >= stage.durationMs()) {
+                    break;
+                }
+                phase -= 1.0;
+
+                long deadline = stageStartNanos + (long) (elapsedMs * 1_000_000);
+                if (!ReplayEngine.waitUntil(deadline, cancelled)) {
+                    return;
+                }
+                seq++;
+                HL7Message message = file != null
+                        ? file.get((int) ((seq - 1 + fileOffset) % file.size()))
+                        : fromTemplate(stage.source().template(), seq, controlIdPrefix);
+                if (message == null || !enqueue(new Work(state, message, deadline), cancelled)) {
+                    return;
+                }
+            }
+            stageStartNanos += TimeUnit.MILLISECONDS.toNanos(stage.durationMs());
+            if (!ReplayEngine.waitUntil(stageStartNanos, cancelled)) {
+                return;
+            }
+        }
+    }
+
+    private boolean enqueue(Work work, BooleanSupplier cancelled) {
+        try {
+            while (!queue.offer(work, POLL_MILLIS, TimeUnit.MILLISECONDS)) {
+                if (cancelled.getAsBoolean()) {
+                    return false;
+                }
+            }
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    /**
+     * Sends queued messages until scheduling has finished and the queue is empty.
+     */
+    private void sendLoop(int index) {
+        Map<ConnectionConfig, TransportSession> sessions = new HashMap<>();
+        try {
+            while (scheduling || !queue.isEmpty()) {
+                if (index >= activeSenders && scheduling) {
+                    TimeUnit.MILLISECONDS.sleep(POLL_MILLIS);
+                    continue;
+                }
+                Work work = queue.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+                if (work != null) {
+                    send(work, sessions);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            for (TransportSession session : sessions.values()) {
+                closeQuietly(session);
+            }
+        }
+    }
+
+    private void send(Work work, Map<ConnectionConfig, TransportSession> sessions) {
+        StageState state = work.state();
+        ConnectionConfig target = state.stage.target();
+        long lagMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - work.deadline());
+        state.lag.record(lagMs);
+        state.lagMetric.record(lagMs);
+
+        HL7Message message = work.message();
+        TransportResult result;
+        try {
+            TransportSession session = sessions.get(target);
+            if (session == null) {
+                session = TransportFactory.forConfig(target).openSession(target);
+                sessions.put(target, session);
+            }
+            result = session.send(message.getRawContent(), message.getMessageControlId());
+        } catch (RuntimeException e) {
+            result = TransportResult.error(message.getMessageControlId(), target.mode(), String.valueOf(e.getMessage()), 0);
+        }
+
+        state.sent.increment();
+        state.statusCounts.get(result.status()).increment();
+        messagesMetric.labels(state.stage.name(), result.status().name()).increment();
+        state.latency.record(result.roundTripTimeMs());
+        state.latencyMetric.record(result.roundTripTimeMs());
+        state.recordCompletion(result);
+        if (exporter != null) {
+            exporter.append(message, target, result);
+        }
+        listener.onResult(message, result);
+    }
+
+    /**
+     * Fills in a template's placeholders for the given sequence number.
+     */
+    private static HL7Message fromTemplate(String template, long seq, String controlIdPrefix) {
+        String content = template
+                .replace("${seq}", Long.toString(seq))
+                .replace("${controlId}", controlIdPrefix + seq)
+                .replace("${timestamp}", LocalDateTime.now().format(HL7_TIMESTAMP));
+        HL7Message message = HL7Parser.parseSingleMessage(content);
+        if (message == null) {
+            System.err.println("Scenario template is not a valid HL7 message");
+        }
+        return message;
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        try {
+            closeable.close();
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Error closing scenario resource: " + e.getMessage());
+        }
+    }
+
+    private record Work(StageState state, HL7Message message, long deadline) {
+    }
+
+    /**
+     * Counters for one running stage, shared by the sender threads.
+     */
+    private final class StageState {
+        final Scenario.Stage stage;
+        final LongAdder sent = new LongAdder();
+        final Map<TransportStatus, LongAdder> statusCounts = new EnumMap<>(TransportStatus.class);
+        final LatencyHistogram latency = new LatencyHistogram();
+        final LatencyHistogram lag = new LatencyHistogram();
+        final LatencyHistogram latencyMetric;
+        final LatencyHistogram lagMetric;
+        final long startNanos;
+        final AtomicLongArray completedPerSecond;
+        final Map<String, LongAdder> errors = new ConcurrentHashMap<>();
+
+        StageState(Scenario.Stage stage, long startNanos) {
+            this.stage = stage;
+            this.startNanos = startNanos;
+            this.completedPerSecond = new AtomicLongArray((int) Math.max(1, (stage.durationMs() + 999) / 1000));
+            for (TransportStatus status : TransportStatus.values()) {
+                statusCounts.put(status, new LongAdder());
+            }
+            this.latencyMetric = ScenarioRunner.this.latencyMetric.labels(stage.name());
+            this.lagMetric = ScenarioRunner.this.lagMetric.labels(stage.name());
+        }
+
+        /**
+         * Counts a result in the second it arrived, and its error message if it failed.
+         * Results arriving after the stage ended count towards its last second.
+         */
+        void recordCompletion(TransportResult result) {
+            long second = TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - startNanos);
+            completedPerSecond.incrementAndGet((int) Math.min(second, completedPerSecond.length() - 1));
+            if (!result.status().isSuccessful()) {
+                String error = result.errorMessage() != null && !result.errorMessage().isBlank()
+                        ? result.errorMessage() : result.status().getDisplayName();
+                if (!errors.containsKey(error) && errors.size() >= MAX_DISTINCT_ERRORS) {
+                    error = OTHER_ERRORS;
+                }
+                errors.computeIfAbsent(error, e -> new LongAdder()).increment();
+            }
+        }
+
+        StageResult toResult() {
+            Map<TransportStatus, Long> counts = new EnumMap<>(TransportStatus.class);
+            statusCounts.forEach((status, count) -> {
+                if (count.sum() > 0) {
+                    counts.put(status, count.sum());
+                }
+            });
+            long[] perSecond = new long[completedPerSecond.length()];
+            for (int i = 0; i < perSecond.length; i++) {
+                perSecond[i] = completedPerSecond.get(i);
+            }
+            Map<String, Long> errorCounts = new TreeMap<>();
+            errors.forEach((error, count) -> errorCounts.put(error, count.sum()));
+            return new StageResult(stage.name(), stage.durationMs(), sent.sum(),
+                    Collections.unmodifiableMap(counts), latency.snapshot(), lag.snapshot(),
+                    perSecond, Collections.unmodifiableMap(errorCounts));
+        }
+    }
+}
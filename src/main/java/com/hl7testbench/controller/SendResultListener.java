@@ -0,0 +1,20 @@
+package com.hl7testbench.controller;
+
+import com.hl7testbench.model.HL7Message;
+import com.hl7testbench.model.TransportResult;
+
+/**
+ * Receives the result of each message sent by a {@link TransportWorker}.
+ */
+@FunctionalInterface
+public interface SendResultListener {
+
+    /**
+     * Called on the sending thread after each message completes. Partitioned
+     * sends call this from several threads at once.
+     *
+     * @param message the message that was sent
+     * @param result the transport result
+     */
+    void onResult(HL7Message message, TransportResult result);
+}
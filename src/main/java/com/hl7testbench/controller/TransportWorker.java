@@ -2,48 +2,100 @@ package com.hl7testbench.controller;
 
 import com.hl7testbench.model.ConnectionConfig;
 import com.hl7testbench.model.HL7Message;
+import com.hl7testbench.model.PartitionKey;
 import com.hl7testbench.model.TransportResult;
-import com.hl7testbench.transport.TransportCallback;
+import com.hl7testbench.transport.TransportSession;
 import com.hl7testbench.transport.TransportStrategy;
 
 import javax.swing.*;
 import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Consumer;
 
 /**
  * Background worker for executing HL7 message transport operations.
  * Runs network operations off the EDT to prevent UI freezing.
+ *
+ * <p>The per-message listener is invoked on the worker thread; callers
+ * that touch Swing components should hand results to the EDT themselves,
+ * typically through a {@link ResultUpdateCoalescer}.</p>
+ *
+ * <p>When a partition key is given, messages are sent through a
+ * {@link PartitionedDispatcher} instead: in order per key, concurrently
+ * across partitions, and without the pause between messages.</p>
+ *
+ * <p>With a batch size above one, messages are packed into HL7 batches of
+ * up to that many messages and each batch is sent as one request through a
+ * {@link BatchSender}, again without the pause.</p>
+ *
+ * <p>If sending stops because of an exception, e.g. because a message could
+ * not be read from its file, the error callback receives it on the EDT
+ * after the completion callback has run.</p>
  */
-public class TransportWorker extends SwingWorker<Void, TransportResult> {
+public class TransportWorker extends SwingWorker<Void, Void> {
 
     private final List<HL7Message> messages;
     private final ConnectionConfig config;
     private final TransportStrategy transport;
-    private final TransportCallback callback;
+    private final SendResultListener listener;
     private final Runnable onComplete;
+    private final Consumer<Exception> onError;
+    private final PartitionKey partitionKey;
+    private final int partitionCount;
+    private final int batchSize;
 
     /**
-     * Creates a transport worker for sending multiple messages.
+     * Creates a transport worker that sends messages in partitions and/or batches.
      *
      * @param messages the messages to send
      * @param config the connection configuration
      * @param transport the transport strategy to use
-     * @param callback callback for each message result
+     * @param listener listener for each message result, invoked on the sending threads
      * @param onComplete callback when all messages are processed
+     * @param onError callback if sending stops because of an exception, or null to log it
+     * @param partitionKey the field to partition by, or null to send sequentially
+     * @param partitionCount the number of partitions sending concurrently
+     * @param batchSize the most messages per HL7 batch, or 1 to send messages singly
      */
     public TransportWorker(List<HL7Message> messages,
                            ConnectionConfig config,
                            TransportStrategy transport,
-                           TransportCallback callback,
-                           Runnable onComplete) {
+                           SendResultListener listener,
+                           Runnable onComplete,
+                           Consumer<Exception> onError,
+                           PartitionKey partitionKey,
+                           int partitionCount,
+                           int batchSize) {
         this.messages = messages;
         this.config = config;
         this.transport = transport;
-        this.callback = callback;
+        this.listener = listener;
         this.onComplete = onComplete;
+        this.onError = onError;
+        this.partitionKey = partitionKey;
+        this.partitionCount = partitionCount;
+        this.batchSize = Math.max(1, batchSize);
     }
 
     @Override
     protected Void doInBackground() {
+        if (partitionKey != null) {
+            new PartitionedDispatcher(config, transport, partitionKey, partitionCount, batchSize, listener)
+                    .dispatch(messages, this::isCancelled);
+            return null;
+        }
+
+        if (batchSize > 1) {
+            BatchSender batchSender = new BatchSender(listener, config.mode());
+            try (TransportSession session = transport.openSession(config)) {
+                for (int i = 0; i < messages.size() && !isCancelled(); i += batchSize) {
+                    batchSender.send(session, messages.subList(i, Math.min(i + batchSize, messages.size())));
+                }
+            }
+            return null;
+        }
+
         for (int i = 0; i < messages.size() && !isCancelled(); i++) {
             HL7Message message = messages.get(i);
 
@@ -53,7 +105,7 @@ public class TransportWorker extends SwingWorker<Void, TransportResult> {
                     config
             );
 
-            publish(result);
+            listener.onResult(message, result);
 
             if (i < messages.size() - 1) {
                 try {
@@ -68,17 +120,24 @@ public class TransportWorker extends SwingWorker<Void, TransportResult> {
         return null;
     }
 
-    @Override
-    protected void process(List<TransportResult> chunks) {
-        for (TransportResult result : chunks) {
-            callback.onComplete(result);
-        }
-    }
-
     @Override
     protected void done() {
         if (onComplete != null) {
             onComplete.run();
         }
+        try {
+            get();
+        } catch (CancellationException e) {
+            // Stopped on request
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            Exception cause = e.getCause() instanceof Exception exception ? exception : e;
+            if (onError != null) {
+                onError.accept(cause);
+            } else {
+                System.err.println("Error sending messages: " + cause.getMessage());
+            }
+        }
     }
 }
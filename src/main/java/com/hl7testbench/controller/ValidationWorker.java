@@ -0,0 +1,59 @@
+package com.hl7testbench.controller;
+
+import com.hl7testbench.model.HL7Message;
+import com.hl7testbench.validation.ConformanceValidator;
+
+import javax.swing.*;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Consumer;
+
+/**
+ * Background worker that validates messages against a conformance profile
+ * off the EDT, reporting its progress as a percentage.
+ *
+ * <p>The completion callbacks run on the EDT; a cancelled validation calls
+ * neither.</p>
+ */
+public class ValidationWorker extends SwingWorker<List<ConformanceValidator.Result>, Void> {
+
+    private final ConformanceValidator validator;
+    private final List<HL7Message> messages;
+    private final Consumer<List<ConformanceValidator.Result>> onComplete;
+    private final Consumer<Exception> onError;
+
+    /**
+     * @param validator the validator to use
+     * @param messages the messages to validate
+     * @param onComplete callback with the results of the messages that do not conform
+     * @param onError callback if the messages cannot be read
+     */
+    public ValidationWorker(ConformanceValidator validator, List<HL7Message> messages,
+                            Consumer<List<ConformanceValidator.Result>> onComplete, Consumer<Exception> onError) {
+        this.validator = validator;
+        this.messages = messages;
+        this.onComplete = onComplete;
+        this.onError = onError;
+    }
+
+    @Override
+    protected List<ConformanceValidator.Result> doInBackground() {
+        int size = Math.max(1, messages.size());
+        return validator.validateAll(messages, validated -> setProgress((int) (validated * 100L / size)),
+                this::isCancelled);
+    }
+
+    @Override
+    protected void done() {
+        if (isCancelled()) {
+            return;
+        }
+        try {
+            onComplete.accept(get());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            onError.accept(e.getCause() instanceof Exception cause ? cause : e);
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package com.hl7testbench.controller;
+
+import com.hl7testbench.util.JsonReader;
+import com.hl7testbench.util.JsonWriter;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+/**
+ * Connection between a {@link LoadCoordinator} and one {@link LoadWorker}.
+ *
+ * <p>Each message is a JSON object with a {@code type}, sent as a 4-byte
+ * length followed by that many bytes of UTF-8. Sends may come from several
+ * threads; receives must come from one.</p>
+ */
+final class WorkerChannel implements Closeable {
+
+    /**
+     * Largest message accepted, well above the size of a full set of stage results.
+     */
+    private static final int MAX_MESSAGE_BYTES = 64 * 1024 * 1024;
+
+    private final Socket socket;
+    private final DataInputStream in;
+    private final DataOutputStream out;
+
+    WorkerChannel(Socket socket) throws IOException {
+        this.socket = socket;
+        socket.setTcpNoDelay(true);
+        this.in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+        this.out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+    }
+
+    synchronized void send(Map<String, Object> message) throws IOException {
+        byte[] bytes = JsonWriter.write(message).getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+        out.flush();
+    }
+
+    /**
+     * Blocks until the next message arrives.
+     *
+     * @throws java.io.EOFException if the other side closed the connection
+     */
+    Map<String, Object> receive() throws IOException {
+        int length = in.readInt();
+        if (length < 0 || length > MAX_MESSAGE_BYTES) {
+            throw new IOException("Invalid worker message length " + length);
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        try {
+            return JsonReader.parseObject(new String(bytes, StandardCharsets.UTF_8));
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Invalid worker message: " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        socket.close();
+    }
+}
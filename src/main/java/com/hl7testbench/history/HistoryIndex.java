@@ -0,0 +1,304 @@
+package com.hl7testbench.history;
+
+import com.hl7testbench.model.ConnectionConfig.TransportMode;
+import com.hl7testbench.model.TransportResult.TransportStatus;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * In-memory index over all records in a {@link HistoryLog}, stored as
+ * parallel primitive columns addressed by record ordinal.
+ *
+ * <p>Holds everything needed to list and filter history (time, IDs,
+ * status, RTT, target) plus the record's location on disk, but never the
+ * response body. Control IDs are looked up through an open hash table
+ * chained through an {@code int[]}.</p>
+ *
+ * <p>Records are appended roughly, but not strictly, in time order, as
+ * concurrent senders finish out of order. Time ranges are found by binary
+ * search over the running maximum of the timestamps; the index tracks how
+ * far any record lags behind that maximum, and only records within that lag
+ * of either end of a range are checked one by one.</p>
+ *
+ * <p>Appends come from the single history writer thread; readers on other
+ * threads see a consistent prefix of {@link #size()} entries.</p>
+ */
+public class HistoryIndex {
+
+    private static final TransportMode[] MODES = TransportMode.values();
+    private static final TransportStatus[] STATUSES = TransportStatus.values();
+
+    /**
+     * Column storage, replaced as a whole when it grows so readers never see
+     * a partially copied set of arrays.
+     */
+    private static final class Columns {
+        final long[] timestamps;
+        final long[] maxTimestamps;
+        final int[] segments;
+        final long[] offsets;
+        final int[] lengths;
+        final byte[] modes;
+        final byte[] statuses;
+        final int[] roundTripMs;
+        final String[] controlIds;
+        final String[] messageTypes;
+        final String[] targets;
+        final int[] hashNext;
+
+        Columns(int capacity) {
+            timestamps = new long[capacity];
+            maxTimestamps = new long[capacity];
+            segments = new int[capacity];
+            offsets = new long[capacity];
+            lengths = new int[capacity];
+            modes = new byte[capacity];
+            statuses = new byte[capacity];
+            roundTripMs = new int[capacity];
+            controlIds = new String[capacity];
+            messageTypes = new String[capacity];
+            targets = new String[capacity];
+            hashNext = new int[capacity];
+        }
+
+        Columns grow(int capacity, int size) {
+            Columns c = new Columns(capacity);
+            System.arraycopy(timestamps, 0, c.timestamps, 0, size);
+            System.arraycopy(maxTimestamps, 0, c.maxTimestamps, 0, size);
+            System.arraycopy(segments, 0, c.segments, 0, size);
+            System.arraycopy(offsets, 0, c.offsets, 0, size);
+            System.arraycopy(lengths, 0, c.lengths, 0, size);
+            System.arraycopy(modes, 0, c.modes, 0, size);
+            System.arraycopy(statuses, 0, c.statuses, 0, size);
+            System.arraycopy(roundTripMs, 0, c.roundTripMs, 0, size);
+            System.arraycopy(controlIds, 0, c.controlIds, 0, size);
+            System.arraycopy(messageTypes, 0, c.messageTypes, 0, size);
+            System.arraycopy(targets, 0, c.targets, 0, size);
+            System.arraycopy(hashNext, 0, c.hashNext, 0, size);
+            return c;
+        }
+    }
+
+    private volatile Columns columns = new Columns(1024);
+    private volatile int size;
+    /** The most any record's timestamp is below the maximum of those before it. */
+    private volatile long maxLagMillis;
+    private int[] hashHeads = newHashHeads(2048);
+    private final Map<String, String> interned = new HashMap<>();
+
+    /**
+     * One index entry as persisted in a segment's {@code .idx} file.
+     */
+    public record Entry(
+            long timestampMillis,
+            int segment,
+            long offset,
+            int length,
+            TransportMode transportMode,
+            TransportStatus status,
+            long roundTripTimeMs,
+            String messageControlId,
+            String messageType,
+            String target
+    ) {
+    }
+
+    /**
+     * Appends an entry. Must only be called from the writer thread (or during open).
+     */
+    synchronized void add(Entry entry) {
+        int n = size;
+        Columns c = columns;
+        if (n == c.timestamps.length) {
+            c = c.grow(n * 2, n);
+        }
+        c.timestamps[n] = entry.timestampMillis();
+        c.maxTimestamps[n] = n == 0 ? entry.timestampMillis()
+                : Math.max(c.maxTimestamps[n - 1], entry.timestampMillis());
+        if (c.maxTimestamps[n] - entry.timestampMillis() > maxLagMillis) {
+            maxLagMillis = c.maxTimestamps[n] - entry.timestampMillis();
+        }
+        c.segments[n] = entry.segment();
+        c.offsets[n] = entry.offset();
+        c.lengths[n] = entry.length();
+        c.modes[n] = (byte) entry.transportMode().ordinal();
+        c.statuses[n] = (byte) entry.status().ordinal();
+        c.roundTripMs[n] = (int) Math.min(Integer.MAX_VALUE, entry.roundTripTimeMs());
+        c.controlIds[n] = entry.messageControlId();
+        c.messageTypes[n] = intern(entry.messageType());
+        c.targets[n] = intern(entry.target());
+
+        if (n + 1 > hashHeads.length * 3 / 4) {
+            rehash(c, n, hashHeads.length * 2);
+        }
+        int bucket = bucket(entry.messageControlId(), hashHeads.length);
+        c.hashNext[n] = hashHeads[bucket];
+        hashHeads[bucket] = n;
+
+        columns = c;
+        size = n + 1;
+    }
+
+    private String intern(String value) {
+        if (value == null) return "";
+        return interned.computeIfAbsent(value, v -> v);
+    }
+
+    private void rehash(Columns c, int count, int capacity) {
+        int[] heads = newHashHeads(capacity);
+        for (int i = 0; i < count; i++) {
+            int bucket = bucket(c.controlIds[i], capacity);
+            c.hashNext[i] = heads[bucket];
+            heads[bucket] = i;
+        }
+        hashHeads = heads;
+    }
+
+    private static int[] newHashHeads(int capacity) {
+        int[] heads = new int[capacity];
+        Arrays.fill(heads, -1);
+        return heads;
+    }
+
+    private static int bucket(String key, int capacity) {
+        int h = key == null ? 0 : key.hashCode();
+        h ^= (h >>> 16);
+        return h & (capacity - 1);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the ordinals of all records with the given control ID, oldest first.
+     */
+    public synchronized int[] findByControlId(String messageControlId) {
+        if (messageControlId == null) {
+            return new int[0];
+        }
+        Columns c = columns;
+        List<Integer> matches = new ArrayList<>();
+        for (int i = hashHeads[bucket(messageControlId, hashHeads.length)]; i >= 0; i = c.hashNext[i]) {
+            if (messageControlId.equals(c.controlIds[i])) {
+                matches.add(i);
+            }
+        }
+        int[] result = new int[matches.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = matches.get(result.length - 1 - i);
+        }
+        return result;
+    }
+
+    /**
+     * Returns the first ordinal whose timestamp is at or after {@code fromMillis}.
+     */
+    public int lowerBound(long fromMillis) {
+        return lowerBound(size, fromMillis);
+    }
+
+    /**
+     * Returns the first ordinal below {@code n} at which the running maximum
+     * timestamp is at or after {@code fromMillis}, which is also the first
+     * record at or after it.
+     */
+    private int lowerBound(int n, long fromMillis) {
+        long[] maxTimestamps = columns.maxTimestamps;
+        int lo = 0;
+        int hi = n;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (maxTimestamps[mid] < fromMillis) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    /**
+     * Returns the ordinals of records with timestamps in
+     * {@code [fromMillis, toMillis)}.
+     */
+    public BitSet findByTimeRange(long fromMillis, long toMillis) {
+        int n = size;
+        long lag = maxLagMillis;
+        long[] timestamps = columns.timestamps;
+        BitSet matches = new BitSet(n);
+        if (fromMillis >= toMillis) {
+            return matches;
+        }
+        // Before lowerBound(to) every timestamp is below toMillis, and from
+        // lowerBound(from + lag) on every timestamp is at least fromMillis.
+        int first = lowerBound(n, fromMillis);
+        int allFrom = Math.max(first, lowerBound(n, saturatedAdd(fromMillis, lag)));
+        int allTo = lowerBound(n, toMillis);
+        int last = lowerBound(n, saturatedAdd(toMillis, lag));
+        if (allFrom < allTo) {
+            matches.set(allFrom, allTo);
+        }
+        int scanTo = allFrom < allTo ? allFrom : last;
+        for (int i = first; i < scanTo; i++) {
+            if (timestamps[i] >= fromMillis && timestamps[i] < toMillis) {
+                matches.set(i);
+            }
+        }
+        for (int i = Math.max(scanTo, allTo); i < last; i++) {
+            if (timestamps[i] >= fromMillis && timestamps[i] < toMillis) {
+                matches.set(i);
+            }
+        }
+        return matches;
+    }
+
+    private static long saturatedAdd(long value, long delta) {
+        return value > Long.MAX_VALUE - delta ? Long.MAX_VALUE : value + delta;
+    }
+
+    public long timestampAt(int ordinal) {
+        return columns.timestamps[ordinal];
+    }
+
+    public int segmentAt(int ordinal) {
+        return columns.segments[ordinal];
+    }
+
+    public long offsetAt(int ordinal) {
+        return columns.offsets[ordinal];
+    }
+
+    public int lengthAt(int ordinal) {
+        return columns.lengths[ordinal];
+    }
+
+    public TransportMode transportModeAt(int ordinal) {
+        return MODES[columns.modes[ordinal]];
+    }
+
+    public TransportStatus statusAt(int ordinal) {
+        return STATUSES[columns.statuses[ordinal]];
+    }
+
+    public int roundTripMsAt(int ordinal) {
+        return columns.roundTripMs[ordinal];
+    }
+
+    public String controlIdAt(int ordinal) {
+        return columns.controlIds[ordinal];
+    }
+
+    public String messageTypeAt(int ordinal) {
+        return columns.messageTypes[ordinal];
+    }
+
+    public String targetAt(int ordinal) {
+        return columns.targets[ordinal];
+    }
+}
@@ -0,0 +1,452 @@
+package com.hl7testbench.history;
+
+import com.hl7testbench.model.ConnectionConfig.TransportMode;
+import com.hl7testbench.model.HistoryRecord;
+import com.hl7testbench.model.TransportResult.TransportStatus;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only, segment-rotated binary log of sent messages.
+ *
+ * <p>Each segment {@code history-NNNNNNNN.log} holds length-prefixed,
+ * CRC-checked records; a companion {@code .idx} file holds one compact
+ * summary entry per record (time, IDs, status, RTT and record location)
+ * so the whole history can be listed and searched from the in-memory
+ * {@link HistoryIndex} without reading response bodies. A new segment is
+ * started once the current one exceeds the configured size.</p>
+ *
+ * <p>On open, a segment whose index does not match its log (for example
+ * after a crash between the two writes) has its index rebuilt from the log,
+ * and the log is truncated after its last intact record. A record whose
+ * length does not fit in the rest of the file is taken as torn, so a
+ * corrupt header never causes an oversized read. Responses and errors
+ * longer than four million characters are cut to that length.</p>
+ *
+ * <p>Appends are expected from a single thread ({@link HistoryLogWriter});
+ * reads may come from any thread.</p>
+ */
+public class HistoryLog implements Closeable {
+
+    public static final long DEFAULT_SEGMENT_BYTES = 64L * 1024 * 1024;
+
+    private static final int LOG_MAGIC = 0x484C3748;
+    private static final int INDEX_MAGIC = 0x484C3749;
+    private static final short FORMAT_VERSION = 1;
+    private static final int FILE_HEADER_BYTES = 6;
+    private static final int RECORD_HEADER_BYTES = 8;
+    /** Longest response or error text kept in a record, in characters. */
+    private static final int MAX_TEXT_CHARS = 4 * 1024 * 1024;
+    /** Upper bound of a record payload, given {@link #MAX_TEXT_CHARS}. */
+    private static final int MAX_PAYLOAD_BYTES = 32 * 1024 * 1024;
+
+    private static final TransportMode[] MODES = TransportMode.values();
+    private static final TransportStatus[] STATUSES = TransportStatus.values();
+
+    private final Path directory;
+    private final long maxSegmentBytes;
+    private final HistoryIndex index = new HistoryIndex();
+    private final Map<Integer, FileChannel> readChannels = new HashMap<>();
+
+    private int activeSegment;
+    private FileChannel activeLog;
+    private DataOutputStream activeIndex;
+
+    public HistoryLog(Path directory) throws IOException {
+        this(directory, DEFAULT_SEGMENT_BYTES);
+    }
+
+    public HistoryLog(Path directory, long maxSegmentBytes) throws IOException {
+        this.directory = directory;
+        this.maxSegmentBytes = maxSegmentBytes;
+        Files.createDirectories(directory);
+        load();
+    }
+
+    public HistoryIndex getIndex() {
+        return index;
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    /**
+     * Appends a batch of records and flushes them to the operating system.
+     */
+    public synchronized void append(List<HistoryRecord> records) throws IOException {
+        if (records.isEmpty()) {
+            return;
+        }
+        ByteArrayOutputStream batch = new ByteArrayOutputStream(records.size() * 256);
+        List<HistoryIndex.Entry> entries = new ArrayList<>(records.size());
+        long position = activeLog.size();
+
+        for (HistoryRecord record : records) {
+            if (position - FILE_HEADER_BYTES > 0 && position + batch.size() >= maxSegmentBytes) {
+                commit(batch, entries);
+                batch.reset();
+                entries.clear();
+                rotate();
+                position = activeLog.size();
+            }
+            byte[] payload = encode(record);
+            long offset = position + batch.size();
+            writeRecord(batch, payload);
+            entries.add(toEntry(record, activeSegment, offset, RECORD_HEADER_BYTES + payload.length));
+        }
+        commit(batch, entries);
+    }
+
+    private void commit(ByteArrayOutputStream batch, List<HistoryIndex.Entry> entries) throws IOException {
+        if (entries.isEmpty()) {
+            return;
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(batch.toByteArray());
+        while (buffer.hasRemaining()) {
+            activeLog.write(buffer, activeLog.size());
+        }
+        for (HistoryIndex.Entry entry : entries) {
+            writeIndexEntry(activeIndex, entry);
+        }
+        activeIndex.flush();
+        for (HistoryIndex.Entry entry : entries) {
+            index.add(entry);
+        }
+    }
+
+    /**
+     * Reads the full record (including the response) at the given ordinal.
+     */
+    public HistoryRecord read(int ordinal) throws IOException {
+        int segment = index.segmentAt(ordinal);
+        long offset = index.offsetAt(ordinal);
+        int length = index.lengthAt(ordinal);
+
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        FileChannel channel = readChannel(segment);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, offset + buffer.position()) < 0) {
+                throw new EOFException("Truncated history record " + ordinal);
+            }
+        }
+        buffer.flip();
+        int payloadLength = buffer.getInt();
+        int crc = buffer.getInt();
+        byte[] payload = new byte[payloadLength];
+        buffer.get(payload);
+        if (crc != crc32(payload)) {
+            throw new IOException("Corrupt history record " + ordinal);
+        }
+        return decode(payload);
+    }
+
+    private synchronized FileChannel readChannel(int segment) throws IOException {
+        FileChannel channel = readChannels.get(segment);
+        if (channel == null) {
+            channel = FileChannel.open(logPath(segment), StandardOpenOption.READ);
+            readChannels.put(segment, channel);
+        }
+        return channel;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        for (FileChannel channel : readChannels.values()) {
+            channel.close();
+        }
+        readChannels.clear();
+        if (activeIndex != null) {
+            activeIndex.close();
+            activeIndex = null;
+        }
+        if (activeLog != null) {
+            activeLog.force(true);
+            activeLog.close();
+            activeLog = null;
+        }
+    }
+
+    // ----- Opening and recovery -----
+
+    private void load() throws IOException {
+        List<Integer> segments = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "history-*.log")) {
+            for (Path path : stream) {
+                String name = path.getFileName().toString();
+                segments.add(Integer.parseInt(name.substring(8, name.length() - 4)));
+            }
+        } catch (NumberFormatException e) {
+            throw new IOException("Unexpected file in history directory: " + e.getMessage());
+        }
+        segments.sort(null);
+
+        for (int segment : segments) {
+            List<HistoryIndex.Entry> entries = loadSegmentIndex(segment);
+            for (HistoryIndex.Entry entry : entries) {
+                index.add(entry);
+            }
+        }
+
+        activeSegment = segments.isEmpty() ? 1 : segments.get(segments.size() - 1);
+        openActiveSegment();
+    }
+
+    /**
+     * Loads a segment's index, rebuilding it from the log if the two disagree.
+     */
+    private List<HistoryIndex.Entry> loadSegmentIndex(int segment) throws IOException {
+        Path log = logPath(segment);
+        long logSize = Files.size(log);
+        List<HistoryIndex.Entry> entries = readIndexFile(segment);
+
+        long expectedEnd = entries.isEmpty() ? FILE_HEADER_BYTES
+                : entries.get(entries.size() - 1).offset() + entries.get(entries.size() - 1).length();
+        if (expectedEnd == logSize) {
+            return entries;
+        }
+
+        System.err.println("Rebuilding history index for segment " + segment);
+        entries = scanLog(segment);
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                Files.newOutputStream(indexPath(segment))))) {
+            writeFileHeader(out, INDEX_MAGIC);
+            for (HistoryIndex.Entry entry : entries) {
+                writeIndexEntry(out, entry);
+            }
+        }
+        return entries;
+    }
+
+    private List<HistoryIndex.Entry> readIndexFile(int segment) {
+        List<HistoryIndex.Entry> entries = new ArrayList<>();
+        Path path = indexPath(segment);
+        if (!Files.exists(path)) {
+            return entries;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+            readFileHeader(in, INDEX_MAGIC);
+            while (true) {
+                long timestamp;
+                try {
+                    timestamp = in.readLong();
+                } catch (EOFException e) {
+                    break;
+                }
+                entries.add(new HistoryIndex.Entry(
+                        timestamp,
+                        segment,
+                        in.readLong(),
+                        in.readInt(),
+                        MODES[in.readByte()],
+                        STATUSES[in.readByte()],
+                        in.readLong(),
+                        readString(in),
+                        readString(in),
+                        readString(in)
+                ));
+            }
+        } catch (IOException | RuntimeException e) {
+            entries.clear();
+        }
+        return entries;
+    }
+
+    /**
+     * Scans a segment log, returning entries for all intact records and
+     * truncating the file after the last one.
+     */
+    private List<HistoryIndex.Entry> scanLog(int segment) throws IOException {
+        List<HistoryIndex.Entry> entries = new ArrayList<>();
+        Path path = logPath(segment);
+        long logSize = Files.size(path);
+        long validEnd = FILE_HEADER_BYTES;
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+            readFileHeader(in, LOG_MAGIC);
+            while (true) {
+                int payloadLength = in.readInt();
+                int crc = in.readInt();
+                if (payloadLength < 0 || payloadLength > MAX_PAYLOAD_BYTES
+                        || payloadLength > logSize - validEnd - RECORD_HEADER_BYTES) {
+                    break;
+                }
+                byte[] payload = in.readNBytes(payloadLength);
+                if (payload.length != payloadLength || crc != crc32(payload)) {
+                    break;
+                }
+                HistoryRecord record = decode(payload);
+                entries.add(toEntry(record, segment, validEnd, RECORD_HEADER_BYTES + payloadLength));
+                validEnd += RECORD_HEADER_BYTES + payloadLength;
+            }
+        } catch (EOFException e) {
+            // End of intact records
+        }
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+            if (channel.size() > validEnd) {
+                channel.truncate(Math.max(validEnd, FILE_HEADER_BYTES));
+            }
+        }
+        return entries;
+    }
+
+    private void openActiveSegment() throws IOException {
+        Path log = logPath(activeSegment);
+        boolean created = !Files.exists(log) || Files.size(log) == 0;
+        activeLog = FileChannel.open(log, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        if (created) {
+            ByteArrayOutputStream header = new ByteArrayOutputStream();
+            writeFileHeader(new DataOutputStream(header), LOG_MAGIC);
+            activeLog.write(ByteBuffer.wrap(header.toByteArray()), 0);
+        }
+
+        Path idx = indexPath(activeSegment);
+        boolean indexCreated = !Files.exists(idx) || Files.size(idx) == 0;
+        activeIndex = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(idx,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND)));
+        if (indexCreated) {
+            writeFileHeader(activeIndex, INDEX_MAGIC);
+            activeIndex.flush();
+        }
+    }
+
+    private void rotate() throws IOException {
+        activeIndex.close();
+        activeLog.force(true);
+        activeLog.close();
+        activeSegment++;
+        openActiveSegment();
+    }
+
+    private Path logPath(int segment) {
+        return directory.resolve(String.format("history-%08d.log", segment));
+    }
+
+    private Path indexPath(int segment) {
+        return directory.resolve(String.format("history-%08d.idx", segment));
+    }
+
+    // ----- Encoding -----
+
+    private static HistoryIndex.Entry toEntry(HistoryRecord record, int segment, long offset, int length) {
+        return new HistoryIndex.Entry(
+                record.timestampMillis(),
+                segment,
+                offset,
+                length,
+                record.transportMode(),
+                record.status(),
+                record.roundTripTimeMs(),
+                record.messageControlId(),
+                record.messageType(),
+                record.target()
+        );
+    }
+
+    private static void writeRecord(ByteArrayOutputStream out, byte[] payload) {
+        ByteBuffer header = ByteBuffer.allocate(RECORD_HEADER_BYTES);
+        header.putInt(payload.length);
+        header.putInt(crc32(payload));
+        out.write(header.array(), 0, RECORD_HEADER_BYTES);
+        out.write(payload, 0, payload.length);
+    }
+
+    private static byte[] encode(HistoryRecord record) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(128 +
+                (record.rawResponse() != null ? record.rawResponse().length() : 0));
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeLong(record.timestampMillis());
+        out.writeByte(record.transportMode().ordinal());
+        out.writeByte(record.status().ordinal());
+        out.writeLong(record.roundTripTimeMs());
+        writeString(out, record.messageControlId());
+        writeString(out, record.messageType());
+        writeString(out, record.target());
+        writeString(out, truncate(record.errorMessage()));
+        writeString(out, truncate(record.rawResponse()));
+        return bytes.toByteArray();
+    }
+
+    private static HistoryRecord decode(byte[] payload) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+        long timestamp = in.readLong();
+        TransportMode mode = MODES[in.readByte()];
+        TransportStatus status = STATUSES[in.readByte()];
+        long rtt = in.readLong();
+        String controlId = readString(in);
+        String messageType = readString(in);
+        String target = readString(in);
+        String error = readString(in);
+        String response = readString(in);
+        return new HistoryRecord(timestamp, controlId, messageType, mode, target, status, rtt, response, error);
+    }
+
+    private static void writeIndexEntry(DataOutputStream out, HistoryIndex.Entry entry) throws IOException {
+        out.writeLong(entry.timestampMillis());
+        out.writeLong(entry.offset());
+        out.writeInt(entry.length());
+        out.writeByte(entry.transportMode().ordinal());
+        out.writeByte(entry.status().ordinal());
+        out.writeLong(entry.roundTripTimeMs());
+        writeString(out, entry.messageControlId());
+        writeString(out, entry.messageType());
+        writeString(out, entry.target());
+    }
+
+    private static void writeFileHeader(DataOutputStream out, int magic) throws IOException {
+        out.writeInt(magic);
+        out.writeShort(FORMAT_VERSION);
+    }
+
+    private static void readFileHeader(DataInputStream in, int magic) throws IOException {
+        if (in.readInt() != magic || in.readShort() != FORMAT_VERSION) {
+            throw new IOException("Unrecognized history file format");
+        }
+    }
+
+    private static String truncate(String text) {
+        return text != null && text.length() > MAX_TEXT_CHARS ? text.substring(0, MAX_TEXT_CHARS) : text;
+    }
+
+    /**
+     * Writes a length-prefixed UTF-8 string; length -1 encodes null.
+     */
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = in.readNBytes(length);
+        if (bytes.length != length) {
+            throw new EOFException();
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static int crc32(byte[] payload) {
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        return (int) crc.getValue();
+    }
+}
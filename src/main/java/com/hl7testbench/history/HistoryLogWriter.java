@@ -0,0 +1,93 @@
+package com.hl7testbench.history;
+
+import com.hl7testbench.model.HistoryRecord;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writes history records to a {@link HistoryLog} on a dedicated thread.
+ *
+ * <p>Senders only enqueue; the writer thread drains the queue in batches
+ * and appends each batch with a single write. If the queue fills up,
+ * {@link #append(HistoryRecord)} blocks rather than dropping records, so
+ * the audit trail stays complete at the cost of slowing the sender.</p>
+ */
+public class HistoryLogWriter implements AutoCloseable {
+
+    private static final int QUEUE_CAPACITY = 65_536;
+    private static final int MAX_BATCH = 4_096;
+
+    private final HistoryLog log;
+    private final BlockingQueue<HistoryRecord> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    private final Thread thread;
+    private volatile boolean running = true;
+
+    public HistoryLogWriter(HistoryLog log) {
+        this.log = log;
+        this.thread = new Thread(this::run, "history-writer");
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    /**
+     * Queues a record for writing, blocking while the queue is full.
+     */
+    public void append(HistoryRecord record) {
+        if (!running) {
+            return;
+        }
+        try {
+            queue.put(record);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public HistoryLog getLog() {
+        return log;
+    }
+
+    private void run() {
+        List<HistoryRecord> batch = new ArrayList<>(MAX_BATCH);
+        while (running || !queue.isEmpty()) {
+            try {
+                HistoryRecord first = queue.poll(200, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, MAX_BATCH - 1);
+                log.append(batch);
+            } catch (InterruptedException e) {
+                running = false;
+            } catch (IOException e) {
+                System.err.println("Error writing send history: " + e.getMessage());
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    /**
+     * Writes everything still queued, then closes the log.
+     */
+    @Override
+    public void close() {
+        running = false;
+        try {
+            thread.join(10_000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        try {
+            log.close();
+        } catch (IOException e) {
+            System.err.println("Error closing send history: " + e.getMessage());
+        }
+    }
+}
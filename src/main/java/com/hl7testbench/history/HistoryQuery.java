@@ -0,0 +1,74 @@
+package com.hl7testbench.history;
+
+import com.hl7testbench.model.TransportResult.TransportStatus;
+
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * Immutable filter criteria for searching the send history.
+ * Null or empty criteria match everything.
+ */
+public record HistoryQuery(
+        Set<TransportStatus> statuses,
+        String messageType,
+        String controlIdPrefix,
+        String target,
+        long minRoundTripMs,
+        long maxRoundTripMs,
+        long fromMillis,
+        long toMillis
+) {
+
+    /**
+     * Returns a query that matches every record.
+     */
+    public static HistoryQuery any() {
+        return new HistoryQuery(EnumSet.noneOf(TransportStatus.class), null, null, null,
+                0, Long.MAX_VALUE, Long.MIN_VALUE, Long.MAX_VALUE);
+    }
+
+    public HistoryQuery withStatuses(Set<TransportStatus> newStatuses) {
+        return new HistoryQuery(newStatuses, messageType, controlIdPrefix, target,
+                minRoundTripMs, maxRoundTripMs, fromMillis, toMillis);
+    }
+
+    public HistoryQuery withMessageType(String newMessageType) {
+        return new HistoryQuery(statuses, newMessageType, controlIdPrefix, target,
+                minRoundTripMs, maxRoundTripMs, fromMillis, toMillis);
+    }
+
+    public HistoryQuery withControlIdPrefix(String newPrefix) {
+        return new HistoryQuery(statuses, messageType, newPrefix, target,
+                minRoundTripMs, maxRoundTripMs, fromMillis, toMillis);
+    }
+
+    public HistoryQuery withTarget(String newTarget) {
+        return new HistoryQuery(statuses, messageType, controlIdPrefix, newTarget,
+                minRoundTripMs, maxRoundTripMs, fromMillis, toMillis);
+    }
+
+    public HistoryQuery withRoundTripRange(long minMs, long maxMs) {
+        return new HistoryQuery(statuses, messageType, controlIdPrefix, target,
+                minMs, maxMs, fromMillis, toMillis);
+    }
+
+    public HistoryQuery withTimeRange(long from, long to) {
+        return new HistoryQuery(statuses, messageType, controlIdPrefix, target,
+                minRoundTripMs, maxRoundTripMs, from, to);
+    }
+
+    /**
+     * Returns true if this query has no restrictions.
+     */
+    public boolean matchesAll() {
+        return (statuses == null || statuses.isEmpty())
+                && isBlank(messageType) && isBlank(controlIdPrefix) && isBlank(target)
+                && minRoundTripMs <= 0 && maxRoundTripMs == Long.MAX_VALUE
+                && fromMillis == Long.MIN_VALUE && toMillis == Long.MAX_VALUE;
+    }
+
+    static boolean isBlank(String value) {
+        return value == null || value.isBlank();
+    }
+}
@@ -0,0 +1,237 @@
+package com.hl7testbench.history;
+
+import com.hl7testbench.model.TransportResult.TransportStatus;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * Secondary indexes over a {@link HistoryIndex} for fast filtering.
+ *
+ * <p>Status, message type and target each map to a {@link BitSet} of
+ * matching ordinals. RTT and control ID are served from ordinal arrays
+ * sorted by that key, so a range or prefix becomes two binary searches.
+ * Time ranges come from the {@link HistoryIndex} itself. A query ANDs
+ * the per-criterion bitsets and never touches response bodies.</p>
+ *
+ * <p>The indexes catch up with records appended since the previous query
+ * on the next call. The sorted arrays are only built once a query needs
+ * them, and afterwards new entries are sorted and merged in rather than
+ * resorting everything.</p>
+ */
+public class HistorySearchIndex {
+
+    private final HistoryIndex index;
+    private final BitSet[] byStatus = new BitSet[TransportStatus.values().length];
+    private final Map<String, BitSet> byMessageType = new HashMap<>();
+    private final Map<String, BitSet> byTarget = new HashMap<>();
+    private int[] byRoundTrip = new int[0];
+    private int[] byControlId = new int[0];
+    private int indexedCount;
+    private int roundTripSortedCount;
+    private int controlIdSortedCount;
+
+    public HistorySearchIndex(HistoryIndex index) {
+        this.index = index;
+        for (int i = 0; i < byStatus.length; i++) {
+            byStatus[i] = new BitSet();
+        }
+    }
+
+    /**
+     * Returns the ordinals matching the query, oldest first.
+     */
+    public synchronized int[] search(HistoryQuery query) {
+        catchUp();
+        int count = indexedCount;
+
+        BitSet result = index.findByTimeRange(query.fromMillis(), query.toMillis());
+        result.clear(count, Math.max(count, result.length()));
+        if (result.isEmpty()) {
+            return new int[0];
+        }
+
+        if (query.statuses() != null && !query.statuses().isEmpty()) {
+            BitSet statuses = new BitSet(count);
+            for (TransportStatus status : query.statuses()) {
+                statuses.or(byStatus[status.ordinal()]);
+            }
+            result.and(statuses);
+        }
+        if (!HistoryQuery.isBlank(query.messageType())) {
+            result.and(byMessageType.getOrDefault(query.messageType().trim(), new BitSet()));
+        }
+        if (!HistoryQuery.isBlank(query.target())) {
+            result.and(byTarget.getOrDefault(query.target().trim(), new BitSet()));
+        }
+        if (query.minRoundTripMs() > 0 || query.maxRoundTripMs() != Long.MAX_VALUE) {
+            result.and(roundTripRange(query.minRoundTripMs(), query.maxRoundTripMs()));
+        }
+        if (!HistoryQuery.isBlank(query.controlIdPrefix())) {
+            result.and(controlIdPrefix(query.controlIdPrefix().trim()));
+        }
+
+        return result.stream().toArray();
+    }
+
+    /**
+     * Brings every index, including the lazily sorted ones, up to date.
+     * Intended to be called off the EDT before the first interactive search.
+     */
+    public synchronized void prepare() {
+        catchUp();
+        roundTripRange(0, 0);
+        controlIdPrefix("");
+    }
+
+    /**
+     * Returns the distinct message types seen so far, sorted.
+     */
+    public synchronized List<String> getMessageTypes() {
+        catchUp();
+        return new ArrayList<>(new TreeSet<>(byMessageType.keySet()));
+    }
+
+    /**
+     * Returns the distinct targets seen so far, sorted.
+     */
+    public synchronized List<String> getTargets() {
+        catchUp();
+        return new ArrayList<>(new TreeSet<>(byTarget.keySet()));
+    }
+
+    private BitSet roundTripRange(long minMs, long maxMs) {
+        if (roundTripSortedCount < indexedCount) {
+            byRoundTrip = mergeSortedByRoundTrip(byRoundTrip, roundTripSortedCount, indexedCount);
+            roundTripSortedCount = indexedCount;
+        }
+        int lo = lowerBound(byRoundTrip, o -> Long.compare(index.roundTripMsAt(o), minMs) < 0);
+        int hi = lowerBound(byRoundTrip, o -> Long.compare(index.roundTripMsAt(o), maxMs) <= 0);
+        return toBitSet(byRoundTrip, lo, hi);
+    }
+
+    private BitSet controlIdPrefix(String prefix) {
+        if (controlIdSortedCount < indexedCount) {
+            byControlId = mergeSortedByControlId(byControlId, controlIdSortedCount, indexedCount);
+            controlIdSortedCount = indexedCount;
+        }
+        int lo = lowerBound(byControlId, o -> compareIds(index.controlIdAt(o), prefix) < 0);
+        int hi = lowerBound(byControlId, o -> {
+            String id = index.controlIdAt(o);
+            return id == null || id.startsWith(prefix) || id.compareTo(prefix) < 0;
+        });
+        return toBitSet(byControlId, lo, hi);
+    }
+
+    private BitSet toBitSet(int[] ordinals, int from, int to) {
+        BitSet bits = new BitSet(indexedCount);
+        for (int i = from; i < to; i++) {
+            bits.set(ordinals[i]);
+        }
+        return bits;
+    }
+
+    private interface OrdinalPredicate {
+        boolean test(int ordinal);
+    }
+
+    /**
+     * Returns the first position in a sorted array where the predicate turns false.
+     */
+    private static int lowerBound(int[] sorted, OrdinalPredicate before) {
+        int lo = 0;
+        int hi = sorted.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (before.test(sorted[mid])) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    private void catchUp() {
+        int size = index.size();
+        if (size == indexedCount) {
+            return;
+        }
+        for (int o = indexedCount; o < size; o++) {
+            byStatus[index.statusAt(o).ordinal()].set(o);
+            byMessageType.computeIfAbsent(index.messageTypeAt(o), k -> new BitSet()).set(o);
+            byTarget.computeIfAbsent(index.targetAt(o), k -> new BitSet()).set(o);
+        }
+        indexedCount = size;
+    }
+
+    /**
+     * Sorts the new ordinals {@code [from, to)} by RTT and merges them into the
+     * already sorted array. Sorts packed {@code (rtt, ordinal)} longs to avoid boxing.
+     */
+    private int[] mergeSortedByRoundTrip(int[] sorted, int from, int to) {
+        long[] added = new long[to - from];
+        for (int i = 0; i < added.length; i++) {
+            int ordinal = from + i;
+            added[i] = ((long) index.roundTripMsAt(ordinal) << 32) | ordinal;
+        }
+        Arrays.parallelSort(added);
+
+        int[] merged = new int[sorted.length + added.length];
+        int i = 0;
+        int j = 0;
+        int k = 0;
+        while (i < sorted.length && j < added.length) {
+            if (index.roundTripMsAt(sorted[i]) <= (int) (added[j] >>> 32)) {
+                merged[k++] = sorted[i++];
+            } else {
+                merged[k++] = (int) added[j++];
+            }
+        }
+        while (i < sorted.length) merged[k++] = sorted[i++];
+        while (j < added.length) merged[k++] = (int) added[j++];
+        return merged;
+    }
+
+    private record KeyedOrdinal(String key, int ordinal) {
+    }
+
+    /**
+     * Sorts the new ordinals {@code [from, to)} by control ID and merges them
+     * into the already sorted array.
+     */
+    private int[] mergeSortedByControlId(int[] sorted, int from, int to) {
+        KeyedOrdinal[] added = new KeyedOrdinal[to - from];
+        for (int i = 0; i < added.length; i++) {
+            int ordinal = from + i;
+            added[i] = new KeyedOrdinal(index.controlIdAt(ordinal), ordinal);
+        }
+        Arrays.parallelSort(added, (a, b) -> compareIds(a.key(), b.key()));
+
+        int[] merged = new int[sorted.length + added.length];
+        int i = 0;
+        int j = 0;
+        int k = 0;
+        while (i < sorted.length && j < added.length) {
+            if (compareIds(index.controlIdAt(sorted[i]), added[j].key()) <= 0) {
+                merged[k++] = sorted[i++];
+            } else {
+                merged[k++] = added[j++].ordinal();
+            }
+        }
+        while (i < sorted.length) merged[k++] = sorted[i++];
+        while (j < added.length) merged[k++] = added[j++].ordinal();
+        return merged;
+    }
+
+    private static int compareIds(String a, String b) {
+        if (a == null) return b == null ? 0 : -1;
+        if (b == null) return 1;
+        return a.compareTo(b);
+    }
+}
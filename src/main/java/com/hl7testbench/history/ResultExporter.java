@@ -0,0 +1,311 @@
+package com.hl7testbench.history;
+
+import com.hl7testbench.model.ConnectionConfig;
+import com.hl7testbench.model.HL7Message;
+import com.hl7testbench.model.HistoryRecord;
+import com.hl7testbench.model.TransportResult;
+import com.hl7testbench.util.JsonWriter;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Streams send results to a CSV or JSON Lines file on a dedicated thread,
+ * for analysis in external tools.
+ *
+ * <p>Works like {@link HistoryLogWriter}: senders only enqueue, and the
+ * writer thread drains the bounded queue in batches, writes each batch
+ * through one buffered writer and flushes it. Nothing is kept once written,
+ * so exports of millions of results use no more heap than the queue. A full
+ * queue blocks the sender rather than dropping results. Results appended
+ * after {@link #close} are not written, and a warning is printed.</p>
+ *
+ * <p>Every result gets one row or line with its time, control ID, message
+ * type, transport, target, status, round-trip time, connect/write/read
+ * phase times in milliseconds (empty if the transport did not measure
+ * them) and error, and optionally the raw response.</p>
+ */
+public class ResultExporter implements AutoCloseable {
+
+    /**
+     * Output file format.
+     */
+    public enum Format {
+        CSV("CSV", ".csv"),
+        JSON_LINES("JSON Lines", ".jsonl");
+
+        private final String displayName;
+        private final String extension;
+
+        Format(String displayName, String extension) {
+            this.displayName = displayName;
+            this.extension = extension;
+        }
+
+        public String getDisplayName() {
+            return displayName;
+        }
+
+        public String getExtension() {
+            return extension;
+        }
+
+        /**
+         * Returns JSON Lines for {@code .jsonl}, {@code .ndjson} and {@code .json} files, CSV otherwise.
+         */
+        public static Format forFile(Path file) {
+            String name = file.getFileName().toString().toLowerCase(Locale.ROOT);
+            return name.endsWith(".jsonl") || name.endsWith(".ndjson") || name.endsWith(".json") ? JSON_LINES : CSV;
+        }
+
+        @Override
+        public String toString() {
+            return displayName;
+        }
+    }
+
+    private static final int QUEUE_CAPACITY = 65_536;
+    private static final int MAX_BATCH = 4_096;
+    private static final String[] COLUMNS = {"timestamp", "controlId", "messageType", "transport", "target",
+            "status", "successful", "roundTripMs", "connectMs", "writeMs", "readMs", "error"};
+
+    private final Path file;
+    private final Format format;
+    private final boolean includeResponse;
+    private final Writer writer;
+    private final BlockingQueue<Entry> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    private final AtomicLong written = new AtomicLong();
+    private final AtomicBoolean closedWarningShown = new AtomicBoolean();
+    private final Thread thread;
+    private volatile boolean running = true;
+
+    /**
+     * Creates the file, replacing any existing one, and starts the writer thread.
+     *
+     * @param file the output file
+     * @param format the output format
+     * @param includeResponse whether to write each raw response as well
+     */
+    public ResultExporter(Path file, Format format, boolean includeResponse) throws IOException {
+        this.file = file;
+        this.format = format;
+        this.includeResponse = includeResponse;
+        this.writer = new BufferedWriter(
+                new OutputStreamWriter(Files.newOutputStream(file), StandardCharsets.UTF_8), 256 * 1024);
+        if (format == Format.CSV) {
+            writer.write(String.join(",", COLUMNS) + (includeResponse ? ",rawResponse" : "") + "\r\n");
+        }
+        this.thread = new Thread(this::run, "result-exporter");
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    /**
+     * Queues a result with the message and connection it was sent with,
+     * blocking while the queue is full.
+     */
+    public void append(HL7Message message, ConnectionConfig config, TransportResult result) {
+        enqueue(new Entry(HistoryRecord.of(message, config, result), result.phases()));
+    }
+
+    /**
+     * Queues a result whose message and connection are no longer known,
+     * e.g. one already shown in the history table.
+     */
+    public void append(TransportResult result) {
+        HistoryRecord record = new HistoryRecord(
+                result.timestamp().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli(),
+                result.messageControlId(), "", result.transportMode(), "", result.status(),
+                result.roundTripTimeMs(), result.rawResponse(), result.errorMessage());
+        enqueue(new Entry(record, result.phases()));
+    }
+
+    private void enqueue(Entry entry) {
+        if (!running) {
+            if (closedWarningShown.compareAndSet(false, true)) {
+                System.err.println("Results sent after the export to " + file + " was closed are not exported");
+            }
+            return;
+        }
+        try {
+            queue.put(entry);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public Path getFile() {
+        return file;
+    }
+
+    /**
+     * Returns the number of results written so far.
+     */
+    public long getWrittenCount() {
+        return written.get();
+    }
+
+    private void run() {
+        List<Entry> batch = new ArrayList<>(MAX_BATCH);
+        StringBuilder line = new StringBuilder(512);
+        while (running || !queue.isEmpty()) {
+            try {
+                Entry first = queue.poll(200, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, MAX_BATCH - 1);
+                for (Entry entry : batch) {
+                    line.setLength(0);
+                    if (format == Format.CSV) {
+                        appendCsv(line, entry);
+                    } else {
+                        line.append(JsonWriter.writeCompact(toJson(entry))).append('\n');
+                    }
+                    writer.append(line);
+                }
+                writer.flush();
+                written.addAndGet(batch.size());
+            } catch (InterruptedException e) {
+                running = false;
+            } catch (IOException e) {
+                System.err.println("Error exporting results to " + file + ": " + e.getMessage());
+            } finally {
+                batch.clear();
+            }
+        }
+        try {
+            writer.close();
+        } catch (IOException e) {
+            System.err.println("Error closing export file " + file + ": " + e.getMessage());
+        }
+    }
+
+    private void appendCsv(StringBuilder line, Entry entry) {
+        HistoryRecord record = entry.record();
+        TransportResult.Phases phases = entry.phases();
+        csv(line, Instant.ofEpochMilli(record.timestampMillis()).toString()).append(',');
+        csv(line, record.messageControlId()).append(',');
+        csv(line, record.messageType()).append(',');
+        csv(line, record.transportMode() != null ? record.transportMode().name() : "").append(',');
+        csv(line, record.target()).append(',');
+        line.append(record.status().name()).append(',');
+        line.append(record.status().isSuccessful()).append(',');
+        line.append(record.roundTripTimeMs()).append(',');
+        if (phases != null) {
+            appendMillis(line, phases.connectNanos()).append(',');
+            appendMillis(line, phases.writeNanos()).append(',');
+            appendMillis(line, phases.readNanos()).append(',');
+        } else {
+            line.append(",,,");
+        }
+        csv(line, record.errorMessage());
+        if (includeResponse) {
+            line.append(',');
+            csv(line, record.rawResponse());
+        }
+        line.append("\r\n");
+    }
+
+    private Map<String, Object> toJson(Entry entry) {
+        HistoryRecord record = entry.record();
+        TransportResult.Phases phases = entry.phases();
+        Map<String, Object> json = new LinkedHashMap<>();
+        json.put(COLUMNS[0], Instant.ofEpochMilli(record.timestampMillis()).toString());
+        json.put(COLUMNS[1], record.messageControlId());
+        json.put(COLUMNS[2], record.messageType());
+        json.put(COLUMNS[3], record.transportMode() != null ? record.transportMode().name() : null);
+        json.put(COLUMNS[4], record.target());
+        json.put(COLUMNS[5], record.status().name());
+        json.put(COLUMNS[6], record.status().isSuccessful());
+        json.put(COLUMNS[7], record.roundTripTimeMs());
+        if (phases != null) {
+            json.put(COLUMNS[8], phases.connectNanos() / 1_000 / 1_000.0);
+            json.put(COLUMNS[9], phases.writeNanos() / 1_000 / 1_000.0);
+            json.put(COLUMNS[10], phases.readNanos() / 1_000 / 1_000.0);
+        }
+        json.put(COLUMNS[11], record.errorMessage());
+        if (includeResponse) {
+            json.put("rawResponse", record.rawResponse());
+        }
+        return json;
+    }
+
+    /**
+     * Appends a CSV field, quoted if it contains a separator, quote or line break.
+     */
+    private static StringBuilder csv(StringBuilder line, String value) {
+        if (value == null || value.isEmpty()) {
+            return line;
+        }
+        boolean quote = false;
+        for (int i = 0; i < value.length() && !quote; i++) {
+            char c = value.charAt(i);
+            quote = c == ',' || c == '"' || c == '\r' || c == '\n';
+        }
+        if (!quote) {
+            return line.append(value);
+        }
+        line.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"') {
+                line.append('"');
+            }
+            line.append(c);
+        }
+        return line.append('"');
+    }
+
+    /**
+     * Appends a duration in milliseconds with three decimals.
+     */
+    private static StringBuilder appendMillis(StringBuilder line, long nanos) {
+        long micros = Math.max(0, nanos) / 1_000;
+        long fraction = micros % 1_000;
+        line.append(micros / 1_000).append('.');
+        if (fraction < 100) {
+            line.append(fraction < 10 ? "00" : "0");
+        }
+        return line.append(fraction);
+    }
+
+    /**
+     * Writes everything still queued, then closes the file. Waits up to ten
+     * seconds; if the writer thread is still busy then, it closes the file
+     * itself once it has written the rest.
+     */
+    @Override
+    public void close() {
+        running = false;
+        try {
+            thread.join(10_000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (thread.isAlive()) {
+            System.err.println("Still exporting to " + file + "; the file is closed when the rest is written");
+        }
+    }
+
+    private record Entry(HistoryRecord record, TransportResult.Phases phases) {
+    }
+}
@@ -0,0 +1,23 @@
+package com.hl7testbench.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Monotonically increasing counter backed by a striped {@link LongAdder}.
+ */
+public class Counter {
+
+    private final LongAdder value = new LongAdder();
+
+    public void increment() {
+        value.increment();
+    }
+
+    public void add(long amount) {
+        value.add(amount);
+    }
+
+    public long get() {
+        return value.sum();
+    }
+}
@@ -0,0 +1,39 @@
+package com.hl7testbench.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Gauge that is either adjusted directly ({@link #increment()}/{@link #decrement()})
+ * or bound to a supplier that is sampled at scrape time.
+ */
+public class Gauge {
+
+    private final LongAdder value = new LongAdder();
+    private volatile LongSupplier supplier;
+
+    public void increment() {
+        value.increment();
+    }
+
+    public void decrement() {
+        value.decrement();
+    }
+
+    public void set(long newValue) {
+        value.reset();
+        value.add(newValue);
+    }
+
+    /**
+     * Binds this gauge to a supplier; subsequent reads sample it instead of the stored value.
+     */
+    public void bind(LongSupplier supplier) {
+        this.supplier = supplier;
+    }
+
+    public long get() {
+        LongSupplier s = supplier;
+        return s != null ? s.getAsLong() : value.sum();
+    }
+}
@@ -0,0 +1,91 @@
+package com.hl7testbench.metrics;
+
+/**
+ * Immutable copy of a {@link LatencyHistogram}'s buckets and summary values.
+ * Snapshots taken from different histograms can be merged because all
+ * histograms share the same bucket layout.
+ */
+public record HistogramSnapshot(
+        long[] counts,
+        long count,
+        long sum,
+        long min,
+        long max
+) {
+
+    /**
+     * Returns an empty snapshot.
+     */
+    public static HistogramSnapshot empty() {
+        return new HistogramSnapshot(new long[LatencyHistogram.BUCKET_COUNT], 0, 0, 0, 0);
+    }
+
+    /**
+     * Returns the value at the given percentile (0-100), reported as the
+     * upper bound of the bucket containing that rank, capped at the observed maximum.
+     */
+    public long percentile(double percentile) {
+        if (count == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100.0 * count));
+        long cumulative = 0;
+        for (int i = 0; i < counts.length; i++) {
+            cumulative += counts[i];
+            if (cumulative >= rank) {
+                return Math.max(min, Math.min(max, LatencyHistogram.upperBound(i)));
+            }
+        }
+        return max;
+    }
+
+    /**
+     * Returns the number of recorded values less than or equal to the bound.
+     * Exact when the bound falls on a bucket edge, otherwise linearly
+     * interpolated within the bucket containing the bound.
+     */
+    public long countAtOrBelow(long bound) {
+        long cumulative = 0;
+        for (int i = 0; i < counts.length; i++) {
+            long upper = LatencyHistogram.upperBound(i);
+            if (upper <= bound) {
+                cumulative += counts[i];
+                continue;
+            }
+            long lower = LatencyHistogram.lowerBound(i);
+            if (lower <= bound && counts[i] > 0) {
+                double fraction = (double) (bound - lower + 1) / (upper - lower + 1);
+                cumulative += Math.round(counts[i] * fraction);
+            }
+            break;
+        }
+        return cumulative;
+    }
+
+    public double mean() {
+        return count == 0 ? 0.0 : (double) sum / count;
+    }
+
+    /**
+     * Returns a snapshot combining this one with another.
+     */
+    public HistogramSnapshot merge(HistogramSnapshot other) {
+        long[] merged = new long[Math.max(counts.length, other.counts.length)];
+        for (int i = 0; i < counts.length; i++) {
+            merged[i] += counts[i];
+        }
+        for (int i = 0; i < other.counts.length; i++) {
+            merged[i] += other.counts[i];
+        }
+        long mergedMin;
+        if (count == 0) {
+            mergedMin = other.min;
+        } else if (other.count == 0) {
+            mergedMin = min;
+        } else {
+            mergedMin = Math.min(min, other.min);
+        }
+        return new HistogramSnapshot(merged, count + other.count, sum + other.sum,
+                mergedMin, Math.max(max, other.max));
+    }
+}
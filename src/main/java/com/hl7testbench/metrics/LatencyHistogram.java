@@ -0,0 +1,135 @@
+package com.hl7testbench.metrics;
+
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Concurrent log-linear histogram for non-negative latency values.
+ *
+ * <p>Values below 64 get an exact bucket each; larger values are grouped
+ * into 32 sub-buckets per power of two, which bounds the relative error
+ * of reported percentiles to roughly 3%. Every bucket is a striped
+ * {@link LongAdder}, so recording from many sender threads never
+ * contends on a single cache line.</p>
+ */
+public class LatencyHistogram {
+
+    private static final int LINEAR_LIMIT = 64;
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int MIN_EXPONENT = 6;
+    private static final int MAX_EXPONENT = 62;
+
+    /**
+     * Total number of buckets, shared by all histograms so snapshots can be merged.
+     */
+    public static final int BUCKET_COUNT = LINEAR_LIMIT + (MAX_EXPONENT - MIN_EXPONENT + 1) * SUB_BUCKETS;
+
+    private final LongAdder[] buckets = new LongAdder[BUCKET_COUNT];
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final LongAccumulator min = new LongAccumulator(Math::min, Long.MAX_VALUE);
+    private final LongAccumulator max = new LongAccumulator(Math::max, Long.MIN_VALUE);
+
+    public LatencyHistogram() {
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            buckets[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * Records a single value. Negative values are clamped to zero.
+     */
+    public void record(long value) {
+        long v = Math.max(0, value);
+        buckets[bucketIndex(v)].increment();
+        count.increment();
+        sum.add(v);
+        min.accumulate(v);
+        max.accumulate(v);
+    }
+
+    /**
+     * Adds the contents of a snapshot, e.g. one received from another process.
+     */
+    public void add(HistogramSnapshot snapshot) {
+        long[] counts = snapshot.counts();
+        for (int i = 0; i < counts.length && i < BUCKET_COUNT; i++) {
+            if (counts[i] != 0) {
+                buckets[i].add(counts[i]);
+            }
+        }
+        count.add(snapshot.count());
+        sum.add(snapshot.sum());
+        if (snapshot.count() > 0) {
+            min.accumulate(snapshot.min());
+            max.accumulate(snapshot.max());
+        }
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    public long getSum() {
+        return sum.sum();
+    }
+
+    /**
+     * Returns a point-in-time copy of the bucket counts.
+     * Concurrent recordings may be partially included.
+     */
+    public HistogramSnapshot snapshot() {
+        long[] counts = new long[BUCKET_COUNT];
+        long total = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            counts[i] = buckets[i].sum();
+            total += counts[i];
+        }
+        long observedMin = total == 0 ? 0 : min.get();
+        long observedMax = total == 0 ? 0 : max.get();
+        return new HistogramSnapshot(counts, total, sum.sum(), observedMin, observedMax);
+    }
+
+    public void reset() {
+        for (LongAdder bucket : buckets) {
+            bucket.reset();
+        }
+        count.reset();
+        sum.reset();
+        min.reset();
+        max.reset();
+    }
+
+    /**
+     * Maps a non-negative value to its bucket index.
+     */
+    static int bucketIndex(long value) {
+        if (value < LINEAR_LIMIT) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return LINEAR_LIMIT + (exponent - MIN_EXPONENT) * SUB_BUCKETS + subBucket;
+    }
+
+    /**
+     * Returns the smallest value that maps to the given bucket.
+     */
+    static long lowerBound(int index) {
+        if (index < LINEAR_LIMIT) {
+            return index;
+        }
+        int offset = index - LINEAR_LIMIT;
+        int exponent = offset / SUB_BUCKETS + MIN_EXPONENT;
+        long subBucket = offset % SUB_BUCKETS;
+        return (SUB_BUCKETS + subBucket) << (exponent - SUB_BUCKET_BITS);
+    }
+
+    /**
+     * Returns the largest value that maps to the given bucket.
+     */
+    static long upperBound(int index) {
+        return index + 1 >= BUCKET_COUNT ? Long.MAX_VALUE : lowerBound(index + 1) - 1;
+    }
+}
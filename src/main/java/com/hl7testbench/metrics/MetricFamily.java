@@ -0,0 +1,88 @@
+package com.hl7testbench.metrics;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * A named metric with a fixed set of label names and one child per
+ * distinct combination of label values.
+ *
+ * @param <T> the child metric type ({@link Counter}, {@link Gauge} or {@link LatencyHistogram})
+ */
+public class MetricFamily<T> {
+
+    /**
+     * Prometheus metric type of a family.
+     */
+    public enum Type {
+        COUNTER("counter"),
+        GAUGE("gauge"),
+        HISTOGRAM("histogram");
+
+        private final String exposition;
+
+        Type(String exposition) {
+            this.exposition = exposition;
+        }
+
+        public String getExposition() {
+            return exposition;
+        }
+    }
+
+    private final String name;
+    private final String help;
+    private final Type type;
+    private final List<String> labelNames;
+    private final Supplier<T> factory;
+    private final Map<List<String>, T> children = new ConcurrentHashMap<>();
+
+    MetricFamily(String name, String help, Type type, List<String> labelNames, Supplier<T> factory) {
+        this.name = name;
+        this.help = help;
+        this.type = type;
+        this.labelNames = labelNames;
+        this.factory = factory;
+    }
+
+    /**
+     * Returns the child for the given label values, creating it on first use.
+     * Callers on hot paths should look children up once and keep the reference.
+     */
+    public T labels(String... values) {
+        if (values.length != labelNames.size()) {
+            throw new IllegalArgumentException("Metric " + name + " expects labels " + labelNames);
+        }
+        return children.computeIfAbsent(Arrays.asList(values.clone()), k -> factory.get());
+    }
+
+    /**
+     * Removes the child for the given label values, e.g. when a partition goes away.
+     */
+    public void remove(String... values) {
+        children.remove(Arrays.asList(values));
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getHelp() {
+        return help;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public List<String> getLabelNames() {
+        return labelNames;
+    }
+
+    Map<List<String>, T> getChildren() {
+        return children;
+    }
+}
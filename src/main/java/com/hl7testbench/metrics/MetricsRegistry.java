@@ -0,0 +1,119 @@
+package com.hl7testbench.metrics;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.Supplier;
+
+/**
+ * Registry of metric families with Prometheus text exposition.
+ * A process-wide default instance is shared by the transports and the metrics endpoint.
+ */
+public class MetricsRegistry {
+
+    /**
+     * Bucket boundaries (in the histogram's unit) exposed to Prometheus.
+     * Internally histograms keep much finer buckets.
+     */
+    private static final long[] EXPOSED_BUCKETS = {
+            1, 2, 5, 10, 25, 50, 100, 250, 500, 1000, 2500, 5000, 10000, 30000, 60000
+    };
+
+    private static final MetricsRegistry DEFAULT_INSTANCE = new MetricsRegistry();
+
+    private final Map<String, MetricFamily<?>> families = new ConcurrentSkipListMap<>();
+
+    /**
+     * Returns the default registry instance.
+     */
+    public static MetricsRegistry getDefault() {
+        return DEFAULT_INSTANCE;
+    }
+
+    public MetricFamily<Counter> counter(String name, String help, String... labelNames) {
+        return register(name, help, MetricFamily.Type.COUNTER, labelNames, Counter::new);
+    }
+
+    public MetricFamily<Gauge> gauge(String name, String help, String... labelNames) {
+        return register(name, help, MetricFamily.Type.GAUGE, labelNames, Gauge::new);
+    }
+
+    public MetricFamily<LatencyHistogram> histogram(String name, String help, String... labelNames) {
+        return register(name, help, MetricFamily.Type.HISTOGRAM, labelNames, LatencyHistogram::new);
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> MetricFamily<T> register(String name, String help, MetricFamily.Type type,
+                                         String[] labelNames, Supplier<T> factory) {
+        MetricFamily<?> family = families.computeIfAbsent(name,
+                k -> new MetricFamily<>(name, help, type, List.of(labelNames), factory));
+        if (family.getType() != type) {
+            throw new IllegalStateException("Metric " + name + " already registered as " + family.getType());
+        }
+        return (MetricFamily<T>) family;
+    }
+
+    /**
+     * Renders all metrics in the Prometheus text exposition format (version 0.0.4).
+     */
+    public String toPrometheusText() {
+        StringBuilder sb = new StringBuilder(4096);
+        for (MetricFamily<?> family : families.values()) {
+            sb.append("# HELP ").append(family.getName()).append(' ').append(family.getHelp()).append('\n');
+            sb.append("# TYPE ").append(family.getName()).append(' ')
+                    .append(family.getType().getExposition()).append('\n');
+
+            for (Map.Entry<List<String>, ?> child : family.getChildren().entrySet()) {
+                String labels = formatLabels(family.getLabelNames(), child.getKey(), null);
+                Object metric = child.getValue();
+                if (metric instanceof Counter counter) {
+                    appendSample(sb, family.getName(), labels, counter.get());
+                } else if (metric instanceof Gauge gauge) {
+                    appendSample(sb, family.getName(), labels, gauge.get());
+                } else if (metric instanceof LatencyHistogram histogram) {
+                    appendHistogram(sb, family, child.getKey(), histogram.snapshot());
+                }
+            }
+        }
+        return sb.toString();
+    }
+
+    private void appendHistogram(StringBuilder sb, MetricFamily<?> family, List<String> labelValues,
+                                 HistogramSnapshot snapshot) {
+        String bucketName = family.getName() + "_bucket";
+        for (long bound : EXPOSED_BUCKETS) {
+            String labels = formatLabels(family.getLabelNames(), labelValues, Long.toString(bound));
+            appendSample(sb, bucketName, labels, snapshot.countAtOrBelow(bound));
+        }
+        appendSample(sb, bucketName, formatLabels(family.getLabelNames(), labelValues, "+Inf"), snapshot.count());
+
+        String labels = formatLabels(family.getLabelNames(), labelValues, null);
+        appendSample(sb, family.getName() + "_sum", labels, snapshot.sum());
+        appendSample(sb, family.getName() + "_count", labels, snapshot.count());
+    }
+
+    private void appendSample(StringBuilder sb, String name, String labels, long value) {
+        sb.append(name).append(labels).append(' ').append(value).append('\n');
+    }
+
+    private String formatLabels(List<String> names, List<String> values, String le) {
+        if (names.isEmpty() && le == null) {
+            return "";
+        }
+        StringBuilder sb = new StringBuilder("{");
+        for (int i = 0; i < names.size(); i++) {
+            if (i > 0) sb.append(',');
+            sb.append(names.get(i)).append("=\"").append(escapeLabelValue(values.get(i))).append('"');
+        }
+        if (le != null) {
+            if (!names.isEmpty()) sb.append(',');
+            sb.append("le=\"").append(le).append('"');
+        }
+        return sb.append('}').toString();
+    }
+
+    private String escapeLabelValue(String value) {
+        if (value == null) return "";
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+}
@@ -0,0 +1,84 @@
+package com.hl7testbench.metrics;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Local HTTP endpoint serving a {@link MetricsRegistry} at {@code /metrics}
+ * in Prometheus text format. Binds to the loopback interface unless a
+ * different address is given.
+ */
+public class MetricsServer {
+
+    private static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+    private final MetricsRegistry registry;
+    private final InetSocketAddress address;
+    private HttpServer server;
+    private ExecutorService executor;
+
+    public MetricsServer(MetricsRegistry registry, int port) {
+        this(registry, new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+    }
+
+    public MetricsServer(MetricsRegistry registry, InetSocketAddress address) {
+        this.registry = registry;
+        this.address = address;
+    }
+
+    /**
+     * Starts serving; scrapes are handled on a single daemon thread.
+     */
+    public synchronized void start() throws IOException {
+        if (server != null) {
+            return;
+        }
+        server = HttpServer.create(address, 0);
+        executor = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "metrics-server");
+            t.setDaemon(true);
+            return t;
+        });
+        server.setExecutor(executor);
+        server.createContext("/metrics", this::handleMetrics);
+        server.start();
+    }
+
+    public synchronized void stop() {
+        if (server != null) {
+            server.stop(0);
+            executor.shutdownNow();
+            server = null;
+        }
+    }
+
+    /**
+     * Returns the bound port, which differs from the requested one when port 0 was used.
+     */
+    public synchronized int getPort() {
+        return server != null ? server.getAddress().getPort() : address.getPort();
+    }
+
+    private void handleMetrics(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            if (!"GET".equalsIgnoreCase(exchange.getRequestMethod())) {
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+            byte[] body = registry.toPrometheusText().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", CONTENT_TYPE);
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package com.hl7testbench.metrics;
+
+import com.hl7testbench.model.ConnectionConfig.TransportMode;
+import com.hl7testbench.model.TransportResult;
+import com.hl7testbench.model.TransportResult.TransportStatus;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Standard send-path metrics: results by transport and status, in-flight
+ * sends and round-trip latency. Children are resolved once up front so
+ * recording a result is a few array lookups and {@code LongAdder} updates.
+ *
+ * <p>The time from JVM start to the first completed send is kept as
+ * {@code hl7_first_send_ms}, and printed with
+ * {@code -Dhl7testbench.startup.timing=true}, to track launch cost.</p>
+ */
+public class TransportMetrics {
+
+    private static final TransportMetrics DEFAULT_INSTANCE = new TransportMetrics(MetricsRegistry.getDefault());
+
+    private final Counter[][] results;
+    private final Gauge[] inFlight;
+    private final LatencyHistogram[] roundTrip;
+    private final Gauge firstSend;
+    private final AtomicBoolean firstSendRecorded = new AtomicBoolean();
+
+    public TransportMetrics(MetricsRegistry registry) {
+        MetricFamily<Counter> resultFamily = registry.counter("hl7_messages_total",
+                "Messages sent, by transport and result status", "transport", "status");
+        MetricFamily<Gauge> inFlightFamily = registry.gauge("hl7_in_flight",
+                "Messages currently awaiting a response", "transport");
+        MetricFamily<LatencyHistogram> rttFamily = registry.histogram("hl7_round_trip_ms",
+                "Round-trip time from connect to response in milliseconds", "transport");
+
+        firstSend = registry.gauge("hl7_first_send_ms",
+                "Milliseconds from JVM start to the first completed send").labels();
+
+        TransportMode[] modes = TransportMode.values();
+        TransportStatus[] statuses = TransportStatus.values();
+        results = new Counter[modes.length][statuses.length];
+        inFlight = new Gauge[modes.length];
+        roundTrip = new LatencyHistogram[modes.length];
+
+        for (TransportMode mode : modes) {
+            String transport = mode.name();
+            for (TransportStatus status : statuses) {
+                results[mode.ordinal()][status.ordinal()] = resultFamily.labels(transport, status.name());
+            }
+            inFlight[mode.ordinal()] = inFlightFamily.labels(transport);
+            roundTrip[mode.ordinal()] = rttFamily.labels(transport);
+        }
+    }
+
+    /**
+     * Returns the instance registered with the default registry.
+     */
+    public static TransportMetrics getDefault() {
+        return DEFAULT_INSTANCE;
+    }
+
+    public void sendStarted(TransportMode mode) {
+        inFlight[mode.ordinal()].increment();
+    }
+
+    public void sendCompleted(TransportMode mode, TransportResult result) {
+        inFlight[mode.ordinal()].decrement();
+        results[mode.ordinal()][result.status().ordinal()].increment();
+        roundTrip[mode.ordinal()].record(result.roundTripTimeMs());
+        if (!firstSendRecorded.get() && firstSendRecorded.compareAndSet(false, true)) {
+            recordFirstSend(mode);
+        }
+    }
+
+    private void recordFirstSend(TransportMode mode) {
+        long millis = System.currentTimeMillis() - ManagementFactory.getRuntimeMXBean().getStartTime();
+        firstSend.set(millis);
+        if (Boolean.getBoolean("hl7testbench.startup.timing")) {
+            System.out.println("First " + mode + " send completed " + millis + " ms after JVM start");
+        }
+    }
+}
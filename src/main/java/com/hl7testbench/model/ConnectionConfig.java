@@ -1,10 +1,13 @@
 package com.hl7testbench.model;
 
 import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * Immutable configuration for connection settings.
- * Supports both MLLP (TCP) and HTTP transport modes.
+ * Supports both MLLP (TCP) and HTTP transport modes, optionally with an
+ * {@link EndpointGroup} of further endpoints sharing the load.
  */
 public record ConnectionConfig(
         TransportMode mode,
@@ -14,9 +17,18 @@ public record ConnectionConfig(
         boolean useTls,
         File keystoreFile,
         char[] keystorePassword,
-        int timeoutMs
+        int timeoutMs,
+        EndpointGroup endpointGroup
 ) {
 
+    /**
+     * Creates a configuration for a single endpoint.
+     */
+    public ConnectionConfig(TransportMode mode, String host, int port, String httpUrl, boolean useTls,
+                            File keystoreFile, char[] keystorePassword, int timeoutMs) {
+        this(mode, host, port, httpUrl, useTls, keystoreFile, keystorePassword, timeoutMs, null);
+    }
+
     /**
      * Transport mode enumeration.
      */
@@ -77,6 +89,75 @@ public record ConnectionConfig(
      */
     public ConnectionConfig withTimeout(int newTimeoutMs) {
         return new ConnectionConfig(mode, host, port, httpUrl, useTls,
-                keystoreFile, keystorePassword, newTimeoutMs);
+                keystoreFile, keystorePassword, newTimeoutMs, endpointGroup);
+    }
+
+    public boolean hasEndpointGroup() {
+        return endpointGroup != null && !endpointGroup.endpoints().isEmpty();
+    }
+
+    /**
+     * Returns one single-endpoint configuration per member: this endpoint
+     * first, then each group endpoint, all sharing TLS and timeout settings.
+     * MLLP endpoints are {@code host}, {@code host:port} or, for IPv6,
+     * {@code [address]:port}. A malformed endpoint, including an IPv6
+     * address without brackets, yields port 0, which fails validation.
+     */
+    public List<ConnectionConfig> members() {
+        List<ConnectionConfig> members = new ArrayList<>();
+        members.add(new ConnectionConfig(mode, host, port, httpUrl, useTls,
+                keystoreFile, keystorePassword, timeoutMs));
+        if (hasEndpointGroup()) {
+            for (String endpoint : endpointGroup.endpoints()) {
+                if (mode == TransportMode.HTTP) {
+                    members.add(new ConnectionConfig(mode, host, port, endpoint, useTls,
+                            keystoreFile, keystorePassword, timeoutMs));
+                } else {
+                    members.add(mllpMember(endpoint));
+                }
+            }
+        }
+        return members;
+    }
+
+    private ConnectionConfig mllpMember(String endpoint) {
+        String memberHost = endpoint;
+        String portText = null;
+        boolean malformed = false;
+        if (endpoint.startsWith("[")) {
+            int close = endpoint.indexOf(']');
+            if (close < 0) {
+                malformed = true;
+            } else {
+                memberHost = endpoint.substring(1, close);
+                String rest = endpoint.substring(close + 1);
+                if (rest.startsWith(":")) {
+                    portText = rest.substring(1);
+                } else if (!rest.isEmpty()) {
+                    malformed = true;
+                }
+            }
+        } else {
+            int colon = endpoint.indexOf(':');
+            if (colon >= 0 && endpoint.indexOf(':', colon + 1) >= 0) {
+                malformed = true;
+            } else if (colon >= 0) {
+                memberHost = endpoint.substring(0, colon);
+                portText = endpoint.substring(colon + 1);
+            }
+        }
+
+        int memberPort = port;
+        if (malformed) {
+            memberPort = 0;
+        } else if (portText != null) {
+            try {
+                memberPort = Integer.parseInt(portText);
+            } catch (NumberFormatException e) {
+                memberPort = 0;
+            }
+        }
+        return new ConnectionConfig(mode, memberHost, memberPort, httpUrl, useTls,
+                keystoreFile, keystorePassword, timeoutMs);
     }
 }
@@ -0,0 +1,70 @@
+package com.hl7testbench.model;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Additional endpoints that share load with a connection's primary endpoint,
+ * e.g. the other node of an HA pair or the rest of an engine pool.
+ *
+ * @param endpoints further members as {@code host:port} for MLLP or URLs for HTTP
+ * @param balancing how sends are spread across the members
+ */
+public record EndpointGroup(List<String> endpoints, Balancing balancing) {
+
+    /**
+     * Load-balancing strategy for an endpoint group.
+     */
+    public enum Balancing {
+        ROUND_ROBIN("Round robin"),
+        LEAST_OUTSTANDING("Least outstanding"),
+        LATENCY_WEIGHTED("Latency weighted");
+
+        private final String displayName;
+
+        Balancing(String displayName) {
+            this.displayName = displayName;
+        }
+
+        public String getDisplayName() {
+            return displayName;
+        }
+
+        @Override
+        public String toString() {
+            return displayName;
+        }
+    }
+
+    public EndpointGroup {
+        endpoints = List.copyOf(endpoints);
+        if (balancing == null) {
+            balancing = Balancing.ROUND_ROBIN;
+        }
+    }
+
+    /**
+     * Parses a comma-, semicolon- or whitespace-separated endpoint list.
+     *
+     * @return the group, or null if the text lists no endpoints
+     */
+    public static EndpointGroup parse(String text, Balancing balancing) {
+        if (text == null) {
+            return null;
+        }
+        List<String> endpoints = new ArrayList<>();
+        for (String endpoint : text.split("[,;\\s]+")) {
+            if (!endpoint.isBlank()) {
+                endpoints.add(endpoint.trim());
+            }
+        }
+        return endpoints.isEmpty() ? null : new EndpointGroup(endpoints, balancing);
+    }
+
+    /**
+     * Returns the endpoints in the form accepted by {@link #parse}.
+     */
+    public String toText() {
+        return String.join(", ", endpoints);
+    }
+}
@@ -0,0 +1,48 @@
+package com.hl7testbench.model;
+
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+
+/**
+ * Messages packed into one HL7 batch file (FHS, BHS, messages, BTS, FTS)
+ * so they can be sent to a receiver in a single request.
+ *
+ * @param batchControlId the control ID put in FHS-11 and BHS-11
+ * @param messages the messages in the batch, in sending order
+ */
+public record HL7Batch(String batchControlId, List<HL7Message> messages) {
+
+    private static final DateTimeFormatter HL7_TIMESTAMP = DateTimeFormatter.ofPattern("yyyyMMddHHmmss");
+    private static final String SENDING_APPLICATION = "HL7TestBench";
+
+    public HL7Batch {
+        messages = List.copyOf(messages);
+    }
+
+    /**
+     * Returns the batch file text with CR segment separators.
+     */
+    public String toRawContent() {
+        String timestamp = LocalDateTime.now().format(HL7_TIMESTAMP);
+        String header = "|^~\\&|" + SENDING_APPLICATION + "||||" + timestamp + "||||" + batchControlId + "\r";
+
+        int length = 2 * header.length() + 32;
+        for (HL7Message message : messages) {
+            length += message.getRawContent().length() + 1;
+        }
+        StringBuilder sb = new StringBuilder(length);
+        sb.append("FHS").append(header);
+        sb.append("BHS").append(header);
+        for (HL7Message message : messages) {
+            String content = message.getRawContent();
+            if (content.indexOf('\n') >= 0) {
+                content = content.replace("\r\n", "\r").replace('\n', '\r');
+            }
+            sb.append(content).append('\r');
+        }
+        sb.append("BTS|").append(messages.size()).append('\r');
+        sb.append("FTS|1");
+        return sb.toString();
+    }
+}
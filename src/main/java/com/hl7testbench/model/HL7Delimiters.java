@@ -0,0 +1,217 @@
+package com.hl7testbench.model;
+
+/**
+ * The delimiters of an HL7 v2 message, as declared by MSH-1 (the field
+ * separator) and MSH-2 (component, repetition, escape and subcomponent
+ * characters), with methods to find segments and fields by them.
+ *
+ * <p>Values are returned as they appear in the message; escape sequences
+ * are only resolved by {@link #decode}, which returns its argument as is
+ * when it contains no escape character. Segments may end with CR or LF,
+ * so raw responses do not need to be normalized first.</p>
+ */
+public record HL7Delimiters(char field, char component, char repetition, char escape, char subcomponent) {
+
+    /** The delimiters {@code |^~\&} used by nearly all messages. */
+    public static final HL7Delimiters STANDARD = new HL7Delimiters('|', '^', '~', '\\', '&');
+
+    /**
+     * Reads the delimiters from the first MSH segment of a message. Missing
+     * encoding characters take their standard values; without an MSH
+     * segment the result is {@link #STANDARD}.
+     */
+    public static HL7Delimiters of(String message) {
+        int msh = message == null ? -1 : findSegment(message, "MSH", -1);
+        if (msh < 0 || msh + 3 >= message.length() || isSegmentEnd(message.charAt(msh + 3))) {
+            return STANDARD;
+        }
+        char field = message.charAt(msh + 3);
+        int end = msh + 4;
+        while (end < message.length() && end < msh + 8 && message.charAt(end) != field
+                && !isSegmentEnd(message.charAt(end))) {
+            end++;
+        }
+        int count = end - msh - 4;
+        char component = count > 0 ? message.charAt(msh + 4) : '^';
+        char repetition = count > 1 ? message.charAt(msh + 5) : '~';
+        char escape = count > 2 ? message.charAt(msh + 6) : '\\';
+        char subcomponent = count > 3 ? message.charAt(msh + 7) : '&';
+        if (field == '|' && component == '^' && repetition == '~' && escape == '\\' && subcomponent == '&') {
+            return STANDARD;
+        }
+        return new HL7Delimiters(field, component, repetition, escape, subcomponent);
+    }
+
+    /**
+     * Returns the index of the first segment with the given ID, at the start
+     * of the text or after a CR or LF, or -1 if there is none.
+     *
+     * @param fieldSeparator the character that must follow the ID, or -1 for any
+     */
+    public static int findSegment(String text, String segmentId, int fieldSeparator) {
+        for (int start = text.indexOf(segmentId); start >= 0; start = text.indexOf(segmentId, start + 1)) {
+            int after = start + segmentId.length();
+            if ((start == 0 || isSegmentEnd(text.charAt(start - 1)))
+                    && (fieldSeparator < 0 || (after < text.length() && text.charAt(after) == fieldSeparator))) {
+                return start;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the index of the first segment with the given ID followed by
+     * this field separator, or -1.
+     */
+    public int findSegment(String text, String segmentId) {
+        return findSegment(text, segmentId, field);
+    }
+
+    /**
+     * Returns a field of the segment starting at {@code segmentStart}, or an
+     * empty string if the segment is shorter. Fields are numbered as in the
+     * standard: for MSH, field 1 is the field separator itself.
+     */
+    public String field(String text, int segmentStart, int fieldNumber) {
+        if (segmentStart < 0 || fieldNumber < 1) {
+            return "";
+        }
+        boolean msh = text.startsWith("MSH", segmentStart);
+        if (msh && fieldNumber == 1) {
+            return String.valueOf(field);
+        }
+        int end = segmentStart;
+        while (end < text.length() && !isSegmentEnd(text.charAt(end))) {
+            end++;
+        }
+        int separator = segmentStart + 3;
+        for (int i = msh ? 2 : 1; i < fieldNumber && separator < end; i++) {
+            separator = indexOf(text, field, separator + 1, end);
+        }
+        if (separator >= end || text.charAt(separator) != field) {
+            return "";
+        }
+        return text.substring(separator + 1, indexOf(text, field, separator + 1, end));
+    }
+
+    /**
+     * Returns a field of the first segment with the given ID, or an empty
+     * string if the segment or field is absent.
+     */
+    public String field(String text, String segmentId, int fieldNumber) {
+        return field(text, findSegment(text, segmentId), fieldNumber);
+    }
+
+    /**
+     * Returns the given 1-based repetition of a field value, or an empty string.
+     */
+    public String repetition(String value, int number) {
+        return part(value, repetition, number);
+    }
+
+    /**
+     * Returns the given 1-based component of a field value (of its first
+     * repetition if it repeats), or an empty string.
+     */
+    public String component(String value, int number) {
+        return part(repetition(value, 1), component, number);
+    }
+
+    /**
+     * Returns the given 1-based subcomponent of a component, or an empty string.
+     */
+    public String subcomponent(String component, int number) {
+        return part(component, subcomponent, number);
+    }
+
+    /**
+     * Resolves the escape sequences of a value: {@code \F\}, {@code \S\},
+     * {@code \T\}, {@code \R\} and {@code \E\} become the delimiters they
+     * stand for and {@code \Xhh...\} the characters with those hexadecimal
+     * codes. Other sequences, such as formatting commands, are kept as they are.
+     */
+    public String decode(String value) {
+        int first = value.indexOf(escape);
+        if (first < 0) {
+            return value;
+        }
+        StringBuilder decoded = new StringBuilder(value.length());
+        decoded.append(value, 0, first);
+        int i = first;
+        while (i < value.length()) {
+            char c = value.charAt(i);
+            int close = c == escape ? value.indexOf(escape, i + 1) : -1;
+            if (close < 0) {
+                decoded.append(c);
+                i++;
+                continue;
+            }
+            if (!appendEscape(decoded, value, i + 1, close)) {
+                decoded.append(value, i, close + 1);
+            }
+            i = close + 1;
+        }
+        return decoded.toString();
+    }
+
+    private boolean appendEscape(StringBuilder decoded, String value, int start, int end) {
+        if (end - start == 1) {
+            char delimiter = switch (value.charAt(start)) {
+                case 'F' -> field;
+                case 'S' -> component;
+                case 'T' -> subcomponent;
+                case 'R' -> repetition;
+                case 'E' -> escape;
+                default -> 0;
+            };
+            if (delimiter != 0) {
+                decoded.append(delimiter);
+                return true;
+            }
+            return false;
+        }
+        if (value.charAt(start) != 'X' || (end - start - 1) % 2 != 0 || end - start < 3) {
+            return false;
+        }
+        int length = decoded.length();
+        for (int i = start + 1; i < end; i += 2) {
+            int high = Character.digit(value.charAt(i), 16);
+            int low = Character.digit(value.charAt(i + 1), 16);
+            if (high < 0 || low < 0) {
+                decoded.setLength(length);
+                return false;
+            }
+            decoded.append((char) (high << 4 | low));
+        }
+        return true;
+    }
+
+    private static String part(String value, char separator, int number) {
+        if (number < 1) {
+            return "";
+        }
+        int start = 0;
+        for (int i = 1; i < number; i++) {
+            int next = value.indexOf(separator, start);
+            if (next < 0) {
+                return "";
+            }
+            start = next + 1;
+        }
+        int end = value.indexOf(separator, start);
+        return start == 0 && end < 0 ? value : value.substring(start, end < 0 ? value.length() : end);
+    }
+
+    private static int indexOf(String text, char c, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (text.charAt(i) == c) {
+                return i;
+            }
+        }
+        return to;
+    }
+
+    private static boolean isSegmentEnd(char c) {
+        return c == '\r' || c == '\n';
+    }
+}
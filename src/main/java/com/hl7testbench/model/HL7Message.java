@@ -1,38 +1,39 @@
 package com.hl7testbench.model;
 
 import java.util.Objects;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 /**
- * Represents a parsed HL7 v2 message with extracted metadata.
- * Provides methods for extracting key fields from MSH segment.
+ * Represents an HL7 v2 message with metadata extracted from its MSH segment.
+ * The MSH segment is only parsed when one of its fields is first requested,
+ * using the delimiters the message declares in MSH-1 and MSH-2.
  */
 public class HL7Message {
 
-    private static final Pattern MSH_PATTERN = Pattern.compile("^MSH\\|([^|]*)\\|", Pattern.MULTILINE);
-    private static final char DEFAULT_FIELD_SEPARATOR = '|';
-
     private final String rawContent;
-    private final String messageControlId;
-    private final String messageType;
-    private final String triggerEvent;
-    private final String sendingApplication;
-    private final String sendingFacility;
+    private volatile HL7Delimiters delimiters;
+    private volatile Header header;
+
+    /**
+     * MSH fields extracted on first access, so that messages created in bulk
+     * (e.g. from a large file) cost nothing until a summary is displayed.
+     */
+    private record Header(
+            String messageControlId,
+            String messageType,
+            String triggerEvent,
+            String sendingApplication,
+            String sendingFacility
+    ) {
+    }
 
     /**
-     * Constructs an HL7Message by parsing raw HL7 content.
+     * Constructs an HL7Message from raw HL7 content.
+     * MSH fields are parsed lazily on first access.
      *
      * @param rawContent the raw HL7 message string
      */
     public HL7Message(String rawContent) {
         this.rawContent = normalizeLineEndings(rawContent);
-        this.messageControlId = extractField(9);
-        String[] msgTypeParts = extractField(8).split("\\^");
-        this.messageType = msgTypeParts.length > 0 ? msgTypeParts[0] : "UNKNOWN";
-        this.triggerEvent = msgTypeParts.length > 1 ? msgTypeParts[1] : "";
-        this.sendingApplication = extractField(2);
-        this.sendingFacility = extractField(3);
     }
 
     /**
@@ -43,25 +44,35 @@ public class HL7Message {
         return content.replace("\r\n", "\r").replace("\n", "\r");
     }
 
+    private Header header() {
+        Header h = header;
+        if (h == null) {
+            HL7Delimiters d = getDelimiters();
+            int msh = d.findSegment(rawContent, "MSH");
+            String messageType = d.field(rawContent, msh, 9);
+            h = new Header(
+                    d.field(rawContent, msh, 10),
+                    d.component(messageType, 1),
+                    d.component(messageType, 2),
+                    d.field(rawContent, msh, 3),
+                    d.field(rawContent, msh, 4)
+            );
+            header = h;
+        }
+        return h;
+    }
+
     /**
-     * Extracts a field from the MSH segment by 1-based index.
-     * Note: MSH-1 is the field separator itself, MSH-2 starts the actual fields.
+     * Returns the delimiters declared by the message's MSH segment, read
+     * once on first use.
      */
-    private String extractField(int fieldIndex) {
-        try {
-            String[] segments = rawContent.split("\r");
-            for (String segment : segments) {
-                if (segment.startsWith("MSH")) {
-                    String[] fields = segment.split("\\|", -1);
-                    if (fieldIndex < fields.length) {
-                        return fields[fieldIndex];
-                    }
-                }
-            }
-        } catch (Exception e) {
-            // Return empty on parse failure
+    public HL7Delimiters getDelimiters() {
+        HL7Delimiters d = delimiters;
+        if (d == null) {
+            d = HL7Delimiters.of(rawContent);
+            delimiters = d;
         }
-        return "";
+        return d;
     }
 
     public String getRawContent() {
@@ -69,37 +80,65 @@ public class HL7Message {
     }
 
     public String getMessageControlId() {
-        return messageControlId;
+        return header().messageControlId();
     }
 
     public String getMessageType() {
-        return messageType;
+        return header().messageType();
     }
 
     public String getTriggerEvent() {
-        return triggerEvent;
+        return header().triggerEvent();
     }
 
     public String getFullMessageType() {
-        if (triggerEvent.isEmpty()) {
-            return messageType;
+        Header h = header();
+        if (h.triggerEvent().isEmpty()) {
+            return h.messageType();
         }
-        return messageType + "^" + triggerEvent;
+        return h.messageType() + "^" + h.triggerEvent();
     }
 
     public String getSendingApplication() {
-        return sendingApplication;
+        return header().sendingApplication();
     }
 
     public String getSendingFacility() {
-        return sendingFacility;
+        return header().sendingFacility();
+    }
+
+    /**
+     * Returns a field of the first segment with the given ID, or an empty
+     * string if the segment or field is absent. Fields are numbered as in the
+     * standard, e.g. ("PID", 3) for PID-3; for MSH, field 1 is the separator itself.
+     * The value is returned as it appears in the message, with its
+     * components, repetitions and escape sequences.
+     *
+     * @param segmentId the three-character segment ID
+     * @param fieldNumber the 1-based field number
+     */
+    public String getField(String segmentId, int fieldNumber) {
+        return getDelimiters().field(rawContent, segmentId, fieldNumber);
+    }
+
+    /**
+     * Returns a component of the first repetition of a field with its escape
+     * sequences resolved, or an empty string if it is absent.
+     *
+     * @param segmentId the three-character segment ID
+     * @param fieldNumber the 1-based field number
+     * @param componentNumber the 1-based component number
+     */
+    public String getComponent(String segmentId, int fieldNumber, int componentNumber) {
+        HL7Delimiters d = getDelimiters();
+        return d.decode(d.component(getField(segmentId, fieldNumber), componentNumber));
     }
 
     /**
      * Returns a display-friendly summary of this message.
      */
     public String getDisplaySummary() {
-        return String.format("%s - %s", getFullMessageType(), messageControlId);
+        return String.format("%s - %s", getFullMessageType(), getMessageControlId());
     }
 
     @Override
@@ -0,0 +1,70 @@
+package com.hl7testbench.model;
+
+import com.hl7testbench.model.ConnectionConfig.TransportMode;
+import com.hl7testbench.model.TransportResult.TransportStatus;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+
+/**
+ * Immutable audit record of one send, as written to the persistent history log.
+ * Unlike {@link TransportResult} it also captures what was sent and where.
+ */
+public record HistoryRecord(
+        long timestampMillis,
+        String messageControlId,
+        String messageType,
+        TransportMode transportMode,
+        String target,
+        TransportStatus status,
+        long roundTripTimeMs,
+        String rawResponse,
+        String errorMessage
+) {
+
+    /**
+     * Creates a record from a transport result and the message and connection it was sent with.
+     */
+    public static HistoryRecord of(HL7Message message, ConnectionConfig config, TransportResult result) {
+        return new HistoryRecord(
+                result.timestamp().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli(),
+                result.messageControlId(),
+                message != null ? message.getFullMessageType() : "",
+                result.transportMode(),
+                describeTarget(config),
+                result.status(),
+                result.roundTripTimeMs(),
+                result.rawResponse(),
+                result.errorMessage()
+        );
+    }
+
+    /**
+     * Returns the destination of a configuration as host:port or URL,
+     * followed by "(+N)" when an endpoint group adds N more members.
+     */
+    public static String describeTarget(ConnectionConfig config) {
+        String target = config.mode() == TransportMode.HTTP
+                ? config.httpUrl()
+                : config.host() + ":" + config.port();
+        return config.hasEndpointGroup()
+                ? target + " (+" + config.endpointGroup().endpoints().size() + ")"
+                : target;
+    }
+
+    /**
+     * Converts this record back into a transport result for display.
+     */
+    public TransportResult toTransportResult() {
+        return new TransportResult(
+                LocalDateTime.ofInstant(Instant.ofEpochMilli(timestampMillis), ZoneId.systemDefault()),
+                messageControlId,
+                transportMode,
+                status,
+                rawResponse != null ? rawResponse : "",
+                roundTripTimeMs,
+                errorMessage
+        );
+    }
+}
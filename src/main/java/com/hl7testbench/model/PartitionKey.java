@@ -0,0 +1,52 @@
+package com.hl7testbench.model;
+
+/**
+ * Identifies the message field used to group messages for ordered delivery,
+ * written as {@code SEG-n} or {@code SEG-n.c}, e.g. {@code PID-3} or {@code MSH-4.1}.
+ * Only the first repetition of a repeating field is used.
+ */
+public record PartitionKey(String segmentId, int field, int component) {
+
+    public PartitionKey {
+        if (segmentId == null || segmentId.length() != 3 || field < 1 || component < 0) {
+            throw new IllegalArgumentException("Invalid partition key: " + segmentId + "-" + field);
+        }
+    }
+
+    /**
+     * Parses a key such as {@code PID-3} or {@code PID-3.1}.
+     *
+     * @throws IllegalArgumentException if the text is not in {@code SEG-n[.c]} form
+     */
+    public static PartitionKey parse(String text) {
+        String trimmed = text == null ? "" : text.trim().toUpperCase();
+        int dash = trimmed.indexOf('-');
+        if (dash != 3) {
+            throw new IllegalArgumentException("Expected SEG-n or SEG-n.c, got: " + text);
+        }
+        String position = trimmed.substring(dash + 1);
+        int dot = position.indexOf('.');
+        try {
+            int field = Integer.parseInt(dot < 0 ? position : position.substring(0, dot));
+            int component = dot < 0 ? 0 : Integer.parseInt(position.substring(dot + 1));
+            return new PartitionKey(trimmed.substring(0, dash), field, component);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Expected SEG-n or SEG-n.c, got: " + text);
+        }
+    }
+
+    /**
+     * Extracts this key's value from a message; messages without the field
+     * share the empty key.
+     */
+    public String valueOf(HL7Message message) {
+        String value = message.getField(segmentId, field);
+        HL7Delimiters delimiters = message.getDelimiters();
+        return component > 0 ? delimiters.component(value, component) : delimiters.repetition(value, 1);
+    }
+
+    @Override
+    public String toString() {
+        return segmentId + "-" + field + (component > 0 ? "." + component : "");
+    }
+}
@@ -0,0 +1,141 @@
+package com.hl7testbench.model;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A load test made of consecutive stages, each with its own target rate,
+ * concurrency, message source and endpoint.
+ *
+ * @param name the scenario name, used in reports
+ * @param stages the stages, run in order
+ */
+public record Scenario(String name, List<Stage> stages) {
+
+    public Scenario {
+        stages = List.copyOf(stages);
+        if (stages.isEmpty()) {
+            throw new IllegalArgumentException("A scenario needs at least one stage");
+        }
+    }
+
+    /**
+     * One stage of a scenario. The send rate moves linearly from
+     * {@code startRate} to {@code endRate} over the stage, so a ramp is a
+     * stage with different rates and a plateau or soak one with equal rates.
+     *
+     * @param name the stage name, used as the {@code stage} metric label
+     * @param durationMs how long the stage lasts
+     * @param startRate messages per second at the start of the stage
+     * @param endRate messages per second at the end of the stage
+     * @param concurrency the most sends in flight at once
+     * @param spike periodic bursts on top of the stage's rate, or null
+     * @param source where the stage's messages come from
+     * @param target the endpoint the stage sends to
+     */
+    public record Stage(String name, long durationMs, double startRate, double endRate, int concurrency,
+                        Spike spike, Source source, ConnectionConfig target) {
+
+        public Stage {
+            if (durationMs <= 0) {
+                throw new IllegalArgumentException("Stage " + name + " needs a positive duration");
+            }
+            if (startRate < 0 || endRate < 0) {
+                throw new IllegalArgumentException("Stage " + name + " has a negative rate");
+            }
+            if (concurrency < 1) {
+                throw new IllegalArgumentException("Stage " + name + " needs a concurrency of at least 1");
+            }
+        }
+
+        /**
+         * Returns the target rate in messages per second at a point in the stage.
+         */
+        public double rateAt(double elapsedMs) {
+            double fraction = Math.min(1.0, Math.max(0.0, elapsedMs / durationMs));
+            double rate = startRate + (endRate - startRate) * fraction;
+            if (spike != null && spike.isActive(elapsedMs)) {
+                rate = Math.max(rate, spike.rate());
+            }
+            return rate;
+        }
+    }
+
+    /**
+     * Bursts repeated through a stage: every {@code everyMs}, starting
+     * {@code everyMs} into the stage, the rate rises to {@code rate} for
+     * {@code durationMs}.
+     */
+    public record Spike(long everyMs, long durationMs, double rate) {
+
+        public Spike {
+            if (everyMs <= 0 || durationMs <= 0 || durationMs > everyMs || rate < 0) {
+                throw new IllegalArgumentException("Invalid spike settings");
+            }
+        }
+
+        boolean isActive(double elapsedMs) {
+            return elapsedMs >= everyMs && elapsedMs % everyMs < durationMs;
+        }
+    }
+
+    /**
+     * The messages a stage sends: those in a file, cycled through in order,
+     * or a template in which {@code ${seq}}, {@code ${controlId}} and
+     * {@code ${timestamp}} are filled in for every message.
+     *
+     * @param file an HL7 file, or null
+     * @param template message text, or null
+     */
+    public record Source(Path file, String template) {
+
+        public Source {
+            if ((file == null) == (template == null)) {
+                throw new IllegalArgumentException("A message source needs either a file or a template");
+            }
+        }
+    }
+
+    /**
+     * Returns one worker's share of this scenario when it is split across
+     * several processes: every rate divided by the number of workers and
+     * the concurrency divided rounding up.
+     */
+    public Scenario share(int workers) {
+        if (workers <= 1) {
+            return this;
+        }
+        List<Stage> shares = new ArrayList<>();
+        for (Stage stage : stages) {
+            Spike spike = stage.spike() == null ? null
+                    : new Spike(stage.spike().everyMs(), stage.spike().durationMs(), stage.spike().rate() / workers);
+            shares.add(new Stage(stage.name(), stage.durationMs(), stage.startRate() / workers,
+                    stage.endRate() / workers, (stage.concurrency() + workers - 1) / workers,
+                    spike, stage.source(), stage.target()));
+        }
+        return new Scenario(name, shares);
+    }
+
+    /**
+     * Returns the highest concurrency of any stage.
+     */
+    public int maxConcurrency() {
+        int max = 1;
+        for (Stage stage : stages) {
+            max = Math.max(max, stage.concurrency());
+        }
+        return max;
+    }
+
+    /**
+     * Returns the planned length of the whole scenario.
+     */
+    public long totalDurationMs() {
+        long total = 0;
+        for (Stage stage : stages) {
+            total += stage.durationMs();
+        }
+        return total;
+    }
+}
@@ -1,11 +1,15 @@
 package com.hl7testbench.model;
 
+import com.hl7testbench.telemetry.AckParseEvent;
+import com.hl7testbench.telemetry.Telemetry;
+
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 
 /**
  * Immutable result of a message transport operation.
- * Contains response data, timing, and status information.
+ * Contains response data, timing, and status information, and where the
+ * transport measured them, how long each phase of the send took.
  */
 public record TransportResult(
         LocalDateTime timestamp,
@@ -14,9 +18,28 @@ public record TransportResult(
         TransportStatus status,
         String rawResponse,
         long roundTripTimeMs,
-        String errorMessage
+        String errorMessage,
+        Phases phases
 ) {
 
+    /**
+     * Creates a result without phase timings.
+     */
+    public TransportResult(LocalDateTime timestamp, String messageControlId,
+                           ConnectionConfig.TransportMode transportMode, TransportStatus status,
+                           String rawResponse, long roundTripTimeMs, String errorMessage) {
+        this(timestamp, messageControlId, transportMode, status, rawResponse, roundTripTimeMs, errorMessage, null);
+    }
+
+    /**
+     * Time spent in each phase of a send, in nanoseconds. The connect phase
+     * is zero on a reused MLLP connection; for HTTP it lasts until the
+     * client starts taking the request body, so it includes sending the
+     * request headers.
+     */
+    public record Phases(long connectNanos, long writeNanos, long readNanos) {
+    }
+
     private static final DateTimeFormatter TIMESTAMP_FORMAT =
             DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss.SSS");
 
@@ -30,7 +53,8 @@ public record TransportResult(
         TIMEOUT("Timeout", false),
         CONNECTION_ERROR("Connection Error", false),
         UNKNOWN_RESPONSE("Unknown Response", false),
-        SUCCESS("Success", true);
+        SUCCESS("Success", true),
+        CIRCUIT_OPEN("Circuit Open", false);
 
         private final String displayName;
         private final boolean successful;
@@ -75,6 +99,47 @@ public record TransportResult(
         );
     }
 
+    /**
+     * Creates a successful result whose ACK code was already found, e.g.
+     * while the response was being streamed, so the body is not parsed again.
+     *
+     * @param ackCode the MSA-1 code, or null if the response had none
+     */
+    public static TransportResult success(
+            String messageControlId,
+            ConnectionConfig.TransportMode mode,
+            String rawResponse,
+            long roundTripTimeMs,
+            String ackCode
+    ) {
+        return new TransportResult(
+                LocalDateTime.now(),
+                messageControlId,
+                mode,
+                statusForAckCode(ackCode),
+                rawResponse,
+                roundTripTimeMs,
+                null
+        );
+    }
+
+    /**
+     * Returns a copy of this result for another message, e.g. one of the
+     * messages in a batch that was sent as a whole.
+     */
+    public TransportResult forMessage(String messageControlId) {
+        return new TransportResult(timestamp, messageControlId, transportMode, status,
+                rawResponse, roundTripTimeMs, errorMessage, phases);
+    }
+
+    /**
+     * Returns a copy of this result with the given phase timings.
+     */
+    public TransportResult withPhases(Phases phases) {
+        return new TransportResult(timestamp, messageControlId, transportMode, status,
+                rawResponse, roundTripTimeMs, errorMessage, phases);
+    }
+
     /**
      * Creates an error result from an exception.
      */
@@ -99,36 +164,96 @@ public record TransportResult(
         );
     }
 
+    /**
+     * Creates a result for a message that was not sent because the
+     * endpoint's circuit breaker is open.
+     */
+    public static TransportResult circuitOpen(
+            String messageControlId,
+            ConnectionConfig.TransportMode mode,
+            String reason
+    ) {
+        return new TransportResult(
+                LocalDateTime.now(),
+                messageControlId,
+                mode,
+                TransportStatus.CIRCUIT_OPEN,
+                "",
+                0,
+                reason
+        );
+    }
+
     /**
      * Parses the MSA segment to determine ACK status.
      */
     private static TransportStatus parseAckStatus(String response) {
-        if (response == null || response.isEmpty()) {
+        AckParseEvent event = Telemetry.isRecording() ? new AckParseEvent() : null;
+        if (event != null) {
+            event.begin();
+        }
+
+        String ackCode = null;
+        TransportStatus status = TransportStatus.UNKNOWN_RESPONSE;
+
+        if (response != null && !response.isEmpty()) {
+            ackCode = findAckCode(response);
+            status = statusForAckCode(ackCode);
+        }
+
+        if (event == null) {
+            return status;
+        }
+        event.end();
+        if (event.shouldCommit()) {
+            event.responseLength = response != null ? response.length() : 0;
+            event.ackCode = ackCode;
+            event.status = status.name();
+            event.commit();
+        }
+        return status;
+    }
+
+    /**
+     * Maps an MSA-1 code (original or enhanced mode) to a status.
+     */
+    public static TransportStatus statusForAckCode(String ackCode) {
+        if (ackCode == null) {
             return TransportStatus.UNKNOWN_RESPONSE;
         }
+        return switch (ackCode) {
+            case "AA", "CA" -> TransportStatus.ACK_AA;
+            case "AE", "CE" -> TransportStatus.ACK_AE;
+            case "AR", "CR" -> TransportStatus.ACK_AR;
+            default -> TransportStatus.UNKNOWN_RESPONSE;
+        };
+    }
 
-        String normalized = response.replace("\r\n", "\r").replace("\n", "\r");
-        String[] segments = normalized.split("\r");
-
-        for (String segment : segments) {
-            if (segment.startsWith("MSA|") || segment.startsWith("MSA^")) {
-                String[] fields = segment.split("[|^]", -1);
-                if (fields.length > 1) {
-                    String ackCode = fields[1].trim().toUpperCase();
-                    return switch (ackCode) {
-                        case "AA", "CA" -> TransportStatus.ACK_AA;
-                        case "AE", "CE" -> TransportStatus.ACK_AE;
-                        case "AR", "CR" -> TransportStatus.ACK_AR;
-                        default -> TransportStatus.UNKNOWN_RESPONSE;
-                    };
-                }
-            }
+    /**
+     * Returns the upper-cased MSA-1 acknowledgment code, or null if the
+     * response has no MSA segment.
+     */
+    public static String findAckCode(String response) {
+        if (response == null || response.isEmpty()) {
+            return null;
         }
 
-        return TransportStatus.UNKNOWN_RESPONSE;
+        HL7Delimiters delimiters = HL7Delimiters.of(response);
+        int msa = delimiters.findSegment(response, "MSA");
+        if (msa < 0) {
+            return null;
+        }
+        return delimiters.component(delimiters.field(response, msa, 1), 1).trim().toUpperCase();
     }
 
     public String getFormattedTimestamp() {
+        return formatTimestamp(timestamp);
+    }
+
+    /**
+     * Formats a timestamp the same way results are displayed.
+     */
+    public static String formatTimestamp(LocalDateTime timestamp) {
         return timestamp.format(TIMESTAMP_FORMAT);
     }
 
@@ -0,0 +1,190 @@
+package com.hl7testbench.report;
+
+import com.hl7testbench.controller.ScenarioRunner.StageResult;
+import com.hl7testbench.metrics.HistogramSnapshot;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Renders a {@link RunReport} as a single HTML page with inline styles and
+ * charts, so it can be archived or attached to a ticket and opened anywhere
+ * without network access.
+ */
+public final class HtmlReportWriter {
+
+    private static final int CHART_WIDTH = 480;
+    private static final int CHART_HEIGHT = 60;
+
+    private HtmlReportWriter() {
+    }
+
+    /**
+     * Writes the report as HTML.
+     */
+    public static void write(RunReport report, Path path) throws IOException {
+        Files.writeString(path, render(report), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Returns the report as an HTML page.
+     */
+    public static String render(RunReport report) {
+        StringBuilder html = new StringBuilder(16 * 1024);
+        String title = "HL7 Test Bench run: " + report.scenario();
+        html.append("<!DOCTYPE html>\n<html lang=\"en\">\n<head>\n<meta charset=\"UTF-8\">\n<title>")
+                .append(escape(title)).append("</title>\n<style>\n")
+                .append("body{font-family:Segoe UI,Helvetica,Arial,sans-serif;margin:24px;color:#222}\n")
+                .append("h1{font-size:20px}h2{font-size:16px;margin-top:28px}\n")
+                .append("table{border-collapse:collapse;margin:8px 0}\n")
+                .append("th,td{border:1px solid #ccc;padding:4px 8px;font-size:13px}\n")
+                .append("th{background:#f0f0f0;text-align:left}td.n{text-align:right;font-family:monospace}\n")
+                .append(".ok{color:#1a7f37}.bad{color:#c62828}svg{background:#fafafa;border:1px solid #ddd}\n")
+                .append("</style>\n</head>\n<body>\n");
+
+        html.append("<h1>").append(escape(title)).append("</h1>\n");
+        HistogramSnapshot total = report.totalLatency();
+        long failed = report.totalSent() - report.totalSuccessful();
+        html.append("<table>\n");
+        row(html, "Started", report.startedAt().toString());
+        row(html, "Duration", formatDuration(Duration.between(report.startedAt(), report.finishedAt())));
+        row(html, "Messages sent", Long.toString(report.totalSent()));
+        html.append("<tr><th>Failed</th><td class=\"").append(failed == 0 ? "ok" : "bad").append("\">")
+                .append(failed).append("</td></tr>\n");
+        row(html, "Latency p50 / p99 / max",
+                total.percentile(50) + " / " + total.percentile(99) + " / " + total.max() + " ms");
+        html.append("</table>\n");
+
+        html.append("<h2>Stages</h2>\n<table>\n<tr><th>Stage</th><th>Duration</th><th>Sent</th><th>Failed</th>")
+                .append("<th>Throughput/s</th>");
+        for (double p : RunReport.percentiles()) {
+            html.append("<th>").append(RunReport.percentileKey(p)).append(" ms</th>");
+        }
+        html.append("<th>Max ms</th><th>Lag p99 ms</th></tr>\n");
+        for (StageResult stage : report.stages()) {
+            HistogramSnapshot latency = stage.latencyMs();
+            html.append("<tr><td>").append(escape(stage.name())).append("</td>");
+            cell(html, formatDuration(Duration.ofMillis(stage.durationMs())));
+            cell(html, Long.toString(stage.sent()));
+            cell(html, Long.toString(stage.sent() - stage.successful()));
+            cell(html, String.format(Locale.ROOT, "%.1f", stage.achievedRate()));
+            for (double p : RunReport.percentiles()) {
+                cell(html, Long.toString(latency.percentile(p)));
+            }
+            cell(html, Long.toString(latency.max()));
+            cell(html, Long.toString(stage.lagMs().percentile(99)));
+            html.append("</tr>\n");
+        }
+        html.append("</table>\n");
+
+        for (StageResult stage : report.stages()) {
+            html.append("<h2>Stage ").append(escape(stage.name())).append("</h2>\n");
+            html.append("<div>Results per second</div>\n");
+            appendChart(html, stage.completedPerSecond());
+            html.append("<table>\n<tr><th>Status</th><th>Count</th></tr>\n");
+            stage.statusCounts().forEach((status, count) -> {
+                html.append("<tr><td class=\"").append(status.isSuccessful() ? "ok" : "bad").append("\">")
+                        .append(escape(status.getDisplayName())).append("</td>");
+                cell(html, Long.toString(count));
+                html.append("</tr>\n");
+            });
+            html.append("</table>\n");
+            if (!stage.errors().isEmpty()) {
+                html.append("<table>\n<tr><th>Error</th><th>Count</th></tr>\n");
+                for (Map.Entry<String, Long> error : stage.errors().entrySet()) {
+                    html.append("<tr><td>").append(escape(error.getKey())).append("</td>");
+                    cell(html, Long.toString(error.getValue()));
+                    html.append("</tr>\n");
+                }
+                html.append("</table>\n");
+            }
+        }
+
+        html.append("<h2>Environment</h2>\n<table>\n");
+        report.environment().forEach((key, value) -> row(html, key, String.valueOf(value)));
+        html.append("</table>\n");
+
+        html.append("<h2>Configuration</h2>\n<table>\n");
+        Object stages = report.configuration().get("stages");
+        if (stages instanceof List<?> list) {
+            for (Object stage : list) {
+                if (stage instanceof Map<?, ?> map) {
+                    row(html, String.valueOf(map.get("name")), describe(map));
+                }
+            }
+        }
+        if (report.configuration().get("properties") instanceof Map<?, ?> properties) {
+            properties.forEach((key, value) -> row(html, String.valueOf(key), String.valueOf(value)));
+        }
+        html.append("</table>\n</body>\n</html>\n");
+        return html.toString();
+    }
+
+    /**
+     * Appends a line chart of a per-second series as inline SVG.
+     */
+    private static void appendChart(StringBuilder html, long[] series) {
+        long max = 1;
+        for (long value : series) {
+            max = Math.max(max, value);
+        }
+        html.append("<svg width=\"").append(CHART_WIDTH).append("\" height=\"").append(CHART_HEIGHT)
+                .append("\" viewBox=\"0 0 ").append(CHART_WIDTH).append(' ').append(CHART_HEIGHT)
+                .append("\"><polyline fill=\"none\" stroke=\"#1565c0\" stroke-width=\"1.5\" points=\"");
+        double step = series.length > 1 ? (double) CHART_WIDTH / (series.length - 1) : 0;
+        for (int i = 0; i < series.length; i++) {
+            double y = CHART_HEIGHT - 2 - (CHART_HEIGHT - 4) * (double) series[i] / max;
+            html.append(String.format(Locale.ROOT, "%.1f,%.1f ", i * step, y));
+        }
+        html.append("\"/><text x=\"4\" y=\"12\" font-size=\"10\">max ").append(max).append("</text></svg>\n");
+    }
+
+    private static String describe(Map<?, ?> stage) {
+        StringBuilder text = new StringBuilder();
+        stage.forEach((key, value) -> {
+            if (!"name".equals(key)) {
+                if (!text.isEmpty()) {
+                    text.append(", ");
+                }
+                text.append(key).append('=').append(value);
+            }
+        });
+        return text.toString();
+    }
+
+    private static void row(StringBuilder html, String name, String value) {
+        html.append("<tr><th>").append(escape(name)).append("</th><td>").append(escape(value)).append("</td></tr>\n");
+    }
+
+    private static void cell(StringBuilder html, String value) {
+        html.append("<td class=\"n\">").append(escape(value)).append("</td>");
+    }
+
+    private static String formatDuration(Duration duration) {
+        long seconds = duration.toSeconds();
+        return seconds >= 3600
+                ? String.format(Locale.ROOT, "%dh %02dm %02ds", seconds / 3600, seconds / 60 % 60, seconds % 60)
+                : String.format(Locale.ROOT, "%dm %02ds", seconds / 60, seconds % 60);
+    }
+
+    private static String escape(String text) {
+        StringBuilder escaped = new StringBuilder(text.length());
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            switch (c) {
+                case '<' -> escaped.append("&lt;");
+                case '>' -> escaped.append("&gt;");
+                case '&' -> escaped.append("&amp;");
+                case '"' -> escaped.append("&quot;");
+                default -> escaped.append(c);
+            }
+        }
+        return escaped.toString();
+    }
+}
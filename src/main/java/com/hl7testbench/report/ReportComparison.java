@@ -0,0 +1,179 @@
+package com.hl7testbench.report;
+
+import com.hl7testbench.controller.ScenarioRunner.StageResult;
+import com.hl7testbench.metrics.HistogramSnapshot;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Compares a run report with a baseline, stage by stage, and flags
+ * regressions that are both statistically significant and large enough
+ * to matter.
+ *
+ * <p>For each stage present in both reports:</p>
+ * <ul>
+ *   <li><b>throughput</b>: results per second, tested with Welch's t-test
+ *       on the per-second counts. The last second, which also holds
+ *       responses that arrived after the stage ended, is left out.</li>
+ *   <li><b>latency p50</b>: tested with a Mann-Whitney U test on the
+ *       latency histograms, which picks up a shift of the whole distribution.</li>
+ *   <li><b>latency p99</b>: tested by comparing the share of each run's
+ *       requests slower than the baseline's p99, which picks up a worse tail
+ *       even when the median is unchanged.</li>
+ *   <li><b>error rate</b>: the share of failed results, with a two-proportion test.</li>
+ * </ul>
+ *
+ * <p>A metric is a regression when its p-value is below {@code alpha} and,
+ * except for the error rate, it got worse by more than
+ * {@code thresholdPercent} percent. Requiring both keeps very long runs,
+ * where tiny differences are significant, from failing on noise, and
+ * short noisy runs from failing on a single slow second.</p>
+ */
+public class ReportComparison {
+
+    /**
+     * One compared metric of one stage.
+     *
+     * @param stage the stage name
+     * @param metric what was compared
+     * @param baseline the baseline value
+     * @param current the current value
+     * @param changePercent the relative change, NaN if the baseline is 0
+     * @param pValue the significance test's p-value
+     * @param regression true if this counts as a regression
+     */
+    public record Finding(String stage, String metric, double baseline, double current,
+                          double changePercent, double pValue, boolean regression) {
+    }
+
+    /**
+     * Outcome of a comparison.
+     *
+     * @param findings every compared metric
+     * @param notes stages missing from one side and environment differences worth knowing about
+     */
+    public record Result(List<Finding> findings, List<String> notes) {
+
+        public boolean hasRegression() {
+            return findings.stream().anyMatch(Finding::regression);
+        }
+    }
+
+    private final double alpha;
+    private final double thresholdPercent;
+
+    /**
+     * @param alpha the significance level, e.g. 0.01
+     * @param thresholdPercent the smallest change in percent that counts as a regression
+     */
+    public ReportComparison(double alpha, double thresholdPercent) {
+        this.alpha = alpha;
+        this.thresholdPercent = thresholdPercent;
+    }
+
+    /**
+     * Creates a comparison configured by {@code hl7testbench.compare.alpha}
+     * (0.01) and {@code hl7testbench.compare.threshold} (5 percent).
+     */
+    public static ReportComparison fromSystemProperties() {
+        return new ReportComparison(
+                Double.parseDouble(System.getProperty("hl7testbench.compare.alpha", "0.01")),
+                Double.parseDouble(System.getProperty("hl7testbench.compare.threshold", "5")));
+    }
+
+    public double getAlpha() {
+        return alpha;
+    }
+
+    public double getThresholdPercent() {
+        return thresholdPercent;
+    }
+
+    /**
+     * Compares the current report with the baseline.
+     */
+    public Result compare(RunReport baseline, RunReport current) {
+        List<Finding> findings = new ArrayList<>();
+        List<String> notes = new ArrayList<>();
+
+        for (StageResult base : baseline.stages()) {
+            StageResult now = current.stage(base.name());
+            if (now == null) {
+                notes.add("Stage " + base.name() + " is missing from the current run");
+                continue;
+            }
+            compareStage(base, now, findings);
+        }
+        for (StageResult now : current.stages()) {
+            if (baseline.stage(now.name()) == null) {
+                notes.add("Stage " + now.name() + " is not in the baseline");
+            }
+        }
+        for (String key : List.of("host", "processors", "javaVersion", "vm", "os")) {
+            Object before = baseline.environment().get(key);
+            Object after = current.environment().get(key);
+            if (!Objects.equals(before, after)) {
+                notes.add("Environment differs: " + key + " was " + before + ", now " + after);
+            }
+        }
+        return new Result(findings, notes);
+    }
+
+    private void compareStage(StageResult base, StageResult now, List<Finding> findings) {
+        long[] baseSeries = fullSeconds(base.completedPerSecond());
+        long[] nowSeries = fullSeconds(now.completedPerSecond());
+        double baseRate = Statistics.mean(baseSeries);
+        double nowRate = Statistics.mean(nowSeries);
+        double rateChange = change(baseRate, nowRate);
+        double rateP = Statistics.welchTTest(baseSeries, nowSeries);
+        findings.add(new Finding(base.name(), "throughput (msg/s)", baseRate, nowRate, rateChange, rateP,
+                rateP < alpha && rateChange < -thresholdPercent));
+
+        HistogramSnapshot baseLatency = base.latencyMs();
+        HistogramSnapshot nowLatency = now.latencyMs();
+        double baseP50 = baseLatency.percentile(50);
+        double nowP50 = nowLatency.percentile(50);
+        double p50Change = change(baseP50, nowP50);
+        double shiftP = Statistics.mannWhitney(baseLatency, nowLatency);
+        findings.add(new Finding(base.name(), "latency p50 (ms)", baseP50, nowP50, p50Change, shiftP,
+                shiftP < alpha && p50Change > thresholdPercent));
+
+        long bound = baseLatency.percentile(99);
+        long baseSlow = baseLatency.count() - baseLatency.countAtOrBelow(bound);
+        long nowSlow = nowLatency.count() - nowLatency.countAtOrBelow(bound);
+        double baseP99 = bound;
+        double nowP99 = nowLatency.percentile(99);
+        double p99Change = change(baseP99, nowP99);
+        double tailP = Statistics.proportionTest(baseSlow, baseLatency.count(), nowSlow, nowLatency.count());
+        boolean tailWorse = nowLatency.count() > 0 && baseLatency.count() > 0
+                && (double) nowSlow / nowLatency.count() > (double) baseSlow / baseLatency.count();
+        findings.add(new Finding(base.name(), "latency p99 (ms)", baseP99, nowP99, p99Change, tailP,
+                tailP < alpha && tailWorse && p99Change > thresholdPercent));
+
+        long baseFailed = base.sent() - base.successful();
+        long nowFailed = now.sent() - now.successful();
+        double baseErrorRate = base.sent() == 0 ? 0 : 100.0 * baseFailed / base.sent();
+        double nowErrorRate = now.sent() == 0 ? 0 : 100.0 * nowFailed / now.sent();
+        double errorP = Statistics.proportionTest(baseFailed, base.sent(), nowFailed, now.sent());
+        findings.add(new Finding(base.name(), "error rate (%)", baseErrorRate, nowErrorRate,
+                change(baseErrorRate, nowErrorRate), errorP, errorP < alpha && nowErrorRate > baseErrorRate));
+    }
+
+    /**
+     * Drops the last second, which also counts late responses, unless that
+     * would leave too few values to test.
+     */
+    private static long[] fullSeconds(long[] perSecond) {
+        return perSecond.length > 2 ? Arrays.copyOf(perSecond, perSecond.length - 1) : perSecond;
+    }
+
+    private static double change(double baseline, double current) {
+        if (baseline == 0) {
+            return current == 0 ? 0 : Double.NaN;
+        }
+        return (current - baseline) / baseline * 100;
+    }
+}
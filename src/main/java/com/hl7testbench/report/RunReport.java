@@ -0,0 +1,321 @@
+package com.hl7testbench.report;
+
+import com.hl7testbench.controller.ScenarioRunner.StageResult;
+import com.hl7testbench.metrics.HistogramSnapshot;
+import com.hl7testbench.metrics.LatencyHistogram;
+import com.hl7testbench.model.ConnectionConfig;
+import com.hl7testbench.model.Scenario;
+import com.hl7testbench.model.TransportResult.TransportStatus;
+import com.hl7testbench.util.JsonReader;
+import com.hl7testbench.util.JsonWriter;
+
+import java.io.IOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.net.InetAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * The archived outcome of a scenario run: per-stage results together with
+ * the environment and configuration they were measured under.
+ *
+ * <p>Reports are saved as JSON, with latency histograms kept bucket by
+ * bucket, so a report read back later can be compared with a new run as
+ * precisely as the original results. Settings that could hold secrets,
+ * such as keystore passwords, are left out.</p>
+ *
+ * @param scenario the scenario name
+ * @param startedAt when the run started
+ * @param finishedAt when the run ended
+ * @param environment the JVM, OS and host the run was measured on
+ * @param configuration the scenario's stages and the {@code hl7testbench.*} settings
+ * @param stages the result of each stage that ran
+ */
+public record RunReport(String scenario, Instant startedAt, Instant finishedAt,
+                        Map<String, Object> environment, Map<String, Object> configuration,
+                        List<StageResult> stages) {
+
+    /**
+     * Version of the JSON layout, written to every report.
+     */
+    public static final int FORMAT = 1;
+
+    private static final double[] PERCENTILES = {50, 90, 95, 99, 99.9};
+
+    /**
+     * Creates a report for a run of the scenario, recording the current environment.
+     */
+    public static RunReport of(Scenario scenario, List<StageResult> results, Instant startedAt, Instant finishedAt) {
+        Map<String, Object> configuration = new LinkedHashMap<>();
+        List<Object> stages = new ArrayList<>();
+        for (Scenario.Stage stage : scenario.stages()) {
+            stages.add(describeStage(stage));
+        }
+        configuration.put("stages", stages);
+        configuration.put("properties", benchProperties());
+        return new RunReport(scenario.name(), startedAt, finishedAt, describeEnvironment(), configuration, results);
+    }
+
+    /**
+     * Reads a report saved with {@link #write(Path)}.
+     *
+     * @throws IllegalArgumentException if the file is not a run report
+     */
+    public static RunReport read(Path path) throws IOException {
+        Map<String, Object> root = JsonReader.parseObject(Files.readString(path, StandardCharsets.UTF_8));
+        if (!(root.get("format") instanceof Long format) || format != FORMAT) {
+            throw new IllegalArgumentException(path + " is not a run report");
+        }
+        List<StageResult> stages = new ArrayList<>();
+        for (Object stage : list(root.get("stages"))) {
+            stages.add(stageFromJson(object(stage)));
+        }
+        return new RunReport(
+                (String) root.get("scenario"),
+                Instant.parse((String) root.get("startedAt")),
+                Instant.parse((String) root.get("finishedAt")),
+                object(root.get("environment")),
+                object(root.get("configuration")),
+                stages);
+    }
+
+    /**
+     * Saves the report as JSON.
+     */
+    public void write(Path path) throws IOException {
+        Map<String, Object> root = new LinkedHashMap<>();
+        root.put("format", FORMAT);
+        root.put("scenario", scenario);
+        root.put("startedAt", startedAt.toString());
+        root.put("finishedAt", finishedAt.toString());
+        root.put("environment", environment);
+        root.put("configuration", configuration);
+        Map<String, Object> totals = new LinkedHashMap<>();
+        totals.put("sent", totalSent());
+        totals.put("successful", totalSuccessful());
+        totals.put("latencyMs", histogramToJson(totalLatency()));
+        root.put("totals", totals);
+        List<Object> stageList = new ArrayList<>();
+        for (StageResult stage : stages) {
+            stageList.add(stageToJson(stage));
+        }
+        root.put("stages", stageList);
+        Files.writeString(path, JsonWriter.write(root), StandardCharsets.UTF_8);
+    }
+
+    public long totalSent() {
+        return stages.stream().mapToLong(StageResult::sent).sum();
+    }
+
+    public long totalSuccessful() {
+        return stages.stream().mapToLong(StageResult::successful).sum();
+    }
+
+    /**
+     * Returns the latencies of all stages combined.
+     */
+    public HistogramSnapshot totalLatency() {
+        HistogramSnapshot total = HistogramSnapshot.empty();
+        for (StageResult stage : stages) {
+            total = total.merge(stage.latencyMs());
+        }
+        return total;
+    }
+
+    /**
+     * Returns the stage with the given name, or null.
+     */
+    public StageResult stage(String name) {
+        for (StageResult stage : stages) {
+            if (stage.name().equals(name)) {
+                return stage;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Converts a stage result to its JSON form.
+     */
+    public static Map<String, Object> stageToJson(StageResult stage) {
+        Map<String, Object> json = new LinkedHashMap<>();
+        json.put("name", stage.name());
+        json.put("durationMs", stage.durationMs());
+        json.put("sent", stage.sent());
+        json.put("successful", stage.successful());
+        json.put("throughput", stage.achievedRate());
+        Map<String, Object> statuses = new LinkedHashMap<>();
+        stage.statusCounts().forEach((status, count) -> statuses.put(status.name(), count));
+        json.put("statusCounts", statuses);
+        json.put("errors", stage.errors());
+        json.put("latencyMs", histogramToJson(stage.latencyMs()));
+        json.put("lagMs", histogramToJson(stage.lagMs()));
+        json.put("completedPerSecond", stage.completedPerSecond());
+        return json;
+    }
+
+    /**
+     * Reads a stage result from its JSON form.
+     */
+    public static StageResult stageFromJson(Map<String, Object> json) {
+        Map<TransportStatus, Long> statuses = new EnumMap<>(TransportStatus.class);
+        object(json.get("statusCounts")).forEach((status, count) ->
+                statuses.put(TransportStatus.valueOf(status), number(count)));
+        Map<String, Long> errors = new TreeMap<>();
+        object(json.get("errors")).forEach((error, count) -> errors.put(error, number(count)));
+        List<Object> perSecondList = list(json.get("completedPerSecond"));
+        long[] perSecond = new long[perSecondList.size()];
+        for (int i = 0; i < perSecond.length; i++) {
+            perSecond[i] = number(perSecondList.get(i));
+        }
+        return new StageResult(
+                (String) json.get("name"),
+                number(json.get("durationMs")),
+                number(json.get("sent")),
+                statuses,
+                histogramFromJson(object(json.get("latencyMs"))),
+                histogramFromJson(object(json.get("lagMs"))),
+                perSecond,
+                errors);
+    }
+
+    /**
+     * Converts a histogram to JSON: summary values for reading, plus the
+     * non-empty buckets as {@code [index, count]} pairs so it can be rebuilt exactly.
+     */
+    public static Map<String, Object> histogramToJson(HistogramSnapshot snapshot) {
+        Map<String, Object> json = new LinkedHashMap<>();
+        json.put("count", snapshot.count());
+        json.put("min", snapshot.min());
+        json.put("max", snapshot.max());
+        json.put("mean", Math.round(snapshot.mean() * 100) / 100.0);
+        for (double p : PERCENTILES) {
+            json.put(percentileKey(p), snapshot.percentile(p));
+        }
+        json.put("sum", snapshot.sum());
+        List<Object> buckets = new ArrayList<>();
+        long[] counts = snapshot.counts();
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] != 0) {
+                buckets.add(new long[] {i, counts[i]});
+            }
+        }
+        json.put("buckets", buckets);
+        return json;
+    }
+
+    /**
+     * Rebuilds a histogram written by {@link #histogramToJson}.
+     */
+    public static HistogramSnapshot histogramFromJson(Map<String, Object> json) {
+        long[] counts = new long[LatencyHistogram.BUCKET_COUNT];
+        for (Object bucket : list(json.get("buckets"))) {
+            List<Object> pair = list(bucket);
+            int index = (int) number(pair.get(0));
+            if (index >= 0 && index < counts.length) {
+                counts[index] = number(pair.get(1));
+            }
+        }
+        return new HistogramSnapshot(counts, number(json.get("count")), number(json.get("sum")),
+                number(json.get("min")), number(json.get("max")));
+    }
+
+    /**
+     * Returns the JSON key for a percentile, e.g. {@code p99} or {@code p99.9}.
+     */
+    static String percentileKey(double percentile) {
+        return percentile == Math.rint(percentile) ? "p" + (long) percentile : "p" + percentile;
+    }
+
+    static double[] percentiles() {
+        return PERCENTILES.clone();
+    }
+
+    private static Map<String, Object> describeStage(Scenario.Stage stage) {
+        Map<String, Object> json = new LinkedHashMap<>();
+        json.put("name", stage.name());
+        json.put("durationMs", stage.durationMs());
+        json.put("startRate", stage.startRate());
+        json.put("endRate", stage.endRate());
+        json.put("concurrency", stage.concurrency());
+        if (stage.spike() != null) {
+            Map<String, Object> spike = new LinkedHashMap<>();
+            spike.put("everyMs", stage.spike().everyMs());
+            spike.put("durationMs", stage.spike().durationMs());
+            spike.put("rate", stage.spike().rate());
+            json.put("spike", spike);
+        }
+        json.put("source", stage.source().file() != null
+                ? stage.source().file().toString() : "template");
+
+        ConnectionConfig target = stage.target();
+        Map<String, Object> targetJson = new LinkedHashMap<>();
+        targetJson.put("mode", target.mode().name());
+        targetJson.put("endpoint", target.mode() == ConnectionConfig.TransportMode.HTTP
+                ? target.httpUrl() : target.host() + ":" + target.port());
+        targetJson.put("useTls", target.useTls());
+        targetJson.put("timeoutMs", target.timeoutMs());
+        if (target.hasEndpointGroup()) {
+            targetJson.put("endpoints", target.endpointGroup().toText());
+            targetJson.put("balancing", target.endpointGroup().balancing().name());
+        }
+        json.put("target", targetJson);
+        return json;
+    }
+
+    private static Map<String, Object> describeEnvironment() {
+        Map<String, Object> json = new LinkedHashMap<>();
+        json.put("javaVersion", System.getProperty("java.version"));
+        json.put("javaVendor", System.getProperty("java.vendor"));
+        json.put("vm", System.getProperty("java.vm.name"));
+        json.put("os", System.getProperty("os.name") + " " + System.getProperty("os.version"));
+        json.put("arch", System.getProperty("os.arch"));
+        json.put("processors", Runtime.getRuntime().availableProcessors());
+        json.put("maxHeapMb", Runtime.getRuntime().maxMemory() / (1024 * 1024));
+        List<Object> collectors = new ArrayList<>();
+        for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            collectors.add(collector.getName());
+        }
+        json.put("garbageCollectors", collectors);
+        try {
+            json.put("host", InetAddress.getLocalHost().getHostName());
+        } catch (IOException e) {
+            json.put("host", "unknown");
+        }
+        return json;
+    }
+
+    private static Map<String, Object> benchProperties() {
+        Map<String, Object> properties = new TreeMap<>();
+        for (String name : System.getProperties().stringPropertyNames()) {
+            if (name.startsWith("hl7testbench.") && !name.toLowerCase(Locale.ROOT).contains("password")) {
+                properties.put(name, System.getProperty(name));
+            }
+        }
+        return properties;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> object(Object value) {
+        return value instanceof Map ? (Map<String, Object>) value : Map.of();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<Object> list(Object value) {
+        return value instanceof List ? (List<Object>) value : List.of();
+    }
+
+    private static long number(Object value) {
+        return value instanceof Number n ? n.longValue() : 0;
+    }
+}
@@ -0,0 +1,194 @@
+package com.hl7testbench.report;
+
+import com.hl7testbench.metrics.HistogramSnapshot;
+
+/**
+ * Two-sided significance tests used to compare runs. Each returns a p-value:
+ * the probability of a difference at least this large between two runs of
+ * the same system, so small values mean a real change.
+ */
+final class Statistics {
+
+    private Statistics() {
+    }
+
+    /**
+     * Welch's t-test for a difference in means between two samples that may
+     * have different variances, e.g. messages completed in each second.
+     *
+     * @return the p-value, or 1 if either sample has fewer than two values
+     */
+    static double welchTTest(long[] a, long[] b) {
+        if (a.length < 2 || b.length < 2) {
+            return 1.0;
+        }
+        double meanA = mean(a);
+        double meanB = mean(b);
+        double varA = variance(a, meanA) / a.length;
+        double varB = variance(b, meanB) / b.length;
+        if (varA + varB == 0) {
+            return meanA == meanB ? 1.0 : 0.0;
+        }
+        double t = (meanA - meanB) / Math.sqrt(varA + varB);
+        double df = (varA + varB) * (varA + varB)
+                / (varA * varA / (a.length - 1) + varB * varB / (b.length - 1));
+        return studentTwoSided(t, df);
+    }
+
+    /**
+     * Mann-Whitney U test for one run's latencies tending to be higher or
+     * lower than the other's, computed directly on the histogram buckets.
+     * Values in the same bucket count as ties.
+     *
+     * @return the p-value, or 1 if either histogram is empty
+     */
+    static double mannWhitney(HistogramSnapshot a, HistogramSnapshot b) {
+        long[] countsA = a.counts();
+        long[] countsB = b.counts();
+        double n1 = a.count();
+        double n2 = b.count();
+        double n = n1 + n2;
+        if (n1 == 0 || n2 == 0) {
+            return 1.0;
+        }
+        double rankSumA = 0;
+        double ranked = 0;
+        double tieCorrection = 0;
+        for (int i = 0; i < Math.max(countsA.length, countsB.length); i++) {
+            double inA = i < countsA.length ? countsA[i] : 0;
+            double inB = i < countsB.length ? countsB[i] : 0;
+            double tied = inA + inB;
+            if (tied == 0) {
+                continue;
+            }
+            rankSumA += inA * (ranked + (tied + 1) / 2);
+            ranked += tied;
+            tieCorrection += tied * tied * tied - tied;
+        }
+        double u = rankSumA - n1 * (n1 + 1) / 2;
+        double variance = n1 * n2 / 12 * ((n + 1) - tieCorrection / (n * (n - 1)));
+        if (variance <= 0) {
+            return 1.0;
+        }
+        double z = (u - n1 * n2 / 2) / Math.sqrt(variance);
+        return 2 * normalUpperTail(Math.abs(z));
+    }
+
+    /**
+     * Two-proportion z-test, e.g. for error rates or the share of requests
+     * slower than a threshold.
+     *
+     * @return the p-value, or 1 if either sample is empty or both proportions are 0 or 1
+     */
+    static double proportionTest(long hitsA, long totalA, long hitsB, long totalB) {
+        if (totalA == 0 || totalB == 0) {
+            return 1.0;
+        }
+        double pooled = (double) (hitsA + hitsB) / (totalA + totalB);
+        double variance = pooled * (1 - pooled) * (1.0 / totalA + 1.0 / totalB);
+        if (variance <= 0) {
+            return 1.0;
+        }
+        double z = ((double) hitsA / totalA - (double) hitsB / totalB) / Math.sqrt(variance);
+        return 2 * normalUpperTail(Math.abs(z));
+    }
+
+    static double mean(long[] values) {
+        double sum = 0;
+        for (long value : values) {
+            sum += value;
+        }
+        return values.length == 0 ? 0 : sum / values.length;
+    }
+
+    private static double variance(long[] values, double mean) {
+        double sum = 0;
+        for (long value : values) {
+            sum += (value - mean) * (value - mean);
+        }
+        return sum / (values.length - 1);
+    }
+
+    /**
+     * P(Z > z) for a standard normal Z, from the complementary error
+     * function approximation in Numerical Recipes (relative error below 1.2e-7).
+     */
+    private static double normalUpperTail(double z) {
+        double x = z / Math.sqrt(2);
+        double t = 1 / (1 + 0.5 * Math.abs(x));
+        double erfc = t * Math.exp(-x * x - 1.26551223 + t * (1.00002368 + t * (0.37409196 + t * (0.09678418
+                + t * (-0.18628806 + t * (0.27886807 + t * (-1.13520398 + t * (1.48851587
+                + t * (-0.82215223 + t * 0.17087277)))))))));
+        return (x >= 0 ? erfc : 2 - erfc) / 2;
+    }
+
+    /**
+     * P(|T| > |t|) for Student's t distribution with {@code df} degrees of freedom.
+     */
+    private static double studentTwoSided(double t, double df) {
+        return regularizedBeta(df / (df + t * t), df / 2, 0.5);
+    }
+
+    /**
+     * Regularized incomplete beta function I_x(a, b), by continued fraction.
+     */
+    private static double regularizedBeta(double x, double a, double b) {
+        if (x <= 0) {
+            return 0;
+        }
+        if (x >= 1) {
+            return 1;
+        }
+        double front = Math.exp(logGamma(a + b) - logGamma(a) - logGamma(b)
+                + a * Math.log(x) + b * Math.log(1 - x));
+        if (x < (a + 1) / (a + b + 2)) {
+            return front * betaContinuedFraction(x, a, b) / a;
+        }
+        return 1 - front * betaContinuedFraction(1 - x, b, a) / b;
+    }
+
+    private static double betaContinuedFraction(double x, double a, double b) {
+        final double tiny = 1e-300;
+        double c = 1;
+        double d = 1 - (a + b) * x / (a + 1);
+        d = 1 / (Math.abs(d) < tiny ? tiny : d);
+        double h = d;
+        for (int m = 1; m <= 300; m++) {
+            int m2 = 2 * m;
+            double numerator = m * (b - m) * x / ((a + m2 - 1) * (a + m2));
+            d = 1 + numerator * d;
+            d = 1 / (Math.abs(d) < tiny ? tiny : d);
+            c = 1 + numerator / c;
+            c = Math.abs(c) < tiny ? tiny : c;
+            h *= d * c;
+
+            numerator = -(a + m) * (a + b + m) * x / ((a + m2) * (a + m2 + 1));
+            d = 1 + numerator * d;
+            d = 1 / (Math.abs(d) < tiny ? tiny : d);
+            c = 1 + numerator / c;
+            c = Math.abs(c) < tiny ? tiny : c;
+            double delta = d * c;
+            h *= delta;
+            if (Math.abs(delta - 1) < 1e-12) {
+                break;
+            }
+        }
+        return h;
+    }
+
+    /**
+     * Natural log of the gamma function, Lanczos approximation.
+     */
+    private static double logGamma(double x) {
+        double[] coefficients = {76.18009172947146, -86.50532032941677, 24.01409824083091,
+                -1.231739572450155, 0.1208650973866179e-2, -0.5395239384953e-5};
+        double y = x;
+        double tmp = x + 5.5;
+        tmp -= (x + 0.5) * Math.log(tmp);
+        double series = 1.000000000190015;
+        for (double coefficient : coefficients) {
+            series += coefficient / ++y;
+        }
+        return -tmp + Math.log(2.5066282746310005 * series / x);
+    }
+}
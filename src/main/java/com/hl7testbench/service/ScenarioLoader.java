@@ -0,0 +1,232 @@
+package com.hl7testbench.service;
+
+import com.hl7testbench.model.ConnectionConfig;
+import com.hl7testbench.model.ConnectionConfig.TransportMode;
+import com.hl7testbench.model.EndpointGroup;
+import com.hl7testbench.model.Scenario;
+import com.hl7testbench.util.JsonReader;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Reads {@link Scenario}s from JSON files.
+ *
+ * <p>{@code target}, {@code source} and {@code concurrency} may be given at
+ * the top level and overridden per stage. A stage sets its rate with
+ * {@code rate}, or ramps with {@code endRate} and an optional
+ * {@code startRate} that defaults to where the previous stage ended.
+ * Durations are seconds, or strings such as {@code "500ms"}, {@code "30s"},
+ * {@code "10m"} or {@code "2h"}. File paths are relative to the scenario file.
+ * See the README for a complete example.</p>
+ */
+public class ScenarioLoader {
+
+    private static final int DEFAULT_CONCURRENCY = 1;
+    private static final int DEFAULT_TIMEOUT_MS = 30000;
+
+    private final ServerConfigRepository servers;
+
+    public ScenarioLoader() {
+        this(ServerConfigRepository.getDefault());
+    }
+
+    /**
+     * @param servers where {@code "server"} targets are looked up by name
+     */
+    public ScenarioLoader(ServerConfigRepository servers) {
+        this.servers = servers;
+    }
+
+    /**
+     * Loads a scenario file.
+     *
+     * @throws IllegalArgumentException if the file is not a valid scenario
+     */
+    public Scenario load(Path path) throws IOException {
+        Path baseDir = path.toAbsolutePath().getParent();
+        Map<String, Object> root = JsonReader.parseObject(Files.readString(path));
+
+        String name = optString(root, "name", fileNameWithoutExtension(path));
+        Scenario.Source defaultSource = root.containsKey("source") ? parseSource(root.get("source"), baseDir) : null;
+        ConnectionConfig defaultTarget = root.containsKey("target") ? parseTarget(root.get("target"), baseDir) : null;
+        int defaultConcurrency = optInt(root, "concurrency", DEFAULT_CONCURRENCY);
+
+        Object stagesValue = root.get("stages");
+        if (!(stagesValue instanceof List<?> stageList) || stageList.isEmpty()) {
+            throw new IllegalArgumentException("\"stages\" must be a non-empty array");
+        }
+        List<Scenario.Stage> stages = new ArrayList<>();
+        double previousRate = -1;
+        for (int i = 0; i < stageList.size(); i++) {
+            Map<String, Object> stage = asObject(stageList.get(i), "stages[" + i + "]");
+            String stageName = optString(stage, "name", "stage-" + (i + 1));
+
+            double startRate;
+            double endRate;
+            if (stage.containsKey("rate")) {
+                startRate = number(stage, "rate");
+                endRate = startRate;
+            } else if (stage.containsKey("endRate")) {
+                endRate = number(stage, "endRate");
+                startRate = stage.containsKey("startRate") ? number(stage, "startRate")
+                        : previousRate >= 0 ? previousRate : endRate;
+            } else {
+                throw new IllegalArgumentException("Stage " + stageName + " needs \"rate\" or \"endRate\"");
+            }
+            previousRate = endRate;
+
+            Scenario.Source source = stage.containsKey("source")
+                    ? parseSource(stage.get("source"), baseDir) : defaultSource;
+            ConnectionConfig target = stage.containsKey("target")
+                    ? parseTarget(stage.get("target"), baseDir) : defaultTarget;
+            if (source == null) {
+                throw new IllegalArgumentException("Stage " + stageName + " has no message source");
+            }
+            if (target == null) {
+                throw new IllegalArgumentException("Stage " + stageName + " has no target");
+            }
+
+            Scenario.Spike spike = null;
+            if (stage.containsKey("spike")) {
+                Map<String, Object> spikeObject = asObject(stage.get("spike"), "spike");
+                spike = new Scenario.Spike(
+                        duration(spikeObject, "every"),
+                        duration(spikeObject, "duration"),
+                        number(spikeObject, "rate"));
+            }
+
+            stages.add(new Scenario.Stage(stageName, duration(stage, "duration"), startRate, endRate,
+                    optInt(stage, "concurrency", defaultConcurrency), spike, source, target));
+        }
+        return new Scenario(name, stages);
+    }
+
+    private Scenario.Source parseSource(Object value, Path baseDir) {
+        Map<String, Object> source = asObject(value, "source");
+        if (source.containsKey("file")) {
+            return new Scenario.Source(baseDir.resolve(string(source, "file")).normalize(), null);
+        }
+        if (source.containsKey("template")) {
+            return new Scenario.Source(null, string(source, "template"));
+        }
+        throw new IllegalArgumentException("\"source\" needs \"file\" or \"template\"");
+    }
+
+    /**
+     * Parses a target given as {@code {"server": "saved name"}} or as explicit settings.
+     */
+    private ConnectionConfig parseTarget(Object value, Path baseDir) {
+        Map<String, Object> target = asObject(value, "target");
+        if (target.containsKey("server")) {
+            String serverName = string(target, "server");
+            return servers.find(serverName)
+                    .map(ServerConfigRepository.SavedServerConfig::toConnectionConfig)
+                    .orElseThrow(() -> new IllegalArgumentException("No saved server named " + serverName));
+        }
+
+        TransportMode mode;
+        try {
+            mode = TransportMode.valueOf(optString(target, "mode", target.containsKey("httpUrl") ? "HTTP" : "MLLP_TCP")
+                    .toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown transport mode in target; use MLLP_TCP or HTTP");
+        }
+        File keystore = target.containsKey("keystore")
+                ? baseDir.resolve(string(target, "keystore")).toFile() : null;
+        String password = optString(target, "keystorePassword", null);
+        EndpointGroup group = null;
+        if (target.containsKey("endpoints")) {
+            Object endpoints = target.get("endpoints");
+            String text = endpoints instanceof List<?> list
+                    ? String.join(",", list.stream().map(String::valueOf).toList())
+                    : String.valueOf(endpoints);
+            EndpointGroup.Balancing balancing = EndpointGroup.Balancing.valueOf(
+                    optString(target, "balancing", EndpointGroup.Balancing.ROUND_ROBIN.name()).toUpperCase(Locale.ROOT));
+            group = EndpointGroup.parse(text, balancing);
+        }
+        return new ConnectionConfig(
+                mode,
+                optString(target, "host", ""),
+                optInt(target, "port", 0),
+                optString(target, "httpUrl", ""),
+                Boolean.TRUE.equals(target.get("useTls")),
+                keystore,
+                password != null ? password.toCharArray() : null,
+                optInt(target, "timeoutMs", DEFAULT_TIMEOUT_MS),
+                group);
+    }
+
+    /**
+     * Reads a duration in milliseconds from a number of seconds or a string with a unit.
+     */
+    static long duration(Map<String, Object> object, String key) {
+        Object value = object.get(key);
+        if (value instanceof Number n) {
+            return Math.round(n.doubleValue() * 1000);
+        }
+        if (value instanceof String s) {
+            String text = s.trim().toLowerCase(Locale.ROOT);
+            try {
+                if (text.endsWith("ms")) {
+                    return Math.round(Double.parseDouble(text.substring(0, text.length() - 2).trim()));
+                }
+                long unit = switch (text.isEmpty() ? ' ' : text.charAt(text.length() - 1)) {
+                    case 's' -> 1000L;
+                    case 'm' -> 60_000L;
+                    case 'h' -> 3_600_000L;
+                    default -> 0L;
+                };
+                if (unit > 0) {
+                    return Math.round(Double.parseDouble(text.substring(0, text.length() - 1).trim()) * unit);
+                }
+                return Math.round(Double.parseDouble(text) * 1000);
+            } catch (NumberFormatException e) {
+                // Fall through to the error below
+            }
+        }
+        throw new IllegalArgumentException("\"" + key + "\" must be a duration such as 30, \"30s\", \"10m\" or \"2h\"");
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> asObject(Object value, String what) {
+        if (!(value instanceof Map)) {
+            throw new IllegalArgumentException("\"" + what + "\" must be an object");
+        }
+        return (Map<String, Object>) value;
+    }
+
+    private static double number(Map<String, Object> object, String key) {
+        if (!(object.get(key) instanceof Number n)) {
+            throw new IllegalArgumentException("\"" + key + "\" must be a number");
+        }
+        return n.doubleValue();
+    }
+
+    private static int optInt(Map<String, Object> object, String key, int defaultValue) {
+        return object.containsKey(key) ? (int) number(object, key) : defaultValue;
+    }
+
+    private static String string(Map<String, Object> object, String key) {
+        if (!(object.get(key) instanceof String s)) {
+            throw new IllegalArgumentException("\"" + key + "\" must be a string");
+        }
+        return s;
+    }
+
+    private static String optString(Map<String, Object> object, String key, String defaultValue) {
+        return object.containsKey(key) ? string(object, key) : defaultValue;
+    }
+
+    private static String fileNameWithoutExtension(Path path) {
+        String fileName = path.getFileName().toString();
+        int dot = fileName.lastIndexOf('.');
+        return dot > 0 ? fileName.substring(0, dot) : fileName;
+    }
+}
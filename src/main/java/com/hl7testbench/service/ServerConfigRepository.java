@@ -2,14 +2,28 @@ package com.hl7testbench.service;
 
 import com.hl7testbench.model.ConnectionConfig;
 import com.hl7testbench.model.ConnectionConfig.TransportMode;
+import com.hl7testbench.model.EndpointGroup;
+import com.hl7testbench.util.JsonReader;
+import com.hl7testbench.util.JsonWriter;
 
 import java.io.*;
 import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
 import java.util.*;
 
 /**
  * Repository for persisting and loading server configurations.
- * Uses a simple properties-based format for human-readable storage.
+ * Stored as an indented JSON array, read token by token with
+ * {@link JsonReader} and written one server at a time with
+ * {@link JsonWriter#writeArray}, so a large endpoint catalog is never held
+ * as a JSON tree or as one string.
+ *
+ * <p>The configurations are kept in memory and the file is only read again
+ * when its modification time or size changes, e.g. after another instance
+ * saved a server, so lookups stay cheap with thousands of entries. Changes
+ * are written to a temporary file that then replaces the old one, so a
+ * crash or a concurrent reader never sees a half-written file.</p>
  */
 public class ServerConfigRepository {
 
@@ -17,31 +31,61 @@ public class ServerConfigRepository {
     private static final String CONFIG_FILE = "servers.json";
     private static final Path CONFIG_PATH = Path.of(CONFIG_DIR, CONFIG_FILE);
 
+    private static class Holder {
+        static final ServerConfigRepository DEFAULT_INSTANCE = new ServerConfigRepository(CONFIG_PATH);
+    }
+
+    private final Path file;
+    private List<SavedServerConfig> servers;
+    private Map<String, SavedServerConfig> serversByName;
+    private FileTime loadedModified;
+    private long loadedSize = -1;
+
     /**
-     * Loads all saved server configurations.
+     * Creates a repository for {@code ~/.hl7testbench/servers.json}. Prefer
+     * {@link #getDefault()}, which shares one cache.
      */
-    public List<SavedServerConfig> loadAll() {
-        if (!Files.exists(CONFIG_PATH)) {
-            return new ArrayList<>(getDefaults());
-        }
+    public ServerConfigRepository() {
+        this(CONFIG_PATH);
+    }
 
-        try {
-            String json = Files.readString(CONFIG_PATH);
-            return parseJson(json);
-        } catch (Exception e) {
-            System.err.println("Error loading server configurations: " + e.getMessage());
-            return new ArrayList<>(getDefaults());
-        }
+    /**
+     * Creates a repository stored in the given file.
+     */
+    public ServerConfigRepository(Path file) {
+        this.file = file;
+    }
+
+    /**
+     * Returns the shared repository for the default file.
+     */
+    public static ServerConfigRepository getDefault() {
+        return Holder.DEFAULT_INSTANCE;
+    }
+
+    /**
+     * Loads all saved server configurations, most recently saved first.
+     */
+    public synchronized List<SavedServerConfig> loadAll() {
+        refreshIfChanged();
+        return new ArrayList<>(servers);
+    }
+
+    /**
+     * Returns the configuration with the given name.
+     */
+    public synchronized Optional<SavedServerConfig> find(String name) {
+        refreshIfChanged();
+        return Optional.ofNullable(serversByName.get(name));
     }
 
     /**
      * Saves all server configurations.
      */
-    public void saveAll(List<SavedServerConfig> servers) {
+    public synchronized void saveAll(List<SavedServerConfig> servers) {
         try {
-            Files.createDirectories(Path.of(CONFIG_DIR));
-            String json = toJson(servers);
-            Files.writeString(CONFIG_PATH, json);
+            write(servers);
+            cache(new ArrayList<>(servers));
         } catch (Exception e) {
             System.err.println("Error saving server configurations: " + e.getMessage());
         }
@@ -50,20 +94,98 @@ public class ServerConfigRepository {
     /**
      * Adds or updates a server configuration.
      */
-    public void save(SavedServerConfig server) {
-        List<SavedServerConfig> servers = loadAll();
-        servers.removeIf(s -> s.name().equals(server.name()));
-        servers.add(0, server);
-        saveAll(servers);
+    public synchronized void save(SavedServerConfig server) {
+        refreshIfChanged();
+        List<SavedServerConfig> updated = new ArrayList<>(servers.size() + 1);
+        updated.add(server);
+        for (SavedServerConfig existing : servers) {
+            if (!existing.name().equals(server.name())) {
+                updated.add(existing);
+            }
+        }
+        saveAll(updated);
     }
 
     /**
      * Deletes a server configuration by name.
      */
-    public void delete(String name) {
-        List<SavedServerConfig> servers = loadAll();
-        servers.removeIf(s -> s.name().equals(name));
-        saveAll(servers);
+    public synchronized void delete(String name) {
+        refreshIfChanged();
+        if (!serversByName.containsKey(name)) {
+            return;
+        }
+        List<SavedServerConfig> updated = new ArrayList<>(servers);
+        updated.removeIf(s -> s.name().equals(name));
+        saveAll(updated);
+    }
+
+    /**
+     * Reads the file if it has not been read yet or has changed since.
+     */
+    private void refreshIfChanged() {
+        FileTime modified = null;
+        long size = -1;
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+            modified = attributes.lastModifiedTime();
+            size = attributes.size();
+        } catch (NoSuchFileException e) {
+            // Not saved yet: defaults
+        } catch (IOException e) {
+            System.err.println("Error checking server configurations: " + e.getMessage());
+        }
+        if (servers != null && Objects.equals(modified, loadedModified) && size == loadedSize) {
+            return;
+        }
+
+        List<SavedServerConfig> loaded;
+        if (modified == null) {
+            loaded = getDefaults();
+        } else {
+            try {
+                loaded = read();
+            } catch (Exception e) {
+                System.err.println("Error loading server configurations: " + e.getMessage());
+                loaded = getDefaults();
+            }
+        }
+        cache(loaded);
+        loadedModified = modified;
+        loadedSize = size;
+    }
+
+    private void cache(List<SavedServerConfig> loaded) {
+        Map<String, SavedServerConfig> byName = new HashMap<>(loaded.size() * 2);
+        for (SavedServerConfig server : loaded) {
+            byName.putIfAbsent(server.name(), server);
+        }
+        servers = Collections.unmodifiableList(loaded);
+        serversByName = byName;
+    }
+
+    /**
+     * Writes the file through a temporary file in the same directory and
+     * remembers the result, so our own write is not read back.
+     */
+    private void write(List<SavedServerConfig> servers) throws IOException {
+        Path directory = file.toAbsolutePath().getParent();
+        Files.createDirectories(directory);
+        Path temp = Files.createTempFile(directory, CONFIG_FILE, ".tmp");
+        try {
+            try (Writer writer = Files.newBufferedWriter(temp)) {
+                JsonWriter.writeArray(() -> servers.stream().<Object>map(ServerConfigRepository::toJson).iterator(), writer);
+            }
+            try {
+                Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+        BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+        loadedModified = attributes.lastModifiedTime();
+        loadedSize = attributes.size();
     }
 
     private List<SavedServerConfig> getDefaults() {
@@ -89,164 +211,131 @@ public class ServerConfigRepository {
         return defaults;
     }
 
-    /**
-     * Simple JSON serialization without external dependencies.
-     */
-    private String toJson(List<SavedServerConfig> servers) {
-        StringBuilder sb = new StringBuilder();
-        sb.append("[\n");
-        for (int i = 0; i < servers.size(); i++) {
-            SavedServerConfig s = servers.get(i);
-            sb.append("  {\n");
-            sb.append("    \"name\": ").append(jsonString(s.name())).append(",\n");
-            sb.append("    \"mode\": ").append(jsonString(s.mode().name())).append(",\n");
-            sb.append("    \"host\": ").append(jsonString(s.host())).append(",\n");
-            sb.append("    \"port\": ").append(s.port()).append(",\n");
-            sb.append("    \"httpUrl\": ").append(jsonString(s.httpUrl())).append(",\n");
-            sb.append("    \"useTls\": ").append(s.useTls()).append(",\n");
-            sb.append("    \"timeoutMs\": ").append(s.timeoutMs()).append("\n");
-            sb.append("  }");
-            if (i < servers.size() - 1) sb.append(",");
-            sb.append("\n");
+    private static Map<String, Object> toJson(SavedServerConfig s) {
+        Map<String, Object> object = new LinkedHashMap<>();
+        object.put("name", s.name());
+        object.put("mode", s.mode().name());
+        object.put("host", s.host());
+        object.put("port", s.port());
+        object.put("httpUrl", s.httpUrl());
+        object.put("useTls", s.useTls());
+        object.put("timeoutMs", s.timeoutMs());
+        if (s.endpointGroup() != null) {
+            object.put("endpoints", s.endpointGroup().toText());
+            object.put("balancing", s.endpointGroup().balancing().name());
         }
-        sb.append("]");
-        return sb.toString();
-    }
-
-    private String jsonString(String value) {
-        if (value == null) return "null";
-        return "\"" + value.replace("\\", "\\\\").replace("\"", "\\\"") + "\"";
+        return object;
     }
 
     /**
-     * Simple JSON parsing without external dependencies.
+     * Reads the file one server at a time with {@link JsonReader}. Entries
+     * that cannot be read are skipped, and a file whose entries are all
+     * unreadable gives the defaults. An empty array gives an empty list, so
+     * deleting every saved server does not bring the defaults back on the
+     * next start.
      */
-    private List<SavedServerConfig> parseJson(String json) {
-        List<SavedServerConfig> servers = new ArrayList<>();
-
-        String content = json.trim();
-        if (!content.startsWith("[") || !content.endsWith("]")) {
-            return getDefaults();
-        }
-
-        content = content.substring(1, content.length() - 1).trim();
-        if (content.isEmpty()) {
-            return servers;
-        }
-
-        int braceDepth = 0;
-        int objectStart = -1;
-
-        for (int i = 0; i < content.length(); i++) {
-            char c = content.charAt(i);
-            if (c == '{') {
-                if (braceDepth == 0) objectStart = i;
-                braceDepth++;
-            } else if (c == '}') {
-                braceDepth--;
-                if (braceDepth == 0 && objectStart >= 0) {
-                    String objectJson = content.substring(objectStart, i + 1);
-                    SavedServerConfig server = parseServerObject(objectJson);
+    private List<SavedServerConfig> read() throws IOException {
+        try (JsonReader reader = new JsonReader(Files.newBufferedReader(file))) {
+            if (reader.peek() != JsonReader.Token.BEGIN_ARRAY) {
+                reader.skipValue();
+                reader.peek();
+                return getDefaults();
+            }
+            List<SavedServerConfig> servers = new ArrayList<>();
+            boolean empty = true;
+            reader.beginArray();
+            while (reader.hasNext()) {
+                empty = false;
+                if (reader.peek() == JsonReader.Token.BEGIN_OBJECT) {
+                    SavedServerConfig server = readServer(reader);
                     if (server != null) {
                         servers.add(server);
                     }
-                    objectStart = -1;
+                } else {
+                    reader.skipValue();
                 }
             }
+            reader.endArray();
+            reader.peek();
+            return servers.isEmpty() && !empty ? getDefaults() : servers;
         }
-
-        return servers.isEmpty() ? getDefaults() : servers;
     }
 
-    private SavedServerConfig parseServerObject(String json) {
-        try {
-            String name = extractJsonString(json, "name");
-            String modeStr = extractJsonString(json, "mode");
-            String host = extractJsonString(json, "host");
-            int port = extractJsonInt(json, "port");
-            String httpUrl = extractJsonString(json, "httpUrl");
-            boolean useTls = extractJsonBoolean(json, "useTls");
-            int timeoutMs = extractJsonInt(json, "timeoutMs");
-
-            TransportMode mode = TransportMode.valueOf(modeStr);
+    /**
+     * Reads one server object. Missing or mistyped fields are empty, 0 or
+     * false; returns null if the mode or balancing is not known.
+     */
+    private static SavedServerConfig readServer(JsonReader reader) throws IOException {
+        String name = "";
+        String mode = "";
+        String host = "";
+        int port = 0;
+        String httpUrl = "";
+        boolean useTls = false;
+        int timeoutMs = 0;
+        String endpoints = "";
+        String balancing = "";
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "name" -> name = stringValue(reader);
+                case "mode" -> mode = stringValue(reader);
+                case "host" -> host = stringValue(reader);
+                case "port" -> port = intValue(reader);
+                case "httpUrl" -> httpUrl = stringValue(reader);
+                case "useTls" -> useTls = booleanValue(reader);
+                case "timeoutMs" -> timeoutMs = intValue(reader);
+                case "endpoints" -> endpoints = stringValue(reader);
+                case "balancing" -> balancing = stringValue(reader);
+                default -> reader.skipValue();
+            }
+        }
+        reader.endObject();
 
-            return new SavedServerConfig(name, mode, host, port, httpUrl, useTls, timeoutMs);
-        } catch (Exception e) {
+        try {
+            return new SavedServerConfig(
+                    name,
+                    TransportMode.valueOf(mode),
+                    host,
+                    port,
+                    httpUrl,
+                    useTls,
+                    timeoutMs,
+                    EndpointGroup.parse(endpoints, balancing.isEmpty()
+                            ? EndpointGroup.Balancing.ROUND_ROBIN
+                            : EndpointGroup.Balancing.valueOf(balancing)));
+        } catch (IllegalArgumentException e) {
             return null;
         }
     }
 
-    private String extractJsonString(String json, String key) {
-        String pattern = "\"" + key + "\"\\s*:\\s*\"";
-        int start = json.indexOf(pattern.replace("\\s*", ""));
-        if (start < 0) {
-            start = findKeyIndex(json, key);
-            if (start < 0) return "";
-        }
-
-        int valueStart = json.indexOf(":", start) + 1;
-        while (valueStart < json.length() && Character.isWhitespace(json.charAt(valueStart))) {
-            valueStart++;
-        }
-
-        if (valueStart >= json.length() || json.charAt(valueStart) != '"') {
-            return "";
+    private static String stringValue(JsonReader reader) throws IOException {
+        if (reader.peek() == JsonReader.Token.STRING) {
+            return reader.nextString();
         }
-
-        valueStart++;
-        int valueEnd = valueStart;
-        while (valueEnd < json.length()) {
-            char c = json.charAt(valueEnd);
-            if (c == '"' && json.charAt(valueEnd - 1) != '\\') {
-                break;
-            }
-            valueEnd++;
-        }
-
-        return json.substring(valueStart, valueEnd)
-                .replace("\\\"", "\"")
-                .replace("\\\\", "\\");
+        reader.skipValue();
+        return "";
     }
 
-    private int extractJsonInt(String json, String key) {
-        int keyIndex = findKeyIndex(json, key);
-        if (keyIndex < 0) return 0;
-
-        int valueStart = json.indexOf(":", keyIndex) + 1;
-        while (valueStart < json.length() && Character.isWhitespace(json.charAt(valueStart))) {
-            valueStart++;
-        }
-
-        int valueEnd = valueStart;
-        while (valueEnd < json.length() && (Character.isDigit(json.charAt(valueEnd)) || json.charAt(valueEnd) == '-')) {
-            valueEnd++;
-        }
-
-        try {
-            return Integer.parseInt(json.substring(valueStart, valueEnd));
-        } catch (NumberFormatException e) {
-            return 0;
+    private static int intValue(JsonReader reader) throws IOException {
+        if (reader.peek() == JsonReader.Token.NUMBER) {
+            return reader.nextNumber().intValue();
         }
+        reader.skipValue();
+        return 0;
     }
 
-    private boolean extractJsonBoolean(String json, String key) {
-        int keyIndex = findKeyIndex(json, key);
-        if (keyIndex < 0) return false;
-
-        int valueStart = json.indexOf(":", keyIndex) + 1;
-        while (valueStart < json.length() && Character.isWhitespace(json.charAt(valueStart))) {
-            valueStart++;
+    private static boolean booleanValue(JsonReader reader) throws IOException {
+        if (reader.peek() == JsonReader.Token.BOOLEAN) {
+            return reader.nextBoolean();
         }
-
-        return json.substring(valueStart).trim().startsWith("true");
-    }
-
-    private int findKeyIndex(String json, String key) {
-        return json.indexOf("\"" + key + "\"");
+        reader.skipValue();
+        return false;
     }
 
     /**
      * Immutable saved server configuration record.
+     * The endpoint group is null for a single-endpoint server.
      */
     public record SavedServerConfig(
             String name,
@@ -255,10 +344,16 @@ public class ServerConfigRepository {
             int port,
             String httpUrl,
             boolean useTls,
-            int timeoutMs
+            int timeoutMs,
+            EndpointGroup endpointGroup
     ) {
+        public SavedServerConfig(String name, TransportMode mode, String host, int port,
+                                 String httpUrl, boolean useTls, int timeoutMs) {
+            this(name, mode, host, port, httpUrl, useTls, timeoutMs, null);
+        }
+
         public ConnectionConfig toConnectionConfig() {
-            return new ConnectionConfig(mode, host, port, httpUrl, useTls, null, null, timeoutMs);
+            return new ConnectionConfig(mode, host, port, httpUrl, useTls, null, null, timeoutMs, endpointGroup);
         }
 
         public static SavedServerConfig fromConnectionConfig(String name, ConnectionConfig config) {
@@ -269,7 +364,8 @@ public class ServerConfigRepository {
                     config.port(),
                     config.httpUrl(),
                     config.useTls(),
-                    config.timeoutMs()
+                    config.timeoutMs(),
+                    config.endpointGroup()
             );
         }
 
@@ -0,0 +1,30 @@
+package com.hl7testbench.telemetry;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight Recorder event for classifying a response by its MSA segment.
+ */
+@Name("com.hl7testbench.AckParse")
+@Label("HL7 ACK Parse")
+@Category({"HL7 Test Bench", "Parsing"})
+@Description("Classification of a response into a transport status via MSA-1")
+@Enabled(false)
+@StackTrace(false)
+public class AckParseEvent extends Event {
+
+    @Label("Response Length")
+    public int responseLength;
+
+    @Label("ACK Code")
+    public String ackCode;
+
+    @Label("Status")
+    public String status;
+}
@@ -0,0 +1,34 @@
+package com.hl7testbench.telemetry;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight Recorder event for establishing an MLLP connection,
+ * including the TLS handshake when TLS is enabled.
+ */
+@Name("com.hl7testbench.Connect")
+@Label("HL7 Connect")
+@Category({"HL7 Test Bench", "Transport"})
+@Description("TCP connect and optional TLS handshake to an MLLP endpoint")
+@Enabled(false)
+@StackTrace(false)
+public class ConnectEvent extends Event {
+
+    @Label("Host")
+    public String host;
+
+    @Label("Port")
+    public int port;
+
+    @Label("TLS")
+    public boolean tls;
+
+    @Label("Success")
+    public boolean success;
+}
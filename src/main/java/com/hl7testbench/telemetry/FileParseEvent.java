@@ -0,0 +1,32 @@
+package com.hl7testbench.telemetry;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight Recorder event for reading and splitting a message file.
+ */
+@Name("com.hl7testbench.FileParse")
+@Label("HL7 File Parse")
+@Category({"HL7 Test Bench", "Parsing"})
+@Description("Reading a file and splitting it into HL7 messages")
+@Enabled(false)
+@StackTrace(false)
+public class FileParseEvent extends Event {
+
+    @Label("Path")
+    public String path;
+
+    @Label("File Size")
+    @DataAmount
+    public long bytes;
+
+    @Label("Message Count")
+    public int messageCount;
+}
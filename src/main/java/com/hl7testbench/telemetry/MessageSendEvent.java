@@ -0,0 +1,69 @@
+package com.hl7testbench.telemetry;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * Flight Recorder event covering one complete message send, from the start
+ * of the connect attempt until the response (or error) is available.
+ *
+ * <p>Disabled by default; enable it with the {@code jfr/hl7testbench.jfc}
+ * settings file. Fields are only populated when {@link #shouldCommit()}
+ * returns true, so the disabled cost is a single branch.</p>
+ */
+@Name("com.hl7testbench.MessageSend")
+@Label("HL7 Message Send")
+@Category({"HL7 Test Bench", "Transport"})
+@Description("Round trip of a single HL7 message including connect, write and read phases")
+@Enabled(false)
+@StackTrace(false)
+public class MessageSendEvent extends Event {
+
+    @Label("Transport")
+    public String transport;
+
+    @Label("Target")
+    public String target;
+
+    @Label("Control ID")
+    public String messageControlId;
+
+    @Label("Message Type")
+    public String messageType;
+
+    @Label("Request Size")
+    @DataAmount
+    public long requestBytes;
+
+    @Label("Response Size")
+    @DataAmount
+    public long responseBytes;
+
+    @Label("ACK Code")
+    public String ackCode;
+
+    @Label("Status")
+    public String status;
+
+    @Label("Connect Time")
+    @Timespan(Timespan.NANOSECONDS)
+    public long connectNanos;
+
+    @Label("Write Time")
+    @Timespan(Timespan.NANOSECONDS)
+    public long writeNanos;
+
+    @Label("Read Time")
+    @Timespan(Timespan.NANOSECONDS)
+    public long readNanos;
+
+    @Label("Error")
+    public String error;
+}
@@ -0,0 +1,26 @@
+package com.hl7testbench.telemetry;
+
+import jdk.jfr.FlightRecorder;
+
+/**
+ * Decides whether the Flight Recorder events in this package are created.
+ *
+ * <p>Loading the first event class sets up Flight Recorder's event
+ * machinery, which costs a few hundred milliseconds even when nothing is
+ * recorded. Events are therefore only created once Flight Recorder has
+ * been started, with {@code -XX:StartFlightRecording} or
+ * {@code jcmd <pid> JFR.start}, so a launch without a recording never
+ * pays for it.</p>
+ */
+public final class Telemetry {
+
+    private Telemetry() {
+    }
+
+    /**
+     * Returns true if Flight Recorder has been started in this JVM.
+     */
+    public static boolean isRecording() {
+        return FlightRecorder.isInitialized();
+    }
+}
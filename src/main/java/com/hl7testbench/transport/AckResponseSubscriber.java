@@ -0,0 +1,245 @@
+package com.hl7testbench.transport;
+
+import java.io.IOException;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Flow;
+
+/**
+ * Response body subscriber that reads the MSA-1 acknowledgment code as the
+ * bytes arrive and keeps only the start of the body in memory.
+ *
+ * <p>ACKs are normally a few hundred bytes and are kept whole. For large
+ * responses, bytes beyond {@code headLimit} are appended to a spool file if
+ * a spool directory is given, or otherwise counted and discarded, so peak
+ * memory per request stays bounded whatever the response size.</p>
+ *
+ * <p>A compressed response is inflated as it arrives, so the ACK code, head
+ * and spool file all see the decoded body.</p>
+ */
+class AckResponseSubscriber implements HttpResponse.BodySubscriber<AckResponseSubscriber.Body> {
+
+    /**
+     * The retained part of a response.
+     *
+     * @param head the first bytes of the body, decoded as UTF-8
+     * @param totalBytes the full body length, after any decompression
+     * @param wireBytes the body length as received
+     * @param ackCode the upper-cased MSA-1 code, or null if none was found
+     * @param spoolFile the file holding the bytes after the head, or null
+     */
+    record Body(String head, long totalBytes, long wireBytes, String ackCode, Path spoolFile) {
+
+        /**
+         * Returns the head with a note on where the rest went, if anything was cut.
+         */
+        String describe(int headBytes) {
+            if (totalBytes <= headBytes) {
+                return head;
+            }
+            long rest = totalBytes - headBytes;
+            return head + (spoolFile != null
+                    ? "\n[... " + rest + " more bytes saved to " + spoolFile + "]"
+                    : "\n[... " + rest + " more bytes not kept]");
+        }
+    }
+
+    private final CompletableFuture<Body> result = new CompletableFuture<>();
+    private final byte[] head;
+    private final Path spoolDirectory;
+    private final HttpCompression.Decoder decoder;
+    private final MsaScanner scanner = new MsaScanner();
+
+    private Flow.Subscription subscription;
+    private int headLength;
+    private long totalBytes;
+    private Path spoolFile;
+    private FileChannel spool;
+
+    /**
+     * @param headLimit bytes of the body to keep in memory
+     * @param spoolDirectory where to write the rest, or null to discard it
+     */
+    AckResponseSubscriber(int headLimit, Path spoolDirectory) {
+        this(headLimit, spoolDirectory, null);
+    }
+
+    /**
+     * @param headLimit bytes of the decoded body to keep in memory
+     * @param spoolDirectory where to write the rest, or null to discard it
+     * @param decoder inflates a compressed body, or null if it is not compressed
+     */
+    AckResponseSubscriber(int headLimit, Path spoolDirectory, HttpCompression.Decoder decoder) {
+        this.head = new byte[headLimit];
+        this.spoolDirectory = spoolDirectory;
+        this.decoder = decoder;
+    }
+
+    int getHeadLimit() {
+        return head.length;
+    }
+
+    @Override
+    public CompletionStage<Body> getBody() {
+        return result;
+    }
+
+    @Override
+    public void onSubscribe(Flow.Subscription subscription) {
+        this.subscription = subscription;
+        subscription.request(1);
+    }
+
+    @Override
+    public void onNext(List<ByteBuffer> items) {
+        try {
+            for (ByteBuffer item : items) {
+                if (decoder != null) {
+                    decoder.decode(item, this::accept);
+                } else {
+                    accept(item);
+                }
+            }
+            subscription.request(1);
+        } catch (IOException e) {
+            subscription.cancel();
+            onError(e);
+        }
+    }
+
+    private void accept(ByteBuffer item) throws IOException {
+        totalBytes += item.remaining();
+        scanner.scan(item.duplicate());
+        int toHead = Math.min(item.remaining(), head.length - headLength);
+        item.get(head, headLength, toHead);
+        headLength += toHead;
+        if (item.hasRemaining()) {
+            spill(item);
+        }
+    }
+
+    private void spill(ByteBuffer item) throws IOException {
+        if (spoolDirectory == null) {
+            item.position(item.limit());
+            return;
+        }
+        if (spool == null) {
+            Files.createDirectories(spoolDirectory);
+            spoolFile = Files.createTempFile(spoolDirectory, "response-", ".hl7");
+            spool = FileChannel.open(spoolFile, StandardOpenOption.WRITE);
+        }
+        while (item.hasRemaining()) {
+            spool.write(item);
+        }
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+        if (decoder != null) {
+            decoder.end();
+        }
+        closeSpool();
+        if (spoolFile != null) {
+            try {
+                Files.deleteIfExists(spoolFile);
+            } catch (IOException e) {
+                // Leave it for the user to clean up
+            }
+        }
+        result.completeExceptionally(throwable);
+    }
+
+    @Override
+    public void onComplete() {
+        if (decoder != null) {
+            try {
+                decoder.finish();
+            } catch (IOException e) {
+                onError(e);
+                return;
+            }
+        }
+        closeSpool();
+        int end = headLength;
+        if (totalBytes > headLength) {
+            // Don't cut a multi-byte character in half
+            while (end > 0 && (head[end - 1] & 0xC0) == 0x80) {
+                end--;
+            }
+            if (end > 0 && (head[end - 1] & 0x80) != 0) {
+                end--;
+            }
+        }
+        String text = new String(head, 0, end, StandardCharsets.UTF_8);
+        result.complete(new Body(text, totalBytes,
+                decoder != null ? decoder.getEncodedBytes() : totalBytes, scanner.ackCode(), spoolFile));
+    }
+
+    private void closeSpool() {
+        if (spool != null) {
+            try {
+                spool.close();
+            } catch (IOException e) {
+                System.err.println("Error closing response spool file: " + e.getMessage());
+            }
+            spool = null;
+        }
+    }
+
+    /**
+     * Finds MSA-1 in a byte stream split at arbitrary points: the field
+     * after an "MSA|" (or "MSA^") that starts a segment, up to the next delimiter.
+     */
+    private static final class MsaScanner {
+
+        private static final int MAX_CODE = 8;
+        private static final byte[] MSA = {'M', 'S', 'A'};
+
+        private boolean segmentStart = true;
+        private int matched;
+        private boolean reading;
+        private boolean done;
+        private final StringBuilder code = new StringBuilder(MAX_CODE);
+
+        void scan(ByteBuffer buffer) {
+            while (buffer.hasRemaining() && !done) {
+                byte b = buffer.get();
+                if (reading) {
+                    if (b == '|' || b == '^' || b == '\r' || b == '\n' || code.length() >= MAX_CODE) {
+                        done = true;
+                    } else {
+                        code.append((char) b);
+                    }
+                } else if (b == '\r' || b == '\n') {
+                    segmentStart = true;
+                    matched = 0;
+                } else if (segmentStart) {
+                    if (matched < MSA.length) {
+                        if (b == MSA[matched]) {
+                            matched++;
+                        } else {
+                            segmentStart = false;
+                        }
+                    } else if (b == '|' || b == '^') {
+                        reading = true;
+                    } else {
+                        segmentStart = false;
+                    }
+                }
+            }
+        }
+
+        String ackCode() {
+            return reading ? code.toString().trim().toUpperCase(Locale.ROOT) : null;
+        }
+    }
+}
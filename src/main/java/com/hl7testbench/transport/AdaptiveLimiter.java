@@ -0,0 +1,89 @@
+package com.hl7testbench.transport;
+
+/**
+ * Concurrency limit for one endpoint that adapts to the receiver using
+ * additive-increase/multiplicative-decrease (AIMD) on observed round-trip times.
+ *
+ * <p>The limiter tracks a baseline RTT, the lowest seen, drifting slowly
+ * upwards so it can follow lasting changes. A send that times out, fails to
+ * connect or takes longer than {@code tolerance} times the baseline is
+ * treated as a congestion signal and shrinks the limit by 10%. Otherwise,
+ * while at least half the limit is in use, each completed send raises it
+ * by {@code 1/limit}, i.e. about one per round trip of the whole window.
+ * Senders block in {@link #acquire()} while the limit is reached, so a run
+ * settles at the concurrency the receiver can actually sustain.</p>
+ */
+public class AdaptiveLimiter {
+
+    private static final double BACKOFF_RATIO = 0.9;
+    private static final double BASELINE_DRIFT = 0.001;
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final double tolerance;
+
+    private double limit;
+    private int inFlight;
+    private double baselineRttMs = Double.NaN;
+
+    /**
+     * @param initialLimit the starting concurrency
+     * @param minLimit the lowest the limit may fall to
+     * @param maxLimit the highest the limit may rise to
+     * @param tolerance how many times the baseline RTT a send may take before it counts as congestion
+     */
+    public AdaptiveLimiter(int initialLimit, int minLimit, int maxLimit, double tolerance) {
+        if (minLimit < 1 || maxLimit < minLimit || tolerance <= 1.0) {
+            throw new IllegalArgumentException("Invalid limiter settings");
+        }
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.tolerance = tolerance;
+        this.limit = Math.max(minLimit, Math.min(maxLimit, initialLimit));
+    }
+
+    /**
+     * Waits until a send may start.
+     */
+    public synchronized void acquire() throws InterruptedException {
+        while (inFlight >= (int) limit) {
+            wait();
+        }
+        inFlight++;
+    }
+
+    /**
+     * Records a completed send and frees its slot.
+     *
+     * @param rttMs the send's round-trip time
+     * @param dropped true if the send timed out or could not connect
+     */
+    public synchronized void release(long rttMs, boolean dropped) {
+        int inFlightAtStart = inFlight;
+        inFlight--;
+
+        if (!dropped) {
+            if (Double.isNaN(baselineRttMs) || rttMs < baselineRttMs) {
+                baselineRttMs = rttMs;
+            } else {
+                baselineRttMs += (rttMs - baselineRttMs) * BASELINE_DRIFT;
+            }
+        }
+
+        boolean congested = dropped || rttMs > Math.max(1.0, baselineRttMs) * tolerance;
+        if (congested) {
+            limit = Math.max(minLimit, limit * BACKOFF_RATIO);
+        } else if (inFlightAtStart * 2 >= limit) {
+            limit = Math.min(maxLimit, limit + 1.0 / limit);
+        }
+        notifyAll();
+    }
+
+    public synchronized int getLimit() {
+        return (int) limit;
+    }
+
+    public synchronized int getInFlight() {
+        return inFlight;
+    }
+}
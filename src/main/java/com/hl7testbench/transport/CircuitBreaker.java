@@ -0,0 +1,135 @@
+package com.hl7testbench.transport;
+
+/**
+ * Circuit breaker for one endpoint.
+ *
+ * <p>While {@link State#CLOSED} the outcome of the last {@code windowSize}
+ * sends is kept; once at least half the window has been filled and the
+ * failure rate reaches the threshold, the breaker opens. While
+ * {@link State#OPEN} sends are refused for {@code openMs}. It then moves to
+ * {@link State#HALF_OPEN} and lets up to {@code probes} sends through;
+ * if they all succeed the breaker closes with a fresh window, and any
+ * failure opens it again.</p>
+ */
+public class CircuitBreaker {
+
+    /**
+     * Breaker state; the ordinal is exported as a gauge value.
+     */
+    public enum State {
+        CLOSED,
+        OPEN,
+        HALF_OPEN
+    }
+
+    private final boolean[] outcomes;
+    private final int failureRatePercent;
+    private final long openNanos;
+    private final int probes;
+
+    private State state = State.CLOSED;
+    private int recorded;
+    private int next;
+    private int failures;
+    private long openedAt;
+    private int probesStarted;
+    private int probesSucceeded;
+
+    /**
+     * @param windowSize the number of recent sends considered
+     * @param failureRatePercent the failure percentage that opens the breaker
+     * @param openMs how long the breaker stays open before probing
+     * @param probes the number of trial sends allowed when half-open
+     */
+    public CircuitBreaker(int windowSize, int failureRatePercent, long openMs, int probes) {
+        if (windowSize < 1 || failureRatePercent < 1 || failureRatePercent > 100 || openMs < 0 || probes < 1) {
+            throw new IllegalArgumentException("Invalid circuit breaker settings");
+        }
+        this.outcomes = new boolean[windowSize];
+        this.failureRatePercent = failureRatePercent;
+        this.openNanos = openMs * 1_000_000L;
+        this.probes = probes;
+    }
+
+    /**
+     * Returns whether a send may go ahead; every permitted send must be
+     * followed by {@link #record(boolean)} or {@link #cancel()}.
+     */
+    public synchronized boolean tryAcquire() {
+        if (state == State.OPEN) {
+            if (System.nanoTime() - openedAt < openNanos) {
+                return false;
+            }
+            state = State.HALF_OPEN;
+            probesStarted = 0;
+            probesSucceeded = 0;
+        }
+        if (state == State.HALF_OPEN) {
+            if (probesStarted >= probes) {
+                return false;
+            }
+            probesStarted++;
+        }
+        return true;
+    }
+
+    /**
+     * Records the outcome of a permitted send.
+     */
+    public synchronized void record(boolean success) {
+        switch (state) {
+            case HALF_OPEN -> {
+                if (!success) {
+                    open();
+                } else if (++probesSucceeded >= probes) {
+                    close();
+                }
+            }
+            case CLOSED -> {
+                if (recorded == outcomes.length) {
+                    if (!outcomes[next]) {
+                        failures--;
+                    }
+                } else {
+                    recorded++;
+                }
+                outcomes[next] = success;
+                if (!success) {
+                    failures++;
+                }
+                next = (next + 1) % outcomes.length;
+                if (recorded * 2 >= outcomes.length && failures * 100 >= failureRatePercent * recorded) {
+                    open();
+                }
+            }
+            case OPEN -> {
+                // A send that started before the breaker opened
+            }
+        }
+    }
+
+    /**
+     * Gives back a permit for a send that was never attempted.
+     */
+    public synchronized void cancel() {
+        if (state == State.HALF_OPEN && probesStarted > 0) {
+            probesStarted--;
+        }
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+
+    private void open() {
+        state = State.OPEN;
+        openedAt = System.nanoTime();
+    }
+
+    private void close() {
+        state = State.CLOSED;
+        recorded = 0;
+        next = 0;
+        failures = 0;
+    }
+}
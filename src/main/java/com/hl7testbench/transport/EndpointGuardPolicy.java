@@ -0,0 +1,49 @@
+package com.hl7testbench.transport;
+
+/**
+ * Settings for the per-endpoint adaptive concurrency limiter and circuit breaker.
+ *
+ * @param limiterEnabled whether sends wait for an {@link AdaptiveLimiter} slot
+ * @param initialLimit the limiter's starting concurrency
+ * @param maxLimit the highest concurrency the limiter may reach
+ * @param rttTolerance multiple of the baseline RTT treated as congestion
+ * @param breakerEnabled whether a {@link CircuitBreaker} guards each endpoint
+ * @param windowSize the number of recent sends the breaker considers
+ * @param failureRatePercent the failure percentage that opens the breaker
+ * @param openMs how long the breaker stays open before probing
+ * @param probes trial sends allowed while half-open
+ */
+public record EndpointGuardPolicy(
+        boolean limiterEnabled,
+        int initialLimit,
+        int maxLimit,
+        double rttTolerance,
+        boolean breakerEnabled,
+        int windowSize,
+        int failureRatePercent,
+        long openMs,
+        int probes
+) {
+
+    /**
+     * Reads the policy from {@code hl7testbench.limiter.*} and
+     * {@code hl7testbench.breaker.*} system properties. Both are off by default.
+     */
+    public static EndpointGuardPolicy fromSystemProperties() {
+        return new EndpointGuardPolicy(
+                Boolean.getBoolean("hl7testbench.limiter.enabled"),
+                Integer.getInteger("hl7testbench.limiter.initial", 4),
+                Integer.getInteger("hl7testbench.limiter.max", 256),
+                Double.parseDouble(System.getProperty("hl7testbench.limiter.tolerance", "2.0")),
+                Boolean.getBoolean("hl7testbench.breaker.enabled"),
+                Integer.getInteger("hl7testbench.breaker.window", 20),
+                Integer.getInteger("hl7testbench.breaker.failureRate", 50),
+                Long.getLong("hl7testbench.breaker.openMs", 5_000),
+                Integer.getInteger("hl7testbench.breaker.probes", 1)
+        );
+    }
+
+    public boolean isEnabled() {
+        return limiterEnabled || breakerEnabled;
+    }
+}
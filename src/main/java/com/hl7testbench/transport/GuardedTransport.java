@@ -0,0 +1,160 @@
+package com.hl7testbench.transport;
+
+import com.hl7testbench.metrics.Counter;
+import com.hl7testbench.metrics.Gauge;
+import com.hl7testbench.metrics.MetricFamily;
+import com.hl7testbench.metrics.MetricsRegistry;
+import com.hl7testbench.model.ConnectionConfig;
+import com.hl7testbench.model.HistoryRecord;
+import com.hl7testbench.model.TransportResult;
+import com.hl7testbench.model.TransportResult.TransportStatus;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Decorator that protects each endpoint with an {@link AdaptiveLimiter}
+ * and a {@link CircuitBreaker}, as enabled by an {@link EndpointGuardPolicy}.
+ *
+ * <p>Sends wait for a limiter slot before going out. While an endpoint's
+ * breaker is open, sends are not attempted and return a
+ * {@link TransportStatus#CIRCUIT_OPEN} result straight away. Timeouts,
+ * connection errors and unrecognised responses count as failures;
+ * ACK rejections are the receiver working normally and do not.</p>
+ *
+ * <p>Per endpoint, the current limit is exported as
+ * {@code hl7_concurrency_limit{target}}, the breaker state (0 closed,
+ * 1 open, 2 half-open) as {@code hl7_circuit_state{target}} and refused
+ * sends as {@code hl7_circuit_rejected_total{target}}.</p>
+ */
+public class GuardedTransport implements TransportStrategy {
+
+    private final TransportStrategy delegate;
+    private final EndpointGuardPolicy policy;
+    private final Map<String, Guard> guards = new ConcurrentHashMap<>();
+    private final MetricFamily<Gauge> limitFamily;
+    private final MetricFamily<Gauge> stateFamily;
+    private final MetricFamily<Counter> rejectedFamily;
+
+    public GuardedTransport(TransportStrategy delegate, EndpointGuardPolicy policy) {
+        this(delegate, policy, MetricsRegistry.getDefault());
+    }
+
+    public GuardedTransport(TransportStrategy delegate, EndpointGuardPolicy policy, MetricsRegistry registry) {
+        this.delegate = delegate;
+        this.policy = policy;
+        this.limitFamily = registry.gauge("hl7_concurrency_limit",
+                "Current adaptive concurrency limit per endpoint", "target");
+        this.stateFamily = registry.gauge("hl7_circuit_state",
+                "Circuit breaker state per endpoint (0 closed, 1 open, 2 half-open)", "target");
+        this.rejectedFamily = registry.counter("hl7_circuit_rejected_total",
+                "Sends refused because the endpoint's circuit breaker was open", "target");
+    }
+
+    /**
+     * Limiter and breaker for one endpoint.
+     */
+    private class Guard {
+
+        final AdaptiveLimiter limiter;
+        final CircuitBreaker breaker;
+        final Counter rejected;
+
+        Guard(String target) {
+            limiter = policy.limiterEnabled()
+                    ? new AdaptiveLimiter(policy.initialLimit(), 1, policy.maxLimit(), policy.rttTolerance())
+                    : null;
+            breaker = policy.breakerEnabled()
+                    ? new CircuitBreaker(policy.windowSize(), policy.failureRatePercent(), policy.openMs(), policy.probes())
+                    : null;
+            rejected = rejectedFamily.labels(target);
+            if (limiter != null) {
+                limitFamily.labels(target).bind(limiter::getLimit);
+            }
+            if (breaker != null) {
+                stateFamily.labels(target).bind(() -> breaker.getState().ordinal());
+            }
+        }
+    }
+
+    @Override
+    public TransportResult send(String message, String messageControlId, ConnectionConfig config) {
+        return guardedSend(() -> delegate.send(message, messageControlId, config), messageControlId, config);
+    }
+
+    @Override
+    public TransportSession openSession(ConnectionConfig config) {
+        TransportSession session = delegate.openSession(config);
+        return new TransportSession() {
+            @Override
+            public TransportResult send(String message, String messageControlId) {
+                return guardedSend(() -> session.send(message, messageControlId), messageControlId, config);
+            }
+
+            @Override
+            public void close() {
+                session.close();
+            }
+        };
+    }
+
+    private TransportResult guardedSend(Supplier<TransportResult> send, String messageControlId,
+                                        ConnectionConfig config) {
+        Guard guard = guards.computeIfAbsent(HistoryRecord.describeTarget(config), Guard::new);
+
+        if (guard.breaker != null && !guard.breaker.tryAcquire()) {
+            guard.rejected.increment();
+            return TransportResult.circuitOpen(messageControlId, config.mode(),
+                    "Not sent: circuit breaker open for " + HistoryRecord.describeTarget(config));
+        }
+
+        if (guard.limiter != null) {
+            try {
+                guard.limiter.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                if (guard.breaker != null) {
+                    guard.breaker.cancel();
+                }
+                return TransportResult.error(messageControlId, config.mode(), "Connection error: interrupted", 0);
+            }
+        }
+
+        TransportResult result = null;
+        try {
+            result = send.get();
+            return result;
+        } finally {
+            boolean failed = result == null || isFailure(result.status());
+            if (guard.limiter != null) {
+                guard.limiter.release(result != null ? result.roundTripTimeMs() : 0,
+                        result == null || result.status() == TransportStatus.TIMEOUT
+                                || result.status() == TransportStatus.CONNECTION_ERROR);
+            }
+            if (guard.breaker != null) {
+                guard.breaker.record(!failed);
+            }
+        }
+    }
+
+    private static boolean isFailure(TransportStatus status) {
+        return status == TransportStatus.TIMEOUT
+                || status == TransportStatus.CONNECTION_ERROR
+                || status == TransportStatus.UNKNOWN_RESPONSE;
+    }
+
+    @Override
+    public String getName() {
+        return delegate.getName();
+    }
+
+    @Override
+    public boolean validateConfig(ConnectionConfig config) {
+        return delegate.validateConfig(config);
+    }
+
+    public TransportStrategy getDelegate() {
+        return delegate;
+    }
+}
@@ -0,0 +1,364 @@
+package com.hl7testbench.transport;
+
+import com.hl7testbench.metrics.Counter;
+import com.hl7testbench.metrics.LatencyHistogram;
+import com.hl7testbench.metrics.MetricFamily;
+import com.hl7testbench.metrics.MetricsRegistry;
+import com.hl7testbench.util.Utf8EncodingInputStream;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * gzip and deflate coding of HTTP bodies, with metrics on the size reduction
+ * and the CPU time spent.
+ *
+ * <p>Request bodies are compressed with a {@link Deflater} kept per sending
+ * thread, and the message is encoded to UTF-8 a chunk at a time as it is
+ * compressed, so only the compressed body is held in full. Responses are
+ * inflated as their bytes arrive through a {@link Decoder}.</p>
+ */
+public class HttpCompression {
+
+    private static final HttpCompression DEFAULT_INSTANCE = new HttpCompression(MetricsRegistry.getDefault());
+
+    private static final int BUFFER_SIZE = 16 * 1024;
+    private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+    private static final boolean CPU_TIME_SUPPORTED = THREADS.isCurrentThreadCpuTimeSupported();
+
+    private static final byte[] GZIP_HEADER = {0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, (byte) 0xff};
+    private static final int GZIP_TRAILER_LENGTH = 8;
+    private static final int FHCRC = 2;
+    private static final int FEXTRA = 4;
+    private static final int FNAME = 8;
+    private static final int FCOMMENT = 16;
+
+    /**
+     * A content coding supported for request and response bodies.
+     */
+    public enum Encoding {
+        GZIP("gzip"),
+        DEFLATE("deflate");
+
+        private final String token;
+
+        Encoding(String token) {
+            this.token = token;
+        }
+
+        /**
+         * Returns the name used in {@code Content-Encoding} headers.
+         */
+        public String token() {
+            return token;
+        }
+
+        /**
+         * Parses a content coding name.
+         *
+         * @return the encoding, or null for "identity", "none" or an unsupported coding
+         */
+        public static Encoding parse(String value) {
+            if (value == null) {
+                return null;
+            }
+            return switch (value.trim().toLowerCase(Locale.ROOT)) {
+                case "gzip", "x-gzip" -> GZIP;
+                case "deflate" -> DEFLATE;
+                default -> null;
+            };
+        }
+    }
+
+    /**
+     * Per-thread compression state, reused for every request body sent from the thread.
+     */
+    private static final class Compressor {
+        final Deflater gzip = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+        final Deflater zlib = new Deflater(Deflater.DEFAULT_COMPRESSION);
+        final CRC32 crc = new CRC32();
+        final byte[] input = new byte[BUFFER_SIZE];
+        final byte[] output = new byte[BUFFER_SIZE];
+    }
+
+    private static final ThreadLocal<Compressor> COMPRESSORS = ThreadLocal.withInitial(Compressor::new);
+
+    private final MetricFamily<Counter> uncompressedFamily;
+    private final MetricFamily<Counter> compressedFamily;
+    private final MetricFamily<LatencyHistogram> ratioFamily;
+    private final MetricFamily<LatencyHistogram> cpuFamily;
+
+    public HttpCompression(MetricsRegistry registry) {
+        this.uncompressedFamily = registry.counter("hl7_http_uncompressed_bytes_total",
+                "HTTP body bytes before compression or after decompression", "direction", "encoding");
+        this.compressedFamily = registry.counter("hl7_http_compressed_bytes_total",
+                "HTTP body bytes on the wire for compressed bodies", "direction", "encoding");
+        this.ratioFamily = registry.histogram("hl7_http_compression_ratio_percent",
+                "Compressed body size as a percentage of the uncompressed size", "direction", "encoding");
+        this.cpuFamily = registry.histogram("hl7_http_compression_cpu_us",
+                "CPU time spent compressing or decompressing one body in microseconds", "direction", "encoding");
+    }
+
+    /**
+     * Returns the instance registered with the default registry.
+     */
+    public static HttpCompression getDefault() {
+        return DEFAULT_INSTANCE;
+    }
+
+    /**
+     * Compresses the UTF-8 encoding of a message.
+     */
+    public byte[] compress(CharSequence text, Encoding encoding) {
+        long start = cpuTimeNanos();
+        Compressor compressor = COMPRESSORS.get();
+        boolean gzip = encoding == Encoding.GZIP;
+        Deflater deflater = gzip ? compressor.gzip : compressor.zlib;
+        deflater.reset();
+        compressor.crc.reset();
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(64, text.length() / 4));
+        if (gzip) {
+            out.write(GZIP_HEADER, 0, GZIP_HEADER.length);
+        }
+        Utf8EncodingInputStream source = new Utf8EncodingInputStream(text);
+        int n;
+        while ((n = source.read(compressor.input, 0, compressor.input.length)) > 0) {
+            if (gzip) {
+                compressor.crc.update(compressor.input, 0, n);
+            }
+            deflater.setInput(compressor.input, 0, n);
+            while (!deflater.needsInput()) {
+                out.write(compressor.output, 0, deflater.deflate(compressor.output));
+            }
+        }
+        deflater.finish();
+        while (!deflater.finished()) {
+            out.write(compressor.output, 0, deflater.deflate(compressor.output));
+        }
+        if (gzip) {
+            writeIntLE(out, compressor.crc.getValue());
+            writeIntLE(out, deflater.getBytesRead());
+        }
+        byte[] body = out.toByteArray();
+        record("request", encoding, deflater.getBytesRead(), body.length, cpuTimeNanos() - start);
+        return body;
+    }
+
+    /**
+     * Returns a decoder for a response with the given {@code Content-Encoding},
+     * or null if the body is not compressed or uses a coding that is not supported.
+     */
+    public Decoder newDecoder(String contentEncoding) {
+        Encoding encoding = Encoding.parse(contentEncoding);
+        return encoding != null ? new Decoder(encoding) : null;
+    }
+
+    private void record(String direction, Encoding encoding, long uncompressed, long compressed, long cpuNanos) {
+        uncompressedFamily.labels(direction, encoding.token()).add(uncompressed);
+        compressedFamily.labels(direction, encoding.token()).add(compressed);
+        if (uncompressed > 0) {
+            ratioFamily.labels(direction, encoding.token()).record((compressed * 100 + uncompressed - 1) / uncompressed);
+        }
+        cpuFamily.labels(direction, encoding.token()).record(cpuNanos / 1000);
+    }
+
+    /**
+     * Receives decoded bytes; the buffer is only valid during the call.
+     */
+    @FunctionalInterface
+    public interface Sink {
+        void accept(ByteBuffer decoded) throws IOException;
+    }
+
+    /**
+     * Inflates one response body fed in arbitrary pieces. Not thread-safe,
+     * but pieces may arrive on different threads one after another.
+     */
+    public final class Decoder {
+
+        private final Encoding encoding;
+        private final Inflater inflater;
+        private final CRC32 crc = new CRC32();
+        private final byte[] output = new byte[BUFFER_SIZE];
+
+        private byte[] pending = new byte[64];
+        private int pendingLength;
+        private boolean headerDone;
+        private long encodedBytes;
+        private long decodedBytes;
+        private long cpuNanos;
+
+        private Decoder(Encoding encoding) {
+            this.encoding = encoding;
+            this.inflater = new Inflater(encoding == Encoding.GZIP);
+            this.headerDone = encoding != Encoding.GZIP;
+        }
+
+        /**
+         * Decodes the next piece of the body, passing any output to the sink.
+         */
+        public void decode(ByteBuffer input, Sink sink) throws IOException {
+            long start = cpuTimeNanos();
+            encodedBytes += input.remaining();
+            try {
+                if (!headerDone) {
+                    append(input);
+                    int headerLength = gzipHeaderLength();
+                    if (headerLength < 0) {
+                        return;
+                    }
+                    headerDone = true;
+                    input = ByteBuffer.wrap(Arrays.copyOfRange(pending, headerLength, pendingLength));
+                    pendingLength = 0;
+                }
+                if (inflater.finished()) {
+                    append(input);
+                    return;
+                }
+                inflate(input, sink);
+                if (inflater.finished()) {
+                    append(input);
+                }
+            } finally {
+                cpuNanos += cpuTimeNanos() - start;
+            }
+        }
+
+        private void inflate(ByteBuffer input, Sink sink) throws IOException {
+            inflater.setInput(input);
+            try {
+                while (true) {
+                    int n = inflater.inflate(output);
+                    if (n > 0) {
+                        decodedBytes += n;
+                        if (encoding == Encoding.GZIP) {
+                            crc.update(output, 0, n);
+                        }
+                        sink.accept(ByteBuffer.wrap(output, 0, n));
+                    } else if (inflater.finished() || inflater.needsInput()) {
+                        return;
+                    } else if (inflater.needsDictionary()) {
+                        throw new IOException("Compressed response needs a preset dictionary");
+                    }
+                }
+            } catch (DataFormatException e) {
+                throw new IOException("Corrupt " + encoding.token() + " response: " + e.getMessage(), e);
+            }
+        }
+
+        /**
+         * Checks the body was complete, records metrics and frees the inflater.
+         */
+        public void finish() throws IOException {
+            try {
+                if (!inflater.finished()) {
+                    throw new IOException("Truncated " + encoding.token() + " response");
+                }
+                if (encoding == Encoding.GZIP) {
+                    if (pendingLength < GZIP_TRAILER_LENGTH
+                            || readIntLE(0) != crc.getValue()
+                            || readIntLE(4) != (decodedBytes & 0xFFFFFFFFL)) {
+                        throw new IOException("Corrupt gzip trailer");
+                    }
+                }
+                record("response", encoding, decodedBytes, encodedBytes, cpuNanos);
+            } finally {
+                end();
+            }
+        }
+
+        /**
+         * Frees the inflater without checking the body, e.g. after an error.
+         */
+        public void end() {
+            inflater.end();
+        }
+
+        /**
+         * Returns the number of compressed bytes received so far.
+         */
+        public long getEncodedBytes() {
+            return encodedBytes;
+        }
+
+        private void append(ByteBuffer input) {
+            int n = input.remaining();
+            if (pendingLength + n > pending.length) {
+                pending = Arrays.copyOf(pending, Math.max(pending.length * 2, pendingLength + n));
+            }
+            input.get(pending, pendingLength, n);
+            pendingLength += n;
+        }
+
+        /**
+         * Returns the length of the gzip header held in {@code pending},
+         * or -1 if more bytes are needed.
+         */
+        private int gzipHeaderLength() throws IOException {
+            if (pendingLength < GZIP_HEADER.length) {
+                return -1;
+            }
+            if (pending[0] != GZIP_HEADER[0] || pending[1] != GZIP_HEADER[1] || pending[2] != Deflater.DEFLATED) {
+                throw new IOException("Response is not in gzip format");
+            }
+            int flags = pending[3];
+            int position = GZIP_HEADER.length;
+            if ((flags & FEXTRA) != 0) {
+                if (position + 2 > pendingLength) {
+                    return -1;
+                }
+                position += 2 + ((pending[position] & 0xFF) | (pending[position + 1] & 0xFF) << 8);
+            }
+            if ((flags & FNAME) != 0) {
+                position = skipZeroTerminated(position);
+            }
+            if ((flags & FCOMMENT) != 0) {
+                position = skipZeroTerminated(position);
+            }
+            if ((flags & FHCRC) != 0 && position >= 0) {
+                position += 2;
+            }
+            return position >= 0 && position <= pendingLength ? position : -1;
+        }
+
+        private int skipZeroTerminated(int position) {
+            if (position < 0) {
+                return -1;
+            }
+            for (int i = position; i < pendingLength; i++) {
+                if (pending[i] == 0) {
+                    return i + 1;
+                }
+            }
+            return -1;
+        }
+
+        private long readIntLE(int offset) {
+            return (pending[offset] & 0xFFL)
+                    | (pending[offset + 1] & 0xFFL) << 8
+                    | (pending[offset + 2] & 0xFFL) << 16
+                    | (pending[offset + 3] & 0xFFL) << 24;
+        }
+    }
+
+    private static void writeIntLE(ByteArrayOutputStream out, long value) {
+        out.write((int) value);
+        out.write((int) (value >>> 8));
+        out.write((int) (value >>> 16));
+        out.write((int) (value >>> 24));
+    }
+
+    private static long cpuTimeNanos() {
+        return CPU_TIME_SUPPORTED ? THREADS.getCurrentThreadCpuTime() : System.nanoTime();
+    }
+}
@@ -2,82 +2,424 @@ package com.hl7testbench.transport;
 
 import com.hl7testbench.model.ConnectionConfig;
 import com.hl7testbench.model.TransportResult;
+import com.hl7testbench.telemetry.MessageSendEvent;
+import com.hl7testbench.telemetry.Telemetry;
+import com.hl7testbench.util.HL7Parser;
+import com.hl7testbench.util.Utf8EncodingInputStream;
 
 import javax.net.ssl.KeyManagerFactory;
 import javax.net.ssl.SSLContext;
 import javax.net.ssl.TrustManagerFactory;
 import java.io.FileInputStream;
 import java.net.URI;
+import java.nio.ByteBuffer;
 import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
 import java.net.http.HttpTimeoutException;
+import java.nio.file.Path;
 import java.security.KeyStore;
 import java.time.Duration;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Flow;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * HTTP/HTTPS transport implementation for HL7 messages.
  * Sends messages as POST requests with configurable content type.
+ *
+ * <p>Clients are cached per endpoint, TLS and timeout settings and shared
+ * by all sending threads. In HTTP/2 mode (the default) concurrent sends are
+ * multiplexed as streams over a small number of connections, falling back
+ * to HTTP/1.1 if the server does not negotiate HTTP/2; in HTTP/1.1 mode
+ * connections are kept alive and pooled. Each set of connections admits at
+ * most {@code maxConcurrentStreams} sends per connection at a time; further
+ * senders wait, up to the configured timeout, for a stream to become free.
+ * A keystore that is replaced on disk gets new clients within a second.</p>
+ *
+ * <p>Messages of at least {@code streamThreshold} characters are encoded to
+ * UTF-8 a chunk at a time as the request body is written, instead of as one
+ * byte array.
+ * Responses are read by an {@link AckResponseSubscriber}: the ACK code is
+ * found as bytes arrive and only the first {@code responseHeadBytes} are kept,
+ * the rest being written to a file in the spool directory, if one is set,
+ * or discarded.</p>
+ *
+ * <p>When a request encoding is set, messages of at least
+ * {@code compressionThreshold} characters are sent compressed with
+ * {@code Content-Encoding} set, and compressed responses are accepted and
+ * inflated as they arrive.</p>
+ *
+ * <p>Phase timings are taken from the request body and response: connect
+ * runs until the client starts taking the body, write until it has taken
+ * all of it, and read until the response is complete. Waiting for a free
+ * stream is in the round-trip time but in no phase. Sends that fail before
+ * a response arrives have no phase timings.</p>
  */
 public class HttpTransport implements TransportStrategy {
 
     private static final String DEFAULT_CONTENT_TYPE = "application/hl7-v2";
+    private static final long KEYSTORE_CHECK_NANOS = TimeUnit.SECONDS.toNanos(1);
+    private static final int MAX_CACHED_KEYS = 256;
 
-    private String contentType = DEFAULT_CONTENT_TYPE;
+    private volatile String contentType = DEFAULT_CONTENT_TYPE;
+    private final HttpClient.Version version = parseVersion(System.getProperty("hl7testbench.http.version", "HTTP_2"));
+    private final int maxConcurrentStreams = Integer.getInteger("hl7testbench.http.maxStreams", 100);
+    private final int connections = Integer.getInteger("hl7testbench.http.connections", 1);
+    private final int streamThreshold = Integer.getInteger("hl7testbench.http.streamThreshold", 256 * 1024);
+    private final int responseHeadBytes = Integer.getInteger("hl7testbench.http.responseHeadBytes", 64 * 1024);
+    private final Path responseSpoolDirectory = parseSpoolDirectory(System.getProperty("hl7testbench.http.responseSpool"));
+    private final HttpCompression.Encoding requestEncoding =
+            HttpCompression.Encoding.parse(System.getProperty("hl7testbench.http.compression"));
+    private final int compressionThreshold = Integer.getInteger("hl7testbench.http.compressionThreshold", 1024);
+
+    private final HttpCompression compression = HttpCompression.getDefault();
+
+    private final Map<ClientKey, ClientPool> pools = new ConcurrentHashMap<>();
+    private final Map<ConnectionConfig, CachedKey> keys = new ConcurrentHashMap<>();
+
+    /**
+     * An endpoint (scheme, host and port) and the settings that require a
+     * separate client. The keystore is identified by a digest of its path
+     * and password and by its modification time, as for MLLP, so the
+     * password is not kept for the life of the pool and a replaced keystore
+     * gets new clients.
+     */
+    private record ClientKey(String scheme, String host, int port, KeystoreIdentity keystore, int timeoutMs,
+                             HttpClient.Version version) {
+
+        static ClientKey of(ConnectionConfig config, HttpClient.Version version) {
+            URI uri = URI.create(config.httpUrl());
+            String scheme = uri.getScheme() != null ? uri.getScheme().toLowerCase(Locale.ROOT) : "";
+            int port = uri.getPort() >= 0 ? uri.getPort() : scheme.equals("https") ? 443 : 80;
+            return new ClientKey(
+                    scheme,
+                    uri.getHost() != null ? uri.getHost().toLowerCase(Locale.ROOT) : "",
+                    port,
+                    KeystoreIdentity.of(config),
+                    config.timeoutMs(),
+                    version);
+        }
+
+        /**
+         * True if {@code older} is this key with an earlier version of the same keystore.
+         */
+        boolean replaces(ClientKey older) {
+            return keystore.replaces(older.keystore) && scheme.equals(older.scheme) && host.equals(older.host)
+                    && port == older.port && timeoutMs == older.timeoutMs && version == older.version;
+        }
+    }
+
+    /**
+     * A configuration's client key and when its keystore was last checked.
+     */
+    private record CachedKey(ClientKey key, long checkedAt) {
+    }
+
+    /**
+     * Clients for one {@link ClientKey}, each holding its own connections,
+     * and the stream permits shared between them, so the stream limit
+     * applies per endpoint.
+     */
+    private static final class ClientPool {
+
+        final HttpClient[] clients;
+        final Semaphore streams;
+        final AtomicInteger next = new AtomicInteger();
+
+        ClientPool(HttpClient[] clients, int maxConcurrentStreams) {
+            this.clients = clients;
+            this.streams = new Semaphore(maxConcurrentStreams * clients.length);
+        }
+
+        HttpClient nextClient() {
+            return clients[Math.floorMod(next.getAndIncrement(), clients.length)];
+        }
+    }
 
     @Override
     public TransportResult send(String message, String messageControlId, ConnectionConfig config) {
         long startTime = System.currentTimeMillis();
+        MessageSendEvent event = Telemetry.isRecording() ? new MessageSendEvent() : null;
+        if (event != null) {
+            event.begin();
+        }
+
+        TransportResult result;
+        TransportResult.Phases phases = null;
+        TimedBodyPublisher publisher = null;
+        AckResponseSubscriber.Body responseBody = null;
+        HttpCompression.Encoding encoding = message.length() >= compressionThreshold ? requestEncoding : null;
+        long requestBytes = encoding == null && message.length() >= streamThreshold
+                ? Utf8EncodingInputStream.encodedLength(message)
+                : -1;
 
+        ClientPool pool = null;
+        boolean acquired = false;
         try {
-            HttpClient client = buildHttpClient(config);
+            pool = poolFor(config);
+            acquired = pool.streams.tryAcquire(config.timeoutMs(), TimeUnit.MILLISECONDS);
+            if (!acquired) {
+                throw new HttpTimeoutException("no free stream");
+            }
+            HttpClient client = pool.nextClient();
 
-            HttpRequest request = HttpRequest.newBuilder()
+            HttpRequest.Builder builder = HttpRequest.newBuilder()
                     .uri(URI.create(config.httpUrl()))
                     .timeout(Duration.ofMillis(config.timeoutMs()))
                     .header("Content-Type", contentType)
-                    .header("Accept", contentType)
-                    .POST(HttpRequest.BodyPublishers.ofString(message))
-                    .build();
+                    .header("Accept", contentType);
+            if (encoding != null) {
+                byte[] body = compression.compress(message, encoding);
+                builder.header("Content-Encoding", encoding.token());
+                publisher = new TimedBodyPublisher(HttpRequest.BodyPublishers.ofByteArray(body));
+            } else {
+                publisher = new TimedBodyPublisher(publisherFor(message, requestBytes));
+            }
+            builder.POST(publisher);
+            if (requestEncoding != null) {
+                builder.header("Accept-Encoding", "gzip, deflate");
+            }
+            HttpRequest request = builder.build();
 
-            HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+            int headBytes = Math.max(0, responseHeadBytes);
+            Path spoolDirectory = responseSpoolDirectory;
+            long[] headersAt = new long[1];
+            long sendStart = System.nanoTime();
+            HttpResponse<AckResponseSubscriber.Body> response = client.send(request, info -> {
+                headersAt[0] = System.nanoTime();
+                return new AckResponseSubscriber(headBytes, spoolDirectory,
+                        compression.newDecoder(info.headers().firstValue("Content-Encoding").orElse(null)));
+            });
+            long received = System.nanoTime();
             long roundTripTime = System.currentTimeMillis() - startTime;
+            phases = publisher.phases(sendStart, headersAt[0], received);
 
-            String responseBody = response.body();
+            responseBody = response.body();
+            String responseText = responseBody.describe(headBytes);
 
             if (response.statusCode() >= 200 && response.statusCode() < 300) {
-                return TransportResult.success(messageControlId, config.mode(), responseBody, roundTripTime);
+                result = TransportResult.success(messageControlId, config.mode(), responseText, roundTripTime,
+                        responseBody.ackCode());
             } else {
-                return TransportResult.error(
+                result = TransportResult.error(
                         messageControlId,
                         config.mode(),
-                        "HTTP " + response.statusCode() + ": " + responseBody,
+                        "HTTP " + response.statusCode() + ": " + responseText,
                         roundTripTime
                 );
             }
 
         } catch (HttpTimeoutException e) {
-            return TransportResult.error(
+            result = TransportResult.error(
                     messageControlId,
                     config.mode(),
                     "HTTP timeout after " + config.timeoutMs() + "ms",
                     System.currentTimeMillis() - startTime
             );
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            result = TransportResult.error(
+                    messageControlId,
+                    config.mode(),
+                    "HTTP error: interrupted",
+                    System.currentTimeMillis() - startTime
+            );
         } catch (Exception e) {
-            return TransportResult.error(
+            result = TransportResult.error(
                     messageControlId,
                     config.mode(),
                     "HTTP error: " + e.getMessage(),
                     System.currentTimeMillis() - startTime
             );
+        } finally {
+            if (acquired) {
+                pool.streams.release();
+            }
+        }
+
+        if (phases != null) {
+            result = result.withPhases(phases);
+        }
+        if (event == null) {
+            return result;
+        }
+        event.end();
+        if (event.shouldCommit()) {
+            event.transport = getName();
+            event.target = config.httpUrl();
+            event.messageControlId = messageControlId;
+            event.messageType = HL7Parser.extractMessageType(message);
+            event.requestBytes = publisher != null && publisher.bytes() > 0
+                    ? publisher.bytes()
+                    : Utf8EncodingInputStream.encodedLength(message);
+            event.responseBytes = responseBody != null ? responseBody.wireBytes() : 0;
+            event.ackCode = responseBody != null ? responseBody.ackCode() : null;
+            event.status = result.status().name();
+            event.error = result.errorMessage();
+            if (phases != null) {
+                event.connectNanos = phases.connectNanos();
+                event.writeNanos = phases.writeNanos();
+                event.readNanos = phases.readNanos();
+            }
+            event.commit();
+        }
+        return result;
+    }
+
+    /**
+     * Wraps a request body publisher to time and count what the client
+     * takes from it. The client subscribes once it has a connection and has
+     * sent the request headers, and the body is complete when the last
+     * buffer has been taken, so the subscription and completion times bound
+     * the connect and write phases.
+     */
+    private static final class TimedBodyPublisher implements HttpRequest.BodyPublisher {
+
+        private final HttpRequest.BodyPublisher delegate;
+        private volatile long subscribedAt;
+        private volatile long completedAt;
+        private final AtomicLong bytes = new AtomicLong();
+
+        TimedBodyPublisher(HttpRequest.BodyPublisher delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public long contentLength() {
+            return delegate.contentLength();
+        }
+
+        @Override
+        public void subscribe(Flow.Subscriber<? super ByteBuffer> subscriber) {
+            // The client subscribes again if it resends the request, e.g.
+            // after falling back from HTTP/2; only the last attempt counts.
+            subscribedAt = System.nanoTime();
+            completedAt = 0;
+            bytes.set(0);
+            delegate.subscribe(new Flow.Subscriber<ByteBuffer>() {
+                @Override
+                public void onSubscribe(Flow.Subscription subscription) {
+                    subscriber.onSubscribe(subscription);
+                }
+
+                @Override
+                public void onNext(ByteBuffer item) {
+                    bytes.addAndGet(item.remaining());
+                    subscriber.onNext(item);
+                }
+
+                @Override
+                public void onError(Throwable throwable) {
+                    subscriber.onError(throwable);
+                }
+
+                @Override
+                public void onComplete() {
+                    completedAt = System.nanoTime();
+                    subscriber.onComplete();
+                }
+            });
+        }
+
+        /**
+         * Returns the number of body bytes the client has taken.
+         */
+        long bytes() {
+            return bytes.get();
+        }
+
+        /**
+         * Returns the phases of a send that received a response: connect
+         * until the body was subscribed, write until it was complete (or the
+         * response headers arrived, if the server answered first) and read
+         * until the response body was complete. Returns null if the body
+         * was never subscribed, as the connect phase cannot be told apart.
+         */
+        TransportResult.Phases phases(long sendStart, long headersAt, long received) {
+            long subscribed = subscribedAt;
+            if (subscribed == 0) {
+                return null;
+            }
+            long written = completedAt;
+            if (written == 0 || (headersAt != 0 && headersAt < written)) {
+                written = headersAt != 0 ? headersAt : received;
+            }
+            return new TransportResult.Phases(
+                    Math.max(0, subscribed - sendStart),
+                    Math.max(0, written - subscribed),
+                    Math.max(0, received - written));
         }
     }
 
+    /**
+     * Returns a body publisher for the message: small messages are encoded
+     * in one go, large ones as the body is written.
+     *
+     * @param encodedLength the UTF-8 length of a large message, or -1 for a small one
+     */
+    private static HttpRequest.BodyPublisher publisherFor(String message, long encodedLength) {
+        if (encodedLength < 0) {
+            return HttpRequest.BodyPublishers.ofString(message);
+        }
+        return HttpRequest.BodyPublishers.fromPublisher(
+                HttpRequest.BodyPublishers.ofInputStream(() -> new Utf8EncodingInputStream(message)),
+                encodedLength);
+    }
+
+    /**
+     * Returns the shared clients for the configuration's settings, creating them on first use.
+     */
+    private ClientPool poolFor(ConnectionConfig config) throws Exception {
+        ClientKey key = keyFor(config);
+        ClientPool pool = pools.get(key);
+        if (pool == null) {
+            HttpClient[] clients = new HttpClient[Math.max(1, connections)];
+            for (int i = 0; i < clients.length; i++) {
+                clients[i] = buildHttpClient(config, key.version());
+            }
+            ClientPool created = new ClientPool(clients, Math.max(1, maxConcurrentStreams));
+            pool = pools.putIfAbsent(key, created);
+            if (pool == null) {
+                pool = created;
+                pools.keySet().removeIf(key::replaces);
+            }
+        }
+        return pool;
+    }
+
+    /**
+     * Returns the client key for a configuration. Keys are remembered per
+     * configuration, so the URL is parsed and the keystore hashed only once;
+     * the keystore's modification time is checked at most once a second.
+     */
+    private ClientKey keyFor(ConnectionConfig config) {
+        long now = System.nanoTime();
+        CachedKey cached = keys.get(config);
+        if (cached != null && now - cached.checkedAt() < KEYSTORE_CHECK_NANOS) {
+            return cached.key();
+        }
+        ClientKey key = cached != null && cached.key().keystore().isCurrent(config)
+                ? cached.key()
+                : ClientKey.of(config, version);
+        if (cached == null && keys.size() >= MAX_CACHED_KEYS) {
+            keys.clear();
+        }
+        keys.put(config, new CachedKey(key, now));
+        return key;
+    }
+
     /**
      * Builds an HttpClient with optional TLS configuration.
      */
-    private HttpClient buildHttpClient(ConnectionConfig config) throws Exception {
+    private HttpClient buildHttpClient(ConnectionConfig config, HttpClient.Version version) throws Exception {
         HttpClient.Builder builder = HttpClient.newBuilder()
+                .version(version)
                 .connectTimeout(Duration.ofMillis(config.timeoutMs()));
 
         if (config.useTls() && config.keystoreFile() != null && config.keystoreFile().exists()) {
@@ -135,4 +477,14 @@ public class HttpTransport implements TransportStrategy {
     public String getContentType() {
         return contentType;
     }
+
+    private static Path parseSpoolDirectory(String value) {
+        return value == null || value.isBlank() ? null : Path.of(value.trim());
+    }
+
+    private static HttpClient.Version parseVersion(String value) {
+        return "HTTP_1_1".equalsIgnoreCase(value.trim()) || "1.1".equals(value.trim())
+                ? HttpClient.Version.HTTP_1_1
+                : HttpClient.Version.HTTP_2;
+    }
 }
@@ -0,0 +1,79 @@
+package com.hl7testbench.transport;
+
+import com.hl7testbench.model.ConnectionConfig;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.HexFormat;
+
+/**
+ * Identifies the keystore of a TLS configuration in the keys of cached SSL
+ * contexts and HTTP clients. The path and password are kept only as a
+ * SHA-256 digest, and the file's modification time is included so that a
+ * replaced keystore is loaded again.
+ *
+ * @param fingerprint hex digest of the keystore path and password, or null without a keystore
+ * @param modified the keystore file's modification time
+ */
+record KeystoreIdentity(String fingerprint, long modified) {
+
+    static final KeystoreIdentity NONE = new KeystoreIdentity(null, 0);
+
+    /**
+     * Returns the identity of the configuration's keystore, or {@link #NONE}
+     * if it does not use TLS or names no existing keystore.
+     */
+    static KeystoreIdentity of(ConnectionConfig config) {
+        File keystore = keystoreOf(config);
+        if (keystore == null) {
+            return NONE;
+        }
+        return new KeystoreIdentity(fingerprint(keystore.getAbsolutePath(), config.keystorePassword()),
+                keystore.lastModified());
+    }
+
+    /**
+     * True if the configuration's keystore is still the one this identity
+     * was taken from, checked by its modification time only.
+     */
+    boolean isCurrent(ConnectionConfig config) {
+        File keystore = keystoreOf(config);
+        return keystore == null ? fingerprint == null : fingerprint != null && keystore.lastModified() == modified;
+    }
+
+    /**
+     * True if {@code older} is the same keystore at an earlier modification time.
+     */
+    boolean replaces(KeystoreIdentity older) {
+        return fingerprint != null && fingerprint.equals(older.fingerprint) && modified != older.modified;
+    }
+
+    private static File keystoreOf(ConnectionConfig config) {
+        File keystore = config.keystoreFile();
+        return config.useTls() && keystore != null && keystore.exists() ? keystore : null;
+    }
+
+    private static String fingerprint(String keystorePath, char[] password) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+        digest.update(keystorePath.getBytes(StandardCharsets.UTF_8));
+        if (password != null) {
+            digest.update((byte) 0);
+            ByteBuffer bytes = StandardCharsets.UTF_8.encode(CharBuffer.wrap(password));
+            digest.update(bytes.duplicate());
+            if (bytes.hasArray()) {
+                Arrays.fill(bytes.array(), (byte) 0);
+            }
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+}
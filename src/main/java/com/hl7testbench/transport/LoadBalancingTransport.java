@@ -0,0 +1,337 @@
+package com.hl7testbench.transport;
+
+import com.hl7testbench.metrics.Counter;
+import com.hl7testbench.metrics.Gauge;
+import com.hl7testbench.metrics.MetricFamily;
+import com.hl7testbench.metrics.MetricsRegistry;
+import com.hl7testbench.model.ConnectionConfig;
+import com.hl7testbench.model.EndpointGroup;
+import com.hl7testbench.model.EndpointGroup.Balancing;
+import com.hl7testbench.model.HistoryRecord;
+import com.hl7testbench.model.TransportResult;
+import com.hl7testbench.model.TransportResult.TransportStatus;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Decorator that spreads sends for a configuration with an endpoint group
+ * across all its members, failing over when a member cannot be reached.
+ * Configurations without a group pass straight through.
+ *
+ * <p>Members are picked by the group's {@link Balancing} strategy:
+ * in turn, by fewest sends in flight, or by "power of two choices" on
+ * an exponentially weighted RTT multiplied by the sends in flight. A member
+ * that returns a connection error or an open circuit was not reached,
+ * so the message is sent to the next member and the failed one is skipped
+ * for a cool-down period. Timeouts also put a member in cool-down, but the
+ * result is returned as is, since the receiver may already have the message.</p>
+ *
+ * <p>A session sticks to one member so that messages sent through it stay
+ * in order, moving to another member only on failover. Sessions opened for
+ * the same group are spread over the members by the same strategy.</p>
+ *
+ * <p>Each send carries its own member configurations, so sends to the same
+ * endpoint with different timeouts or TLS settings never see each other's.
+ * The members parsed from a group are kept until the group or the
+ * connection settings change.</p>
+ */
+public class LoadBalancingTransport implements TransportStrategy {
+
+    private static final long COOL_DOWN_NANOS = TimeUnit.SECONDS.toNanos(5);
+    private static final double EWMA_WEIGHT = 0.2;
+
+    private final TransportStrategy delegate;
+    private final Map<String, Member> members = new ConcurrentHashMap<>();
+    private final Map<EndpointGroup, ResolvedGroup> groups = new ConcurrentHashMap<>();
+    private final Map<String, AtomicInteger> cursors = new ConcurrentHashMap<>();
+    private final MetricFamily<Counter> selectedFamily;
+    private final MetricFamily<Gauge> availableFamily;
+
+    public LoadBalancingTransport(TransportStrategy delegate) {
+        this(delegate, MetricsRegistry.getDefault());
+    }
+
+    public LoadBalancingTransport(TransportStrategy delegate, MetricsRegistry registry) {
+        this.delegate = delegate;
+        this.selectedFamily = registry.counter("hl7_endpoint_selected_total",
+                "Sends routed to each member of an endpoint group", "target");
+        this.availableFamily = registry.gauge("hl7_endpoint_available",
+                "Whether an endpoint group member is in rotation (1) or cooling down after a failure (0)", "target");
+    }
+
+    /**
+     * Load-balancing state for one endpoint, shared by every group that lists it.
+     */
+    private class Member {
+
+        final Counter selected;
+        final AtomicInteger outstanding = new AtomicInteger();
+        volatile double ewmaRttMs = Double.NaN;
+        volatile long coolDownUntil;
+
+        Member(String target) {
+            this.selected = selectedFamily.labels(target);
+            availableFamily.labels(target).bind(() -> isAvailable(System.nanoTime()) ? 1 : 0);
+        }
+
+        boolean isAvailable(long now) {
+            return now - coolDownUntil >= 0;
+        }
+
+        double cost() {
+            double rtt = Double.isNaN(ewmaRttMs) ? 0 : ewmaRttMs;
+            return (rtt + 1) * (outstanding.get() + 1);
+        }
+
+        TransportResult send(Sender sender, ConnectionConfig config) {
+            outstanding.incrementAndGet();
+            selected.increment();
+            try {
+                TransportResult result = sender.send(config);
+                record(result);
+                return result;
+            } finally {
+                outstanding.decrementAndGet();
+            }
+        }
+
+        void record(TransportResult result) {
+            TransportStatus status = result.status();
+            if (status == TransportStatus.CONNECTION_ERROR || status == TransportStatus.TIMEOUT
+                    || status == TransportStatus.CIRCUIT_OPEN) {
+                coolDownUntil = System.nanoTime() + COOL_DOWN_NANOS;
+            } else {
+                double rtt = ewmaRttMs;
+                ewmaRttMs = Double.isNaN(rtt)
+                        ? result.roundTripTimeMs()
+                        : rtt + (result.roundTripTimeMs() - rtt) * EWMA_WEIGHT;
+            }
+        }
+    }
+
+    /**
+     * A member of one group together with the configuration to send to it
+     * with, which belongs to the send and is never stored in the member.
+     */
+    private record Endpoint(Member member, ConnectionConfig config) {
+
+        TransportResult send(Sender sender) {
+            return member.send(sender, config);
+        }
+    }
+
+    /**
+     * The endpoints of a group, resolved for the settings in {@code config}.
+     */
+    private record ResolvedGroup(ConnectionConfig config, List<Endpoint> endpoints) {
+    }
+
+    @FunctionalInterface
+    private interface Sender {
+        TransportResult send(ConnectionConfig memberConfig);
+    }
+
+    @Override
+    public TransportResult send(String message, String messageControlId, ConnectionConfig config) {
+        if (!config.hasEndpointGroup()) {
+            return delegate.send(message, messageControlId, config);
+        }
+        List<Endpoint> group = resolve(config);
+        Balancing balancing = config.endpointGroup().balancing();
+        return sendWithFailover(group, pick(config, group, balancing),
+                memberConfig -> delegate.send(message, messageControlId, memberConfig));
+    }
+
+    @Override
+    public TransportSession openSession(ConnectionConfig config) {
+        if (!config.hasEndpointGroup()) {
+            return delegate.openSession(config);
+        }
+        List<Endpoint> group = resolve(config);
+        Balancing balancing = config.endpointGroup().balancing();
+        return new TransportSession() {
+            private Endpoint current = pick(config, group, balancing);
+            private TransportSession session;
+
+            @Override
+            public TransportResult send(String message, String messageControlId) {
+                Endpoint first = current;
+                TransportResult result = null;
+                for (int attempt = 0; attempt < group.size(); attempt++) {
+                    result = current.send(memberConfig -> sessionFor(memberConfig).send(message, messageControlId));
+                    if (!isUnreached(result)) {
+                        return result;
+                    }
+                    Endpoint next = nextAvailable(group, current, first);
+                    if (next == null) {
+                        break;
+                    }
+                    moveTo(next);
+                }
+                return result;
+            }
+
+            private TransportSession sessionFor(ConnectionConfig memberConfig) {
+                if (session == null) {
+                    session = delegate.openSession(memberConfig);
+                }
+                return session;
+            }
+
+            private void moveTo(Endpoint endpoint) {
+                close();
+                current = endpoint;
+            }
+
+            @Override
+            public void close() {
+                if (session != null) {
+                    session.close();
+                    session = null;
+                }
+            }
+        };
+    }
+
+    private TransportResult sendWithFailover(List<Endpoint> group, Endpoint first, Sender sender) {
+        Endpoint endpoint = first;
+        TransportResult result = null;
+        for (int attempt = 0; attempt < group.size() && endpoint != null; attempt++) {
+            result = endpoint.send(sender);
+            if (!isUnreached(result)) {
+                return result;
+            }
+            endpoint = nextAvailable(group, endpoint, first);
+        }
+        return result;
+    }
+
+    /**
+     * True if the message certainly did not reach the member, so sending it
+     * elsewhere cannot create a duplicate.
+     */
+    private static boolean isUnreached(TransportResult result) {
+        return result.status() == TransportStatus.CONNECTION_ERROR
+                || result.status() == TransportStatus.CIRCUIT_OPEN;
+    }
+
+    /**
+     * Returns the group's endpoints for this configuration, parsing the
+     * member list only when the group is new or its settings changed.
+     */
+    private List<Endpoint> resolve(ConnectionConfig config) {
+        ResolvedGroup cached = groups.get(config.endpointGroup());
+        if (cached != null && sameSettings(cached.config(), config)) {
+            return cached.endpoints();
+        }
+        List<Endpoint> endpoints = new ArrayList<>();
+        for (ConnectionConfig memberConfig : config.members()) {
+            Member member = members.computeIfAbsent(HistoryRecord.describeTarget(memberConfig), Member::new);
+            endpoints.add(new Endpoint(member, memberConfig));
+        }
+        endpoints = List.copyOf(endpoints);
+        groups.put(config.endpointGroup(), new ResolvedGroup(config, endpoints));
+        return endpoints;
+    }
+
+    private static boolean sameSettings(ConnectionConfig a, ConnectionConfig b) {
+        return a == b || (a.mode() == b.mode()
+                && Objects.equals(a.host(), b.host())
+                && a.port() == b.port()
+                && Objects.equals(a.httpUrl(), b.httpUrl())
+                && a.useTls() == b.useTls()
+                && Objects.equals(a.keystoreFile(), b.keystoreFile())
+                && Arrays.equals(a.keystorePassword(), b.keystorePassword())
+                && a.timeoutMs() == b.timeoutMs());
+    }
+
+    private Endpoint pick(ConnectionConfig config, List<Endpoint> group, Balancing balancing) {
+        long now = System.nanoTime();
+        List<Endpoint> available = group.stream().filter(e -> e.member().isAvailable(now)).toList();
+        if (available.isEmpty()) {
+            available = group;
+        }
+        return switch (balancing) {
+            case ROUND_ROBIN -> {
+                AtomicInteger cursor = cursors.computeIfAbsent(groupKey(config), k -> new AtomicInteger());
+                yield available.get(Math.floorMod(cursor.getAndIncrement(), available.size()));
+            }
+            case LEAST_OUTSTANDING -> {
+                Endpoint best = null;
+                int offset = ThreadLocalRandom.current().nextInt(available.size());
+                for (int i = 0; i < available.size(); i++) {
+                    Endpoint candidate = available.get((offset + i) % available.size());
+                    if (best == null
+                            || candidate.member().outstanding.get() < best.member().outstanding.get()) {
+                        best = candidate;
+                    }
+                }
+                yield best;
+            }
+            case LATENCY_WEIGHTED -> {
+                if (available.size() == 1) {
+                    yield available.get(0);
+                }
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                int a = random.nextInt(available.size());
+                int b = random.nextInt(available.size() - 1);
+                if (b >= a) {
+                    b++;
+                }
+                Endpoint first = available.get(a);
+                Endpoint second = available.get(b);
+                yield first.member().cost() <= second.member().cost() ? first : second;
+            }
+        };
+    }
+
+    /**
+     * Returns the next available member after {@code failed} in group order,
+     * stopping before wrapping round to {@code first}.
+     */
+    private static Endpoint nextAvailable(List<Endpoint> group, Endpoint failed, Endpoint first) {
+        long now = System.nanoTime();
+        int start = group.indexOf(failed);
+        for (int i = 1; i < group.size(); i++) {
+            Endpoint candidate = group.get((start + i) % group.size());
+            if (candidate == first) {
+                return null;
+            }
+            if (candidate.member().isAvailable(now)) {
+                return candidate;
+            }
+        }
+        return null;
+    }
+
+    private static String groupKey(ConnectionConfig config) {
+        return HistoryRecord.describeTarget(config) + " " + config.endpointGroup().endpoints();
+    }
+
+    @Override
+    public String getName() {
+        return delegate.getName();
+    }
+
+    @Override
+    public boolean validateConfig(ConnectionConfig config) {
+        for (ConnectionConfig member : config.members()) {
+            if (!delegate.validateConfig(member)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public TransportStrategy getDelegate() {
+        return delegate;
+    }
+}
@@ -0,0 +1,77 @@
+package com.hl7testbench.transport;
+
+import com.hl7testbench.metrics.TransportMetrics;
+import com.hl7testbench.model.ConnectionConfig;
+import com.hl7testbench.model.TransportResult;
+
+/**
+ * Decorator that records in-flight count, result status and round-trip time
+ * for every send made through the wrapped strategy.
+ */
+public class MeteredTransport implements TransportStrategy {
+
+    private final TransportStrategy delegate;
+    private final TransportMetrics metrics;
+
+    public MeteredTransport(TransportStrategy delegate) {
+        this(delegate, TransportMetrics.getDefault());
+    }
+
+    public MeteredTransport(TransportStrategy delegate, TransportMetrics metrics) {
+        this.delegate = delegate;
+        this.metrics = metrics;
+    }
+
+    @Override
+    public TransportResult send(String message, String messageControlId, ConnectionConfig config) {
+        metrics.sendStarted(config.mode());
+        TransportResult result;
+        try {
+            result = delegate.send(message, messageControlId, config);
+        } catch (RuntimeException e) {
+            result = TransportResult.error(messageControlId, config.mode(),
+                    "Unexpected error: " + e.getMessage(), 0);
+        }
+        metrics.sendCompleted(config.mode(), result);
+        return result;
+    }
+
+    @Override
+    public TransportSession openSession(ConnectionConfig config) {
+        TransportSession session = delegate.openSession(config);
+        return new TransportSession() {
+            @Override
+            public TransportResult send(String message, String messageControlId) {
+                metrics.sendStarted(config.mode());
+                TransportResult result;
+                try {
+                    result = session.send(message, messageControlId);
+                } catch (RuntimeException e) {
+                    result = TransportResult.error(messageControlId, config.mode(),
+                            "Unexpected error: " + e.getMessage(), 0);
+                }
+                metrics.sendCompleted(config.mode(), result);
+                return result;
+            }
+
+            @Override
+            public void close() {
+                session.close();
+            }
+        };
+    }
+
+    @Override
+    public String getName() {
+        return delegate.getName();
+    }
+
+    @Override
+    public boolean validateConfig(ConnectionConfig config) {
+        return delegate.validateConfig(config);
+    }
+
+    public TransportStrategy getDelegate() {
+        return delegate;
+    }
+}
@@ -2,9 +2,14 @@ package com.hl7testbench.transport;
 
 import com.hl7testbench.model.ConnectionConfig;
 import com.hl7testbench.model.TransportResult;
+import com.hl7testbench.telemetry.ConnectEvent;
+import com.hl7testbench.telemetry.MessageSendEvent;
+import com.hl7testbench.telemetry.Telemetry;
+import com.hl7testbench.util.HL7Parser;
 
 import javax.net.ssl.KeyManagerFactory;
 import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLSocket;
 import javax.net.ssl.SSLSocketFactory;
 import javax.net.ssl.TrustManagerFactory;
 import java.io.*;
@@ -12,74 +17,341 @@ import java.net.InetSocketAddress;
 import java.net.Socket;
 import java.net.SocketTimeoutException;
 import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
 import java.security.KeyStore;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * MLLP (Minimal Lower Layer Protocol) transport implementation.
  * Wraps HL7 messages with standard MLLP framing characters:
  * - Start Block: VT (0x0B)
  * - End Block: FS CR (0x1C 0x0D)
+ *
+ * <p>TLS contexts are built on the first TLS connection for each keystore
+ * and reused for later connections until the keystore file changes. They
+ * are keyed by a {@link KeystoreIdentity}, so the keystore password is not
+ * kept, and a replaced keystore's old context is dropped.</p>
  */
 public class MllpTransport implements TransportStrategy {
 
     private static final byte START_BLOCK = 0x0B;
     private static final byte END_BLOCK = 0x1C;
     private static final byte CARRIAGE_RETURN = 0x0D;
+    private static final long IDLE_CHECK_NANOS = 1_000_000_000L;
+
+    private final Map<KeystoreIdentity, SSLContext> sslContexts = new ConcurrentHashMap<>();
 
     @Override
     public TransportResult send(String message, String messageControlId, ConnectionConfig config) {
-        long startTime = System.currentTimeMillis();
+        try (MllpSession session = new MllpSession(config)) {
+            return session.send(message, messageControlId);
+        }
+    }
 
-        try (Socket socket = createSocket(config)) {
-            socket.setSoTimeout(config.timeoutMs());
-            socket.connect(new InetSocketAddress(config.host(), config.port()), config.timeoutMs());
+    /**
+     * Opens a session that keeps one MLLP connection open across sends,
+     * reconnecting after any error.
+     */
+    @Override
+    public TransportSession openSession(ConnectionConfig config) {
+        return new MllpSession(config);
+    }
 
-            OutputStream out = socket.getOutputStream();
-            InputStream in = socket.getInputStream();
+    /**
+     * One MLLP connection used for consecutive request/ACK exchanges.
+     * The connection is opened on the first send and dropped on any error or
+     * timeout, since a late ACK would otherwise be matched to the next message.
+     *
+     * <p>A connection that has been idle for a second is checked before it
+     * is reused, and replaced if the peer has closed it. If the peer closes
+     * a reused connection after the message was written, the send fails
+     * with a connection error rather than being repeated, as the peer may
+     * already have processed it.</p>
+     */
+    private class MllpSession implements TransportSession {
+
+        private final ConnectionConfig config;
+        private Socket socket;
+        private InputStream in;
+        private OutputStream out;
+        private long writeNanos;
+        private long readNanos;
+        private long lastUsed;
+
+        MllpSession(ConnectionConfig config) {
+            this.config = config;
+        }
+
+        @Override
+        public TransportResult send(String message, String messageControlId) {
+            long startTime = System.currentTimeMillis();
+            MessageSendEvent event = Telemetry.isRecording() ? new MessageSendEvent() : null;
+            if (event != null) {
+                event.begin();
+            }
 
+            TransportResult result;
             byte[] framedMessage = frameMessage(message);
+            String response = null;
+            long connectNanos = 0;
+            writeNanos = 0;
+            readNanos = 0;
+
+            try {
+                if (socket != null && idleNanos() > IDLE_CHECK_NANOS && isClosedByPeer()) {
+                    closeSocket();
+                }
+                boolean reused = socket != null;
+                long phaseStart = System.nanoTime();
+                if (!reused) {
+                    open();
+                }
+                long connected = System.nanoTime();
+                connectNanos = connected - phaseStart;
+
+                response = exchange(framedMessage, connected);
+                if (response == null && reused) {
+                    // The peer may have processed the message before closing, so it is not resent
+                    throw new IOException("connection closed by peer without a response");
+                }
+                if (response == null) {
+                    response = "";
+                }
+                long roundTripTime = System.currentTimeMillis() - startTime;
+
+                result = TransportResult.success(messageControlId, config.mode(), response, roundTripTime);
+
+            } catch (SocketTimeoutException e) {
+                closeSocket();
+                result = TransportResult.error(
+                        messageControlId,
+                        config.mode(),
+                        "Connection timeout after " + config.timeoutMs() + "ms",
+                        System.currentTimeMillis() - startTime
+                );
+            } catch (IOException e) {
+                closeSocket();
+                result = TransportResult.error(
+                        messageControlId,
+                        config.mode(),
+                        "Connection error: " + e.getMessage(),
+                        System.currentTimeMillis() - startTime
+                );
+            } catch (Exception e) {
+                closeSocket();
+                result = TransportResult.error(
+                        messageControlId,
+                        config.mode(),
+                        "Unexpected error: " + e.getMessage(),
+                        System.currentTimeMillis() - startTime
+                );
+            }
+
+            result = result.withPhases(new TransportResult.Phases(connectNanos, writeNanos, readNanos));
+            if (event == null) {
+                return result;
+            }
+            event.end();
+            if (event.shouldCommit()) {
+                event.transport = getName();
+                event.target = config.host() + ":" + config.port();
+                event.messageControlId = messageControlId;
+                event.messageType = HL7Parser.extractMessageType(message);
+                event.requestBytes = framedMessage.length;
+                event.responseBytes = response != null ? response.length() : 0;
+                event.ackCode = TransportResult.findAckCode(response);
+                event.status = result.status().name();
+                event.error = result.errorMessage();
+                event.connectNanos = connectNanos;
+                event.writeNanos = writeNanos;
+                event.readNanos = readNanos;
+                event.commit();
+            }
+            return result;
+        }
+
+        private void open() throws Exception {
+            socket = createSocket(config);
+            try {
+                socket.setSoTimeout(config.timeoutMs());
+                socket.setTcpNoDelay(true);
+                connect(socket, config);
+                in = new BufferedInputStream(socket.getInputStream());
+                out = socket.getOutputStream();
+            } catch (Exception e) {
+                closeSocket();
+                throw e;
+            }
+        }
+
+        /**
+         * Writes one framed message and reads its response.
+         *
+         * @return the response, or null if the peer closed the connection
+         *         without sending anything
+         */
+        private String exchange(byte[] framedMessage, long connected) throws IOException {
             out.write(framedMessage);
             out.flush();
+            long written = System.nanoTime();
+            writeNanos = written - connected;
 
             String response = readResponse(in);
-            long roundTripTime = System.currentTimeMillis() - startTime;
-
-            return TransportResult.success(messageControlId, config.mode(), response, roundTripTime);
-
-        } catch (SocketTimeoutException e) {
-            return TransportResult.error(
-                    messageControlId,
-                    config.mode(),
-                    "Connection timeout after " + config.timeoutMs() + "ms",
-                    System.currentTimeMillis() - startTime
-            );
-        } catch (IOException e) {
-            return TransportResult.error(
-                    messageControlId,
-                    config.mode(),
-                    "Connection error: " + e.getMessage(),
-                    System.currentTimeMillis() - startTime
-            );
-        } catch (Exception e) {
-            return TransportResult.error(
-                    messageControlId,
-                    config.mode(),
-                    "Unexpected error: " + e.getMessage(),
-                    System.currentTimeMillis() - startTime
-            );
+            lastUsed = System.nanoTime();
+            readNanos = lastUsed - written;
+            return response;
+        }
+
+        private long idleNanos() {
+            return System.nanoTime() - lastUsed;
+        }
+
+        /**
+         * Returns true if the peer has closed the connection or sent data
+         * nobody asked for, either of which makes it unusable. Waits at most
+         * a millisecond.
+         */
+        private boolean isClosedByPeer() {
+            try {
+                socket.setSoTimeout(1);
+                try {
+                    in.read();
+                    return true;
+                } finally {
+                    socket.setSoTimeout(config.timeoutMs());
+                }
+            } catch (SocketTimeoutException e) {
+                return false;
+            } catch (IOException e) {
+                return true;
+            }
+        }
+
+        /**
+         * Reads an MLLP-framed response using blocking I/O.
+         * The socket timeout (set via setSoTimeout) handles the timeout case.
+         * A response cut short by end of stream is returned as read so far,
+         * and the connection is closed.
+         */
+        private String readResponse(InputStream in) throws IOException {
+            ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+            boolean startFound = false;
+            boolean endBlockFound = false;
+            boolean anyRead = false;
+
+            while (true) {
+                int b = in.read();
+
+                if (b == -1) {
+                    closeSocket();
+                    if (!anyRead) {
+                        return null;
+                    }
+                    break;
+                }
+                anyRead = true;
+
+                if (b == START_BLOCK) {
+                    startFound = true;
+                    buffer.reset();
+                    continue;
+                }
+
+                if (b == END_BLOCK) {
+                    endBlockFound = true;
+                    continue;
+                }
+
+                if (endBlockFound && b == CARRIAGE_RETURN) {
+                    break;
+                }
+
+                if (endBlockFound) {
+                    buffer.write(END_BLOCK);
+                    endBlockFound = false;
+                }
+
+                if (startFound) {
+                    buffer.write(b);
+                }
+            }
+
+            return buffer.toString(StandardCharsets.UTF_8);
+        }
+
+        private void closeSocket() {
+            if (socket != null) {
+                try {
+                    socket.close();
+                } catch (IOException e) {
+                    // Already unusable
+                }
+                socket = null;
+                in = null;
+                out = null;
+            }
+        }
+
+        @Override
+        public void close() {
+            closeSocket();
+        }
+    }
+
+    /**
+     * Connects the socket and, for TLS sockets, completes the handshake so
+     * that the connect phase includes the full session setup cost.
+     */
+    private void connect(Socket socket, ConnectionConfig config) throws IOException {
+        if (!Telemetry.isRecording()) {
+            connectSocket(socket, config);
+            return;
+        }
+        ConnectEvent event = new ConnectEvent();
+        event.begin();
+        try {
+            connectSocket(socket, config);
+            event.success = true;
+        } finally {
+            event.end();
+            if (event.shouldCommit()) {
+                event.host = config.host();
+                event.port = config.port();
+                event.tls = config.useTls();
+                event.commit();
+            }
+        }
+    }
+
+    private static void connectSocket(Socket socket, ConnectionConfig config) throws IOException {
+        socket.connect(new InetSocketAddress(config.host(), config.port()), config.timeoutMs());
+        if (socket instanceof SSLSocket sslSocket) {
+            sslSocket.startHandshake();
         }
     }
 
     private Socket createSocket(ConnectionConfig config) throws Exception {
         if (config.useTls()) {
-            SSLContext sslContext = createSslContext(config);
+            KeystoreIdentity key = KeystoreIdentity.of(config);
+            SSLContext sslContext = sslContexts.get(key);
+            if (sslContext == null) {
+                sslContext = sslContexts.computeIfAbsent(key, k -> {
+                    try {
+                        return createSslContext(config);
+                    } catch (GeneralSecurityException | IOException e) {
+                        throw new IllegalStateException("Could not load keystore: " + e.getMessage(), e);
+                    }
+                });
+                sslContexts.keySet().removeIf(key::replaces);
+            }
             SSLSocketFactory factory = sslContext.getSocketFactory();
             return factory.createSocket();
         }
         return new Socket();
     }
 
-    private SSLContext createSslContext(ConnectionConfig config) throws Exception {
+    private SSLContext createSslContext(ConnectionConfig config) throws GeneralSecurityException, IOException {
         SSLContext sslContext = SSLContext.getInstance("TLS");
 
         if (config.keystoreFile() != null && config.keystoreFile().exists()) {
@@ -114,50 +386,6 @@ public class MllpTransport implements TransportStrategy {
         return framed;
     }
 
-    /**
-     * Reads an MLLP-framed response using blocking I/O.
-     * The socket timeout (set via setSoTimeout) handles the timeout case.
-     */
-    private String readResponse(InputStream in) throws IOException {
-        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
-        boolean startFound = false;
-        boolean endBlockFound = false;
-
-        while (true) {
-            int b = in.read();
-
-            if (b == -1) {
-                break;
-            }
-
-            if (b == START_BLOCK) {
-                startFound = true;
-                buffer.reset();
-                continue;
-            }
-
-            if (b == END_BLOCK) {
-                endBlockFound = true;
-                continue;
-            }
-
-            if (endBlockFound && b == CARRIAGE_RETURN) {
-                break;
-            }
-
-            if (endBlockFound) {
-                buffer.write(END_BLOCK);
-                endBlockFound = false;
-            }
-
-            if (startFound) {
-                buffer.write(b);
-            }
-        }
-
-        return buffer.toString(StandardCharsets.UTF_8);
-    }
-
     @Override
     public String getName() {
         return "MLLP (TCP)";
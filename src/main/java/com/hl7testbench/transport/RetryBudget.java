@@ -0,0 +1,53 @@
+package com.hl7testbench.transport;
+
+/**
+ * Token bucket limiting retries to a fraction of the original sends to one
+ * endpoint. Every original send deposits {@code ratio} tokens, every retry
+ * withdraws one, and a minimum number of tokens per second is always
+ * replenished so occasional failures can still be retried at low volume.
+ * When an endpoint fails persistently the bucket drains and further
+ * failures are returned without retrying, instead of multiplying the load.
+ */
+public class RetryBudget {
+
+    private final double ratio;
+    private final double minPerSecond;
+    private final double capacity;
+    private double tokens;
+    private long lastRefillNanos = System.nanoTime();
+
+    public RetryBudget(double ratio, int minRetriesPerSecond) {
+        this.ratio = ratio;
+        this.minPerSecond = minRetriesPerSecond;
+        this.capacity = Math.max(1, minRetriesPerSecond * 10 + ratio * 1000);
+        this.tokens = minRetriesPerSecond;
+    }
+
+    /**
+     * Records an original (non-retry) send.
+     */
+    public synchronized void deposit() {
+        refill();
+        tokens = Math.min(capacity, tokens + ratio);
+    }
+
+    /**
+     * Takes one retry token if available.
+     *
+     * @return true if a retry may be made
+     */
+    public synchronized boolean tryWithdraw() {
+        refill();
+        if (tokens >= 1) {
+            tokens -= 1;
+            return true;
+        }
+        return false;
+    }
+
+    private void refill() {
+        long now = System.nanoTime();
+        tokens = Math.min(capacity, tokens + (now - lastRefillNanos) / 1e9 * minPerSecond);
+        lastRefillNanos = now;
+    }
+}
@@ -0,0 +1,106 @@
+package com.hl7testbench.transport;
+
+import com.hl7testbench.model.TransportResult.TransportStatus;
+
+import java.util.EnumSet;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Immutable retry settings: which result statuses are retried, how many
+ * attempts are made, the backoff between them and the share of traffic
+ * that retries may add.
+ *
+ * <p>Successful results and {@code ACK_AR} are never retried, since the
+ * receiver has rejected the message and resending it cannot help.</p>
+ *
+ * @param maxAttempts total attempts per message including the first; 1 disables retries
+ * @param retryOn statuses that trigger a retry
+ * @param baseDelayMs backoff ceiling before the first retry, doubled for each further retry
+ * @param maxDelayMs upper limit for the backoff ceiling
+ * @param budgetRatio retries allowed per original send, per endpoint (0.2 = 20% extra load)
+ * @param minRetriesPerSecond retries always allowed per endpoint regardless of the ratio
+ */
+public record RetryPolicy(
+        int maxAttempts,
+        Set<TransportStatus> retryOn,
+        long baseDelayMs,
+        long maxDelayMs,
+        double budgetRatio,
+        int minRetriesPerSecond
+) {
+
+    public RetryPolicy {
+        if (maxAttempts < 1 || baseDelayMs < 0 || maxDelayMs < baseDelayMs || budgetRatio < 0 || minRetriesPerSecond < 0) {
+            throw new IllegalArgumentException("Invalid retry policy");
+        }
+        EnumSet<TransportStatus> statuses = EnumSet.noneOf(TransportStatus.class);
+        for (TransportStatus status : retryOn) {
+            if (!status.isSuccessful() && status != TransportStatus.ACK_AR) {
+                statuses.add(status);
+            }
+        }
+        retryOn = Set.copyOf(statuses);
+    }
+
+    /**
+     * Returns a policy that never retries.
+     */
+    public static RetryPolicy none() {
+        return new RetryPolicy(1, Set.of(), 0, 0, 0, 0);
+    }
+
+    /**
+     * Reads the policy from {@code hl7testbench.retry.*} system properties.
+     * Retries are off unless {@code hl7testbench.retry.attempts} is above 1.
+     * By default timeouts and connection errors are retried with a 200 ms
+     * base delay capped at 10 s, within a budget of 20% extra sends plus 5 per second.
+     */
+    public static RetryPolicy fromSystemProperties() {
+        int attempts = Integer.getInteger("hl7testbench.retry.attempts", 1);
+        String on = System.getProperty("hl7testbench.retry.on", "TIMEOUT,CONNECTION_ERROR");
+        EnumSet<TransportStatus> statuses = EnumSet.noneOf(TransportStatus.class);
+        for (String name : on.split(",")) {
+            if (!name.isBlank()) {
+                try {
+                    statuses.add(TransportStatus.valueOf(name.trim().toUpperCase()));
+                } catch (IllegalArgumentException e) {
+                    System.err.println("Ignoring unknown retry status: " + name.trim());
+                }
+            }
+        }
+        long baseDelay = Long.getLong("hl7testbench.retry.baseDelayMs", 200);
+        long maxDelay = Long.getLong("hl7testbench.retry.maxDelayMs", 10_000);
+        double ratio = Double.parseDouble(System.getProperty("hl7testbench.retry.budget", "0.2"));
+        int minPerSecond = Integer.getInteger("hl7testbench.retry.minPerSecond", 5);
+        return new RetryPolicy(attempts, statuses, baseDelay, Math.max(baseDelay, maxDelay), ratio, minPerSecond);
+    }
+
+    public boolean isEnabled() {
+        return maxAttempts > 1 && !retryOn.isEmpty();
+    }
+
+    /**
+     * Returns whether a result with this status may be retried after the given attempt.
+     *
+     * @param attempt the 1-based attempt that produced the status
+     */
+    public boolean shouldRetry(TransportStatus status, int attempt) {
+        return attempt < maxAttempts && retryOn.contains(status);
+    }
+
+    /**
+     * Returns the delay before the next attempt using "full jitter": a random
+     * value up to an exponentially growing ceiling, which spreads out retries
+     * from many senders that failed at the same moment.
+     *
+     * @param attempt the 1-based attempt that just failed
+     */
+    public long backoffMs(int attempt) {
+        long ceiling = baseDelayMs << Math.min(attempt - 1, 30);
+        if (ceiling <= 0 || ceiling > maxDelayMs) {
+            ceiling = maxDelayMs;
+        }
+        return ceiling == 0 ? 0 : ThreadLocalRandom.current().nextLong(ceiling + 1);
+    }
+}
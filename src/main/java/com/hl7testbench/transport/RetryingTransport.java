@@ -0,0 +1,117 @@
+package com.hl7testbench.transport;
+
+import com.hl7testbench.metrics.Counter;
+import com.hl7testbench.metrics.MetricFamily;
+import com.hl7testbench.metrics.MetricsRegistry;
+import com.hl7testbench.model.ConnectionConfig;
+import com.hl7testbench.model.HistoryRecord;
+import com.hl7testbench.model.TransportResult;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Decorator that resends a message when the result status is retryable
+ * under a {@link RetryPolicy}, waiting an exponentially growing, jittered
+ * delay between attempts.
+ *
+ * <p>The sending thread sleeps through the delay, as callers wait for the
+ * final result anyway (ordered partitions must not send the next message
+ * for a key before it); interrupting it ends the retries and returns the
+ * last result. Retries to each endpoint are limited by a
+ * {@link RetryBudget}; when it is exhausted the failed result is returned
+ * as is. Sessions are retried on the same session, which reconnects after
+ * errors and keeps per-session ordering.</p>
+ */
+public class RetryingTransport implements TransportStrategy {
+
+    private final TransportStrategy delegate;
+    private final RetryPolicy policy;
+    private final Map<String, RetryBudget> budgets = new ConcurrentHashMap<>();
+    private final MetricFamily<Counter> retries;
+    private final MetricFamily<Counter> budgetExhausted;
+
+    public RetryingTransport(TransportStrategy delegate, RetryPolicy policy) {
+        this(delegate, policy, MetricsRegistry.getDefault());
+    }
+
+    public RetryingTransport(TransportStrategy delegate, RetryPolicy policy, MetricsRegistry registry) {
+        this.delegate = delegate;
+        this.policy = policy;
+        this.retries = registry.counter("hl7_retries_total",
+                "Messages resent, by transport and the status that caused the retry", "transport", "status");
+        this.budgetExhausted = registry.counter("hl7_retry_budget_exhausted_total",
+                "Retryable failures returned without retrying because the retry budget was spent", "transport");
+    }
+
+    @Override
+    public TransportResult send(String message, String messageControlId, ConnectionConfig config) {
+        return sendWithRetry(() -> delegate.send(message, messageControlId, config), config);
+    }
+
+    @Override
+    public TransportSession openSession(ConnectionConfig config) {
+        TransportSession session = delegate.openSession(config);
+        return new TransportSession() {
+            @Override
+            public TransportResult send(String message, String messageControlId) {
+                return sendWithRetry(() -> session.send(message, messageControlId), config);
+            }
+
+            @Override
+            public void close() {
+                session.close();
+            }
+        };
+    }
+
+    private TransportResult sendWithRetry(Supplier<TransportResult> attempt, ConnectionConfig config) {
+        RetryBudget budget = budgets.computeIfAbsent(HistoryRecord.describeTarget(config),
+                k -> new RetryBudget(policy.budgetRatio(), policy.minRetriesPerSecond()));
+        budget.deposit();
+
+        TransportResult result = attempt.get();
+        int attempts = 1;
+        while (policy.shouldRetry(result.status(), attempts)) {
+            if (!budget.tryWithdraw()) {
+                budgetExhausted.labels(config.mode().name()).increment();
+                break;
+            }
+            retries.labels(config.mode().name(), result.status().name()).increment();
+            try {
+                Thread.sleep(policy.backoffMs(attempts));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+            result = attempt.get();
+            attempts++;
+        }
+
+        if (attempts > 1 && result.errorMessage() != null) {
+            result = new TransportResult(result.timestamp(), result.messageControlId(), result.transportMode(),
+                    result.status(), result.rawResponse(), result.roundTripTimeMs(),
+                    result.errorMessage() + " (after " + attempts + " attempts)", result.phases());
+        }
+        return result;
+    }
+
+    @Override
+    public String getName() {
+        return delegate.getName();
+    }
+
+    @Override
+    public boolean validateConfig(ConnectionConfig config) {
+        return delegate.validateConfig(config);
+    }
+
+    public RetryPolicy getPolicy() {
+        return policy;
+    }
+
+    public TransportStrategy getDelegate() {
+        return delegate;
+    }
+}
@@ -2,29 +2,65 @@ package com.hl7testbench.transport;
 
 import com.hl7testbench.model.ConnectionConfig;
 
+import java.util.function.Supplier;
+
 /**
  * Factory for creating transport strategy instances.
  * Supports both default singleton instances and custom injection for testing.
+ *
+ * <p>The default transports are each created on first use, so a launch
+ * that only sends MLLP never loads the HTTP client, and the reverse.</p>
  */
 public class TransportFactory {
 
-    private final TransportStrategy mllpTransport;
-    private final TransportStrategy httpTransport;
+    private final Supplier<TransportStrategy> mllpTransport;
+    private final Supplier<TransportStrategy> httpTransport;
+
+    private static final TransportFactory DEFAULT_INSTANCE =
+            new TransportFactory(() -> MllpHolder.TRANSPORT, () -> HttpHolder.TRANSPORT);
+
+    private static class MllpHolder {
+        static final TransportStrategy TRANSPORT = decorate(new MllpTransport(),
+                EndpointGuardPolicy.fromSystemProperties(), RetryPolicy.fromSystemProperties());
+    }
 
-    private static final TransportFactory DEFAULT_INSTANCE = new TransportFactory(
-            new MllpTransport(),
-            new HttpTransport()
-    );
+    private static class HttpHolder {
+        static final TransportStrategy TRANSPORT = decorate(new HttpTransport(),
+                EndpointGuardPolicy.fromSystemProperties(), RetryPolicy.fromSystemProperties());
+    }
 
     /**
      * Creates a factory with custom transport implementations.
      * Useful for testing with mocks.
      */
     public TransportFactory(TransportStrategy mllpTransport, TransportStrategy httpTransport) {
+        this(() -> mllpTransport, () -> httpTransport);
+    }
+
+    private TransportFactory(Supplier<TransportStrategy> mllpTransport, Supplier<TransportStrategy> httpTransport) {
         this.mllpTransport = mllpTransport;
         this.httpTransport = httpTransport;
     }
 
+    /**
+     * Wraps a transport with metrics, endpoint-group load balancing and, if
+     * their policies are enabled, endpoint guards and retries. Each attempt
+     * is metered and guarded per group member, and a retry may go to a
+     * different member.
+     */
+    private static TransportStrategy decorate(TransportStrategy transport, EndpointGuardPolicy guardPolicy,
+                                              RetryPolicy retryPolicy) {
+        TransportStrategy decorated = new MeteredTransport(transport);
+        if (guardPolicy.isEnabled()) {
+            decorated = new GuardedTransport(decorated, guardPolicy);
+        }
+        decorated = new LoadBalancingTransport(decorated);
+        if (retryPolicy.isEnabled()) {
+            decorated = new RetryingTransport(decorated, retryPolicy);
+        }
+        return decorated;
+    }
+
     /**
      * Returns the default factory instance.
      */
@@ -40,8 +76,8 @@ public class TransportFactory {
      */
     public TransportStrategy getTransport(ConnectionConfig config) {
         return switch (config.mode()) {
-            case MLLP_TCP -> mllpTransport;
-            case HTTP -> httpTransport;
+            case MLLP_TCP -> mllpTransport.get();
+            case HTTP -> httpTransport.get();
         };
     }
 
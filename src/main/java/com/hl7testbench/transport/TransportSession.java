@@ -0,0 +1,28 @@
+package com.hl7testbench.transport;
+
+import com.hl7testbench.model.TransportResult;
+
+import java.io.Closeable;
+
+/**
+ * A sequence of sends to one endpoint that may share a connection.
+ * Messages sent through a session are delivered one at a time in call order.
+ * Sessions are not thread-safe; use one per sending thread.
+ */
+public interface TransportSession extends Closeable {
+
+    /**
+     * Sends an HL7 message over this session and waits for its response.
+     *
+     * @param message the raw HL7 message content
+     * @param messageControlId the message control ID for tracking
+     * @return the transport result containing response or error information
+     */
+    TransportResult send(String message, String messageControlId);
+
+    /**
+     * Releases any connection held by this session.
+     */
+    @Override
+    void close();
+}
@@ -19,6 +19,27 @@ public interface TransportStrategy {
      */
     TransportResult send(String message, String messageControlId, ConnectionConfig config);
 
+    /**
+     * Opens a session for sending several messages to the same endpoint in order.
+     * The default session simply calls {@link #send} for each message;
+     * transports that can keep a connection open override this.
+     *
+     * @param config the connection configuration
+     * @return a session that the caller must close
+     */
+    default TransportSession openSession(ConnectionConfig config) {
+        return new TransportSession() {
+            @Override
+            public TransportResult send(String message, String messageControlId) {
+                return TransportStrategy.this.send(message, messageControlId, config);
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+    }
+
     /**
      * Returns a human-readable name for this transport strategy.
      */
@@ -1,6 +1,9 @@
 package com.hl7testbench.util;
 
+import com.hl7testbench.model.HL7Delimiters;
 import com.hl7testbench.model.HL7Message;
+import com.hl7testbench.telemetry.FileParseEvent;
+import com.hl7testbench.telemetry.Telemetry;
 
 import java.io.IOException;
 import java.nio.file.Files;
@@ -21,6 +24,10 @@ public final class HL7Parser {
             Pattern.MULTILINE
     );
 
+    private static final Pattern BATCH_SEGMENT_PATTERN = Pattern.compile(
+            "(?m)^(?:FHS|BHS|BTS|FTS)\\|"
+    );
+
     private HL7Parser() {
     }
 
@@ -33,13 +40,32 @@ public final class HL7Parser {
      * @throws IOException if the file cannot be read
      */
     public static List<HL7Message> parseFile(Path filePath) throws IOException {
+        FileParseEvent event = Telemetry.isRecording() ? new FileParseEvent() : null;
+        if (event != null) {
+            event.begin();
+        }
+
         String content = Files.readString(filePath);
-        return parseMultipleMessages(content);
+        List<HL7Message> messages = parseMultipleMessages(content);
+
+        if (event == null) {
+            return messages;
+        }
+        event.end();
+        if (event.shouldCommit()) {
+            event.path = filePath.toString();
+            event.bytes = Files.size(filePath);
+            event.messageCount = messages.size();
+            event.commit();
+        }
+        return messages;
     }
 
     /**
      * Parses a string containing one or more HL7 messages.
-     * Messages are split based on MSH segment occurrences.
+     * Messages are split based on MSH segment occurrences; batch envelope
+     * segments (FHS, BHS, BTS, FTS) are dropped, so a batch file yields its
+     * individual messages.
      *
      * @param content the raw content potentially containing multiple messages
      * @return a list of parsed HL7 messages
@@ -68,7 +94,7 @@ public final class HL7Parser {
             int start = mshPositions.get(i);
             int end = (i + 1 < mshPositions.size()) ? mshPositions.get(i + 1) : normalized.length();
 
-            String messageContent = normalized.substring(start, end).trim();
+            String messageContent = stripBatchSegments(normalized.substring(start, end));
             if (!messageContent.isEmpty()) {
                 messages.add(new HL7Message(messageContent));
             }
@@ -77,6 +103,19 @@ public final class HL7Parser {
         return messages;
     }
 
+    /**
+     * Cuts a message's text at the first batch envelope segment, which in
+     * a batch file can only be a trailer or the header of the next batch.
+     *
+     * @param messageContent the text from an MSH segment up to the next one
+     * @return the trimmed message without envelope segments
+     */
+    public static String stripBatchSegments(String messageContent) {
+        Matcher matcher = BATCH_SEGMENT_PATTERN.matcher(messageContent);
+        String content = matcher.find() ? messageContent.substring(0, matcher.start()) : messageContent;
+        return content.trim();
+    }
+
     /**
      * Parses a single HL7 message from raw content.
      *
@@ -89,7 +128,7 @@ public final class HL7Parser {
         }
 
         String normalized = normalizeContent(content);
-        if (!normalized.contains("MSH|")) {
+        if (!hasMshSegment(normalized)) {
             return null;
         }
 
@@ -107,9 +146,16 @@ public final class HL7Parser {
             return false;
         }
 
-        String normalized = normalizeContent(content);
-        return normalized.contains("MSH|") &&
-                normalized.split("\\r").length >= 1;
+        return hasMshSegment(normalizeContent(content));
+    }
+
+    /**
+     * Returns true if a line starts with MSH and a field separator, whichever
+     * character the message uses for it.
+     */
+    private static boolean hasMshSegment(String normalized) {
+        int msh = HL7Delimiters.findSegment(normalized, "MSH", -1);
+        return msh >= 0 && msh + 3 < normalized.length() && normalized.charAt(msh + 3) != '\r';
     }
 
     /**
@@ -128,22 +174,27 @@ public final class HL7Parser {
      * @return the message control ID, or "UNKNOWN" if not found
      */
     public static String extractMessageControlId(String rawMessage) {
-        if (rawMessage == null) {
-            return "UNKNOWN";
-        }
+        return extractMshField(rawMessage, 10);
+    }
 
-        String normalized = normalizeContent(rawMessage);
-        String[] segments = normalized.split("\r");
+    /**
+     * Extracts the message type (MSH-9, e.g. {@code ADT^A01}) from a raw HL7 message.
+     *
+     * @param rawMessage the raw message content
+     * @return the message type, or "UNKNOWN" if not found
+     */
+    public static String extractMessageType(String rawMessage) {
+        return extractMshField(rawMessage, 9);
+    }
 
-        for (String segment : segments) {
-            if (segment.startsWith("MSH|")) {
-                String[] fields = segment.split("\\|", -1);
-                if (fields.length > 9) {
-                    return fields[9].isEmpty() ? "UNKNOWN" : fields[9];
-                }
-            }
+    private static String extractMshField(String rawMessage, int fieldNumber) {
+        if (rawMessage == null) {
+            return "UNKNOWN";
         }
 
-        return "UNKNOWN";
+        HL7Delimiters delimiters = HL7Delimiters.of(rawMessage);
+        int msh = delimiters.findSegment(rawMessage, "MSH");
+        String value = delimiters.field(rawMessage, msh, fieldNumber);
+        return value.isEmpty() ? "UNKNOWN" : value;
     }
 }
@@ -0,0 +1,70 @@
+package com.hl7testbench.util;
+
+import com.hl7testbench.model.HL7Message;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Reads the HL7 messages in a file one at a time, holding only the current
+ * message in memory.
+ *
+ * <p>Messages are split at every line that begins with {@code MSH|}, as in
+ * {@link HL7Parser#parseMultipleMessages(String)}; blank lines, text before
+ * the first message and batch envelope segments are skipped. Segments are
+ * joined with CR whatever line endings the file uses.</p>
+ */
+public class HL7StreamReader implements Closeable {
+
+    private final BufferedReader reader;
+    private String pendingMsh;
+    private boolean firstLine = true;
+
+    public HL7StreamReader(Path path) throws IOException {
+        this.reader = Files.newBufferedReader(path, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Returns the next message, or null at the end of the file.
+     */
+    public HL7Message next() throws IOException {
+        StringBuilder sb = null;
+        if (pendingMsh != null) {
+            sb = new StringBuilder(pendingMsh);
+            pendingMsh = null;
+        }
+        String line;
+        while ((line = reader.readLine()) != null) {
+            if (firstLine) {
+                firstLine = false;
+                if (line.startsWith("\uFEFF")) {
+                    line = line.substring(1);
+                }
+            }
+            if (line.startsWith("MSH|")) {
+                if (sb != null) {
+                    pendingMsh = line;
+                    return new HL7Message(sb.toString());
+                }
+                sb = new StringBuilder(line);
+            } else if (sb != null && !line.isBlank() && !isBatchSegment(line)) {
+                sb.append('\r').append(line);
+            }
+        }
+        return sb != null ? new HL7Message(sb.toString()) : null;
+    }
+
+    private static boolean isBatchSegment(String line) {
+        return line.startsWith("FHS|") || line.startsWith("BHS|")
+                || line.startsWith("BTS|") || line.startsWith("FTS|");
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+}
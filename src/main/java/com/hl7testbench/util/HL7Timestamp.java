@@ -0,0 +1,116 @@
+package com.hl7testbench.util;
+
+import java.time.DateTimeException;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeParseException;
+
+/**
+ * Parses HL7 date/time values ({@code YYYY[MM[DD[HH[MM[SS[.S[S[S[S]]]]]]]]][+/-ZZZZ]}),
+ * as found in MSH-7, to instants.
+ */
+public final class HL7Timestamp {
+
+    private HL7Timestamp() {
+    }
+
+    /**
+     * Parses an HL7 date/time. Values without an offset are taken to be in
+     * the given zone; missing trailing parts default to their lowest value.
+     *
+     * @return the instant, or null if the value is empty or malformed
+     */
+    public static Instant parse(String value, ZoneId zone) {
+        if (value == null) {
+            return null;
+        }
+        String text = value.trim();
+        int caret = text.indexOf('^');
+        if (caret >= 0) {
+            text = text.substring(0, caret);
+        }
+
+        ZoneOffset offset = null;
+        int sign = Math.max(text.indexOf('+'), text.indexOf('-'));
+        if (sign >= 0) {
+            String zoneText = text.substring(sign);
+            text = text.substring(0, sign);
+            if (zoneText.length() != 5 || !isDigits(zoneText, 1, 5)) {
+                return null;
+            }
+            try {
+                offset = ZoneOffset.ofHoursMinutes(
+                        Integer.parseInt(zoneText.substring(1, 3)) * (zoneText.charAt(0) == '-' ? -1 : 1),
+                        Integer.parseInt(zoneText.substring(3, 5)) * (zoneText.charAt(0) == '-' ? -1 : 1));
+            } catch (DateTimeException e) {
+                return null;
+            }
+        }
+
+        int nanos = 0;
+        int dot = text.indexOf('.');
+        if (dot >= 0) {
+            String fraction = text.substring(dot + 1);
+            text = text.substring(0, dot);
+            if (fraction.isEmpty() || fraction.length() > 9 || !isDigits(fraction, 0, fraction.length())) {
+                return null;
+            }
+            nanos = Integer.parseInt((fraction + "000000000").substring(0, 9));
+        }
+
+        int length = text.length();
+        if (length < 4 || length > 14 || length % 2 != 0 || !isDigits(text, 0, length)) {
+            return null;
+        }
+        try {
+            LocalDateTime dateTime = LocalDateTime.of(
+                    Integer.parseInt(text.substring(0, 4)),
+                    length >= 6 ? Integer.parseInt(text.substring(4, 6)) : 1,
+                    length >= 8 ? Integer.parseInt(text.substring(6, 8)) : 1,
+                    length >= 10 ? Integer.parseInt(text.substring(8, 10)) : 0,
+                    length >= 12 ? Integer.parseInt(text.substring(10, 12)) : 0,
+                    length >= 14 ? Integer.parseInt(text.substring(12, 14)) : 0,
+                    nanos);
+            return offset != null ? dateTime.toInstant(offset) : dateTime.atZone(zone).toInstant();
+        } catch (DateTimeException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Parses an HL7 date/time or an ISO-8601 date-time such as
+     * {@code 2024-01-31T12:00:00.250Z}, e.g. from a capture's timestamp file.
+     *
+     * @return the instant, or null if the value is in neither form
+     */
+    public static Instant parseAny(String value, ZoneId zone) {
+        if (value == null) {
+            return null;
+        }
+        String text = value.trim();
+        if (text.indexOf('T') < 0) {
+            return parse(text, zone);
+        }
+        try {
+            return OffsetDateTime.parse(text).toInstant();
+        } catch (DateTimeParseException e) {
+            try {
+                return LocalDateTime.parse(text).atZone(zone).toInstant();
+            } catch (DateTimeParseException e2) {
+                return null;
+            }
+        }
+    }
+
+    private static boolean isDigits(String text, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (text.charAt(i) < '0' || text.charAt(i) > '9') {
+                return false;
+            }
+        }
+        return true;
+    }
+}
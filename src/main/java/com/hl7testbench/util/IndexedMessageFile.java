@@ -0,0 +1,215 @@
+package com.hl7testbench.util;
+
+import com.hl7testbench.model.HL7Message;
+import com.hl7testbench.telemetry.FileParseEvent;
+import com.hl7testbench.telemetry.Telemetry;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.RandomAccess;
+import java.util.function.BooleanSupplier;
+import java.util.function.LongConsumer;
+
+/**
+ * Read-only list of the HL7 messages in a file, backed by an index of
+ * message start offsets rather than the messages themselves.
+ *
+ * <p>{@link #index} scans the file once as raw bytes, recording the offset
+ * of every {@code MSH|} that begins a line, which is the same split rule as
+ * {@link HL7Parser#parseMultipleMessages(String)}. {@link #get(int)} then
+ * reads and decodes a single message on demand, keeping a small cache of
+ * recently used messages, so memory use is about 8 bytes per message
+ * regardless of file size.</p>
+ */
+public class IndexedMessageFile extends AbstractList<HL7Message>
+        implements RandomAccess, UncachedMessageList, Closeable {
+
+    private static final int READ_CHUNK = 1 << 20;
+    private static final int CACHE_SIZE = 512;
+    private static final byte[] MSH = {'M', 'S', 'H', '|'};
+
+    private final Path path;
+    private final FileChannel channel;
+    private final long[] offsets;
+    private final int count;
+    private final long fileSize;
+
+    private final Map<Integer, HL7Message> cache = new LinkedHashMap<>(CACHE_SIZE, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, HL7Message> eldest) {
+            return size() > CACHE_SIZE;
+        }
+    };
+
+    private IndexedMessageFile(Path path, FileChannel channel, long[] offsets, int count, long fileSize) {
+        this.path = path;
+        this.channel = channel;
+        this.offsets = offsets;
+        this.count = count;
+        this.fileSize = fileSize;
+    }
+
+    /**
+     * Indexes a message file without loading it into memory.
+     *
+     * @param path the file to index
+     * @param progress receives the number of bytes scanned so far (may be null)
+     * @param cancelled polled between chunks; indexing stops with
+     *                  {@link InterruptedIOException} when it returns true (may be null)
+     * @return the indexed file; the caller must close it
+     * @throws IOException if the file cannot be read or indexing was cancelled
+     */
+    public static IndexedMessageFile index(Path path, LongConsumer progress, BooleanSupplier cancelled)
+            throws IOException {
+        FileParseEvent event = Telemetry.isRecording() ? new FileParseEvent() : null;
+        if (event != null) {
+            event.begin();
+        }
+
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            long size = channel.size();
+            long[] offsets = new long[1024];
+            int count = 0;
+
+            ByteBuffer buffer = ByteBuffer.allocate(READ_CHUNK);
+            long position = 0;
+            int previous = '\n';
+            int matched = 0;
+            long candidate = 0;
+            boolean first = true;
+
+            while (position < size) {
+                if (cancelled != null && cancelled.getAsBoolean()) {
+                    throw new InterruptedIOException("Indexing cancelled");
+                }
+                buffer.clear();
+                int read = channel.read(buffer, position);
+                if (read <= 0) {
+                    break;
+                }
+                byte[] bytes = buffer.array();
+                int i = 0;
+                if (first) {
+                    first = false;
+                    if (read >= 3 && (bytes[0] & 0xFF) == 0xEF && (bytes[1] & 0xFF) == 0xBB
+                            && (bytes[2] & 0xFF) == 0xBF) {
+                        i = 3;
+                    }
+                }
+                for (; i < read; i++) {
+                    byte b = bytes[i];
+                    if (matched > 0) {
+                        if (b == MSH[matched]) {
+                            if (++matched == MSH.length) {
+                                if (count == offsets.length) {
+                                    offsets = Arrays.copyOf(offsets, count * 2);
+                                }
+                                offsets[count++] = candidate;
+                                matched = 0;
+                            }
+                        } else {
+                            matched = 0;
+                        }
+                    } else if (b == 'M' && (previous == '\n' || previous == '\r')) {
+                        matched = 1;
+                        candidate = position + i;
+                    }
+                    previous = b;
+                }
+                position += read;
+                if (progress != null) {
+                    progress.accept(position);
+                }
+            }
+
+            if (event != null) {
+                event.end();
+                if (event.shouldCommit()) {
+                    event.path = path.toString();
+                    event.bytes = size;
+                    event.messageCount = count;
+                    event.commit();
+                }
+            }
+            return new IndexedMessageFile(path, channel, offsets, count, size);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    @Override
+    public HL7Message get(int index) {
+        if (index < 0 || index >= count) {
+            throw new IndexOutOfBoundsException("Index " + index + ", size " + count);
+        }
+        synchronized (cache) {
+            HL7Message cached = cache.get(index);
+            if (cached != null) {
+                return cached;
+            }
+        }
+        HL7Message message = new HL7Message(readContent(index));
+        synchronized (cache) {
+            cache.put(index, message);
+        }
+        return message;
+    }
+
+    @Override
+    public HL7Message readMessage(int index) {
+        if (index < 0 || index >= count) {
+            throw new IndexOutOfBoundsException("Index " + index + ", size " + count);
+        }
+        return new HL7Message(readContent(index));
+    }
+
+    /**
+     * Reads the trimmed text of one message, decoded as UTF-8, without
+     * any batch envelope segments that follow it.
+     */
+    public String readContent(int index) {
+        long start = offsets[index];
+        long end = index + 1 < count ? offsets[index + 1] : fileSize;
+        ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(Integer.MAX_VALUE - 8, end - start));
+        try {
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, start + buffer.position()) < 0) {
+                    break;
+                }
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Error reading " + path + ": " + e.getMessage(), e);
+        }
+        return HL7Parser.stripBatchSegments(new String(buffer.array(), 0, buffer.position(), StandardCharsets.UTF_8));
+    }
+
+    @Override
+    public int size() {
+        return count;
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    public long getFileSize() {
+        return fileSize;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
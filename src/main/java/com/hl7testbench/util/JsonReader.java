@@ -0,0 +1,498 @@
+package com.hl7testbench.util;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Minimal JSON parser without external dependencies.
+ *
+ * <p>{@link #parse} and {@link #parseObject} read a whole document into
+ * values: objects become {@link LinkedHashMap}s (keeping key order), arrays
+ * {@link ArrayList}s, strings {@link String}s, numbers {@link Long} if they
+ * are integers and {@link Double} otherwise, and literals {@link Boolean}
+ * or null.</p>
+ *
+ * <p>For large files a reader can also be opened on a {@link Reader} and
+ * pulled one token at a time with {@link #peek}, {@link #beginObject},
+ * {@link #nextName}, {@link #nextString} and so on, in a single pass over a
+ * buffer of fixed size, so only the values the caller keeps are held in
+ * memory. {@link #nextValue} reads the next value as a whole.</p>
+ *
+ * <p>Malformed input throws {@link IllegalArgumentException} with the line
+ * and column of the error.</p>
+ */
+public final class JsonReader implements Closeable {
+
+    /**
+     * The kind of the next token.
+     */
+    public enum Token {
+        BEGIN_OBJECT, END_OBJECT, BEGIN_ARRAY, END_ARRAY, NAME, STRING, NUMBER, BOOLEAN, NULL, END_DOCUMENT
+    }
+
+    private static final int BUFFER_SIZE = 8192;
+
+    private static final int EMPTY_DOCUMENT = 0;
+    private static final int NONEMPTY_DOCUMENT = 1;
+    private static final int EMPTY_ARRAY = 2;
+    private static final int NONEMPTY_ARRAY = 3;
+    private static final int EMPTY_OBJECT = 4;
+    private static final int DANGLING_NAME = 5;
+    private static final int NONEMPTY_OBJECT = 6;
+
+    private final Reader in;
+    private final char[] buffer;
+    private int pos;
+    private int limit;
+    /** Characters read before the start of the buffer. */
+    private long consumed;
+    private int line = 1;
+    private long lineStart;
+
+    private int[] scopes = new int[32];
+    private int depth;
+    private Token peeked;
+
+    /**
+     * Opens a pull reader on a character stream. Closing the reader closes the stream.
+     */
+    public JsonReader(Reader in) {
+        this(in, new char[BUFFER_SIZE], 0);
+    }
+
+    private JsonReader(Reader in, char[] buffer, int limit) {
+        this.in = in;
+        this.buffer = buffer;
+        this.limit = limit;
+        scopes[depth++] = EMPTY_DOCUMENT;
+    }
+
+    /**
+     * Parses a complete JSON document.
+     */
+    public static Object parse(String json) {
+        JsonReader reader = new JsonReader(null, json.toCharArray(), json.length());
+        try {
+            Object value = reader.nextValue();
+            reader.peek();
+            return value;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Parses a document whose top level must be an object.
+     */
+    @SuppressWarnings("unchecked")
+    public static Map<String, Object> parseObject(String json) {
+        Object value = parse(json);
+        if (!(value instanceof Map)) {
+            throw new IllegalArgumentException("Expected a JSON object");
+        }
+        return (Map<String, Object>) value;
+    }
+
+    /**
+     * Returns the kind of the next token without consuming it, or
+     * {@link Token#END_DOCUMENT} after the top-level value.
+     */
+    public Token peek() throws IOException {
+        if (peeked != null) {
+            return peeked;
+        }
+        int scope = scopes[depth - 1];
+        switch (scope) {
+            case EMPTY_ARRAY -> {
+                scopes[depth - 1] = NONEMPTY_ARRAY;
+                if (nextNonWhitespace() == ']') {
+                    pos++;
+                    return peeked = Token.END_ARRAY;
+                }
+            }
+            case NONEMPTY_ARRAY -> {
+                int c = nextNonWhitespace();
+                pos++;
+                if (c == ']') {
+                    return peeked = Token.END_ARRAY;
+                }
+                if (c != ',') {
+                    throw error("Expected ',' or ']'");
+                }
+            }
+            case EMPTY_OBJECT, NONEMPTY_OBJECT -> {
+                scopes[depth - 1] = DANGLING_NAME;
+                int c = nextNonWhitespace();
+                if (scope == NONEMPTY_OBJECT) {
+                    pos++;
+                    if (c == '}') {
+                        return peeked = Token.END_OBJECT;
+                    }
+                    if (c != ',') {
+                        throw error("Expected ',' or '}'");
+                    }
+                    c = nextNonWhitespace();
+                } else if (c == '}') {
+                    pos++;
+                    return peeked = Token.END_OBJECT;
+                }
+                if (c != '"') {
+                    throw error("Expected a string key");
+                }
+                return peeked = Token.NAME;
+            }
+            case DANGLING_NAME -> {
+                scopes[depth - 1] = NONEMPTY_OBJECT;
+                if (nextNonWhitespace() != ':') {
+                    throw error("Expected ':'");
+                }
+                pos++;
+            }
+            case EMPTY_DOCUMENT -> scopes[depth - 1] = NONEMPTY_DOCUMENT;
+            default -> {
+                if (!fillIfEmptyAfterWhitespace()) {
+                    return peeked = Token.END_DOCUMENT;
+                }
+                throw error("Unexpected content after JSON value");
+            }
+        }
+
+        int c = nextNonWhitespace();
+        return peeked = switch (c) {
+            case '{' -> Token.BEGIN_OBJECT;
+            case '[' -> Token.BEGIN_ARRAY;
+            case '"' -> Token.STRING;
+            case 't', 'f' -> Token.BOOLEAN;
+            case 'n' -> Token.NULL;
+            default -> {
+                if (c == '-' || (c >= '0' && c <= '9')) {
+                    yield Token.NUMBER;
+                }
+                throw error("Unexpected character '" + (char) c + "'");
+            }
+        };
+    }
+
+    /**
+     * True if the current array or object has another element.
+     */
+    public boolean hasNext() throws IOException {
+        Token token = peek();
+        return token != Token.END_OBJECT && token != Token.END_ARRAY && token != Token.END_DOCUMENT;
+    }
+
+    public void beginObject() throws IOException {
+        expect(Token.BEGIN_OBJECT, "Expected an object");
+        pos++;
+        push(EMPTY_OBJECT);
+    }
+
+    public void endObject() throws IOException {
+        expect(Token.END_OBJECT, "Expected '}'");
+        depth--;
+    }
+
+    public void beginArray() throws IOException {
+        expect(Token.BEGIN_ARRAY, "Expected an array");
+        pos++;
+        push(EMPTY_ARRAY);
+    }
+
+    public void endArray() throws IOException {
+        expect(Token.END_ARRAY, "Expected ']'");
+        depth--;
+    }
+
+    /**
+     * Reads the key of the next object member.
+     */
+    public String nextName() throws IOException {
+        expect(Token.NAME, "Expected a string key");
+        return readString();
+    }
+
+    public String nextString() throws IOException {
+        expect(Token.STRING, "Expected a string");
+        return readString();
+    }
+
+    /**
+     * Reads a number as a {@link Long} if it is an integer that fits, or a {@link Double}.
+     */
+    public Number nextNumber() throws IOException {
+        expect(Token.NUMBER, "Expected a number");
+        return readNumber();
+    }
+
+    public boolean nextBoolean() throws IOException {
+        expect(Token.BOOLEAN, "Expected a boolean");
+        if (buffer[pos] == 't') {
+            readLiteral("true");
+            return true;
+        }
+        readLiteral("false");
+        return false;
+    }
+
+    public void nextNull() throws IOException {
+        expect(Token.NULL, "Expected null");
+        readLiteral("null");
+    }
+
+    /**
+     * Reads the next value with everything it contains, as {@link #parse} does.
+     */
+    public Object nextValue() throws IOException {
+        return switch (peek()) {
+            case BEGIN_OBJECT -> {
+                Map<String, Object> map = new LinkedHashMap<>();
+                beginObject();
+                while (hasNext()) {
+                    map.put(nextName(), nextValue());
+                }
+                endObject();
+                yield map;
+            }
+            case BEGIN_ARRAY -> {
+                List<Object> list = new ArrayList<>();
+                beginArray();
+                while (hasNext()) {
+                    list.add(nextValue());
+                }
+                endArray();
+                yield list;
+            }
+            case STRING -> nextString();
+            case NUMBER -> nextNumber();
+            case BOOLEAN -> nextBoolean();
+            case NULL -> {
+                nextNull();
+                yield null;
+            }
+            default -> throw error("Expected a value");
+        };
+    }
+
+    /**
+     * Skips the next value with everything it contains, without keeping it.
+     */
+    public void skipValue() throws IOException {
+        int nesting = 0;
+        do {
+            switch (peek()) {
+                case BEGIN_OBJECT -> {
+                    beginObject();
+                    nesting++;
+                }
+                case BEGIN_ARRAY -> {
+                    beginArray();
+                    nesting++;
+                }
+                case END_OBJECT -> {
+                    endObject();
+                    nesting--;
+                }
+                case END_ARRAY -> {
+                    endArray();
+                    nesting--;
+                }
+                case NAME -> nextName();
+                case STRING -> nextString();
+                case NUMBER -> nextNumber();
+                case BOOLEAN -> nextBoolean();
+                case NULL -> nextNull();
+                case END_DOCUMENT -> throw error("Expected a value");
+            }
+        } while (nesting > 0);
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (in != null) {
+            in.close();
+        }
+    }
+
+    private void expect(Token token, String message) throws IOException {
+        if (peek() != token) {
+            throw error(message);
+        }
+        peeked = null;
+    }
+
+    private void push(int scope) {
+        if (depth == scopes.length) {
+            scopes = Arrays.copyOf(scopes, depth * 2);
+        }
+        scopes[depth++] = scope;
+    }
+
+    private String readString() throws IOException {
+        pos++;
+        int start = pos;
+        // Most strings have no escapes and lie within the buffer: take them in one piece
+        for (int i = start; i < limit; i++) {
+            char c = buffer[i];
+            if (c == '"') {
+                pos = i + 1;
+                return new String(buffer, start, i - start);
+            }
+            if (c == '\\' || c < 0x20) {
+                break;
+            }
+        }
+        StringBuilder sb = new StringBuilder();
+        while (true) {
+            char c = nextChar();
+            if (c == '"') {
+                return sb.toString();
+            }
+            if (c == '\\') {
+                char escaped = nextChar();
+                switch (escaped) {
+                    case '"', '\\', '/' -> sb.append(escaped);
+                    case 'b' -> sb.append('\b');
+                    case 'f' -> sb.append('\f');
+                    case 'n' -> sb.append('\n');
+                    case 'r' -> sb.append('\r');
+                    case 't' -> sb.append('\t');
+                    case 'u' -> {
+                        long at = consumed + pos;
+                        int value = 0;
+                        for (int i = 0; i < 4; i++) {
+                            if (pos == limit && !fill()) {
+                                throw error("Incomplete unicode escape", at);
+                            }
+                            int digit = Character.digit(buffer[pos++], 16);
+                            if (digit < 0) {
+                                throw error("Invalid unicode escape", at);
+                            }
+                            value = value * 16 + digit;
+                        }
+                        sb.append((char) value);
+                    }
+                    default -> throw error("Invalid escape '\\" + escaped + "'");
+                }
+            } else if (c < 0x20) {
+                throw error("Control character in string");
+            } else {
+                sb.append(c);
+            }
+        }
+    }
+
+    private Number readNumber() throws IOException {
+        long at = consumed + pos;
+        StringBuilder number = new StringBuilder();
+        boolean integral = true;
+        while (pos < limit || fill()) {
+            char c = buffer[pos];
+            if (c >= '0' && c <= '9') {
+                number.append(c);
+            } else if (c == '.' || c == 'e' || c == 'E' || c == '+' || c == '-') {
+                integral &= c == '-' && number.isEmpty();
+                number.append(c);
+            } else {
+                break;
+            }
+            pos++;
+        }
+        String text = number.toString();
+        try {
+            if (integral) {
+                try {
+                    return Long.parseLong(text);
+                } catch (NumberFormatException e) {
+                    // Too large for a long
+                }
+            }
+            return Double.parseDouble(text);
+        } catch (NumberFormatException e) {
+            throw error("Invalid number '" + text + "'", at);
+        }
+    }
+
+    private void readLiteral(String literal) throws IOException {
+        long at = consumed + pos;
+        for (int i = 0; i < literal.length(); i++) {
+            if ((pos == limit && !fill()) || buffer[pos] != literal.charAt(i)) {
+                throw error("Unexpected token", at);
+            }
+            pos++;
+        }
+    }
+
+    /**
+     * Skips whitespace and returns the next character without consuming it.
+     */
+    private int nextNonWhitespace() throws IOException {
+        if (!fillIfEmptyAfterWhitespace()) {
+            throw error("Unexpected end of input");
+        }
+        return buffer[pos];
+    }
+
+    /**
+     * Skips whitespace, returning false at the end of the input.
+     */
+    private boolean fillIfEmptyAfterWhitespace() throws IOException {
+        while (pos < limit || fill()) {
+            char c = buffer[pos];
+            if (!Character.isWhitespace(c)) {
+                return true;
+            }
+            pos++;
+            if (c == '\n') {
+                line++;
+                lineStart = consumed + pos;
+            }
+        }
+        return false;
+    }
+
+    private char nextChar() throws IOException {
+        if (pos == limit && !fill()) {
+            throw error("Unexpected end of input");
+        }
+        return buffer[pos++];
+    }
+
+    /**
+     * Reads more input into the empty buffer, returning false at the end of the input.
+     */
+    private boolean fill() throws IOException {
+        if (in == null) {
+            return false;
+        }
+        consumed += limit;
+        pos = 0;
+        limit = 0;
+        int n;
+        while ((n = in.read(buffer)) == 0) {
+            // A reader may return 0 before data is available
+        }
+        if (n < 0) {
+            return false;
+        }
+        limit = n;
+        return true;
+    }
+
+    private IllegalArgumentException error(String message) {
+        return error(message, consumed + pos);
+    }
+
+    /**
+     * Returns an error at the given offset, which must be on the current line.
+     */
+    private IllegalArgumentException error(String message, long at) {
+        return new IllegalArgumentException(message + " at line " + line + ", column " + (at - lineStart + 1));
+    }
+}
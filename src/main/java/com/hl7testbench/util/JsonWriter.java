@@ -0,0 +1,177 @@
+package com.hl7testbench.util;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * Minimal JSON writer, the counterpart of {@link JsonReader}.
+ *
+ * <p>Writes {@link Map}s as objects (keys via {@link String#valueOf}),
+ * {@link Iterable}s and {@code long[]}/{@code double[]} arrays as arrays,
+ * {@link Number}s, {@link Boolean}s and null as literals, and anything else
+ * as a string. Non-finite doubles are written as null. {@link #write} output
+ * is indented with two spaces so it diffs well; {@link #writeCompact} puts
+ * everything on one line, e.g. for JSON Lines. {@link #writeArray} streams
+ * a large array to a {@link Writer} one element at a time.</p>
+ */
+public final class JsonWriter {
+
+    private static final String INDENT = "  ";
+
+    private final StringBuilder out = new StringBuilder();
+    private final boolean compact;
+
+    private JsonWriter(boolean compact) {
+        this.compact = compact;
+    }
+
+    /**
+     * Returns the JSON text for a value.
+     */
+    public static String write(Object value) {
+        JsonWriter writer = new JsonWriter(false);
+        writer.writeValue(value, 0);
+        return writer.out.append('\n').toString();
+    }
+
+    /**
+     * Returns the JSON text for a value on a single line, without a line break.
+     */
+    public static String writeCompact(Object value) {
+        JsonWriter writer = new JsonWriter(true);
+        writer.writeValue(value, 0);
+        return writer.out.toString();
+    }
+
+    /**
+     * Writes an array to {@code out} as {@link #write} formats it, one
+     * element at a time, so only one element's text is held at once.
+     */
+    public static void writeArray(Iterable<?> elements, Writer out) throws IOException {
+        JsonWriter writer = new JsonWriter(false);
+        writer.out.append('[');
+        boolean first = true;
+        for (Object element : elements) {
+            writer.separate(first, 1);
+            first = false;
+            writer.writeValue(element, 1);
+            out.append(writer.out);
+            writer.out.setLength(0);
+        }
+        if (!first) {
+            writer.newline(0);
+        }
+        out.append(writer.out.append("]\n"));
+    }
+
+    private void writeValue(Object value, int depth) {
+        if (value == null) {
+            out.append("null");
+        } else if (value instanceof Map<?, ?> map) {
+            writeObject(map, depth);
+        } else if (value instanceof Iterable<?> iterable) {
+            writeArray(iterable, depth);
+        } else if (value instanceof long[] longs) {
+            writeInline(Arrays.stream(longs).mapToObj(Long::toString).toList());
+        } else if (value instanceof double[] doubles) {
+            writeInline(Arrays.stream(doubles).mapToObj(JsonWriter::formatDouble).toList());
+        } else if (value instanceof Double || value instanceof Float) {
+            out.append(formatDouble(((Number) value).doubleValue()));
+        } else if (value instanceof Number || value instanceof Boolean) {
+            out.append(value);
+        } else {
+            writeString(String.valueOf(value));
+        }
+    }
+
+    private void writeObject(Map<?, ?> map, int depth) {
+        if (map.isEmpty()) {
+            out.append("{}");
+            return;
+        }
+        out.append('{');
+        boolean first = true;
+        for (Map.Entry<?, ?> entry : map.entrySet()) {
+            separate(first, depth + 1);
+            first = false;
+            writeString(String.valueOf(entry.getKey()));
+            out.append(compact ? ":" : ": ");
+            writeValue(entry.getValue(), depth + 1);
+        }
+        newline(depth);
+        out.append('}');
+    }
+
+    private void writeArray(Iterable<?> iterable, int depth) {
+        boolean first = true;
+        out.append('[');
+        for (Object item : iterable) {
+            separate(first, depth + 1);
+            first = false;
+            writeValue(item, depth + 1);
+        }
+        if (!first) {
+            newline(depth);
+        }
+        out.append(']');
+    }
+
+    /**
+     * Writes an array of numbers on one line, which keeps long series readable.
+     */
+    private void writeInline(Iterable<String> literals) {
+        out.append('[').append(String.join(compact ? "," : ", ", literals)).append(']');
+    }
+
+    private void writeString(String value) {
+        out.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"' -> out.append("\\\"");
+                case '\\' -> out.append("\\\\");
+                case '\n' -> out.append("\\n");
+                case '\r' -> out.append("\\r");
+                case '\t' -> out.append("\\t");
+                case '\b' -> out.append("\\b");
+                case '\f' -> out.append("\\f");
+                default -> {
+                    if (c < 0x20) {
+                        out.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        out.append(c);
+                    }
+                }
+            }
+        }
+        out.append('"');
+    }
+
+    /**
+     * Starts an object member or array item at the given depth.
+     */
+    private void separate(boolean first, int depth) {
+        if (!first) {
+            out.append(',');
+        }
+        newline(depth);
+    }
+
+    private void newline(int depth) {
+        if (!compact) {
+            out.append('\n').append(INDENT.repeat(depth));
+        }
+    }
+
+    private static String formatDouble(double value) {
+        if (Double.isNaN(value) || Double.isInfinite(value)) {
+            return "null";
+        }
+        if (value == Math.rint(value) && Math.abs(value) < 1e15) {
+            return Long.toString((long) value);
+        }
+        return Double.toString(value);
+    }
+}
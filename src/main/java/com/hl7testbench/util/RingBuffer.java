@@ -0,0 +1,72 @@
+package com.hl7testbench.util;
+
+import java.util.Arrays;
+
+/**
+ * Fixed-capacity circular buffer indexed newest-first.
+ * Adding to a full buffer overwrites the oldest element in O(1) without
+ * shifting any other elements. Not thread-safe; confine to one thread.
+ *
+ * @param <T> the element type
+ */
+public class RingBuffer<T> {
+
+    private final Object[] elements;
+    private int head;
+    private int size;
+
+    public RingBuffer(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+        }
+        this.elements = new Object[capacity];
+    }
+
+    /**
+     * Adds an element as the newest entry.
+     *
+     * @return true if the oldest element was evicted to make room
+     */
+    public boolean add(T element) {
+        elements[head] = element;
+        head = (head + 1) % elements.length;
+        if (size < elements.length) {
+            size++;
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Returns the element at the given position, where 0 is the newest.
+     */
+    @SuppressWarnings("unchecked")
+    public T get(int newestFirstIndex) {
+        if (newestFirstIndex < 0 || newestFirstIndex >= size) {
+            throw new IndexOutOfBoundsException("Index " + newestFirstIndex + ", size " + size);
+        }
+        int slot = head - 1 - newestFirstIndex;
+        if (slot < 0) {
+            slot += elements.length;
+        }
+        return (T) elements[slot];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int capacity() {
+        return elements.length;
+    }
+
+    public boolean isFull() {
+        return size == elements.length;
+    }
+
+    public void clear() {
+        Arrays.fill(elements, null);
+        head = 0;
+        size = 0;
+    }
+}
@@ -0,0 +1,16 @@
+package com.hl7testbench.util;
+
+import com.hl7testbench.model.HL7Message;
+
+/**
+ * A message list that can also read a message without caching it, for a
+ * pass over every message, such as validation, that would otherwise evict
+ * the messages a view is showing and contend on the cache.
+ */
+public interface UncachedMessageList {
+
+    /**
+     * Reads the message at {@code index} without adding it to any cache.
+     */
+    HL7Message readMessage(int index);
+}
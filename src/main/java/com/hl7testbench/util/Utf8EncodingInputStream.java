@@ -0,0 +1,104 @@
+package com.hl7testbench.util;
+
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Input stream of the UTF-8 encoding of a string, encoded a small chunk at a
+ * time as it is read, so a large message never exists as a second full-size
+ * byte array.
+ */
+public class Utf8EncodingInputStream extends InputStream {
+
+    private static final int BUFFER_SIZE = 16 * 1024;
+
+    private final CharBuffer source;
+    private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+    private boolean flushed;
+
+    public Utf8EncodingInputStream(CharSequence text) {
+        this.source = CharBuffer.wrap(text);
+        this.buffer.flip();
+    }
+
+    /**
+     * Returns the number of bytes in the UTF-8 encoding of the text,
+     * without encoding it. Unpaired surrogates count as the one-byte
+     * replacement the encoder writes for them.
+     */
+    public static long encodedLength(CharSequence text) {
+        long length = 0;
+        int n = text.length();
+        for (int i = 0; i < n; i++) {
+            char c = text.charAt(i);
+            if (c < 0x80) {
+                length++;
+            } else if (c < 0x800) {
+                length += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < n && Character.isLowSurrogate(text.charAt(i + 1))) {
+                length += 4;
+                i++;
+            } else if (Character.isSurrogate(c)) {
+                length++;
+            } else {
+                length += 3;
+            }
+        }
+        return length;
+    }
+
+    @Override
+    public int read() {
+        if (!fill()) {
+            return -1;
+        }
+        return buffer.get() & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) {
+        if (len == 0) {
+            return 0;
+        }
+        if (!fill()) {
+            return -1;
+        }
+        int n = Math.min(len, buffer.remaining());
+        buffer.get(b, off, n);
+        return n;
+    }
+
+    @Override
+    public int available() {
+        return buffer.remaining();
+    }
+
+    /**
+     * Encodes the next chunk if the buffer is empty.
+     *
+     * @return false at end of stream
+     */
+    private boolean fill() {
+        while (!buffer.hasRemaining()) {
+            if (flushed) {
+                return false;
+            }
+            buffer.clear();
+            CoderResult result = encoder.encode(source, buffer, true);
+            if (result.isUnderflow()) {
+                encoder.flush(buffer);
+                flushed = true;
+            }
+            buffer.flip();
+        }
+        return true;
+    }
+}
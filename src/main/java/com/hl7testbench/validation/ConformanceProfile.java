@@ -0,0 +1,618 @@
+package com.hl7testbench.validation;
+
+import com.hl7testbench.model.HL7Delimiters;
+import com.hl7testbench.model.HL7Message;
+import com.hl7testbench.util.HL7Timestamp;
+import com.hl7testbench.util.JsonReader;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A message profile compiled for validation: the segments a message must
+ * contain, in which order and how often, and rules for their fields.
+ *
+ * <p>Profiles are JSON files:</p>
+ * <pre>
+ * {
+ *   "name": "ADT A01 inbound",
+ *   "messageType": "ADT^A01",
+ *   "tables": {"0001": ["F", "M", "O", "U", "A", "N"]},
+ *   "segments": [
+ *     {"id": "MSH", "fields": [{"position": 10, "usage": "R", "length": 20}]},
+ *     {"id": "EVN"},
+ *     {"id": "PID", "fields": [
+ *       {"position": 3, "usage": "R", "length": 250},
+ *       {"position": 7, "type": "DTM"},
+ *       {"position": 8, "table": "0001", "repeat": 1}
+ *     ]},
+ *     {"id": "NK1", "min": 0, "max": "*"},
+ *     {"id": "PV1"}
+ *   ]
+ * }
+ * </pre>
+ *
+ * <p>Segments occur {@code min} (default 1) to {@code max} (default 1, or
+ * {@code "*"}) times in the listed order; MSH is implied first if not
+ * listed. Segments the profile does not list are violations unless
+ * {@code allowUnlistedSegments} is true. A field's {@code usage} is
+ * {@code R} (required), {@code RE}, {@code O} or {@code C} (optional, the
+ * default) or {@code X} (must be empty); {@code repeat} limits its
+ * repetitions, {@code length} the characters per repetition, and
+ * {@code table} its first component to a list of values, inline or named
+ * in {@code tables}. The {@code type}s NM, SI, DT, DTM (or TS) and TM are
+ * checked; other types, such as composites, are accepted as they are.</p>
+ *
+ * <p>On loading, the segment list is compiled into transition tables, so
+ * validating a message is one pass over its text, using the delimiters it
+ * declares, with no lookups beyond array indexing: a segment ID is found in
+ * a table indexed by its base-36 code, and fields without rules are
+ * skipped without being split. Profiles are immutable and can validate from several threads.</p>
+ */
+public final class ConformanceProfile {
+
+    private static final int UNBOUNDED = Integer.MAX_VALUE;
+    private static final int MAX_QUOTED_VALUE = 40;
+    /** Number of distinct three-character segment IDs of letters and digits. */
+    private static final int SEGMENT_ID_CODES = 36 * 36 * 36;
+
+    private enum Usage { REQUIRED, OPTIONAL, NOT_SUPPORTED }
+
+    private enum DataType { NM, SI, DT, DTM, TM, OTHER }
+
+    private record FieldRule(int position, Usage usage, int maxRepetitions, int maxLength, DataType type,
+                             String typeName, String tableName, Set<String> table) {
+    }
+
+    /**
+     * A segment of the profile. {@code fields} is indexed by position and
+     * ends at the last position with a rule.
+     */
+    private record SegmentRule(String id, int symbol, int min, int max, FieldRule[] fields) {
+    }
+
+    private final String name;
+    private final String messageType;
+    private final boolean allowUnlistedSegments;
+    private final SegmentRule[] segments;
+    /** Symbols indexed by segment ID code from {@link #pack}, -1 for unlisted segments. */
+    private final int[] symbolsByCode;
+    /**
+     * {@code next[p][s]}: the first segment from index p on with symbol s,
+     * reachable by skipping only optional segments, or -1.
+     */
+    private final int[][] next;
+    /** Like {@link #next}, but skipping required segments too. */
+    private final int[][] ahead;
+
+    private ConformanceProfile(String name, String messageType, boolean allowUnlistedSegments,
+                               List<SegmentRule> segments, int symbolCount) {
+        this.name = name;
+        this.messageType = messageType;
+        this.allowUnlistedSegments = allowUnlistedSegments;
+        this.segments = segments.toArray(new SegmentRule[0]);
+
+        int n = this.segments.length;
+        this.symbolsByCode = new int[SEGMENT_ID_CODES];
+        Arrays.fill(symbolsByCode, -1);
+        for (SegmentRule segment : this.segments) {
+            symbolsByCode[pack(segment.id(), 0, 3)] = segment.symbol();
+        }
+        this.next = new int[n + 1][symbolCount];
+        this.ahead = new int[n + 1][symbolCount];
+        for (int s = 0; s < symbolCount; s++) {
+            next[n][s] = -1;
+            ahead[n][s] = -1;
+        }
+        for (int p = n - 1; p >= 0; p--) {
+            SegmentRule segment = this.segments[p];
+            for (int s = 0; s < symbolCount; s++) {
+                if (segment.symbol() == s) {
+                    next[p][s] = p;
+                    ahead[p][s] = p;
+                } else {
+                    next[p][s] = segment.min() == 0 ? next[p + 1][s] : -1;
+                    ahead[p][s] = ahead[p + 1][s];
+                }
+            }
+        }
+    }
+
+    /**
+     * Loads and compiles a profile file.
+     *
+     * @throws IllegalArgumentException if the file is not a valid profile
+     */
+    public static ConformanceProfile load(Path path) throws IOException {
+        String fileName = path.getFileName().toString();
+        int dot = fileName.lastIndexOf('.');
+        return parse(Files.readString(path), dot > 0 ? fileName.substring(0, dot) : fileName);
+    }
+
+    /**
+     * Compiles a profile from its JSON text.
+     *
+     * @param defaultName the name to use if the profile does not have one
+     * @throws IllegalArgumentException if the text is not a valid profile
+     */
+    public static ConformanceProfile parse(String json, String defaultName) {
+        Map<String, Object> root = JsonReader.parseObject(json);
+        String name = root.get("name") instanceof String s ? s : defaultName;
+        String messageType = root.get("messageType") instanceof String s && !s.isBlank() ? s.trim() : null;
+        boolean allowUnlisted = Boolean.TRUE.equals(root.get("allowUnlistedSegments"));
+
+        Map<String, Set<String>> tables = new HashMap<>();
+        if (root.get("tables") instanceof Map<?, ?> tableMap) {
+            for (Map.Entry<?, ?> entry : tableMap.entrySet()) {
+                tables.put(String.valueOf(entry.getKey()), values(entry.getValue(), "tables." + entry.getKey()));
+            }
+        } else if (root.containsKey("tables")) {
+            throw new IllegalArgumentException("\"tables\" must be an object");
+        }
+
+        if (!(root.get("segments") instanceof List<?> segmentList) || segmentList.isEmpty()) {
+            throw new IllegalArgumentException("\"segments\" must be a non-empty array");
+        }
+        Map<String, Integer> symbols = new LinkedHashMap<>();
+        List<SegmentRule> segments = new ArrayList<>();
+        for (int i = 0; i < segmentList.size(); i++) {
+            String where = "segments[" + i + "]";
+            if (!(segmentList.get(i) instanceof Map<?, ?> segment)) {
+                throw new IllegalArgumentException("\"" + where + "\" must be an object");
+            }
+            if (!(segment.get("id") instanceof String id) || !isSegmentId(id)) {
+                throw new IllegalArgumentException(where + ": \"id\" must be a three-character segment ID");
+            }
+            int min = count(segment.get("min"), 1, where + ".min");
+            int max = count(segment.get("max"), 1, where + ".max");
+            if (max < Math.max(min, 1)) {
+                throw new IllegalArgumentException(where + ": \"max\" is less than \"min\"");
+            }
+            FieldRule[] fields = fields(segment.get("fields"), id, tables, where);
+            if (id.equals("MSH") && i > 0) {
+                throw new IllegalArgumentException(where + ": MSH must be the first segment");
+            }
+            if (i == 0 && !id.equals("MSH")) {
+                segments.add(new SegmentRule("MSH", symbols.computeIfAbsent("MSH", k -> symbols.size()), 1, 1,
+                        fields(null, "MSH", tables, "MSH")));
+            }
+            segments.add(new SegmentRule(id, symbols.computeIfAbsent(id, k -> symbols.size()),
+                    id.equals("MSH") ? 1 : min, id.equals("MSH") ? 1 : max, fields));
+        }
+        if (messageType != null) {
+            SegmentRule msh = segments.get(0);
+            FieldRule[] fields = msh.fields();
+            if (fields.length <= 9 || fields[9] == null) {
+                fields = Arrays.copyOf(fields, Math.max(fields.length, 10));
+                fields[9] = new FieldRule(9, Usage.REQUIRED, UNBOUNDED, UNBOUNDED, DataType.OTHER, "MSG",
+                        null, null);
+                segments.set(0, new SegmentRule("MSH", msh.symbol(), 1, 1, fields));
+            }
+        }
+        return new ConformanceProfile(name, messageType, allowUnlisted, segments, symbols.size());
+    }
+
+    private static FieldRule[] fields(Object value, String segmentId, Map<String, Set<String>> tables,
+                                      String where) {
+        if (value == null) {
+            return new FieldRule[0];
+        }
+        if (!(value instanceof List<?> list)) {
+            throw new IllegalArgumentException("\"" + where + ".fields\" must be an array");
+        }
+        Map<Integer, FieldRule> rules = new HashMap<>();
+        int last = 0;
+        for (int i = 0; i < list.size(); i++) {
+            String fieldWhere = where + ".fields[" + i + "]";
+            if (!(list.get(i) instanceof Map<?, ?> field)) {
+                throw new IllegalArgumentException("\"" + fieldWhere + "\" must be an object");
+            }
+            if (!(field.get("position") instanceof Long position) || position < 1 || position > 999) {
+                throw new IllegalArgumentException(fieldWhere + ": \"position\" must be a field number from 1 to 999");
+            }
+            if (segmentId.equals("MSH") && position < 2) {
+                throw new IllegalArgumentException(fieldWhere + ": MSH-1 is the field separator and cannot be checked");
+            }
+            String usageText = field.get("usage") instanceof String s ? s.trim().toUpperCase(Locale.ROOT) : "O";
+            Usage usage = switch (usageText) {
+                case "R" -> Usage.REQUIRED;
+                case "RE", "O", "C", "CE" -> Usage.OPTIONAL;
+                case "X" -> Usage.NOT_SUPPORTED;
+                default -> throw new IllegalArgumentException(fieldWhere + ": unknown usage \"" + usageText + "\"");
+            };
+            String typeName = field.get("type") instanceof String s ? s.trim().toUpperCase(Locale.ROOT) : "";
+            DataType type = switch (typeName) {
+                case "NM" -> DataType.NM;
+                case "SI" -> DataType.SI;
+                case "DT" -> DataType.DT;
+                case "DTM", "TS" -> DataType.DTM;
+                case "TM" -> DataType.TM;
+                default -> DataType.OTHER;
+            };
+            String tableName = null;
+            Set<String> table = null;
+            Object tableValue = field.get("table");
+            if (tableValue instanceof String named) {
+                table = tables.get(named);
+                if (table == null) {
+                    throw new IllegalArgumentException(fieldWhere + ": table \"" + named + "\" is not defined");
+                }
+                tableName = named;
+            } else if (tableValue != null) {
+                table = values(tableValue, fieldWhere + ".table");
+            }
+            int pos = position.intValue();
+            rules.put(pos, new FieldRule(pos, usage, count(field.get("repeat"), UNBOUNDED, fieldWhere + ".repeat"),
+                    count(field.get("length"), UNBOUNDED, fieldWhere + ".length"), type, typeName, tableName, table));
+            last = Math.max(last, pos);
+        }
+        FieldRule[] fields = new FieldRule[last + 1];
+        rules.forEach((position, rule) -> fields[position] = rule);
+        return fields;
+    }
+
+    private static Set<String> values(Object value, String where) {
+        if (!(value instanceof List<?> list)) {
+            throw new IllegalArgumentException("\"" + where + "\" must be an array of values");
+        }
+        Set<String> values = new HashSet<>();
+        for (Object item : list) {
+            values.add(String.valueOf(item));
+        }
+        return Set.copyOf(values);
+    }
+
+    /**
+     * Reads a non-negative count, where {@code "*"} means unbounded.
+     */
+    private static int count(Object value, int defaultValue, String where) {
+        if (value == null) {
+            return defaultValue;
+        }
+        if ("*".equals(value)) {
+            return UNBOUNDED;
+        }
+        if (value instanceof Long n && n >= 0 && n <= Integer.MAX_VALUE) {
+            return n.intValue();
+        }
+        throw new IllegalArgumentException("\"" + where + "\" must be a non-negative integer or \"*\"");
+    }
+
+    private static boolean isSegmentId(String id) {
+        return id.length() == 3 && pack(id, 0, 3) >= 0;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Returns the message type MSH-9 must have, e.g. {@code ADT^A01}, or null for any.
+     */
+    public String getMessageType() {
+        return messageType;
+    }
+
+    /**
+     * Validates a message, returning its violations in message order; an
+     * empty list means the message conforms.
+     */
+    public List<Violation> validate(HL7Message message) {
+        String text = message.getRawContent();
+        List<Violation> violations = new ArrayList<>(0);
+        int length = text.length();
+        if (length < 4 || !text.startsWith("MSH")) {
+            violations.add(new Violation(1, "MSH", "the message does not start with an MSH segment"));
+            return violations;
+        }
+
+        HL7Delimiters delimiters = message.getDelimiters();
+        char fieldSeparator = delimiters.field();
+        char componentSeparator = delimiters.component();
+        char repetitionSeparator = delimiters.repetition();
+
+        int current = -1;
+        int count = 0;
+        int segmentNumber = 0;
+        for (int start = 0; start < length; ) {
+            int end = indexOf(text, '\r', start, length);
+            if (end == start) {
+                start++;
+                continue;
+            }
+            segmentNumber++;
+            int idEnd = indexOf(text, fieldSeparator, start, end);
+            int key = idEnd - start == 3 ? pack(text, start, idEnd) : -1;
+            if (key < 0) {
+                violations.add(new Violation(segmentNumber, quote(text, start, idEnd), "invalid segment ID"));
+                start = end + 1;
+                continue;
+            }
+            int symbol = symbolsByCode[key];
+
+            int matched = -1;
+            if (symbol >= 0 && current >= 0 && segments[current].symbol() == symbol
+                    && (count < segments[current].max() || next[current + 1][symbol] < 0)) {
+                count++;
+                matched = current;
+                if (count == segments[current].max() + 1) {
+                    violations.add(new Violation(segmentNumber, segments[current].id(),
+                            "occurs more than " + segments[current].max() + " time(s)"));
+                }
+            } else if (symbol >= 0) {
+                int target = next[current + 1][symbol];
+                if (target < 0 && ahead[current + 1][symbol] >= 0) {
+                    target = ahead[current + 1][symbol];
+                    for (int p = current + 1; p < target; p++) {
+                        if (segments[p].min() > 0) {
+                            violations.add(new Violation(segmentNumber, segments[p].id(),
+                                    "required segment is missing before " + segments[target].id()));
+                        }
+                    }
+                }
+                if (target >= 0) {
+                    checkMinimum(current, count, violations);
+                    current = target;
+                    count = 1;
+                    matched = target;
+                } else {
+                    violations.add(new Violation(segmentNumber, text.substring(start, idEnd),
+                            "segment is out of order"));
+                    matched = ahead[0][symbol];
+                }
+            } else if (!allowUnlistedSegments) {
+                violations.add(new Violation(segmentNumber, text.substring(start, idEnd),
+                        "segment is not in the profile"));
+            }
+
+            if (matched >= 0 && segments[matched].fields().length > 1) {
+                checkFields(segments[matched], text, idEnd, end, segmentNumber, fieldSeparator,
+                        componentSeparator, repetitionSeparator, violations);
+            }
+            start = end + 1;
+        }
+
+        checkMinimum(current, count, violations);
+        for (int p = current + 1; p < segments.length; p++) {
+            if (segments[p].min() > 0) {
+                violations.add(new Violation(0, segments[p].id(), "required segment is missing"));
+            }
+        }
+        return violations;
+    }
+
+    private void checkMinimum(int current, int count, List<Violation> violations) {
+        if (current >= 0 && count < segments[current].min()) {
+            violations.add(new Violation(0, segments[current].id(), "occurs " + count + " time(s), at least "
+                    + segments[current].min() + " required"));
+        }
+    }
+
+    /**
+     * Walks the fields of one segment up to its last rule. {@code from} is
+     * the first field separator after the segment ID.
+     */
+    private void checkFields(SegmentRule segment, String text, int from, int end, int segmentNumber,
+                             char fieldSeparator, char componentSeparator, char repetitionSeparator,
+                             List<Violation> violations) {
+        FieldRule[] rules = segment.fields();
+        boolean msh = segment.symbol() == segments[0].symbol();
+        int position = msh ? 1 : 0;
+        int start = from;
+        while (start < end && position < rules.length - 1) {
+            position++;
+            int fieldStart = start + 1;
+            int fieldEnd = indexOf(text, fieldSeparator, fieldStart, end);
+            FieldRule rule = rules[position];
+            if (rule != null) {
+                checkField(rule, segment.id(), text, fieldStart, fieldEnd, segmentNumber,
+                        componentSeparator, msh && position == 2 ? '\0' : repetitionSeparator, violations);
+                if (msh && position == 9 && messageType != null) {
+                    checkMessageType(text, fieldStart, fieldEnd, segmentNumber, componentSeparator, violations);
+                }
+            }
+            start = fieldEnd;
+        }
+        for (position++; position < rules.length; position++) {
+            FieldRule rule = rules[position];
+            if (rule != null && rule.usage() == Usage.REQUIRED) {
+                violations.add(new Violation(segmentNumber, segment.id() + "-" + position, "required field is missing"));
+            }
+        }
+    }
+
+    private void checkField(FieldRule rule, String segmentId, String text, int start, int end, int segmentNumber,
+                            char componentSeparator, char repetitionSeparator, List<Violation> violations) {
+        if (start == end) {
+            if (rule.usage() == Usage.REQUIRED) {
+                violations.add(new Violation(segmentNumber, segmentId + "-" + rule.position(),
+                        "required field is empty"));
+            }
+            return;
+        }
+        if (rule.usage() == Usage.NOT_SUPPORTED) {
+            violations.add(new Violation(segmentNumber, segmentId + "-" + rule.position(),
+                    "field must be empty but is " + quote(text, start, end)));
+            return;
+        }
+
+        int repetition = 0;
+        for (int repetitionStart = start; ; ) {
+            int repetitionEnd = repetitionSeparator == '\0' ? end : indexOf(text, repetitionSeparator, repetitionStart, end);
+            repetition++;
+            if (repetition > rule.maxRepetitions()) {
+                violations.add(new Violation(segmentNumber, segmentId + "-" + rule.position(),
+                        "repeats more than " + rule.maxRepetitions() + " time(s)"));
+                return;
+            }
+            boolean repeated = repetition > 1 || repetitionEnd < end;
+            String problem = checkValue(rule, text, repetitionStart, repetitionEnd, componentSeparator);
+            if (problem != null) {
+                violations.add(new Violation(segmentNumber, segmentId + "-" + rule.position()
+                        + (repeated ? "[" + repetition + "]" : ""), problem));
+            }
+            if (repetitionEnd >= end) {
+                return;
+            }
+            repetitionStart = repetitionEnd + 1;
+        }
+    }
+
+    /**
+     * Returns what is wrong with one repetition of a field, or null if nothing is.
+     */
+    private static String checkValue(FieldRule rule, String text, int start, int end, char componentSeparator) {
+        if (start == end || (end - start == 2 && text.charAt(start) == '"' && text.charAt(start + 1) == '"')) {
+            return null;
+        }
+        if (end - start > rule.maxLength()) {
+            return "is " + (end - start) + " characters long, at most " + rule.maxLength() + " allowed";
+        }
+        boolean valid = switch (rule.type()) {
+            case NM -> isNumber(text, start, end);
+            case SI -> isDigits(text, start, end);
+            case DT -> (end - start == 4 || end - start == 6 || end - start == 8) && isDigits(text, start, end)
+                    && HL7Timestamp.parse(text.substring(start, end), ZoneOffset.UTC) != null;
+            case DTM -> HL7Timestamp.parse(text.substring(start, indexOf(text, componentSeparator, start, end)),
+                    ZoneOffset.UTC) != null;
+            case TM -> isTime(text, start, end);
+            case OTHER -> true;
+        };
+        if (!valid) {
+            return quote(text, start, end) + " is not a valid " + rule.typeName() + " value";
+        }
+        if (rule.table() != null) {
+            String code = text.substring(start, indexOf(text, componentSeparator, start, end));
+            if (!rule.table().contains(code)) {
+                return quote(code, 0, code.length()) + " is not in "
+                        + (rule.tableName() != null ? "table " + rule.tableName() : "the allowed values");
+            }
+        }
+        return null;
+    }
+
+    private void checkMessageType(String text, int start, int end, int segmentNumber, char componentSeparator,
+                                  List<Violation> violations) {
+        int length = messageType.length();
+        boolean matches = end - start >= length
+                && (end - start == length || text.charAt(start + length) == componentSeparator);
+        for (int i = 0; matches && i < length; i++) {
+            char expected = messageType.charAt(i);
+            char actual = text.charAt(start + i);
+            matches = actual == expected || (expected == '^' && actual == componentSeparator);
+        }
+        if (!matches && start < end) {
+            violations.add(new Violation(segmentNumber, "MSH-9", "message type " + quote(text, start, end)
+                    + " is not " + messageType));
+        }
+    }
+
+    /**
+     * Packs a segment ID of upper-case letters and digits into its base-36
+     * code, below {@link #SEGMENT_ID_CODES} for three characters, or returns
+     * -1 if it has other characters.
+     */
+    private static int pack(String text, int start, int end) {
+        int key = 0;
+        for (int i = start; i < end; i++) {
+            char c = text.charAt(i);
+            int digit;
+            if (c >= '0' && c <= '9') {
+                digit = c - '0';
+            } else if (c >= 'A' && c <= 'Z') {
+                digit = c - 'A' + 10;
+            } else {
+                return -1;
+            }
+            key = key * 36 + digit;
+        }
+        return key;
+    }
+
+    /**
+     * Returns the index of {@code c} in {@code text} between {@code from}
+     * and {@code to}, or {@code to} if it does not occur there.
+     */
+    private static int indexOf(String text, char c, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (text.charAt(i) == c) {
+                return i;
+            }
+        }
+        return to;
+    }
+
+    private static boolean isDigits(String text, int start, int end) {
+        for (int i = start; i < end; i++) {
+            char c = text.charAt(i);
+            if (c < '0' || c > '9') {
+                return false;
+            }
+        }
+        return end > start;
+    }
+
+    private static boolean isNumber(String text, int start, int end) {
+        int i = start;
+        if (i < end && (text.charAt(i) == '+' || text.charAt(i) == '-')) {
+            i++;
+        }
+        int digits = 0;
+        for (; i < end && text.charAt(i) >= '0' && text.charAt(i) <= '9'; i++) {
+            digits++;
+        }
+        if (i < end && text.charAt(i) == '.') {
+            for (i++; i < end && text.charAt(i) >= '0' && text.charAt(i) <= '9'; i++) {
+                digits++;
+            }
+        }
+        return i == end && digits > 0;
+    }
+
+    /**
+     * Checks an HL7 time, {@code HH[MM[SS[.S[S[S[S]]]]]][+/-ZZZZ]}.
+     */
+    private static boolean isTime(String text, int start, int end) {
+        int zone = indexOf(text, '+', start, end);
+        if (zone == end) {
+            zone = indexOf(text, '-', start, end);
+        }
+        if (zone < end && (end - zone != 5 || !isDigits(text, zone + 1, end))) {
+            return false;
+        }
+        int dot = indexOf(text, '.', start, zone);
+        int digits = dot - start;
+        if (digits != 2 && digits != 4 && digits != 6 || !isDigits(text, start, dot)) {
+            return false;
+        }
+        if (Integer.parseInt(text, start, start + 2, 10) > 23
+                || (digits >= 4 && Integer.parseInt(text, start + 2, start + 4, 10) > 59)
+                || (digits == 6 && Integer.parseInt(text, start + 4, start + 6, 10) > 59)) {
+            return false;
+        }
+        return dot == zone || (digits == 6 && zone - dot - 1 >= 1 && zone - dot - 1 <= 4
+                && isDigits(text, dot + 1, zone));
+    }
+
+    private static String quote(String text, int start, int end) {
+        return end - start > MAX_QUOTED_VALUE
+                ? "'" + text.substring(start, start + MAX_QUOTED_VALUE) + "...'"
+                : "'" + text.substring(start, end) + "'";
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
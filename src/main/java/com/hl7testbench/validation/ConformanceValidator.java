@@ -0,0 +1,134 @@
+package com.hl7testbench.validation;
+
+import com.hl7testbench.model.HL7Message;
+import com.hl7testbench.util.UncachedMessageList;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BooleanSupplier;
+import java.util.function.IntConsumer;
+
+/**
+ * Validates lists of messages against a {@link ConformanceProfile},
+ * spreading large lists over several threads.
+ *
+ * <p>Threads claim chunks of consecutive messages, so messages of a
+ * file-backed list are read from disk by the thread that validates them.
+ * Lists that implement {@link UncachedMessageList} are read without their
+ * cache, so validation neither contends on it nor evicts what a view shows.
+ * The number of threads defaults to the number of processors and can be
+ * set with {@code -Dhl7testbench.validation.threads}.</p>
+ */
+public class ConformanceValidator {
+
+    private static final int CHUNK_SIZE = 256;
+
+    private final ConformanceProfile profile;
+    private final int threads;
+
+    public ConformanceValidator(ConformanceProfile profile) {
+        this(profile, Integer.getInteger("hl7testbench.validation.threads",
+                Runtime.getRuntime().availableProcessors()));
+    }
+
+    /**
+     * @param profile the profile to validate against
+     * @param threads the most threads to validate on
+     */
+    public ConformanceValidator(ConformanceProfile profile, int threads) {
+        this.profile = profile;
+        this.threads = Math.max(1, threads);
+    }
+
+    public ConformanceProfile getProfile() {
+        return profile;
+    }
+
+    /**
+     * Validates one message.
+     */
+    public Result validate(int index, HL7Message message) {
+        return new Result(index, message.getMessageControlId(), profile.validate(message));
+    }
+
+    /**
+     * Validates all messages and returns the results of those that do not
+     * conform, in list order. If {@code cancelled} returns true the
+     * validation stops and the results found so far are returned.
+     *
+     * @param progress called with the number of messages validated so far, from any thread
+     */
+    public List<Result> validateAll(List<HL7Message> messages, IntConsumer progress, BooleanSupplier cancelled) {
+        int size = messages.size();
+        Result[] results = new Result[size];
+        AtomicInteger nextChunk = new AtomicInteger();
+        AtomicInteger validated = new AtomicInteger();
+        AtomicReference<RuntimeException> failure = new AtomicReference<>();
+        Runnable work = () -> {
+            int start;
+            while ((start = nextChunk.getAndAdd(CHUNK_SIZE)) < size
+                    && failure.get() == null && !cancelled.getAsBoolean()) {
+                int end = Math.min(size, start + CHUNK_SIZE);
+                try {
+                    for (int i = start; i < end; i++) {
+                        HL7Message message = messages instanceof UncachedMessageList uncached
+                                ? uncached.readMessage(i) : messages.get(i);
+                        List<Violation> violations = profile.validate(message);
+                        if (!violations.isEmpty()) {
+                            results[i] = new Result(i, message.getMessageControlId(), violations);
+                        }
+                    }
+                } catch (RuntimeException e) {
+                    failure.compareAndSet(null, e);
+                    return;
+                }
+                progress.accept(validated.addAndGet(end - start));
+            }
+        };
+
+        int threadCount = (int) Math.min(threads, (size + CHUNK_SIZE - 1L) / CHUNK_SIZE);
+        List<Thread> workers = new ArrayList<>();
+        for (int i = 1; i < threadCount; i++) {
+            Thread worker = new Thread(work, "validation-" + i);
+            worker.setDaemon(true);
+            worker.start();
+            workers.add(worker);
+        }
+        work.run();
+        for (Thread worker : workers) {
+            try {
+                worker.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        if (failure.get() != null) {
+            throw failure.get();
+        }
+
+        List<Result> nonConforming = new ArrayList<>();
+        for (Result result : results) {
+            if (result != null) {
+                nonConforming.add(result);
+            }
+        }
+        return nonConforming;
+    }
+
+    /**
+     * The violations of one message.
+     *
+     * @param index the message's index in the validated list
+     * @param controlId the message's control ID (MSH-10)
+     * @param violations the violations, empty if the message conforms
+     */
+    public record Result(int index, String controlId, List<Violation> violations) {
+
+        public boolean conforms() {
+            return violations.isEmpty();
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package com.hl7testbench.validation;
+
+/**
+ * One way a message does not conform to a {@link ConformanceProfile}.
+ *
+ * @param segment the 1-based number of the segment within the message, or 0
+ *                if the violation concerns the message as a whole
+ * @param location where the violation is, e.g. {@code PID}, {@code PID-3}
+ *                 or {@code PID-3[2]} for the second repetition
+ * @param message what is wrong
+ */
+public record Violation(int segment, String location, String message) {
+
+    @Override
+    public String toString() {
+        return (segment > 0 ? "Segment " + segment + " " : "") + location + ": " + message;
+    }
+}
@@ -0,0 +1,37 @@
+package com.hl7testbench.view;
+
+import com.hl7testbench.model.TransportResult;
+import com.hl7testbench.model.TransportResult.TransportStatus;
+
+import javax.swing.table.AbstractTableModel;
+
+/**
+ * Common columns and row access for the history table models,
+ * so {@link HistoryPanel} can switch between them.
+ */
+public abstract class AbstractHistoryTableModel extends AbstractTableModel {
+
+    private static final String[] COLUMN_NAMES = {
+            "Time", "Control ID", "Transport", "Status", "RTT (ms)"
+    };
+
+    /**
+     * Returns the full result shown at the given row, including the response.
+     */
+    public abstract TransportResult getResultAt(int row);
+
+    /**
+     * Returns the status at the given row; cheaper than {@link #getResultAt(int)}.
+     */
+    public abstract TransportStatus getStatusAt(int row);
+
+    @Override
+    public int getColumnCount() {
+        return COLUMN_NAMES.length;
+    }
+
+    @Override
+    public String getColumnName(int column) {
+        return COLUMN_NAMES[column];
+    }
+}
@@ -2,16 +2,18 @@ package com.hl7testbench.view;
 
 import com.hl7testbench.model.ConnectionConfig;
 import com.hl7testbench.model.ConnectionConfig.TransportMode;
+import com.hl7testbench.model.EndpointGroup;
 import com.hl7testbench.service.ServerConfigRepository;
 import com.hl7testbench.service.ServerConfigRepository.SavedServerConfig;
 import com.hl7testbench.util.UIConstants;
 
 import javax.swing.*;
 import javax.swing.border.TitledBorder;
+import javax.swing.event.PopupMenuEvent;
+import javax.swing.event.PopupMenuListener;
 import javax.swing.filechooser.FileNameExtensionFilter;
 import java.awt.*;
 import java.io.File;
-import java.util.ArrayList;
 import java.util.List;
 
 /**
@@ -31,15 +33,18 @@ public class ConnectionPanel extends JPanel {
     private final JTextField keystorePathField;
     private final JPasswordField keystorePasswordField;
     private final JSpinner timeoutSpinner;
+    private final JTextField endpointsField;
+    private final JComboBox<EndpointGroup.Balancing> balancingComboBox;
 
     private final JPanel connectionFieldsPanel;
     private final CardLayout connectionFieldsLayout;
 
     private List<SavedServerConfig> savedServers;
     private boolean updatingFromServer = false;
+    private boolean refreshingServers = false;
 
     public ConnectionPanel() {
-        this(new ServerConfigRepository());
+        this(ServerConfigRepository.getDefault());
     }
 
     public ConnectionPanel(ServerConfigRepository repository) {
@@ -50,7 +55,7 @@ public class ConnectionPanel extends JPanel {
         border.setTitleFont(UIConstants.TITLE_FONT);
         setBorder(border);
 
-        savedServers = new ArrayList<>(repository.loadAll());
+        savedServers = repository.loadAll();
 
         serverComboBox = new JComboBox<>();
         serverComboBox.setFont(UIConstants.INPUT_FONT);
@@ -69,6 +74,10 @@ public class ConnectionPanel extends JPanel {
         keystorePasswordField = new JPasswordField(15);
         keystorePasswordField.setFont(UIConstants.INPUT_FONT);
         timeoutSpinner = createSpinner(10000, 1000, 300000);
+        endpointsField = createTextField("", 30);
+        endpointsField.setToolTipText("Further host:port or [IPv6]:port (MLLP) or URLs (HTTP) that share the load, separated by commas");
+        balancingComboBox = new JComboBox<>(EndpointGroup.Balancing.values());
+        balancingComboBox.setFont(UIConstants.INPUT_FONT);
 
         JButton saveServerButton = createButton("Save Server");
         JButton deleteServerButton = createButton("Delete");
@@ -105,6 +114,9 @@ public class ConnectionPanel extends JPanel {
         mainPanel.add(connectionFieldsPanel, gbc);
 
         gbc.gridy = 3; gbc.gridwidth = 5;
+        mainPanel.add(createEndpointGroupPanel(), gbc);
+
+        gbc.gridy = 4; gbc.gridwidth = 5;
         mainPanel.add(createTlsPanel(), gbc);
 
         add(mainPanel, BorderLayout.CENTER);
@@ -118,7 +130,23 @@ public class ConnectionPanel extends JPanel {
             }
         });
 
-        serverComboBox.addActionListener(e -> loadSelectedServer());
+        serverComboBox.addActionListener(e -> {
+            if (!refreshingServers) loadSelectedServer();
+        });
+        serverComboBox.addPopupMenuListener(new PopupMenuListener() {
+            @Override
+            public void popupMenuWillBecomeVisible(PopupMenuEvent e) {
+                reloadIfChanged();
+            }
+
+            @Override
+            public void popupMenuWillBecomeInvisible(PopupMenuEvent e) {
+            }
+
+            @Override
+            public void popupMenuCanceled(PopupMenuEvent e) {
+            }
+        });
         saveServerButton.addActionListener(e -> saveCurrentServer());
         deleteServerButton.addActionListener(e -> deleteSelectedServer());
         tlsCheckBox.addActionListener(e -> updateTlsFieldsEnabled());
@@ -146,6 +174,15 @@ public class ConnectionPanel extends JPanel {
         return panel;
     }
 
+    private JPanel createEndpointGroupPanel() {
+        JPanel panel = new JPanel(new FlowLayout(FlowLayout.LEFT, 10, 5));
+        panel.add(createLabel("Also send to:"));
+        panel.add(endpointsField);
+        panel.add(createLabel("Balancing:"));
+        panel.add(balancingComboBox);
+        return panel;
+    }
+
     private JPanel createTlsPanel() {
         JPanel panel = new JPanel(new FlowLayout(FlowLayout.LEFT, 10, 5));
         panel.add(tlsCheckBox);
@@ -210,6 +247,28 @@ public class ConnectionPanel extends JPanel {
         }
     }
 
+    /**
+     * Picks up servers saved or deleted by another instance, keeping the
+     * current selection and the fields as they are.
+     */
+    private void reloadIfChanged() {
+        List<SavedServerConfig> latest = repository.loadAll();
+        if (latest.equals(savedServers)) {
+            return;
+        }
+        SavedServerConfig selected = (SavedServerConfig) serverComboBox.getSelectedItem();
+        refreshingServers = true;
+        try {
+            savedServers = latest;
+            refreshServerComboBox();
+            serverComboBox.setSelectedItem(selected != null
+                    ? latest.stream().filter(s -> s.name().equals(selected.name())).findFirst().orElse(null)
+                    : null);
+        } finally {
+            refreshingServers = false;
+        }
+    }
+
     private void loadSelectedServer() {
         SavedServerConfig selected = (SavedServerConfig) serverComboBox.getSelectedItem();
         if (selected == null) return;
@@ -222,6 +281,9 @@ public class ConnectionPanel extends JPanel {
             urlField.setText(selected.httpUrl());
             tlsCheckBox.setSelected(selected.useTls());
             timeoutSpinner.setValue(selected.timeoutMs());
+            EndpointGroup group = selected.endpointGroup();
+            endpointsField.setText(group != null ? group.toText() : "");
+            balancingComboBox.setSelectedItem(group != null ? group.balancing() : EndpointGroup.Balancing.ROUND_ROBIN);
             connectionFieldsLayout.show(connectionFieldsPanel, selected.mode().name());
         } finally {
             updatingFromServer = false;
@@ -240,10 +302,8 @@ public class ConnectionPanel extends JPanel {
         ConnectionConfig config = getConnectionConfig();
         SavedServerConfig newServer = SavedServerConfig.fromConnectionConfig(name.trim(), config);
 
-        savedServers.removeIf(s -> s.name().equals(newServer.name()));
-        savedServers.add(0, newServer);
-
-        repository.saveAll(savedServers);
+        repository.save(newServer);
+        savedServers = repository.loadAll();
         refreshServerComboBox();
         serverComboBox.setSelectedItem(newServer);
 
@@ -263,8 +323,8 @@ public class ConnectionPanel extends JPanel {
                 JOptionPane.YES_NO_OPTION);
 
         if (confirm == JOptionPane.YES_OPTION) {
-            savedServers.remove(selected);
-            repository.saveAll(savedServers);
+            repository.delete(selected.name());
+            savedServers = repository.loadAll();
             refreshServerComboBox();
         }
     }
@@ -282,7 +342,9 @@ public class ConnectionPanel extends JPanel {
                 tlsCheckBox.isSelected(),
                 keystoreFile,
                 keystorePasswordField.getPassword(),
-                (Integer) timeoutSpinner.getValue()
+                (Integer) timeoutSpinner.getValue(),
+                EndpointGroup.parse(endpointsField.getText(),
+                        (EndpointGroup.Balancing) balancingComboBox.getSelectedItem())
         );
     }
 }
@@ -0,0 +1,185 @@
+package com.hl7testbench.view;
+
+import com.hl7testbench.history.HistoryQuery;
+import com.hl7testbench.model.TransportResult.TransportStatus;
+import com.hl7testbench.util.UIConstants;
+
+import javax.swing.*;
+import java.awt.*;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * Filter bar for the saved history view. Builds a {@link HistoryQuery}
+ * from its fields and hands it to the listener on Apply; Reset passes null.
+ */
+public class HistoryFilterPanel extends JPanel {
+
+    private static final String ANY = "Any";
+    private static final String ANY_FAILURE = "Any failure";
+
+    private static final String[] TIME_WINDOWS = {
+            "Any time", "Last 15 minutes", "Last hour", "Last 24 hours"
+    };
+    private static final long[] TIME_WINDOW_MILLIS = {
+            0, 15 * 60_000L, 60 * 60_000L, 24 * 60 * 60_000L
+    };
+
+    private final JComboBox<Object> statusComboBox;
+    private final JComboBox<String> messageTypeComboBox;
+    private final JComboBox<String> targetComboBox;
+    private final JTextField controlIdField;
+    private final JTextField minRttField;
+    private final JTextField maxRttField;
+    private final JComboBox<String> timeComboBox;
+
+    private Consumer<HistoryQuery> onApply;
+
+    public HistoryFilterPanel() {
+        setLayout(new FlowLayout(FlowLayout.LEFT, 6, 2));
+
+        statusComboBox = new JComboBox<>();
+        statusComboBox.addItem(ANY);
+        statusComboBox.addItem(ANY_FAILURE);
+        for (TransportStatus status : TransportStatus.values()) {
+            statusComboBox.addItem(status);
+        }
+        messageTypeComboBox = createEditableComboBox();
+        targetComboBox = createEditableComboBox();
+        controlIdField = createTextField(8);
+        minRttField = createTextField(4);
+        maxRttField = createTextField(4);
+        timeComboBox = new JComboBox<>(TIME_WINDOWS);
+
+        statusComboBox.setFont(UIConstants.INPUT_FONT);
+        timeComboBox.setFont(UIConstants.INPUT_FONT);
+
+        add(createLabel("Status:"));
+        add(statusComboBox);
+        add(createLabel("Type:"));
+        add(messageTypeComboBox);
+        add(createLabel("Target:"));
+        add(targetComboBox);
+        add(createLabel("Control ID:"));
+        add(controlIdField);
+        add(createLabel("RTT:"));
+        add(minRttField);
+        add(createLabel("-"));
+        add(maxRttField);
+        add(timeComboBox);
+
+        JButton applyButton = new JButton("Apply");
+        applyButton.setFont(UIConstants.BUTTON_FONT);
+        JButton resetButton = new JButton("Reset");
+        resetButton.setFont(UIConstants.BUTTON_FONT);
+        add(applyButton);
+        add(resetButton);
+
+        applyButton.addActionListener(e -> {
+            if (onApply != null) onApply.accept(buildQuery());
+        });
+        controlIdField.addActionListener(e -> applyButton.doClick());
+        resetButton.addActionListener(e -> {
+            reset();
+            if (onApply != null) onApply.accept(null);
+        });
+    }
+
+    private JComboBox<String> createEditableComboBox() {
+        JComboBox<String> comboBox = new JComboBox<>();
+        comboBox.setEditable(true);
+        comboBox.setFont(UIConstants.INPUT_FONT);
+        comboBox.setPrototypeDisplayValue("ORM^O01_____");
+        return comboBox;
+    }
+
+    private JTextField createTextField(int columns) {
+        JTextField field = new JTextField(columns);
+        field.setFont(UIConstants.INPUT_FONT);
+        return field;
+    }
+
+    private JLabel createLabel(String text) {
+        JLabel label = new JLabel(text);
+        label.setFont(UIConstants.LABEL_FONT);
+        return label;
+    }
+
+    /**
+     * Replaces the suggestions offered in the message type and target boxes.
+     */
+    public void setSuggestions(List<String> messageTypes, List<String> targets) {
+        replaceItems(messageTypeComboBox, messageTypes);
+        replaceItems(targetComboBox, targets);
+    }
+
+    private void replaceItems(JComboBox<String> comboBox, List<String> items) {
+        Object current = comboBox.getEditor().getItem();
+        comboBox.removeAllItems();
+        comboBox.addItem("");
+        for (String item : items) {
+            comboBox.addItem(item);
+        }
+        comboBox.getEditor().setItem(current);
+    }
+
+    public void setOnApply(Consumer<HistoryQuery> onApply) {
+        this.onApply = onApply;
+    }
+
+    private void reset() {
+        statusComboBox.setSelectedIndex(0);
+        messageTypeComboBox.getEditor().setItem("");
+        targetComboBox.getEditor().setItem("");
+        controlIdField.setText("");
+        minRttField.setText("");
+        maxRttField.setText("");
+        timeComboBox.setSelectedIndex(0);
+    }
+
+    private HistoryQuery buildQuery() {
+        HistoryQuery query = HistoryQuery.any()
+                .withStatuses(selectedStatuses())
+                .withMessageType(editorText(messageTypeComboBox))
+                .withTarget(editorText(targetComboBox))
+                .withControlIdPrefix(controlIdField.getText().trim())
+                .withRoundTripRange(parseLong(minRttField.getText(), 0),
+                        parseLong(maxRttField.getText(), Long.MAX_VALUE));
+
+        long window = TIME_WINDOW_MILLIS[timeComboBox.getSelectedIndex()];
+        if (window > 0) {
+            query = query.withTimeRange(System.currentTimeMillis() - window, Long.MAX_VALUE);
+        }
+        return query;
+    }
+
+    private Set<TransportStatus> selectedStatuses() {
+        Object selected = statusComboBox.getSelectedItem();
+        if (selected instanceof TransportStatus status) {
+            return EnumSet.of(status);
+        }
+        if (ANY_FAILURE.equals(selected)) {
+            EnumSet<TransportStatus> failures = EnumSet.noneOf(TransportStatus.class);
+            for (TransportStatus status : TransportStatus.values()) {
+                if (!status.isSuccessful()) failures.add(status);
+            }
+            return failures;
+        }
+        return EnumSet.noneOf(TransportStatus.class);
+    }
+
+    private String editorText(JComboBox<String> comboBox) {
+        Object item = comboBox.getEditor().getItem();
+        return item != null ? item.toString().trim() : "";
+    }
+
+    private long parseLong(String text, long defaultValue) {
+        try {
+            return text.isBlank() ? defaultValue : Long.parseLong(text.trim());
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+}
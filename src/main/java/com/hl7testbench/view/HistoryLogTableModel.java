@@ -0,0 +1,122 @@
+package com.hl7testbench.view;
+
+import com.hl7testbench.history.HistoryIndex;
+import com.hl7testbench.history.HistoryLog;
+import com.hl7testbench.model.TransportResult;
+import com.hl7testbench.model.TransportResult.TransportStatus;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Table model over the persistent {@link HistoryLog}, newest first.
+ *
+ * <p>Table cells are served from the in-memory {@link HistoryIndex}; a
+ * record's response is only read from disk when its row is selected, and
+ * the most recently read records are cached. A filter restricts the rows
+ * to a set of ordinals returned by a history search.</p>
+ */
+public class HistoryLogTableModel extends AbstractHistoryTableModel {
+
+    private static final int CACHE_SIZE = 256;
+
+    private final HistoryLog log;
+    private final HistoryIndex index;
+    private int rowCount;
+    private int[] filter;
+
+    private final Map<Integer, TransportResult> cache = new LinkedHashMap<>(CACHE_SIZE, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, TransportResult> eldest) {
+            return size() > CACHE_SIZE;
+        }
+    };
+
+    public HistoryLogTableModel(HistoryLog log) {
+        this.log = log;
+        this.index = log.getIndex();
+        this.rowCount = index.size();
+    }
+
+    /**
+     * Shows only the given ordinals (ascending), or all records if null.
+     */
+    public void setFilter(int[] ordinals) {
+        filter = ordinals;
+        rowCount = ordinals != null ? ordinals.length : index.size();
+        fireTableDataChanged();
+    }
+
+    public boolean isFiltered() {
+        return filter != null;
+    }
+
+    /**
+     * Picks up records appended since the last refresh as new top rows.
+     * Has no effect while a filter is applied.
+     */
+    public void refresh() {
+        if (filter != null) {
+            return;
+        }
+        int newCount = index.size();
+        if (newCount > rowCount) {
+            int added = newCount - rowCount;
+            rowCount = newCount;
+            fireTableRowsInserted(0, added - 1);
+        }
+    }
+
+    /**
+     * Converts a newest-first row into a log ordinal.
+     */
+    public int ordinalAt(int row) {
+        int position = rowCount - 1 - row;
+        return filter != null ? filter[position] : position;
+    }
+
+    @Override
+    public TransportResult getResultAt(int row) {
+        int ordinal = ordinalAt(row);
+        return cache.computeIfAbsent(ordinal, o -> {
+            try {
+                return log.read(o).toTransportResult();
+            } catch (IOException e) {
+                return new TransportResult(toLocalDateTime(index.timestampAt(o)), index.controlIdAt(o),
+                        index.transportModeAt(o), index.statusAt(o), "", index.roundTripMsAt(o),
+                        "Could not read history record: " + e.getMessage());
+            }
+        });
+    }
+
+    @Override
+    public TransportStatus getStatusAt(int row) {
+        return index.statusAt(ordinalAt(row));
+    }
+
+    @Override
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    @Override
+    public Object getValueAt(int row, int column) {
+        int ordinal = ordinalAt(row);
+        return switch (column) {
+            case 0 -> TransportResult.formatTimestamp(toLocalDateTime(index.timestampAt(ordinal)));
+            case 1 -> index.controlIdAt(ordinal);
+            case 2 -> index.transportModeAt(ordinal).getDisplayName();
+            case 3 -> index.statusAt(ordinal).getDisplayName();
+            case 4 -> (long) index.roundTripMsAt(ordinal);
+            default -> null;
+        };
+    }
+
+    private static LocalDateTime toLocalDateTime(long epochMillis) {
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(epochMillis), ZoneId.systemDefault());
+    }
+}
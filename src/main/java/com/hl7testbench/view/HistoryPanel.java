@@ -1,5 +1,8 @@
 package com.hl7testbench.view;
 
+import com.hl7testbench.history.HistoryLog;
+import com.hl7testbench.history.HistoryQuery;
+import com.hl7testbench.history.HistorySearchIndex;
 import com.hl7testbench.model.TransportResult;
 import com.hl7testbench.model.TransportResult.TransportStatus;
 import com.hl7testbench.util.UIConstants;
@@ -7,7 +10,6 @@ import com.hl7testbench.util.UIConstants;
 import javax.swing.*;
 import javax.swing.border.TitledBorder;
 import javax.swing.table.DefaultTableCellRenderer;
-import javax.swing.table.DefaultTableModel;
 import java.awt.*;
 import java.util.ArrayList;
 import java.util.List;
@@ -17,41 +19,42 @@ import java.util.List;
  */
 public class HistoryPanel extends JPanel {
 
+    private static final String VIEW_SESSION = "This Session";
+    private static final String VIEW_SAVED_LOG = "Saved Log";
+
     private final JTable historyTable;
-    private final DefaultTableModel tableModel;
+    private final HistoryTableModel tableModel;
     private final JTextArea detailArea;
     private final JButton clearHistoryButton;
+    private final JButton exportButton;
+    private Runnable onExportAction;
     private final JLabel countLabel;
+    private final JComboBox<String> viewComboBox;
+    private final Timer savedLogRefreshTimer;
 
-    private final List<TransportResult> results = new ArrayList<>();
+    private HistoryFilterPanel filterPanel;
 
-    private static final String[] COLUMN_NAMES = {
-            "Time", "Control ID", "Transport", "Status", "RTT (ms)"
-    };
+    private HistoryLogTableModel savedLogModel;
+    private HistorySearchIndex searchIndex;
 
     public HistoryPanel() {
+        this(new HistoryTableModel());
+    }
+
+    public HistoryPanel(HistoryTableModel tableModel) {
         setLayout(new BorderLayout(10, 10));
         TitledBorder border = new TitledBorder("Send History");
         border.setTitleFont(UIConstants.TITLE_FONT);
         setBorder(border);
 
-        tableModel = new DefaultTableModel(COLUMN_NAMES, 0) {
-            @Override
-            public boolean isCellEditable(int row, int column) {
-                return false;
-            }
-        };
+        this.tableModel = tableModel;
 
         historyTable = new JTable(tableModel);
         historyTable.setFont(UIConstants.TABLE_FONT);
         historyTable.getTableHeader().setFont(UIConstants.TABLE_HEADER_FONT);
         historyTable.setRowHeight(UIConstants.TABLE_ROW_HEIGHT);
         historyTable.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
-        historyTable.getColumnModel().getColumn(0).setPreferredWidth(140);
-        historyTable.getColumnModel().getColumn(1).setPreferredWidth(120);
-        historyTable.getColumnModel().getColumn(2).setPreferredWidth(80);
-        historyTable.getColumnModel().getColumn(3).setPreferredWidth(100);
-        historyTable.getColumnModel().getColumn(4).setPreferredWidth(70);
+        configureColumns();
 
         historyTable.setDefaultRenderer(Object.class, new StatusCellRenderer());
 
@@ -83,10 +86,26 @@ public class HistoryPanel extends JPanel {
 
         clearHistoryButton = new JButton("Clear History");
         clearHistoryButton.setFont(UIConstants.BUTTON_FONT);
+        exportButton = new JButton("Export Results...");
+        exportButton.setFont(UIConstants.BUTTON_FONT);
+        exportButton.setToolTipText("Write this session's results, and every later one, to a CSV or JSON Lines file");
         JPanel buttonPanel = new JPanel(new FlowLayout(FlowLayout.RIGHT));
+        buttonPanel.add(exportButton);
         buttonPanel.add(clearHistoryButton);
 
-        bottomPanel.add(countLabel, BorderLayout.WEST);
+        viewComboBox = new JComboBox<>(new String[]{VIEW_SESSION});
+        viewComboBox.setFont(UIConstants.INPUT_FONT);
+        viewComboBox.setEnabled(false);
+        JPanel viewPanel = new JPanel(new FlowLayout(FlowLayout.LEFT, 5, 0));
+        JLabel viewLabel = new JLabel("View:");
+        viewLabel.setFont(UIConstants.LABEL_FONT);
+        viewPanel.add(viewLabel);
+        viewPanel.add(viewComboBox);
+        viewPanel.add(countLabel);
+
+        savedLogRefreshTimer = new Timer(1000, e -> refreshSavedLog());
+
+        bottomPanel.add(viewPanel, BorderLayout.WEST);
         bottomPanel.add(buttonPanel, BorderLayout.EAST);
 
         add(splitPane, BorderLayout.CENTER);
@@ -99,37 +118,173 @@ public class HistoryPanel extends JPanel {
         });
 
         clearHistoryButton.addActionListener(e -> clearHistory());
+        exportButton.addActionListener(e -> {
+            if (onExportAction != null) onExportAction.run();
+        });
+        viewComboBox.addActionListener(e -> switchView());
+    }
+
+    private void configureColumns() {
+        historyTable.getColumnModel().getColumn(0).setPreferredWidth(140);
+        historyTable.getColumnModel().getColumn(1).setPreferredWidth(120);
+        historyTable.getColumnModel().getColumn(2).setPreferredWidth(80);
+        historyTable.getColumnModel().getColumn(3).setPreferredWidth(100);
+        historyTable.getColumnModel().getColumn(4).setPreferredWidth(70);
+    }
+
+    /**
+     * Enables the "Saved Log" view, which pages through the persistent history log.
+     */
+    public void setHistoryLog(HistoryLog log) {
+        savedLogModel = log != null ? new HistoryLogTableModel(log) : null;
+        searchIndex = log != null ? new HistorySearchIndex(log.getIndex()) : null;
+        viewComboBox.removeAllItems();
+        viewComboBox.addItem(VIEW_SESSION);
+        if (savedLogModel != null) {
+            viewComboBox.addItem(VIEW_SAVED_LOG);
+        }
+        viewComboBox.setEnabled(savedLogModel != null);
+    }
+
+    private boolean isShowingSavedLog() {
+        return historyTable.getModel() == savedLogModel && savedLogModel != null;
+    }
+
+    private AbstractHistoryTableModel activeModel() {
+        return (AbstractHistoryTableModel) historyTable.getModel();
+    }
+
+    private void switchView() {
+        boolean savedLog = VIEW_SAVED_LOG.equals(viewComboBox.getSelectedItem()) && savedLogModel != null;
+        AbstractHistoryTableModel model = savedLog ? savedLogModel : tableModel;
+        if (historyTable.getModel() == model) {
+            return;
+        }
+        if (savedLog) {
+            if (filterPanel == null) {
+                // Only needed for the saved log, so not built until first shown
+                filterPanel = new HistoryFilterPanel();
+                filterPanel.setOnApply(this::applyFilter);
+                add(filterPanel, BorderLayout.NORTH);
+                revalidate();
+            }
+            savedLogModel.refresh();
+            savedLogRefreshTimer.start();
+            prepareSearchIndex();
+        } else {
+            savedLogRefreshTimer.stop();
+        }
+        historyTable.setModel(model);
+        configureColumns();
+        clearHistoryButton.setEnabled(!savedLog);
+        if (filterPanel != null) {
+            filterPanel.setVisible(savedLog);
+        }
+        detailArea.setText("");
+        updateCountLabel();
+    }
+
+    /**
+     * Builds the search indexes in the background and refreshes the filter suggestions.
+     */
+    private void prepareSearchIndex() {
+        HistorySearchIndex index = searchIndex;
+        new SwingWorker<Void, Void>() {
+            private List<String> messageTypes;
+            private List<String> targets;
+
+            @Override
+            protected Void doInBackground() {
+                index.prepare();
+                messageTypes = index.getMessageTypes();
+                targets = index.getTargets();
+                return null;
+            }
+
+            @Override
+            protected void done() {
+                if (messageTypes != null) {
+                    filterPanel.setSuggestions(messageTypes, targets);
+                }
+            }
+        }.execute();
+    }
+
+    /**
+     * Runs a history search off the EDT and shows the matching saved entries.
+     */
+    private void applyFilter(HistoryQuery query) {
+        if (query == null || query.matchesAll()) {
+            savedLogModel.setFilter(null);
+            detailArea.setText("");
+            updateCountLabel();
+            return;
+        }
+        HistorySearchIndex index = searchIndex;
+        countLabel.setText("Searching...");
+        new SwingWorker<int[], Void>() {
+            @Override
+            protected int[] doInBackground() {
+                return index.search(query);
+            }
+
+            @Override
+            protected void done() {
+                try {
+                    savedLogModel.setFilter(get());
+                } catch (Exception e) {
+                    savedLogModel.setFilter(null);
+                }
+                detailArea.setText("");
+                updateCountLabel();
+            }
+        }.execute();
+    }
+
+    private void refreshSavedLog() {
+        if (isShowingSavedLog()) {
+            savedLogModel.refresh();
+            updateCountLabel();
+        }
     }
 
     public void addResult(TransportResult result) {
-        results.add(0, result);
-
-        tableModel.insertRow(0, new Object[]{
-                result.getFormattedTimestamp(),
-                result.messageControlId(),
-                result.transportMode().getDisplayName(),
-                result.status().getDisplayName(),
-                result.roundTripTimeMs()
-        });
+        tableModel.addResult(result);
+
+        updateCountLabel();
+
+        if (!isShowingSavedLog() && historyTable.getRowCount() > 0) {
+            historyTable.setRowSelectionInterval(0, 0);
+        }
+    }
+
+    /**
+     * Adds a batch of results (oldest first) with a single table update.
+     *
+     * @param results results in arrival order
+     * @param selectNewest whether to select the newest row and show its response
+     */
+    public void addResults(List<TransportResult> results, boolean selectNewest) {
+        tableModel.addResults(results);
 
         updateCountLabel();
 
-        if (historyTable.getRowCount() > 0) {
+        if (selectNewest && !isShowingSavedLog() && historyTable.getRowCount() > 0) {
             historyTable.setRowSelectionInterval(0, 0);
         }
     }
 
     public void clearHistory() {
-        results.clear();
-        tableModel.setRowCount(0);
+        tableModel.clear();
         detailArea.setText("");
         updateCountLabel();
     }
 
     private void showSelectedDetail() {
         int selectedRow = historyTable.getSelectedRow();
-        if (selectedRow >= 0 && selectedRow < results.size()) {
-            TransportResult result = results.get(selectedRow);
+        AbstractHistoryTableModel model = activeModel();
+        if (selectedRow >= 0 && selectedRow < model.getRowCount()) {
+            TransportResult result = model.getResultAt(selectedRow);
             detailArea.setText(result.getDisplayResponse());
             detailArea.setCaretPosition(0);
         } else {
@@ -138,8 +293,39 @@ public class HistoryPanel extends JPanel {
     }
 
     private void updateCountLabel() {
-        int count = results.size();
-        countLabel.setText(count + (count == 1 ? " entry" : " entries"));
+        if (isShowingSavedLog()) {
+            int count = savedLogModel.getRowCount();
+            String noun = savedLogModel.isFiltered()
+                    ? (count == 1 ? " matching entry" : " matching entries")
+                    : (count == 1 ? " saved entry" : " saved entries");
+            countLabel.setText(count + noun);
+            return;
+        }
+        long total = tableModel.getTotalAdded();
+        String text = total + (total == 1 ? " entry" : " entries");
+        if (total > tableModel.getRowCount()) {
+            text += " (latest " + tableModel.getRowCount() + " kept)";
+        }
+        countLabel.setText(text);
+    }
+
+    /**
+     * Returns this session's results still in the table, oldest first.
+     */
+    public List<TransportResult> getSessionResults() {
+        List<TransportResult> results = new ArrayList<>(tableModel.getRowCount());
+        for (int row = tableModel.getRowCount() - 1; row >= 0; row--) {
+            results.add(tableModel.getResultAt(row));
+        }
+        return results;
+    }
+
+    public void setExportRunning(boolean running) {
+        exportButton.setText(running ? "Stop Export" : "Export Results...");
+    }
+
+    public void setOnExportAction(Runnable action) {
+        this.onExportAction = action;
     }
 
     public JButton getClearHistoryButton() {
@@ -157,14 +343,15 @@ public class HistoryPanel extends JPanel {
 
             c.setFont(UIConstants.TABLE_FONT);
 
-            if (!isSelected && row < results.size()) {
-                TransportResult result = results.get(row);
-                TransportStatus status = result.status();
+            AbstractHistoryTableModel model = activeModel();
+            if (!isSelected && row < model.getRowCount()) {
+                TransportStatus status = model.getStatusAt(row);
 
                 if (status.isSuccessful()) {
                     c.setForeground(UIConstants.SUCCESS_COLOR);
                 } else if (status == TransportStatus.TIMEOUT ||
-                           status == TransportStatus.CONNECTION_ERROR) {
+                           status == TransportStatus.CONNECTION_ERROR ||
+                           status == TransportStatus.CIRCUIT_OPEN) {
                     c.setForeground(UIConstants.ERROR_COLOR);
                 } else if (status == TransportStatus.ACK_AE ||
                            status == TransportStatus.ACK_AR) {
@@ -0,0 +1,122 @@
+package com.hl7testbench.view;
+
+import com.hl7testbench.model.TransportResult;
+import com.hl7testbench.model.TransportResult.TransportStatus;
+import com.hl7testbench.util.RingBuffer;
+
+import java.util.List;
+
+/**
+ * Table model for send history, newest result first.
+ * Backed by a {@link RingBuffer} so adding a result never shifts existing
+ * rows and memory stays bounded by the retention cap; once full, the
+ * oldest result is dropped for each new one.
+ */
+public class HistoryTableModel extends AbstractHistoryTableModel {
+
+    /**
+     * Default number of results retained, overridable with
+     * {@code -Dhl7testbench.history.capacity}.
+     */
+    public static final int DEFAULT_CAPACITY = 10_000;
+
+    private final RingBuffer<TransportResult> results;
+    private long totalAdded;
+
+    public HistoryTableModel() {
+        this(Integer.getInteger("hl7testbench.history.capacity", DEFAULT_CAPACITY));
+    }
+
+    public HistoryTableModel(int capacity) {
+        this.results = new RingBuffer<>(Math.max(1, capacity));
+    }
+
+    /**
+     * Adds a result as the new first row, evicting the oldest row if the model is full.
+     */
+    public void addResult(TransportResult result) {
+        boolean evicted = results.add(result);
+        totalAdded++;
+        fireTableRowsInserted(0, 0);
+        if (evicted) {
+            int removedRow = results.size();
+            fireTableRowsDeleted(removedRow, removedRow);
+        }
+    }
+
+    /**
+     * Adds results in arrival order (the last element becomes row 0),
+     * firing a single insert and at most one delete event.
+     */
+    public void addResults(List<TransportResult> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        if (batch.size() >= results.capacity()) {
+            for (TransportResult result : batch.subList(batch.size() - results.capacity(), batch.size())) {
+                results.add(result);
+            }
+            totalAdded += batch.size();
+            fireTableDataChanged();
+            return;
+        }
+
+        int evicted = 0;
+        for (TransportResult result : batch) {
+            if (results.add(result)) {
+                evicted++;
+            }
+        }
+        totalAdded += batch.size();
+        fireTableRowsInserted(0, batch.size() - 1);
+        if (evicted > 0) {
+            int firstRemoved = results.size();
+            fireTableRowsDeleted(firstRemoved, firstRemoved + evicted - 1);
+        }
+    }
+
+    public void clear() {
+        results.clear();
+        totalAdded = 0;
+        fireTableDataChanged();
+    }
+
+    @Override
+    public TransportResult getResultAt(int row) {
+        return results.get(row);
+    }
+
+    @Override
+    public TransportStatus getStatusAt(int row) {
+        return results.get(row).status();
+    }
+
+    /**
+     * Returns the number of results added since the last clear, including evicted ones.
+     */
+    public long getTotalAdded() {
+        return totalAdded;
+    }
+
+    public int getCapacity() {
+        return results.capacity();
+    }
+
+    @Override
+    public int getRowCount() {
+        return results.size();
+    }
+
+    @Override
+    public Object getValueAt(int row, int column) {
+        TransportResult result = results.get(row);
+        return switch (column) {
+            case 0 -> result.getFormattedTimestamp();
+            case 1 -> result.messageControlId();
+            case 2 -> result.transportMode().getDisplayName();
+            case 3 -> result.status().getDisplayName();
+            case 4 -> result.roundTripTimeMs();
+            default -> null;
+        };
+    }
+}
@@ -20,9 +20,15 @@ public class MainFrame extends JFrame {
     private static final int DEFAULT_WIDTH = 1100;
     private static final int DEFAULT_HEIGHT = 900;
 
+    /**
+     * Builds the window. The look and feel must already be installed, see
+     * {@code HL7TestBench.main}; the default fonts are set here before any
+     * component is created, so nothing has to be updated afterwards.
+     */
     public MainFrame() {
         super(APP_TITLE);
 
+        setDefaultFont();
         connectionPanel = new ConnectionPanel();
         messagePanel = new MessagePanel();
         historyPanel = new HistoryPanel();
@@ -60,14 +66,6 @@ public class MainFrame extends JFrame {
         setSize(DEFAULT_WIDTH, DEFAULT_HEIGHT);
         setMinimumSize(new Dimension(800, 600));
         setLocationRelativeTo(null);
-
-        try {
-            UIManager.setLookAndFeel(UIManager.getSystemLookAndFeelClassName());
-            setDefaultFont();
-            SwingUtilities.updateComponentTreeUI(this);
-        } catch (Exception e) {
-            // Fall back to default look and feel
-        }
     }
 
     private void setDefaultFont() {
@@ -1,18 +1,20 @@
 package com.hl7testbench.view;
 
 import com.hl7testbench.model.HL7Message;
-import com.hl7testbench.util.HL7Parser;
+import com.hl7testbench.util.IndexedMessageFile;
 import com.hl7testbench.util.UIConstants;
 
 import javax.swing.*;
 import javax.swing.border.TitledBorder;
 import javax.swing.filechooser.FileNameExtensionFilter;
-import javax.swing.table.DefaultTableModel;
 import java.awt.*;
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
 
 /**
  * Panel for message input, file loading, and editing.
@@ -20,19 +22,33 @@ import java.util.List;
  */
 public class MessagePanel extends JPanel {
 
+    /** Partition key choice meaning plain sequential sending. */
+    public static final String NO_PARTITIONING = "None";
+
     private final JTextArea messageArea;
     private final JTable messageTable;
-    private final DefaultTableModel tableModel;
+    private final MessageTableModel tableModel;
+    private final JButton loadFileButton;
+    private final JButton clearButton;
     private final JButton sendButton;
     private final JButton sendAllButton;
     private final JLabel statusLabel;
+    private final JComboBox<String> partitionKeyCombo;
+    private final JSpinner partitionCountSpinner;
+    private final JSpinner batchSizeSpinner;
 
-    private final List<HL7Message> loadedMessages = new ArrayList<>();
+    private List<HL7Message> loadedMessages = List.of();
+    private IndexedMessageFile loadedFile;
+    private boolean actionsEnabled = true;
+    private boolean loading;
+    private boolean replayRunning;
 
     private Runnable onSendAction;
     private Runnable onSendAllAction;
-
-    private static final String[] COLUMN_NAMES = {"#", "Type", "Control ID"};
+    private Runnable onReplayAction;
+    private Runnable onValidateAction;
+    private final JButton replayButton;
+    private final JButton validateButton;
 
     public MessagePanel() {
         setLayout(new BorderLayout(10, 10));
@@ -56,12 +72,7 @@ public class MessagePanel extends JPanel {
         messageAreaPanel.add(instructionLabel, BorderLayout.NORTH);
         messageAreaPanel.add(messageScrollPane, BorderLayout.CENTER);
 
-        tableModel = new DefaultTableModel(COLUMN_NAMES, 0) {
-            @Override
-            public boolean isCellEditable(int row, int column) {
-                return false;
-            }
-        };
+        tableModel = new MessageTableModel();
         messageTable = new JTable(tableModel);
         messageTable.setFont(UIConstants.TABLE_FONT);
         messageTable.getTableHeader().setFont(UIConstants.TABLE_HEADER_FONT);
@@ -86,10 +97,15 @@ public class MessagePanel extends JPanel {
 
         JPanel buttonPanel = new JPanel(new FlowLayout(FlowLayout.CENTER, 15, 10));
 
-        JButton loadFileButton = createButton("Load File...");
+        loadFileButton = createButton("Load File...");
         sendButton = createButton("Send Message");
         sendAllButton = createButton("Send All");
-        JButton clearButton = createButton("Clear");
+        clearButton = createButton("Clear");
+        replayButton = createButton("Replay File...");
+        replayButton.setToolTipText("Resend a captured file with its original timing, without loading it");
+        validateButton = createButton("Validate...");
+        validateButton.setToolTipText("Check the messages against a conformance profile; " +
+                "Send and Send All then check them too");
 
         sendButton.setBackground(new Color(46, 125, 50));
         sendButton.setForeground(Color.WHITE);
@@ -98,6 +114,34 @@ public class MessagePanel extends JPanel {
         buttonPanel.add(sendButton);
         buttonPanel.add(sendAllButton);
         buttonPanel.add(clearButton);
+        buttonPanel.add(replayButton);
+        buttonPanel.add(validateButton);
+
+        partitionKeyCombo = new JComboBox<>(new String[]{NO_PARTITIONING, "PID-3", "MSH-4"});
+        partitionKeyCombo.setEditable(true);
+        partitionKeyCombo.setFont(UIConstants.INPUT_FONT);
+        partitionKeyCombo.setToolTipText("Send All keeps messages with the same value of this field in order, " +
+                "sending different values in parallel");
+        partitionCountSpinner = new JSpinner(new SpinnerNumberModel(4, 1, 64, 1));
+        partitionCountSpinner.setFont(UIConstants.INPUT_FONT);
+        partitionCountSpinner.setToolTipText("Number of connections sending in parallel");
+        batchSizeSpinner = new JSpinner(new SpinnerNumberModel(1, 1, 10000, 1));
+        batchSizeSpinner.setFont(UIConstants.INPUT_FONT);
+        batchSizeSpinner.setToolTipText("Send All packs up to this many messages into one FHS/BHS batch " +
+                "per request; 1 sends messages singly");
+
+        JLabel orderLabel = new JLabel("Order by:");
+        orderLabel.setFont(UIConstants.LABEL_FONT);
+        JLabel partitionsLabel = new JLabel("Partitions:");
+        partitionsLabel.setFont(UIConstants.LABEL_FONT);
+        buttonPanel.add(orderLabel);
+        buttonPanel.add(partitionKeyCombo);
+        buttonPanel.add(partitionsLabel);
+        buttonPanel.add(partitionCountSpinner);
+        JLabel batchLabel = new JLabel("Batch:");
+        batchLabel.setFont(UIConstants.LABEL_FONT);
+        buttonPanel.add(batchLabel);
+        buttonPanel.add(batchSizeSpinner);
 
         JSplitPane splitPane = new JSplitPane(JSplitPane.HORIZONTAL_SPLIT,
                 messageAreaPanel, tablePanel);
@@ -115,6 +159,12 @@ public class MessagePanel extends JPanel {
         sendAllButton.addActionListener(e -> {
             if (onSendAllAction != null) onSendAllAction.run();
         });
+        replayButton.addActionListener(e -> {
+            if (onReplayAction != null) onReplayAction.run();
+        });
+        validateButton.addActionListener(e -> {
+            if (onValidateAction != null) onValidateAction.run();
+        });
 
         messageTable.getSelectionModel().addListSelectionListener(e -> {
             if (!e.getValueIsAdjusting()) {
@@ -139,32 +189,81 @@ public class MessagePanel extends JPanel {
                 "All Files (*.*)", "*"));
 
         if (chooser.showOpenDialog(this) == JFileChooser.APPROVE_OPTION) {
-            try {
-                Path filePath = chooser.getSelectedFile().toPath();
-                List<HL7Message> parsed = HL7Parser.parseFile(filePath);
-
-                if (parsed.isEmpty()) {
-                    JOptionPane.showMessageDialog(this,
-                            "No valid HL7 messages found in the file.\n" +
-                            "Messages must contain an MSH segment.",
-                            "No Messages Found",
-                            JOptionPane.WARNING_MESSAGE);
-                    return;
+            Path filePath = chooser.getSelectedFile().toPath();
+            loading = true;
+            updateButtons();
+            new FileLoadWorker(filePath).execute();
+        }
+    }
+
+    /**
+     * Indexes a message file in the background, reporting progress in a
+     * cancellable monitor. The resulting list reads messages on demand.
+     */
+    private class FileLoadWorker extends SwingWorker<IndexedMessageFile, Void> {
+
+        private final Path filePath;
+        private final ProgressMonitor monitor;
+
+        FileLoadWorker(Path filePath) {
+            this.filePath = filePath;
+            this.monitor = new ProgressMonitor(MessagePanel.this,
+                    "Loading " + filePath.getFileName(), "", 0, 100);
+            this.monitor.setMillisToDecideToPopup(200);
+            addPropertyChangeListener(e -> {
+                if ("progress".equals(e.getPropertyName())) {
+                    monitor.setProgress((Integer) e.getNewValue());
+                    monitor.setNote(e.getNewValue() + "%");
                 }
+            });
+            statusLabel.setText("Loading " + filePath.getFileName() + "...");
+        }
 
-                setMessages(parsed);
+        @Override
+        protected IndexedMessageFile doInBackground() throws IOException {
+            long size = Math.max(1, filePath.toFile().length());
+            return IndexedMessageFile.index(filePath,
+                    scanned -> setProgress((int) Math.min(100, scanned * 100 / size)),
+                    () -> isCancelled() || monitor.isCanceled());
+        }
 
-                if (!parsed.isEmpty()) {
-                    messageArea.setText(parsed.get(0).getRawContent());
-                    messageTable.setRowSelectionInterval(0, 0);
+        @Override
+        protected void done() {
+            monitor.close();
+            loading = false;
+            updateButtons();
+            IndexedMessageFile file;
+            try {
+                file = get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                updateStatus();
+                return;
+            } catch (ExecutionException e) {
+                updateStatus();
+                if (!(e.getCause() instanceof InterruptedIOException)) {
+                    JOptionPane.showMessageDialog(MessagePanel.this,
+                            "Error reading file: " + e.getCause().getMessage(),
+                            "File Error",
+                            JOptionPane.ERROR_MESSAGE);
                 }
+                return;
+            }
 
-            } catch (IOException ex) {
-                JOptionPane.showMessageDialog(this,
-                        "Error reading file: " + ex.getMessage(),
-                        "File Error",
-                        JOptionPane.ERROR_MESSAGE);
+            if (file.isEmpty()) {
+                closeQuietly(file);
+                updateStatus();
+                JOptionPane.showMessageDialog(MessagePanel.this,
+                        "No valid HL7 messages found in the file.\n" +
+                        "Messages must contain an MSH segment.",
+                        "No Messages Found",
+                        JOptionPane.WARNING_MESSAGE);
+                return;
             }
+
+            setMessages(file);
+            loadedFile = file;
+            messageTable.setRowSelectionInterval(0, 0);
         }
     }
 
@@ -177,29 +276,37 @@ public class MessagePanel extends JPanel {
         }
     }
 
+    /**
+     * Replaces the loaded messages. File-backed lists are shown as-is;
+     * other lists are copied.
+     */
     public void setMessages(List<HL7Message> messages) {
-        loadedMessages.clear();
-        loadedMessages.addAll(messages);
-        refreshTable();
+        releaseLoadedFile();
+        loadedMessages = messages instanceof IndexedMessageFile ? messages : new ArrayList<>(messages);
+        tableModel.setMessages(loadedMessages);
         updateStatus();
     }
 
     public void clear() {
         messageArea.setText("");
-        loadedMessages.clear();
-        tableModel.setRowCount(0);
+        releaseLoadedFile();
+        loadedMessages = List.of();
+        tableModel.setMessages(loadedMessages);
         updateStatus();
     }
 
-    private void refreshTable() {
-        tableModel.setRowCount(0);
-        int index = 1;
-        for (HL7Message msg : loadedMessages) {
-            tableModel.addRow(new Object[]{
-                    index++,
-                    msg.getFullMessageType(),
-                    msg.getMessageControlId()
-            });
+    private void releaseLoadedFile() {
+        if (loadedFile != null) {
+            closeQuietly(loadedFile);
+            loadedFile = null;
+        }
+    }
+
+    private static void closeQuietly(IndexedMessageFile file) {
+        try {
+            file.close();
+        } catch (IOException e) {
+            // Nothing useful to do
         }
     }
 
@@ -214,13 +321,69 @@ public class MessagePanel extends JPanel {
         return messageArea.getText();
     }
 
+    /**
+     * Returns the field chosen to partition Send All by, e.g. "PID-3",
+     * or null for sequential sending.
+     */
+    public String getPartitionKeyText() {
+        Object selected = partitionKeyCombo.getSelectedItem();
+        String text = selected == null ? "" : selected.toString().trim();
+        return text.isEmpty() || text.equalsIgnoreCase(NO_PARTITIONING) ? null : text;
+    }
+
+    public int getPartitionCount() {
+        return (Integer) partitionCountSpinner.getValue();
+    }
+
+    /**
+     * Returns the most messages Send All packs into one batch, 1 meaning no batching.
+     */
+    public int getBatchSize() {
+        return (Integer) batchSizeSpinner.getValue();
+    }
+
+    /**
+     * Returns a read-only view of the loaded messages. For large files the
+     * messages are read from disk as they are accessed, so the list is only
+     * valid until the messages are replaced or cleared; that cannot happen
+     * while actions are disabled with {@link #setActionsEnabled}. A loaded
+     * file is returned as is, as it is read-only and its messages can then
+     * be read without its cache.
+     */
     public List<HL7Message> getAllMessages() {
-        return new ArrayList<>(loadedMessages);
+        if (loadedMessages instanceof IndexedMessageFile file) {
+            return file;
+        }
+        return Collections.unmodifiableList(loadedMessages);
     }
 
-    public void setSendEnabled(boolean enabled) {
+    /**
+     * Enables or disables the buttons that send, load or clear messages,
+     * e.g. while a send is reading the loaded file. The buttons also stay
+     * disabled while a file is loading.
+     */
+    public void setActionsEnabled(boolean enabled) {
+        actionsEnabled = enabled;
+        updateButtons();
+    }
+
+    /**
+     * Turns the replay button into a stop button while a replay runs.
+     */
+    public void setReplayRunning(boolean running) {
+        replayRunning = running;
+        replayButton.setText(running ? "Stop Replay" : "Replay File...");
+        updateButtons();
+    }
+
+    private void updateButtons() {
+        boolean enabled = actionsEnabled && !loading;
+        loadFileButton.setEnabled(enabled);
+        clearButton.setEnabled(enabled);
         sendButton.setEnabled(enabled);
         sendAllButton.setEnabled(enabled);
+        replayButton.setEnabled(enabled || replayRunning);
+        validateButton.setEnabled(enabled);
     }
 
     public void setOnSendAction(Runnable action) {
@@ -230,4 +393,12 @@ public class MessagePanel extends JPanel {
     public void setOnSendAllAction(Runnable action) {
         this.onSendAllAction = action;
     }
+
+    public void setOnReplayAction(Runnable action) {
+        this.onReplayAction = action;
+    }
+
+    public void setOnValidateAction(Runnable action) {
+        this.onValidateAction = action;
+    }
 }
@@ -0,0 +1,50 @@
+package com.hl7testbench.view;
+
+import com.hl7testbench.model.HL7Message;
+
+import javax.swing.table.AbstractTableModel;
+import java.util.List;
+
+/**
+ * Table model over a list of messages that only touches the rows JTable
+ * asks for, so a file-backed list materializes summaries for visible rows only.
+ */
+public class MessageTableModel extends AbstractTableModel {
+
+    private static final String[] COLUMN_NAMES = {"#", "Type", "Control ID"};
+
+    private List<HL7Message> messages = List.of();
+
+    public void setMessages(List<HL7Message> messages) {
+        this.messages = messages;
+        fireTableDataChanged();
+    }
+
+    public List<HL7Message> getMessages() {
+        return messages;
+    }
+
+    @Override
+    public int getRowCount() {
+        return messages.size();
+    }
+
+    @Override
+    public int getColumnCount() {
+        return COLUMN_NAMES.length;
+    }
+
+    @Override
+    public String getColumnName(int column) {
+        return COLUMN_NAMES[column];
+    }
+
+    @Override
+    public Object getValueAt(int row, int column) {
+        if (column == 0) {
+            return row + 1;
+        }
+        HL7Message message = messages.get(row);
+        return column == 1 ? message.getFullMessageType() : message.getMessageControlId();
+    }
+}